@@ -0,0 +1,14 @@
+package com.valura.auth.database.config;
+
+/**
+ * Names the client behind the current request, for {@link ReadYourWrites}. The database module does not
+ * know how requests are authenticated, so the application provides this as a bean.
+ */
+@FunctionalInterface
+public interface CurrentClient {
+
+    /**
+     * The client's name, or null outside a request.
+     */
+    String name();
+}
@@ -1,14 +1,121 @@
 package com.valura.auth.database.config;
 
+import com.valura.auth.database.repository.SoftDeleteRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
 @Configuration
 @EnableTransactionManagement
 @EntityScan(basePackages = "com.valura.auth.database.entity")
 @EnableJpaRepositories(basePackages = "com.valura.auth.database.repository")
 public class DatabaseConfig {
-    // Configuration can be extended and add the code here
-}
\ No newline at end of file
+
+    private static final String PRIMARY_POOL_PREFIX = "spring.datasource.hikari";
+    private static final String REPLICA_POOL_PREFIX = "scim.datasource.replica.hikari";
+
+    /**
+     * Routes read-only transactions to the replicas in {@code scim.datasource.replica.urls}; without that
+     * property Spring Boot's single data source is used.
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty("scim.datasource.replica.urls")
+    public ReplicaRoutingDataSource replicaRoutingDataSource(
+            DataSourceProperties properties, Environment environment, ObjectProvider<CurrentClient> currentClient,
+            @Value("${scim.datasource.replica.urls}") List<String> urls,
+            @Value("${scim.datasource.replica.username:${spring.datasource.username:}}") String username,
+            @Value("${scim.datasource.replica.password:${spring.datasource.password:}}") String password,
+            @Value("${scim.datasource.replica.max-lag:5s}") Duration maxLag,
+            @Value("${scim.datasource.replica.read-your-writes-window:5s}") Duration readYourWritesWindow,
+            @Value("${scim.datasource.replica.check-interval:1s}") Duration checkInterval,
+            @Value("${scim.datasource.replica.lag-query:" + ReplicaRoutingDataSource.POSTGRES_LAG_QUERY + "}") String lagQuery) {
+        Binder binder = Binder.get(environment);
+        HikariDataSource primary = primaryPool(properties, binder);
+        List<DataSource> replicas = new ArrayList<>();
+        for (String url : urls) {
+            replicas.add(replicaPool(binder, replicas.size(), url.trim(), username, password));
+        }
+        CurrentClient client = currentClient.getIfAvailable(() -> () -> null);
+        return new ReplicaRoutingDataSource(primary, replicas, maxLag, checkInterval, lagQuery,
+                new ReadYourWrites(readYourWritesWindow, client));
+    }
+
+    /**
+     * The primary pool as Spring Boot would build it: connection settings from {@code spring.datasource.*},
+     * pool settings such as size and timeouts from {@code spring.datasource.hikari.*}.
+     */
+    static HikariDataSource primaryPool(DataSourceProperties properties, Binder binder) {
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        binder.bind(PRIMARY_POOL_PREFIX, Bindable.ofInstance(primary));
+        primary.setPoolName("primary");
+        return primary;
+    }
+
+    /**
+     * A read-only replica pool with the primary's {@code spring.datasource.hikari.*} settings, overridden by
+     * any given under {@code scim.datasource.replica.hikari.*}.
+     */
+    static HikariDataSource replicaPool(Binder binder, int index, String url, String username, String password) {
+        HikariDataSource replica = new HikariDataSource();
+        binder.bind(PRIMARY_POOL_PREFIX, Bindable.ofInstance(replica));
+        replica.setJdbcUrl(url);
+        replica.setUsername(username);
+        replica.setPassword(password);
+        replica.setReadOnly(true);
+        binder.bind(REPLICA_POOL_PREFIX, Bindable.ofInstance(replica));
+        replica.setPoolName("replica-" + index);
+        return replica;
+    }
+
+    /**
+     * Defers fetching the physical connection until the first statement, when the transaction's read-only
+     * flag is set and the routing data source can act on it.
+     */
+    @Bean
+    @Primary
+    @ConditionalOnProperty("scim.datasource.replica.urls")
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+
+    /**
+     * Removes soft-deleted users and groups, and change feed tombstones, once {@code retention} has passed.
+     * Runs with soft delete disabled too, for the tombstones and for rows deleted while it was enabled.
+     */
+    @Bean
+    public SoftDeletePurger softDeletePurger(
+            SoftDeleteRepository softDeleteRepository, PlatformTransactionManager transactionManager,
+            @Value("${scim.soft-delete.retention:7d}") Duration retention,
+            @Value("${scim.soft-delete.purge-interval:1m}") Duration purgeInterval,
+            @Value("${scim.soft-delete.purge-batch-size:500}") int purgeBatchSize) {
+        return new SoftDeletePurger(softDeleteRepository, transactionManager, retention, purgeInterval, purgeBatchSize);
+    }
+
+    /**
+     * Logs virtual threads pinned to their carrier around database calls, when request threads are virtual.
+     */
+    @Bean
+    @ConditionalOnProperty("spring.threads.virtual.enabled")
+    public VirtualThreadPinningMonitor virtualThreadPinningMonitor(
+            @Value("${scim.virtual-threads.pinning-threshold:20ms}") Duration threshold) {
+        return new VirtualThreadPinningMonitor(threshold);
+    }
+}
@@ -0,0 +1,102 @@
+package com.valura.auth.database.config;
+
+import com.valura.auth.database.repository.OutboxEvent;
+import com.valura.auth.database.repository.OutboxRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drains the outbox into the {@link OutboxSink}s. Every {@code interval}, each of {@code threads} workers
+ * claims a batch of up to {@code batchSize} events, hands it to every sink and deletes it, all in one
+ * transaction, and repeats while batches come back full. Claims skip rows other transactions have locked,
+ * so workers on this and other nodes drain disjoint batches without waiting on each other.
+ */
+public class OutboxPublisher implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxPublisher.class);
+
+    private final OutboxRepository repository;
+    private final List<OutboxSink> sinks;
+    private final TransactionTemplate transaction;
+    private final Duration interval;
+    private final int batchSize;
+    private final int threads;
+
+    private volatile ScheduledExecutorService scheduler;
+
+    public OutboxPublisher(OutboxRepository repository, List<OutboxSink> sinks,
+                           PlatformTransactionManager transactionManager, Duration interval, int batchSize,
+                           int threads) {
+        this.repository = repository;
+        this.sinks = List.copyOf(sinks);
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.interval = interval;
+        this.batchSize = batchSize;
+        this.threads = threads;
+    }
+
+    @Override
+    public void start() {
+        scheduler = Executors.newScheduledThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "outbox-publisher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < threads; i++) {
+            scheduler.scheduleWithFixedDelay(this::publishQuietly, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void stop() {
+        ScheduledExecutorService current = scheduler;
+        scheduler = null;
+        if (current != null) {
+            current.shutdownNow();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return scheduler != null;
+    }
+
+    /**
+     * Publishes batches until the outbox has no unclaimed events left; returns the number published.
+     */
+    int publish() {
+        int total = 0;
+        int published;
+        do {
+            published = transaction.execute(status -> {
+                List<OutboxEvent> events = repository.claim(batchSize);
+                if (!events.isEmpty()) {
+                    for (OutboxSink sink : sinks) {
+                        sink.publish(events);
+                    }
+                    repository.delete(events);
+                }
+                return events.size();
+            });
+            total += published;
+        } while (published >= batchSize && !Thread.currentThread().isInterrupted());
+        return total;
+    }
+
+    private void publishQuietly() {
+        try {
+            publish();
+        } catch (RuntimeException e) {
+            log.warn("Publishing outbox events failed, retrying in {}", interval, e);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.valura.auth.database.config;
+
+import com.valura.auth.database.repository.OutboxEvent;
+
+import java.util.List;
+
+/**
+ * Where {@link OutboxPublisher} delivers provisioning events, such as a message broker or webhook. A batch
+ * counts as delivered when this returns; throwing leaves the whole batch in the outbox to be delivered again,
+ * to every sink.
+ */
+public interface OutboxSink {
+
+    void publish(List<OutboxEvent> events);
+}
@@ -0,0 +1,57 @@
+package com.valura.auth.database.config;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Remembers when each client last committed a write, so that its reads can go to the primary until
+ * replicas have had time to replay that write. Writes are only known to the node that made them.
+ */
+public class ReadYourWrites {
+
+    private static final int PRUNE_THRESHOLD = 10_000;
+
+    private final long windowNanos;
+    private final CurrentClient currentClient;
+    private final LongSupplier clock;
+    private final Map<String, Long> lastWrites = new ConcurrentHashMap<>();
+
+    /**
+     * Requests without a {@link CurrentClient#name() client name} all count as one client.
+     */
+    public ReadYourWrites(Duration window, CurrentClient currentClient) {
+        this(window, currentClient, System::nanoTime);
+    }
+
+    ReadYourWrites(Duration window, CurrentClient currentClient, LongSupplier clock) {
+        this.windowNanos = window.toNanos();
+        this.currentClient = currentClient;
+        this.clock = clock;
+    }
+
+    public String currentClient() {
+        String client = currentClient.name();
+        return client != null ? client : "";
+    }
+
+    public void wrote(String client) {
+        long now = clock.getAsLong();
+        if (lastWrites.size() > PRUNE_THRESHOLD) {
+            lastWrites.values().removeIf(time -> now - time > windowNanos);
+        }
+        lastWrites.put(client, now);
+    }
+
+    /**
+     * Whether the current client committed a write within the window.
+     */
+    public boolean recentlyWrote() {
+        if (windowNanos <= 0) {
+            return false;
+        }
+        Long lastWrite = lastWrites.get(currentClient());
+        return lastWrite != null && clock.getAsLong() - lastWrite <= windowNanos;
+    }
+}
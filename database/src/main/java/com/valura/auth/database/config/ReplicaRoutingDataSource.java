@@ -0,0 +1,195 @@
+package com.valura.auth.database.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Sends read-only transactions to a replica and everything else to the primary. The decision is made when
+ * a connection is requested, so it must be wrapped in a
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy} for the transaction's read-only
+ * flag to be known by then.
+ *
+ * <p>A replica is only used while its replication lag, checked every {@code checkInterval}, is within
+ * {@code maxLag}; when no replica qualifies reads go to the primary. A client that committed a write within
+ * the {@link ReadYourWrites} window also reads from the primary, so it sees its own changes. A read-only
+ * transaction that must see every committed change asks for the primary with {@link #readFromPrimary()}.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+
+    /**
+     * Seconds the replica is behind the primary; zero while it has replayed everything it received, since
+     * the last replay timestamp only advances when the primary writes. Caught up only counts while the WAL
+     * receiver is streaming: a replica cut off from the primary has replayed all it received too, so it
+     * returns no row and is skipped.
+     */
+    public static final String POSTGRES_LAG_QUERY = "SELECT CASE WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() "
+            + "THEN 0 ELSE EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) END "
+            + "FROM pg_stat_wal_receiver WHERE status = 'streaming'";
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+    private static final String PRIMARY = "primary";
+    private static final Object PRIMARY_ONLY = new Object();
+
+    private final DataSource primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final double maxLagSeconds;
+    private final String lagQuery;
+    private final ReadYourWrites readYourWrites;
+    private final ScheduledExecutorService lagChecker;
+    private final AtomicInteger next = new AtomicInteger();
+    private final ReentrantLock checkLock = new ReentrantLock();
+
+    private static final class Replica {
+        private final String key;
+        private final DataSource dataSource;
+        private volatile boolean usable;
+
+        private Replica(String key, DataSource dataSource) {
+            this.key = key;
+            this.dataSource = dataSource;
+        }
+    }
+
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas, Duration maxLag,
+                                    Duration checkInterval, String lagQuery, ReadYourWrites readYourWrites) {
+        this.primary = primary;
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (DataSource dataSource : replicas) {
+            Replica replica = new Replica("replica-" + this.replicas.size(), dataSource);
+            this.replicas.add(replica);
+            targets.put(replica.key, dataSource);
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        this.maxLagSeconds = maxLag.toMillis() / 1000.0;
+        this.lagQuery = lagQuery;
+        this.readYourWrites = readYourWrites;
+        this.lagChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-lag-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Replicas start out unused until their first check has passed.
+        this.lagChecker.scheduleWithFixedDelay(this::checkReplicas, 0, checkInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                String client = readYourWrites.currentClient();
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        readYourWrites.wrote(client);
+                    }
+                });
+            }
+            return PRIMARY;
+        }
+        if (TransactionSynchronizationManager.hasResource(PRIMARY_ONLY) || readYourWrites.recentlyWrote()) {
+            return PRIMARY;
+        }
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), Math.max(size, 1));
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.usable) {
+                return replica.key;
+            }
+        }
+        return PRIMARY;
+    }
+
+    /**
+     * Sends the rest of the current read-only transaction to the primary, without counting it as a write of
+     * the current client. Must be called before the transaction's first statement; outside a transaction it
+     * does nothing, as everything then goes to the primary anyway.
+     */
+    public static void readFromPrimary() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || TransactionSynchronizationManager.hasResource(PRIMARY_ONLY)) {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(PRIMARY_ONLY, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(PRIMARY_ONLY);
+            }
+        });
+    }
+
+    /**
+     * Checks the replicas one pass at a time. A lock rather than {@code synchronized}, since the pass waits on
+     * the replica pools and the network, which would pin a virtual thread to its carrier.
+     */
+    void checkReplicas() {
+        checkLock.lock();
+        try {
+            for (Replica replica : replicas) {
+                boolean usable;
+                try (Connection connection = replica.dataSource.getConnection();
+                     Statement statement = connection.createStatement();
+                     ResultSet resultSet = statement.executeQuery(lagQuery)) {
+                    // No row, or no value, means the replica cannot tell how far behind it is.
+                    double lag = Double.MAX_VALUE;
+                    if (resultSet.next()) {
+                        double reported = resultSet.getDouble(1);
+                        lag = resultSet.wasNull() ? Double.MAX_VALUE : reported;
+                    }
+                    usable = lag <= maxLagSeconds;
+                    if (!usable && replica.usable) {
+                        log.warn("Not reading from {}: {}s behind the primary", replica.key, lag);
+                    }
+                } catch (SQLException | RuntimeException e) {
+                    usable = false;
+                    if (replica.usable) {
+                        log.warn("Not reading from {}: lag check failed", replica.key, e);
+                    }
+                }
+                replica.usable = usable;
+            }
+        } finally {
+            checkLock.unlock();
+        }
+    }
+
+    /**
+     * Stops the lag checks and closes the primary and replica pools.
+     */
+    @Override
+    public void close() throws Exception {
+        lagChecker.shutdownNow();
+        closeIfCloseable(primary);
+        for (Replica replica : replicas) {
+            closeIfCloseable(replica.dataSource);
+        }
+    }
+
+    private static void closeIfCloseable(DataSource dataSource) throws Exception {
+        if (dataSource instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+}
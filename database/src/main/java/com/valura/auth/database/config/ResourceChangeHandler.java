@@ -0,0 +1,16 @@
+package com.valura.auth.database.config;
+
+import com.valura.auth.database.repository.ResourceChange;
+
+/**
+ * Receives the resource changes a {@link ResourceChangeListener} hears about.
+ */
+public interface ResourceChangeHandler {
+
+    void changed(ResourceChange change);
+
+    /**
+     * Called whenever the listener was not listening for a while, when changes may have been missed.
+     */
+    void missedChanges();
+}
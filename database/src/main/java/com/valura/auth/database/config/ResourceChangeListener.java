@@ -0,0 +1,126 @@
+package com.valura.auth.database.config;
+
+import com.valura.auth.database.repository.ResourceChange;
+import com.valura.auth.database.repository.ResourceChangeRepository;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+
+/**
+ * Listens on the {@link ResourceChangeRepository#CHANNEL} channel over its own connection, outside the pool,
+ * and passes each change to a {@link ResourceChangeHandler}. After the connection is lost it reconnects every
+ * {@code reconnectDelay}; the handler is told that changes may have been missed each time listening
+ * (re)starts. Does nothing unless the database is PostgreSQL.
+ */
+public class ResourceChangeListener implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(ResourceChangeListener.class);
+
+    private final String url;
+    private final String username;
+    private final String password;
+    private final ResourceChangeHandler handler;
+    private final Duration pollInterval;
+    private final Duration reconnectDelay;
+
+    private volatile boolean running;
+    private volatile Thread thread;
+    private volatile Connection connection;
+
+    public ResourceChangeListener(String url, String username, String password, ResourceChangeHandler handler,
+                                  Duration pollInterval, Duration reconnectDelay) {
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.handler = handler;
+        this.pollInterval = pollInterval;
+        this.reconnectDelay = reconnectDelay;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        if (url == null || !url.startsWith("jdbc:postgresql:")) {
+            return;
+        }
+        thread = new Thread(this::listen, "resource-change-listener");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        Thread listener = thread;
+        if (listener != null) {
+            listener.interrupt();
+        }
+        Connection current = connection;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (SQLException e) {
+                // the listener thread is stopping anyway
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void listen() {
+        while (running) {
+            try (Connection listening = DriverManager.getConnection(url, username, password)) {
+                connection = listening;
+                try (Statement statement = listening.createStatement()) {
+                    statement.execute("LISTEN " + ResourceChangeRepository.CHANNEL);
+                }
+                handler.missedChanges();
+                PGConnection pgConnection = listening.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(Math.toIntExact(pollInterval.toMillis()));
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            dispatch(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Not listening for resource changes, reconnecting in {}", reconnectDelay, e);
+                handler.missedChanges();
+                try {
+                    Thread.sleep(reconnectDelay.toMillis());
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            } finally {
+                connection = null;
+            }
+        }
+    }
+
+    private void dispatch(String payload) {
+        ResourceChange change;
+        try {
+            change = ResourceChange.parse(payload);
+        } catch (IllegalArgumentException e) {
+            log.warn("Ignoring unreadable resource change '{}', dropping cached resources", payload);
+            handler.missedChanges();
+            return;
+        }
+        handler.changed(change);
+    }
+}
@@ -0,0 +1,107 @@
+package com.valura.auth.database.config;
+
+import com.valura.auth.database.repository.SoftDeleteRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+/**
+ * Every {@code interval}, removes users, groups and change feed tombstones that were deleted more than
+ * {@code retention} ago, in transactions of at most {@code batchSize} rows each, until none are left. Nodes
+ * may purge concurrently; a batch another node got to first deletes nothing.
+ */
+public class SoftDeletePurger implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(SoftDeletePurger.class);
+
+    private final SoftDeleteRepository repository;
+    private final TransactionTemplate transaction;
+    private final Duration retention;
+    private final Duration interval;
+    private final int batchSize;
+    private final Clock clock;
+
+    private volatile ScheduledExecutorService scheduler;
+
+    public SoftDeletePurger(SoftDeleteRepository repository, PlatformTransactionManager transactionManager,
+                            Duration retention, Duration interval, int batchSize) {
+        this(repository, transactionManager, retention, interval, batchSize, Clock.systemUTC());
+    }
+
+    SoftDeletePurger(SoftDeleteRepository repository, PlatformTransactionManager transactionManager,
+                     Duration retention, Duration interval, int batchSize, Clock clock) {
+        this.repository = repository;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.retention = retention;
+        this.interval = interval;
+        this.batchSize = batchSize;
+        this.clock = clock;
+    }
+
+    @Override
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "soft-delete-purge");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::purgeQuietly, interval.toMillis(), interval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        ScheduledExecutorService current = scheduler;
+        scheduler = null;
+        if (current != null) {
+            current.shutdownNow();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return scheduler != null;
+    }
+
+    /**
+     * Purges everything that has expired; returns the number of rows removed.
+     */
+    int purge() {
+        Instant cutoff = clock.instant().minus(retention);
+        int purged = drain(repository::purgeUsers, cutoff)
+                + drain(repository::purgeGroups, cutoff)
+                + drain(repository::purgeChangeTombstones, cutoff);
+        if (purged > 0) {
+            log.info("Purged {} rows deleted before {}", purged, cutoff);
+        }
+        return purged;
+    }
+
+    private void purgeQuietly() {
+        try {
+            purge();
+        } catch (RuntimeException e) {
+            log.warn("Purging deleted resources failed, retrying in {}", interval, e);
+        }
+    }
+
+    private int drain(BiFunction<Instant, Integer, Integer> batch, Instant cutoff) {
+        int total = 0;
+        int purged;
+        do {
+            purged = transaction.execute(status -> batch.apply(cutoff, batchSize));
+            total += purged;
+        } while (purged >= batchSize && !Thread.currentThread().isInterrupted());
+        return total;
+    }
+}
@@ -0,0 +1,25 @@
+package com.valura.auth.database.entity;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.util.UUID;
+
+/**
+ * Keeps {@code externalId} a {@code String} in the entities while the column is a native {@code uuid}.
+ * Lookups by a string that is not a UUID bind null, which matches no row, so callers need not validate
+ * ids taken from request paths and filters first.
+ */
+@Converter
+public class ExternalIdConverter implements AttributeConverter<String, UUID> {
+
+    @Override
+    public UUID convertToDatabaseColumn(String attribute) {
+        return ExternalIds.toUuid(attribute);
+    }
+
+    @Override
+    public String convertToEntityAttribute(UUID dbData) {
+        return dbData != null ? dbData.toString() : null;
+    }
+}
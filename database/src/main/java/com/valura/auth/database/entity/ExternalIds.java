@@ -0,0 +1,45 @@
+package com.valura.auth.database.entity;
+
+import java.security.SecureRandom;
+import java.util.UUID;
+
+/**
+ * Resource ids, the {@code external_id} of users and groups, which are stored as native {@code uuid}.
+ *
+ * <p>New ids are version 7 UUIDs (RFC 9562): the leading 48 bits are the creation time in milliseconds, so
+ * ids created one after another land on the same, rightmost pages of the unique index instead of random ones.
+ * The remaining 74 bits are random, as in {@link UUID#randomUUID()}.
+ */
+public final class ExternalIds {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private ExternalIds() {
+    }
+
+    public static String next() {
+        return next(System.currentTimeMillis()).toString();
+    }
+
+    static UUID next(long epochMillis) {
+        long random = RANDOM.nextLong();
+        long mostSignificant = (epochMillis << 16) | 0x7000L | (random & 0x0FFFL);
+        long leastSignificant = (RANDOM.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(mostSignificant, leastSignificant);
+    }
+
+    /**
+     * The UUID an id stands for, or null when it is not in the canonical 8-4-4-4-12 form and therefore
+     * cannot be the id of any resource.
+     */
+    public static UUID toUuid(String id) {
+        if (id == null || id.length() != 36) {
+            return null;
+        }
+        try {
+            return UUID.fromString(id);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -1,23 +1,29 @@
 package com.valura.auth.database.entity;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.SQLRestriction;
+
 import java.util.HashSet;
 import java.util.Set;
 import java.util.Objects;
 import java.time.Instant;
 
+/**
+ * A SCIM group. Soft-deleted rows (see the V11 migration) are invisible to every query through this entity;
+ * {@code display_name} is unique among the rest.
+ */
 @Entity
 @Table(name = "groups",
-        uniqueConstraints = {
-                @UniqueConstraint(columnNames = "external_id"),
-                @UniqueConstraint(columnNames = "display_name")
-        })
+        uniqueConstraints = @UniqueConstraint(columnNames = "external_id"))
+@SQLRestriction("deleted_at IS NULL")
 public class GroupEntity {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "groups_seq")
+    @SequenceGenerator(name = "groups_seq", sequenceName = "groups_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "external_id", nullable = false)
+    @Convert(converter = ExternalIdConverter.class)
     private String externalId;
 
     @Column(name = "display_name", nullable = false)
@@ -32,6 +38,10 @@ public class GroupEntity {
     @Column(name = "updated_at")
     private Instant updatedAt;
 
+    @Version
+    @Column(nullable = false)
+    private long version;
+
     @PrePersist
     protected void onCreate() {
         createdAt = Instant.now();
@@ -43,6 +53,14 @@ public class GroupEntity {
         updatedAt = Instant.now();
     }
 
+    /**
+     * Marks the group as modified when only rows outside this entity, such as its memberships, changed,
+     * so that the next flush also increments its version.
+     */
+    public void touch() {
+        updatedAt = Instant.now();
+    }
+
     // Getters
     public Long getId() {
         return id;
@@ -68,6 +86,10 @@ public class GroupEntity {
         return updatedAt;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
     // Setters
     public void setId(Long id) {
         this.id = id;
@@ -1,24 +1,29 @@
 package com.valura.auth.database.entity;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.SQLRestriction;
+
 import java.util.HashSet;
 import java.util.Set;
 import java.util.Objects;
 import java.time.Instant;
 
+/**
+ * A SCIM user. Soft-deleted rows (see the V11 migration) are invisible to every query through this entity;
+ * {@code user_name} and {@code email} are unique among the rest.
+ */
 @Entity
 @Table(name = "users",
-        uniqueConstraints = {
-                @UniqueConstraint(columnNames = "external_id"),
-                @UniqueConstraint(columnNames = "user_name"),
-                @UniqueConstraint(columnNames = "email")
-        })
+        uniqueConstraints = @UniqueConstraint(columnNames = "external_id"))
+@SQLRestriction("deleted_at IS NULL")
 public class UserEntity {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_seq")
+    @SequenceGenerator(name = "users_seq", sequenceName = "users_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "external_id", nullable = false)
+    @Convert(converter = ExternalIdConverter.class)
     private String externalId;
 
     @Column(name = "user_name", nullable = false)
@@ -53,6 +58,10 @@ public class UserEntity {
     @Column(name = "updated_at")
     private Instant updatedAt;
 
+    @Version
+    @Column(nullable = false)
+    private long version;
+
     @PrePersist
     protected void onCreate() {
         createdAt = Instant.now();
@@ -108,6 +117,10 @@ public class UserEntity {
         return updatedAt;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
     public void setId(Long id) {
         this.id = id;
     }
@@ -140,6 +153,18 @@ public class UserEntity {
         this.active = active;
     }
 
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public void setUpdatedAt(Instant updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     public void setGroups(Set<GroupEntity> groups) {
         this.groups = groups != null ? groups : new HashSet<>();
     }
@@ -0,0 +1,147 @@
+package com.valura.auth.database.repository;
+
+import com.valura.auth.database.entity.ExternalIds;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Reads what changed in {@code users}, {@code groups} and {@code user_groups} between two watermarks, and
+ * records the tombstones that deletes leave behind (see the V10 migration).
+ *
+ * <p>On PostgreSQL a watermark is a transaction snapshot ({@code pg_current_snapshot()}), and the changes
+ * between two of them are the rows written by transactions the first did not see and the second did. This
+ * holds however transactions interleave, and the {@code change_xid} indexes keep the cost proportional to
+ * the number of changed rows. Elsewhere a watermark is the highest {@code change_seq} at the time.
+ *
+ * <p>Soft-deleted users and groups, and their memberships, only appear through their tombstones.
+ *
+ * <p>Within one window changes are ordered by {@code change_seq}, which also pages through large windows.
+ *
+ * <p>Tombstones are purged after the soft delete retention; a watermark from before the newest purged one
+ * {@link #isBehindPurge is behind the purge} and can no longer be served.
+ */
+@Repository
+public class ChangeFeedRepository {
+
+    private static final Pattern SNAPSHOT = Pattern.compile("\\d+:\\d+:(\\d+(,\\d+)*)?");
+    private static final Pattern SEQUENCE = Pattern.compile("\\d{1,18}");
+
+    private static final String POSTGRES_WINDOW = "change_xid >= pg_snapshot_xmin(CAST(:low AS pg_snapshot)) "
+            + "AND NOT pg_visible_in_snapshot(change_xid, CAST(:low AS pg_snapshot)) "
+            + "AND pg_visible_in_snapshot(change_xid, CAST(:high AS pg_snapshot)) AND change_seq > :after";
+
+    private static final String SEQUENCE_WINDOW = "change_seq > CAST(:low AS BIGINT) "
+            + "AND change_seq <= CAST(:high AS BIGINT) AND change_seq > :after";
+
+    private static final String CHANGES = "SELECT kind, change_seq, id, external_id, group_external_id FROM ("
+            + "SELECT 'USER' AS kind, change_seq, id, external_id, CAST(NULL AS UUID) AS group_external_id "
+            + "FROM users WHERE deleted_at IS NULL AND %1$s "
+            + "UNION ALL SELECT 'GROUP', change_seq, id, external_id, CAST(NULL AS UUID) "
+            + "FROM groups WHERE deleted_at IS NULL AND %1$s "
+            + "UNION ALL SELECT 'MEMBER_ADDED', m.change_seq, NULL, u.external_id, g.external_id "
+            + "FROM (SELECT change_seq, user_id, group_id FROM user_groups WHERE %1$s) m "
+            + "JOIN users u ON u.id = m.user_id AND u.deleted_at IS NULL "
+            + "JOIN groups g ON g.id = m.group_id AND g.deleted_at IS NULL "
+            + "UNION ALL SELECT CASE resource_type WHEN 'User' THEN 'USER_DELETED' WHEN 'Group' THEN 'GROUP_DELETED' "
+            + "ELSE 'MEMBER_REMOVED' END, change_seq, NULL, external_id, group_external_id "
+            + "FROM tombstones WHERE %1$s"
+            + ") c ORDER BY change_seq LIMIT :limit";
+
+    private static final String MAX_CHANGE_SEQ = "SELECT GREATEST("
+            + "(SELECT COALESCE(MAX(change_seq), 0) FROM users), (SELECT COALESCE(MAX(change_seq), 0) FROM groups), "
+            + "(SELECT COALESCE(MAX(change_seq), 0) FROM user_groups), "
+            + "(SELECT COALESCE(MAX(change_seq), 0) FROM tombstones))";
+
+    private static final String POSTGRES_BEHIND_PURGE = "SELECT purged_xid >= "
+            + "pg_snapshot_xmin(CAST(:low AS pg_snapshot)) FROM change_feed_horizon";
+
+    private static final String SEQUENCE_BEHIND_PURGE = "SELECT purged_seq > CAST(:low AS BIGINT) "
+            + "FROM change_feed_horizon";
+
+    private static final RowMapper<Change> CHANGE = (rs, rowNum) -> new Change(
+            ChangeKind.valueOf(rs.getString("kind")),
+            rs.getLong("change_seq"),
+            JdbcUtils.getResultSetValue(rs, 3, Long.class) instanceof Long id ? id : null,
+            rs.getString("external_id"),
+            rs.getString("group_external_id"));
+
+    public enum ChangeKind {
+        USER, GROUP, MEMBER_ADDED, USER_DELETED, GROUP_DELETED, MEMBER_REMOVED
+    }
+
+    /**
+     * One change. {@code id} is the row id of a created or updated user or group. For membership changes
+     * {@code externalId} is the user and {@code groupExternalId} the group.
+     */
+    public record Change(ChangeKind kind, long sequence, Long id, String externalId, String groupExternalId) {
+    }
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final boolean postgres;
+
+    public ChangeFeedRepository(DataSource dataSource) {
+        this.jdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+        this.postgres = "PostgreSQL".equals(databaseProductName(dataSource));
+    }
+
+    /**
+     * A watermark that every change committed so far is behind. On PostgreSQL this must run on the primary:
+     * a replica's snapshot does not cover transactions it has not replayed yet.
+     */
+    public String currentWatermark() {
+        return postgres
+                ? jdbcTemplate.getJdbcTemplate().queryForObject("SELECT CAST(pg_current_snapshot() AS text)", String.class)
+                : String.valueOf(jdbcTemplate.getJdbcTemplate().queryForObject(MAX_CHANGE_SEQ, Long.class));
+    }
+
+    /**
+     * Whether {@code watermark} is one {@link #currentWatermark} could have returned on this database.
+     */
+    public boolean isWatermark(String watermark) {
+        return watermark != null && (postgres ? SNAPSHOT : SEQUENCE).matcher(watermark).matches();
+    }
+
+    /**
+     * Returns up to {@code limit} changes made after {@code low} and no later than {@code high}, with a
+     * {@code change_seq} above {@code after}, in {@code change_seq} order.
+     */
+    public List<Change> findChanges(String low, String high, long after, int limit) {
+        String sql = String.format(CHANGES, postgres ? POSTGRES_WINDOW : SEQUENCE_WINDOW);
+        return jdbcTemplate.query(sql, Map.of("low", low, "high", high, "after", after, "limit", limit), CHANGE);
+    }
+
+    /**
+     * Whether tombstones that a window starting at {@code low} would include have been purged. On PostgreSQL
+     * only the newest purged transaction is kept, so a snapshot is rejected unless that transaction is older
+     * than its xmin. Call it after reading the window, so that a purge running meanwhile is noticed.
+     */
+    public boolean isBehindPurge(String low) {
+        String sql = postgres ? POSTGRES_BEHIND_PURGE : SEQUENCE_BEHIND_PURGE;
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(sql, Map.of("low", low), Boolean.class));
+    }
+
+    /**
+     * Leaves a tombstone for a deleted user ({@code "User"}) or group ({@code "Group"}).
+     */
+    public void recordDeletion(String resourceType, String externalId) {
+        jdbcTemplate.update("INSERT INTO tombstones (resource_type, external_id) VALUES (:type, :externalId)",
+                Map.of("type", resourceType, "externalId", ExternalIds.toUuid(externalId)));
+    }
+
+    private static String databaseProductName(DataSource dataSource) {
+        try {
+            return JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+        } catch (MetaDataAccessException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.valura.auth.database.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads and writes {@code user_groups} rows directly with batched JDBC. Going through the JPA association
+ * would hydrate every member as a {@code UserEntity}, initialize its {@code groups} collection and rewrite
+ * the whole membership, which does not scale to groups with thousands of members.
+ *
+ * <p>Memberships of soft-deleted users are kept until the users are purged, but never read.
+ *
+ * <p>Callers must flush pending JPA changes for the group first, and must not rely on already loaded
+ * {@code GroupEntity.members} or {@code UserEntity.groups} collections afterwards.
+ */
+@Repository
+public class GroupMembershipRepository {
+
+    private static final String SELECT_MEMBERS = "SELECT ug.group_id, u.id, u.external_id, u.user_name "
+            + "FROM user_groups ug JOIN users u ON u.id = ug.user_id AND u.deleted_at IS NULL ";
+
+    private static final String INSERT_MEMBER_TOMBSTONE = "INSERT INTO tombstones "
+            + "(resource_type, external_id, group_external_id) SELECT 'Member', u.external_id, g.external_id "
+            + "FROM user_groups ug JOIN users u ON u.id = ug.user_id JOIN groups g ON g.id = ug.group_id "
+            + "WHERE ug.group_id = ? AND ug.user_id = ?";
+
+    private static final String GROUPS_OF_USER = "deleted_at IS NULL AND id IN "
+            + "(SELECT group_id FROM user_groups WHERE user_id = ?)";
+
+    private static final RowMapper<UserReference> USER_REFERENCE = (rs, rowNum) ->
+            new UserReference(rs.getLong("id"), rs.getString("external_id"), rs.getString("user_name"));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final int batchSize;
+
+    public GroupMembershipRepository(JdbcTemplate jdbcTemplate,
+                                     @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Returns the members of a group ordered by user id, the order {@link MembershipDelta#between} expects.
+     */
+    public List<UserReference> findMembers(long groupId) {
+        return jdbcTemplate.query(SELECT_MEMBERS + "WHERE ug.group_id = ? ORDER BY u.id", USER_REFERENCE, groupId);
+    }
+
+    /**
+     * Returns the members of several groups in one query per chunk, keyed by group id and ordered by user id.
+     */
+    public Map<Long, List<UserReference>> findMembers(Collection<Long> groupIds) {
+        Map<Long, List<UserReference>> members = new HashMap<>();
+        for (List<Long> chunk : InLists.chunks(groupIds)) {
+            namedJdbcTemplate.query(SELECT_MEMBERS + "WHERE ug.group_id IN (:groupIds) ORDER BY ug.group_id, u.id",
+                    Map.of("groupIds", chunk),
+                    rs -> {
+                        members.computeIfAbsent(rs.getLong("group_id"), id -> new ArrayList<>())
+                                .add(USER_REFERENCE.mapRow(rs, 0));
+                    });
+        }
+        return members;
+    }
+
+    public long[] findMemberIds(long groupId) {
+        return jdbcTemplate.queryForList("SELECT ug.user_id FROM user_groups ug JOIN users u ON u.id = ug.user_id "
+                        + "WHERE ug.group_id = ? AND u.deleted_at IS NULL ORDER BY ug.user_id", Long.class, groupId).stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * Returns the given users that are not yet members of the group, reading only their own rows.
+     */
+    public long[] findNonMembers(long groupId, long[] userIds) {
+        Set<Long> members = new HashSet<>();
+        for (int from = 0; from < userIds.length; from += InLists.CHUNK_SIZE) {
+            long[] chunk = Arrays.copyOfRange(userIds, from, Math.min(from + InLists.CHUNK_SIZE, userIds.length));
+            members.addAll(namedJdbcTemplate.queryForList(
+                    "SELECT user_id FROM user_groups WHERE group_id = :groupId AND user_id IN (:userIds)",
+                    Map.of("groupId", groupId, "userIds", Arrays.stream(chunk).boxed().toList()), Long.class));
+        }
+        return Arrays.stream(userIds).filter(userId -> !members.contains(userId)).toArray();
+    }
+
+    public void addMembers(long groupId, long[] userIds) {
+        batch("INSERT INTO user_groups (group_id, user_id) VALUES (?, ?)", groupId, userIds);
+    }
+
+    /**
+     * Removes members, leaving a {@code Member} tombstone for each membership that existed.
+     */
+    public void removeMembers(long groupId, long[] userIds) {
+        batch(INSERT_MEMBER_TOMBSTONE, groupId, userIds);
+        batch("DELETE FROM user_groups WHERE group_id = ? AND user_id = ?", groupId, userIds);
+    }
+
+    /**
+     * Removes every member of a group that is being deleted, without tombstones: the group's own tombstone
+     * covers its memberships.
+     */
+    public int removeAllMembers(long groupId) {
+        return jdbcTemplate.update("DELETE FROM user_groups WHERE group_id = ?", groupId);
+    }
+
+    /**
+     * Moves a group from its {@code current} to its {@code desired} members (both ascending and
+     * duplicate-free) with only the INSERTs and DELETEs for rows that differ.
+     */
+    public MembershipDelta updateMembers(long groupId, long[] current, long[] desired) {
+        MembershipDelta delta = MembershipDelta.between(current, desired);
+        removeMembers(groupId, delta.removed());
+        addMembers(groupId, delta.added());
+        return delta;
+    }
+
+    /**
+     * Increments the version of every group the user belongs to, for user writes that change what those
+     * groups show as their members: a delete or a new {@code userName}. Must run before the memberships go.
+     * Returns the groups at their new versions.
+     */
+    public List<ResourceChange> touchGroupsOf(long userId) {
+        jdbcTemplate.update("UPDATE groups SET version = version + 1, updated_at = CURRENT_TIMESTAMP WHERE "
+                + GROUPS_OF_USER, userId);
+        return jdbcTemplate.query("SELECT external_id, version FROM groups WHERE " + GROUPS_OF_USER,
+                (rs, rowNum) -> new ResourceChange(ResourceChange.Type.GROUP, rs.getString("external_id"),
+                        rs.getLong("version")), userId);
+    }
+
+    private void batch(String sql, long groupId, long[] userIds) {
+        if (userIds.length == 0) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(sql, Arrays.stream(userIds).boxed().toList(), batchSize, (ps, userId) -> {
+            ps.setLong(1, groupId);
+            ps.setLong(2, userId);
+        });
+    }
+}
@@ -2,6 +2,7 @@ package com.valura.auth.database.repository;
 
 import com.valura.auth.database.entity.GroupEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -10,9 +11,15 @@ import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface GroupRepository extends JpaRepository<GroupEntity, Long> {
+public interface GroupRepository extends JpaRepository<GroupEntity, Long>, JpaSpecificationExecutor<GroupEntity> {
     Optional<GroupEntity> findByExternalId(String externalId);
 
+    /**
+     * The version alone, for conditional requests; an index-only scan on PostgreSQL (see V6 migration).
+     */
+    @Query("SELECT g.version FROM GroupEntity g WHERE g.externalId = :externalId")
+    Optional<Long> findVersionByExternalId(@Param("externalId") String externalId);
+
     Optional<GroupEntity> findByDisplayName(String displayName);
 
     @Query("SELECT g FROM GroupEntity g WHERE g.displayName LIKE %:term%")
@@ -0,0 +1,382 @@
+package com.valura.auth.database.repository;
+
+import com.valura.auth.database.entity.ExternalIds;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.jdbc.support.SQLExceptionSubclassTranslator;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bulk imports through staging tables. Rows are loaded into {@code import_users}, {@code import_groups} and
+ * {@code import_group_members} (with {@code COPY} on PostgreSQL), checked for uniqueness with a few set-wise
+ * {@code UPDATE}s that record an error per rejected row, and merged into {@code users}, {@code groups} and
+ * {@code user_groups} with one statement each: {@code INSERT ... ON CONFLICT} on PostgreSQL, which works on
+ * every version the schema supports, and {@code MERGE} elsewhere. All of it must run in the caller's
+ * transaction.
+ *
+ * <p>Rows are matched to existing resources by {@code external_id}: matches are updated, the rest inserted.
+ * A match that was soft-deleted is restored, and counted as created.
+ * An imported group's members replace its current members; memberships it no longer has leave tombstones.
+ */
+@Repository
+public class ImportRepository {
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_REPORTED_MISSING_MEMBERS = 50;
+
+    /**
+     * A user to stage; {@code externalId}, like the ids in {@link StagedGroup}, must be a UUID.
+     */
+    public record StagedUser(int line, String externalId, String userName, String displayName, String firstName,
+                             String lastName, String email, boolean active) {
+    }
+
+    public record StagedGroup(int line, String externalId, String displayName, List<String> members) {
+    }
+
+    public record RowError(int line, String message) {
+    }
+
+    public record MergeResult(int usersCreated, int usersUpdated, int groupsCreated, int groupsUpdated,
+                              List<RowError> errors) {
+    }
+
+    private static final String INSERT_USER = "INSERT INTO import_users (import_id, line, external_id, user_name, "
+            + "display_name, first_name, last_name, email, active) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String COPY_USERS = "COPY import_users (import_id, line, external_id, user_name, "
+            + "display_name, first_name, last_name, email, active) FROM STDIN WITH (FORMAT csv)";
+
+    private static final String[][] USER_CHECKS = {
+            {"Duplicate id in file", "EXISTS (SELECT 1 FROM import_users o WHERE o.import_id = s.import_id "
+                    + "AND o.external_id = s.external_id AND o.line < s.line)"},
+            {"Duplicate userName in file", "EXISTS (SELECT 1 FROM import_users o WHERE o.import_id = s.import_id "
+                    + "AND o.user_name = s.user_name AND o.line < s.line)"},
+            {"Duplicate email in file", "EXISTS (SELECT 1 FROM import_users o WHERE o.import_id = s.import_id "
+                    + "AND o.email = s.email AND o.line < s.line)"},
+            {"userName already exists", "EXISTS (SELECT 1 FROM users u WHERE u.user_name = s.user_name "
+                    + "AND u.external_id <> s.external_id AND u.deleted_at IS NULL)"},
+            {"email already exists", "EXISTS (SELECT 1 FROM users u WHERE u.email = s.email "
+                    + "AND u.external_id <> s.external_id AND u.deleted_at IS NULL)"},
+    };
+
+    private static final String[][] GROUP_CHECKS = {
+            {"Duplicate id in file", "EXISTS (SELECT 1 FROM import_groups o WHERE o.import_id = s.import_id "
+                    + "AND o.external_id = s.external_id AND o.line < s.line)"},
+            {"Duplicate displayName in file", "EXISTS (SELECT 1 FROM import_groups o WHERE o.import_id = s.import_id "
+                    + "AND o.display_name = s.display_name AND o.line < s.line)"},
+            {"displayName already exists", "EXISTS (SELECT 1 FROM groups g WHERE g.display_name = s.display_name "
+                    + "AND g.external_id <> s.external_id AND g.deleted_at IS NULL)"},
+    };
+
+    /**
+     * Upserts the valid staged users on PostgreSQL and reports how many were created, counting restored rows as
+     * created, and how many updated. {@code xmax} is 0 only on rows the {@code INSERT} branch wrote; all parts of
+     * the statement see the same snapshot, so {@code restored} lists the matches that were still deleted.
+     */
+    private static final String UPSERT_USERS = "WITH restored AS (SELECT t.external_id FROM users t "
+            + "JOIN import_users s ON s.external_id = t.external_id "
+            + "WHERE s.import_id = ? AND s.error IS NULL AND t.deleted_at IS NOT NULL), "
+            + "merged AS (INSERT INTO users AS u (external_id, user_name, display_name, first_name, last_name, "
+            + "email, active, created_at, updated_at, version) SELECT s.external_id, s.user_name, s.display_name, "
+            + "s.first_name, s.last_name, s.email, s.active, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP, 0 "
+            + "FROM import_users s WHERE s.import_id = ? AND s.error IS NULL "
+            + "ON CONFLICT (external_id) DO UPDATE SET user_name = EXCLUDED.user_name, "
+            + "display_name = EXCLUDED.display_name, first_name = EXCLUDED.first_name, "
+            + "last_name = EXCLUDED.last_name, email = EXCLUDED.email, active = EXCLUDED.active, "
+            + "updated_at = CURRENT_TIMESTAMP, deleted_at = NULL, version = u.version + 1 "
+            + "RETURNING u.external_id, xmax = 0 AS inserted) ";
+
+    private static final String UPSERT_GROUPS = "WITH restored AS (SELECT t.external_id FROM groups t "
+            + "JOIN import_groups s ON s.external_id = t.external_id "
+            + "WHERE s.import_id = ? AND s.error IS NULL AND t.deleted_at IS NOT NULL), "
+            + "merged AS (INSERT INTO groups AS g (external_id, display_name, created_at, updated_at, version) "
+            + "SELECT s.external_id, s.display_name, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP, 0 "
+            + "FROM import_groups s WHERE s.import_id = ? AND s.error IS NULL "
+            + "ON CONFLICT (external_id) DO UPDATE SET display_name = EXCLUDED.display_name, "
+            + "updated_at = CURRENT_TIMESTAMP, deleted_at = NULL, version = g.version + 1 "
+            + "RETURNING g.external_id, xmax = 0 AS inserted) ";
+
+    private static final String COUNT_UPSERTED = "SELECT COUNT(*) FILTER (WHERE m.inserted "
+            + "OR m.external_id IN (SELECT external_id FROM restored)) AS created, "
+            + "COUNT(*) FILTER (WHERE NOT m.inserted "
+            + "AND m.external_id NOT IN (SELECT external_id FROM restored)) AS updated FROM merged m";
+
+    /**
+     * The standard {@code MERGE} for other databases, such as H2; {@code INSERT ... ON CONFLICT} is PostgreSQL's.
+     */
+    private static final String MERGE_USERS = "MERGE INTO users u "
+            + "USING (SELECT * FROM import_users WHERE import_id = ? AND error IS NULL) s "
+            + "ON u.external_id = s.external_id "
+            + "WHEN MATCHED THEN UPDATE SET user_name = s.user_name, display_name = s.display_name, "
+            + "first_name = s.first_name, last_name = s.last_name, email = s.email, active = s.active, "
+            + "updated_at = CURRENT_TIMESTAMP, deleted_at = NULL, version = u.version + 1 "
+            + "WHEN NOT MATCHED THEN INSERT (external_id, user_name, display_name, first_name, last_name, email, "
+            + "active, created_at, updated_at, version) VALUES (s.external_id, s.user_name, s.display_name, "
+            + "s.first_name, s.last_name, s.email, s.active, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP, 0)";
+
+    private static final String MERGE_GROUPS = "MERGE INTO groups g "
+            + "USING (SELECT * FROM import_groups WHERE import_id = ? AND error IS NULL) s "
+            + "ON g.external_id = s.external_id "
+            + "WHEN MATCHED THEN UPDATE SET display_name = s.display_name, "
+            + "updated_at = CURRENT_TIMESTAMP, deleted_at = NULL, version = g.version + 1 "
+            + "WHEN NOT MATCHED THEN INSERT (external_id, display_name, created_at, updated_at, version) "
+            + "VALUES (s.external_id, s.display_name, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP, 0)";
+
+    private static final String IMPORTED_GROUP_IDS = "SELECT g.id FROM groups g JOIN import_groups s "
+            + "ON s.external_id = g.external_id WHERE s.import_id = ? AND s.error IS NULL";
+
+    /**
+     * Drops the memberships a soft-deleted user or group still has before the import brings it back, since
+     * its deletion ended them.
+     */
+    private static final String FORGET_MEMBERSHIPS = "DELETE FROM user_groups WHERE %s IN (SELECT t.id FROM %s t "
+            + "JOIN %s s ON s.external_id = t.external_id WHERE s.import_id = ? AND s.error IS NULL "
+            + "AND t.deleted_at IS NOT NULL)";
+
+    /**
+     * Bumps the groups whose live members the import renames, since their member lists show the
+     * {@code userName}.
+     */
+    private static final String TOUCH_RENAMED_MEMBERS_GROUPS = "UPDATE groups SET version = version + 1, "
+            + "updated_at = CURRENT_TIMESTAMP WHERE deleted_at IS NULL AND id IN (SELECT ug.group_id "
+            + "FROM user_groups ug JOIN users u ON u.id = ug.user_id "
+            + "JOIN import_users s ON s.external_id = u.external_id "
+            + "WHERE s.import_id = ? AND s.error IS NULL AND u.deleted_at IS NULL AND u.user_name <> s.user_name)";
+
+    private static final String STAGED_MEMBERS = "FROM import_group_members m "
+            + "JOIN import_groups s ON s.import_id = m.import_id AND s.line = m.line AND s.error IS NULL "
+            + "JOIN groups g ON g.external_id = s.external_id "
+            + "JOIN users u ON u.external_id = m.member_external_id "
+            + "WHERE m.import_id = ? ";
+
+    /**
+     * Memberships of imported groups that the import leaves out; only these are deleted, so unchanged
+     * memberships keep their place in the change feed.
+     */
+    private static final String REMOVED_MEMBERS = "WHERE ug.group_id IN (" + IMPORTED_GROUP_IDS + ") "
+            + "AND NOT EXISTS (SELECT 1 " + STAGED_MEMBERS + "AND g.id = ug.group_id AND u.id = ug.user_id)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DataSource dataSource;
+    private final int batchSize;
+    private final boolean copySupported;
+
+    public ImportRepository(JdbcTemplate jdbcTemplate, DataSource dataSource,
+                            @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dataSource = dataSource;
+        this.batchSize = batchSize;
+        this.copySupported = "PostgreSQL".equals(databaseProductName(dataSource));
+    }
+
+    /**
+     * Loads users into staging as {@code users} yields them, so the input is never held in memory.
+     */
+    public void stageUsers(String importId, Iterator<StagedUser> users) {
+        if (copySupported) {
+            copyUsers(importId, users);
+            return;
+        }
+        List<Object[]> batch = new ArrayList<>(batchSize);
+        while (users.hasNext()) {
+            StagedUser user = users.next();
+            batch.add(new Object[]{importId, user.line(), ExternalIds.toUuid(user.externalId()), user.userName(), user.displayName(),
+                    user.firstName(), user.lastName(), user.email(), user.active()});
+            if (batch.size() == batchSize) {
+                jdbcTemplate.batchUpdate(INSERT_USER, batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_USER, batch);
+        }
+    }
+
+    public void stageGroups(String importId, List<StagedGroup> groups) {
+        jdbcTemplate.batchUpdate("INSERT INTO import_groups (import_id, line, external_id, display_name) "
+                        + "VALUES (?, ?, ?, ?)", groups, batchSize,
+                (ps, group) -> {
+                    ps.setString(1, importId);
+                    ps.setInt(2, group.line());
+                    ps.setObject(3, ExternalIds.toUuid(group.externalId()));
+                    ps.setString(4, group.displayName());
+                });
+        List<Object[]> members = new ArrayList<>();
+        for (StagedGroup group : groups) {
+            for (String member : group.members()) {
+                members.add(new Object[]{importId, group.line(), ExternalIds.toUuid(member)});
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO import_group_members (import_id, line, member_external_id) "
+                + "VALUES (?, ?, ?)", members);
+    }
+
+    /**
+     * Validates and merges everything staged under {@code importId}, then removes the staged rows.
+     * Users are merged before groups are validated, so groups may name users from the same import.
+     */
+    public MergeResult merge(String importId) {
+        check("import_users", USER_CHECKS, importId);
+        jdbcTemplate.update(TOUCH_RENAMED_MEMBERS_GROUPS, importId);
+        int[] users = merge(importId, "import_users", "users", "user_id", UPSERT_USERS, MERGE_USERS);
+
+        check("import_groups", GROUP_CHECKS, importId);
+        checkMembers(importId);
+        int[] groups = merge(importId, "import_groups", "groups", "group_id", UPSERT_GROUPS, MERGE_GROUPS);
+        jdbcTemplate.update("INSERT INTO tombstones (resource_type, external_id, group_external_id) "
+                + "SELECT 'Member', u.external_id, g.external_id FROM user_groups ug "
+                + "JOIN users u ON u.id = ug.user_id JOIN groups g ON g.id = ug.group_id " + REMOVED_MEMBERS,
+                importId, importId);
+        jdbcTemplate.update("DELETE FROM user_groups ug " + REMOVED_MEMBERS, importId, importId);
+        jdbcTemplate.update("INSERT INTO user_groups (group_id, user_id) SELECT DISTINCT g.id, u.id "
+                + STAGED_MEMBERS + "AND NOT EXISTS (SELECT 1 FROM user_groups ug "
+                + "WHERE ug.group_id = g.id AND ug.user_id = u.id)", importId);
+
+        List<RowError> errors = jdbcTemplate.query("SELECT line, error FROM import_users WHERE import_id = ? "
+                        + "AND error IS NOT NULL UNION ALL SELECT line, error FROM import_groups WHERE import_id = ? "
+                        + "AND error IS NOT NULL ORDER BY line",
+                (rs, rowNum) -> new RowError(rs.getInt("line"), rs.getString("error")), importId, importId);
+
+        jdbcTemplate.update("DELETE FROM import_group_members WHERE import_id = ?", importId);
+        jdbcTemplate.update("DELETE FROM import_groups WHERE import_id = ?", importId);
+        jdbcTemplate.update("DELETE FROM import_users WHERE import_id = ?", importId);
+
+        return new MergeResult(users[0], users[1], groups[0], groups[1], errors);
+    }
+
+    /**
+     * Merges the valid rows of a staging table into {@code table} and returns how many were created and how
+     * many updated: with one {@code INSERT ... ON CONFLICT} on PostgreSQL, and with {@code MERGE} elsewhere.
+     */
+    private int[] merge(String importId, String stagingTable, String table, String membershipColumn,
+                        String upsert, String merge) {
+        jdbcTemplate.update(String.format(FORGET_MEMBERSHIPS, membershipColumn, table, stagingTable), importId);
+        if (copySupported) {
+            return jdbcTemplate.queryForObject(upsert + COUNT_UPSERTED,
+                    (rs, rowNum) -> new int[]{rs.getInt("created"), rs.getInt("updated")}, importId, importId);
+        }
+        int updated = countExisting(stagingTable, table, importId);
+        int merged = jdbcTemplate.update(merge, importId);
+        return new int[]{merged - updated, updated};
+    }
+
+    /**
+     * Marks rows that fail a check, in order; a row keeps the first error it gets.
+     */
+    private void check(String table, String[][] checks, String importId) {
+        for (String[] check : checks) {
+            jdbcTemplate.update("UPDATE " + table + " s SET error = ? WHERE s.import_id = ? AND s.error IS NULL AND "
+                    + check[1], check[0], importId);
+        }
+    }
+
+    private void checkMembers(String importId) {
+        Map<Integer, List<String>> missing = new LinkedHashMap<>();
+        jdbcTemplate.query("SELECT m.line, m.member_external_id FROM import_group_members m "
+                        + "JOIN import_groups s ON s.import_id = m.import_id AND s.line = m.line AND s.error IS NULL "
+                        + "WHERE m.import_id = ? "
+                        + "AND NOT EXISTS (SELECT 1 FROM users u WHERE u.external_id = m.member_external_id "
+                        + "AND u.deleted_at IS NULL) "
+                        + "ORDER BY m.line",
+                rs -> {
+                    missing.computeIfAbsent(rs.getInt(1), line -> new ArrayList<>()).add(rs.getString(2));
+                },
+                importId);
+        List<Object[]> errors = new ArrayList<>(missing.size());
+        missing.forEach((line, members) -> errors.add(new Object[]{describeMissing(members), importId, line}));
+        jdbcTemplate.batchUpdate("UPDATE import_groups SET error = ? WHERE import_id = ? AND line = ?", errors);
+    }
+
+    private static String describeMissing(List<String> members) {
+        if (members.size() <= MAX_REPORTED_MISSING_MEMBERS) {
+            return "Users not found: " + String.join(", ", members);
+        }
+        return "Users not found: " + String.join(", ", members.subList(0, MAX_REPORTED_MISSING_MEMBERS))
+                + " and " + (members.size() - MAX_REPORTED_MISSING_MEMBERS) + " more";
+    }
+
+    private int countExisting(String stagingTable, String table, String importId) {
+        Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + stagingTable + " s WHERE s.import_id = ? "
+                + "AND s.error IS NULL AND EXISTS (SELECT 1 FROM " + table + " t WHERE t.external_id = s.external_id "
+                + "AND t.deleted_at IS NULL)",
+                Integer.class, importId);
+        return count != null ? count : 0;
+    }
+
+    private void copyUsers(String importId, Iterator<StagedUser> users) {
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        CopyIn copy = null;
+        try {
+            copy = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_USERS);
+            StringBuilder buffer = new StringBuilder(COPY_BUFFER_SIZE + 1024);
+            while (users.hasNext()) {
+                StagedUser user = users.next();
+                appendCsv(buffer, importId, user.line(), user.externalId(), user.userName(), user.displayName(),
+                        user.firstName(), user.lastName(), user.email(), user.active());
+                if (buffer.length() >= COPY_BUFFER_SIZE) {
+                    write(copy, buffer);
+                }
+            }
+            write(copy, buffer);
+            copy.endCopy();
+            copy = null;
+        } catch (SQLException e) {
+            throw new SQLExceptionSubclassTranslator().translate("COPY", COPY_USERS, e);
+        } finally {
+            if (copy != null) {
+                try {
+                    copy.cancelCopy();
+                } catch (SQLException e) {
+                    // the original failure is already propagating
+                }
+            }
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    private static void write(CopyIn copy, StringBuilder buffer) throws SQLException {
+        byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+        copy.writeToCopy(bytes, 0, bytes.length);
+        buffer.setLength(0);
+    }
+
+    /**
+     * One CSV record; every non-null value is quoted, so an unquoted empty field is NULL.
+     */
+    private static void appendCsv(StringBuilder buffer, Object... values) {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                buffer.append(',');
+            }
+            if (values[i] != null) {
+                buffer.append('"').append(values[i].toString().replace("\"", "\"\"")).append('"');
+            }
+        }
+        buffer.append('\n');
+    }
+
+    private static String databaseProductName(DataSource dataSource) {
+        try {
+            return JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+        } catch (MetaDataAccessException e) {
+            return null;
+        }
+    }
+}
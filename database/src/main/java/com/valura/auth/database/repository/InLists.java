@@ -0,0 +1,26 @@
+package com.valura.auth.database.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Splits the values bound to an {@code IN (...)} list into chunks that are run as separate statements.
+ */
+public final class InLists {
+
+    // Well below PostgreSQL's 32767 bind parameter limit, and small enough to keep IN-list plans cheap.
+    public static final int CHUNK_SIZE = 1000;
+
+    private InLists() {
+    }
+
+    public static <T> List<List<T>> chunks(Collection<T> values) {
+        List<T> list = new ArrayList<>(values);
+        List<List<T>> chunks = new ArrayList<>((list.size() + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        for (int from = 0; from < list.size(); from += CHUNK_SIZE) {
+            chunks.add(list.subList(from, Math.min(from + CHUNK_SIZE, list.size())));
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,42 @@
+package com.valura.auth.database.repository;
+
+import java.util.Arrays;
+
+/**
+ * The {@code user_groups} rows to insert and delete to turn one member set into another.
+ */
+public record MembershipDelta(long[] added, long[] removed) {
+
+    /**
+     * Diffs two ascending, duplicate-free id arrays with a single merge pass.
+     */
+    public static MembershipDelta between(long[] current, long[] desired) {
+        long[] added = new long[desired.length];
+        long[] removed = new long[current.length];
+        int a = 0;
+        int r = 0;
+        int i = 0;
+        int j = 0;
+        while (i < current.length && j < desired.length) {
+            if (current[i] == desired[j]) {
+                i++;
+                j++;
+            } else if (current[i] < desired[j]) {
+                removed[r++] = current[i++];
+            } else {
+                added[a++] = desired[j++];
+            }
+        }
+        while (i < current.length) {
+            removed[r++] = current[i++];
+        }
+        while (j < desired.length) {
+            added[a++] = desired[j++];
+        }
+        return new MembershipDelta(Arrays.copyOf(added, a), Arrays.copyOf(removed, r));
+    }
+
+    public boolean isEmpty() {
+        return added.length == 0 && removed.length == 0;
+    }
+}
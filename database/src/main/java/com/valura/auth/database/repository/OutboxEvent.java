@@ -0,0 +1,14 @@
+package com.valura.auth.database.repository;
+
+import java.time.Instant;
+
+/**
+ * A provisioning event from the outbox: {@code operation} ({@code create}, {@code replace}, {@code patch} or
+ * {@code delete}) was applied to the {@code resourceType} ({@code User} or {@code Group}) with id
+ * {@code resourceId}, leaving it at {@code version} (null after a delete). Events are delivered at least
+ * once, and by several publishers not necessarily in {@code id} order, so consumers should order the events
+ * of one resource by {@code version} and ignore ones they have seen.
+ */
+public record OutboxEvent(long id, String resourceType, String operation, String resourceId, Long version,
+                          Instant occurredAt) {
+}
@@ -0,0 +1,64 @@
+package com.valura.auth.database.repository;
+
+import com.valura.auth.database.entity.ExternalIds;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@code outbox_events} table (see the V13 migration). Events are appended in the transaction of the
+ * write they describe, so they exist exactly when the write committed, and nothing is appended unless
+ * {@code scim.outbox.enabled} is set.
+ */
+@Repository
+public class OutboxRepository {
+
+    private static final String CLAIM = "SELECT id, resource_type, operation, resource_id, version, created_at "
+            + "FROM outbox_events ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED";
+
+    private static final RowMapper<OutboxEvent> EVENT = (rs, rowNum) -> {
+        return new OutboxEvent(rs.getLong("id"), rs.getString("resource_type"), rs.getString("operation"),
+                rs.getString("resource_id"), rs.getObject("version", Long.class),
+                rs.getObject("created_at", OffsetDateTime.class).toInstant());
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final boolean enabled;
+
+    public OutboxRepository(JdbcTemplate jdbcTemplate, @Value("${scim.outbox.enabled:false}") boolean enabled) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.enabled = enabled;
+    }
+
+    public void append(String resourceType, String operation, String resourceId, Long version) {
+        if (!enabled) {
+            return;
+        }
+        jdbcTemplate.update("INSERT INTO outbox_events (resource_type, operation, resource_id, version) "
+                + "VALUES (?, ?, ?, ?)", resourceType, operation, ExternalIds.toUuid(resourceId), version);
+    }
+
+    /**
+     * Locks and returns up to {@code limit} of the oldest events, skipping those another transaction holds.
+     * They stay locked until the caller's transaction ends, which must {@link #delete} them once published.
+     */
+    public List<OutboxEvent> claim(int limit) {
+        return jdbcTemplate.query(CLAIM, EVENT, limit);
+    }
+
+    public void delete(List<OutboxEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        namedJdbcTemplate.update("DELETE FROM outbox_events WHERE id IN (:ids)",
+                Map.of("ids", events.stream().map(OutboxEvent::id).toList()));
+    }
+}
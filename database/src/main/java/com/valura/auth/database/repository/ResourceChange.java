@@ -0,0 +1,46 @@
+package com.valura.auth.database.repository;
+
+import java.util.Locale;
+
+/**
+ * A committed write to a user or group, as sent to other nodes by {@link ResourceChangeRepository}.
+ * {@code version} is the resource's version after the write, or null when it was deleted; {@link Type#ALL}
+ * stands for writes that cannot be listed, such as an import.
+ */
+public record ResourceChange(Type type, String externalId, Long version) {
+
+    public enum Type {
+        USER, GROUP, ALL
+    }
+
+    public static ResourceChange all() {
+        return new ResourceChange(Type.ALL, null, null);
+    }
+
+    /**
+     * The {@code NOTIFY} payload, {@code <type>:<externalId>:<version>} with empty fields for nulls.
+     */
+    public String encode() {
+        return type.name().toLowerCase(Locale.ROOT) + ":" + (externalId != null ? externalId : "")
+                + ":" + (version != null ? version : "");
+    }
+
+    /**
+     * Reads a payload written by {@link #encode}.
+     *
+     * @throws IllegalArgumentException if the payload is not one
+     */
+    public static ResourceChange parse(String payload) {
+        String[] fields = payload.split(":", -1);
+        if (fields.length != 3) {
+            throw new IllegalArgumentException("Not a resource change: " + payload);
+        }
+        Type type = Type.valueOf(fields[0].toUpperCase(Locale.ROOT));
+        String externalId = fields[1].isEmpty() ? null : fields[1];
+        Long version = fields[2].isEmpty() ? null : Long.valueOf(fields[2]);
+        if (type != Type.ALL && externalId == null) {
+            throw new IllegalArgumentException("Not a resource change: " + payload);
+        }
+        return new ResourceChange(type, externalId, version);
+    }
+}
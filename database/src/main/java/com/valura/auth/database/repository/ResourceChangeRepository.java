@@ -0,0 +1,48 @@
+package com.valura.auth.database.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+
+/**
+ * Announces resource changes to every node on PostgreSQL's {@code LISTEN}/{@code NOTIFY} channel
+ * {@value #CHANNEL}. A notification sent inside a transaction is delivered when it commits and dropped when it
+ * rolls back, so listeners only hear about committed writes. Elsewhere publishing does nothing.
+ */
+@Repository
+public class ResourceChangeRepository {
+
+    public static final String CHANNEL = "scim_resource_changes";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean supported;
+
+    public ResourceChangeRepository(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.supported = "PostgreSQL".equals(databaseProductName(dataSource));
+    }
+
+    public boolean isSupported() {
+        return supported;
+    }
+
+    public void publish(ResourceChange change) {
+        if (supported) {
+            jdbcTemplate.query("SELECT pg_notify(?, ?)", (ResultSetExtractor<Void>) resultSet -> null,
+                    CHANNEL, change.encode());
+        }
+    }
+
+    private static String databaseProductName(DataSource dataSource) {
+        try {
+            return JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+        } catch (MetaDataAccessException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.valura.auth.database.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Marks users and groups deleted and purges them later (see the V11 migration). Marking is a single-row
+ * {@code UPDATE}; the memberships of a marked row stay until the purge, which removes expired rows a bounded
+ * batch at a time, so neither holds locks on more than a batch of rows. Each purge call must run in its own
+ * transaction.
+ */
+@Repository
+public class SoftDeleteRepository {
+
+    /**
+     * Moves the purge horizon (see the V14 migration) past the tombstones about to be purged.
+     */
+    private static final String ADVANCE_HORIZON = "UPDATE change_feed_horizon SET purged_seq = GREATEST(purged_seq, "
+            + "(SELECT MAX(change_seq) FROM tombstones WHERE change_seq IN (:seqs)))";
+
+    private static final String ADVANCE_POSTGRES_HORIZON = ADVANCE_HORIZON + ", purged_xid = GREATEST(purged_xid, "
+            + "(SELECT change_xid FROM tombstones WHERE change_seq IN (:seqs) ORDER BY change_xid DESC LIMIT 1))";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final boolean postgres;
+
+    public SoftDeleteRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.postgres = "PostgreSQL".equals(databaseProductName(jdbcTemplate.getDataSource()));
+    }
+
+    /**
+     * Marks a user deleted; false when it was deleted already.
+     */
+    public boolean markUserDeleted(long id) {
+        return markDeleted("users", id);
+    }
+
+    /**
+     * Marks a group deleted; false when it was deleted already.
+     */
+    public boolean markGroupDeleted(long id) {
+        return markDeleted("groups", id);
+    }
+
+    /**
+     * Removes up to {@code limit} users deleted before {@code cutoff}, with their memberships. Returns how
+     * many were removed.
+     */
+    public int purgeUsers(Instant cutoff, int limit) {
+        return purge("users", "user_id", cutoff, limit);
+    }
+
+    /**
+     * Removes up to {@code limit} groups deleted before {@code cutoff}, with their memberships.
+     */
+    public int purgeGroups(Instant cutoff, int limit) {
+        return purge("groups", "group_id", cutoff, limit);
+    }
+
+    /**
+     * Removes up to {@code limit} change feed tombstones recorded before {@code cutoff}, and moves the purge
+     * horizon past them, so that watermarks from before them are rejected instead of missing deletions.
+     */
+    public int purgeChangeTombstones(Instant cutoff, int limit) {
+        List<Long> seqs = jdbcTemplate.queryForList("SELECT change_seq FROM tombstones WHERE deleted_at < ? "
+                + "ORDER BY deleted_at LIMIT ?", Long.class, Timestamp.from(cutoff), limit);
+        if (seqs.isEmpty()) {
+            return 0;
+        }
+        namedJdbcTemplate.update(postgres ? ADVANCE_POSTGRES_HORIZON : ADVANCE_HORIZON, Map.of("seqs", seqs));
+        return namedJdbcTemplate.update("DELETE FROM tombstones WHERE change_seq IN (:seqs)", Map.of("seqs", seqs));
+    }
+
+    private boolean markDeleted(String table, long id) {
+        return jdbcTemplate.update("UPDATE " + table + " SET deleted_at = CURRENT_TIMESTAMP, "
+                + "updated_at = CURRENT_TIMESTAMP, version = version + 1 WHERE id = ? AND deleted_at IS NULL", id) == 1;
+    }
+
+    private int purge(String table, String membershipColumn, Instant cutoff, int limit) {
+        List<Long> ids = jdbcTemplate.queryForList("SELECT id FROM " + table + " WHERE deleted_at < ? "
+                + "ORDER BY deleted_at LIMIT ?", Long.class, Timestamp.from(cutoff), limit);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        namedJdbcTemplate.update("DELETE FROM user_groups WHERE " + membershipColumn + " IN (:ids)", Map.of("ids", ids));
+        return namedJdbcTemplate.update("DELETE FROM " + table + " WHERE id IN (:ids)", Map.of("ids", ids));
+    }
+
+    private static String databaseProductName(DataSource dataSource) {
+        try {
+            return JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+        } catch (MetaDataAccessException e) {
+            return null;
+        }
+    }
+}
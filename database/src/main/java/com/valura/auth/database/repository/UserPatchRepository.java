@@ -0,0 +1,131 @@
+package com.valura.auth.database.repository;
+
+import com.valura.auth.database.entity.ExternalIds;
+import com.valura.auth.database.entity.UserEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Applies a partial update to one user in a single statement that also checks the expected version and
+ * returns the updated row. Like the {@code @Version} attribute on {@link UserEntity}, every update
+ * increments {@code version}.
+ *
+ * <p>The returned entity is not managed; callers should not have the same user loaded in their
+ * persistence context.
+ */
+@Repository
+public class UserPatchRepository {
+
+    /**
+     * The columns a patch may set; names never come from the request.
+     */
+    public enum Column {
+        USER_NAME("user_name"),
+        DISPLAY_NAME("display_name"),
+        FIRST_NAME("first_name"),
+        LAST_NAME("last_name"),
+        EMAIL("email"),
+        ACTIVE("active");
+
+        private final String name;
+
+        Column(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    private static final RowMapper<UserEntity> USER = (rs, rowNum) -> {
+        UserEntity user = new UserEntity();
+        user.setId(rs.getLong("id"));
+        user.setExternalId(rs.getString("external_id"));
+        user.setUserName(rs.getString("user_name"));
+        user.setDisplayName(rs.getString("display_name"));
+        user.setFirstName(rs.getString("first_name"));
+        user.setLastName(rs.getString("last_name"));
+        user.setEmail(rs.getString("email"));
+        user.setActive(rs.getBoolean("active"));
+        user.setCreatedAt(toInstant(rs.getObject("created_at", OffsetDateTime.class)));
+        user.setUpdatedAt(toInstant(rs.getObject("updated_at", OffsetDateTime.class)));
+        user.setVersion(rs.getLong("version"));
+        return user;
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean h2;
+
+    public UserPatchRepository(JdbcTemplate jdbcTemplate, DataSource dataSource) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.h2 = "H2".equals(databaseProductName(dataSource));
+    }
+
+    /**
+     * Sets {@code changes} on the user with {@code externalId} if its version is one of {@code expectedVersions}
+     * (any version when null). Returns the updated user, or empty when no user matched.
+     */
+    public Optional<UserEntity> update(String externalId, long[] expectedVersions, Map<Column, Object> changes) {
+        if (changes.isEmpty()) {
+            throw new IllegalArgumentException("At least one column must change");
+        }
+        UUID id = ExternalIds.toUuid(externalId);
+        if (id == null) {
+            return Optional.empty();
+        }
+        StringBuilder sql = new StringBuilder("UPDATE users SET ");
+        List<Object> args = new ArrayList<>(changes.size() + 4);
+        for (Map.Entry<Column, Object> change : changes.entrySet()) {
+            sql.append(change.getKey().getName()).append(" = ?, ");
+            args.add(change.getValue());
+        }
+        sql.append("version = version + 1, updated_at = ? WHERE external_id = ? AND deleted_at IS NULL");
+        args.add(OffsetDateTime.ofInstant(Instant.now(), ZoneOffset.UTC));
+        args.add(id);
+        if (expectedVersions != null) {
+            sql.append(" AND version IN (");
+            for (int i = 0; i < expectedVersions.length; i++) {
+                sql.append(i == 0 ? "?" : ", ?");
+                args.add(expectedVersions[i]);
+            }
+            sql.append(')');
+        }
+
+        if (h2) {
+            // H2, used in tests, has no RETURNING, and its FINAL TABLE loses the row when the update violates
+            // a unique constraint; re-reading it in the same transaction is equivalent there.
+            if (jdbcTemplate.update(sql.toString(), args.toArray()) == 0) {
+                return Optional.empty();
+            }
+            return jdbcTemplate.query("SELECT * FROM users WHERE external_id = ?", USER, id).stream().findFirst();
+        }
+        return jdbcTemplate.query(sql + " RETURNING *", USER, args.toArray()).stream().findFirst();
+    }
+
+    private static Instant toInstant(OffsetDateTime dateTime) {
+        return dateTime != null ? dateTime.toInstant() : null;
+    }
+
+    private static String databaseProductName(DataSource dataSource) {
+        try {
+            return JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+        } catch (MetaDataAccessException e) {
+            return null;
+        }
+    }
+}
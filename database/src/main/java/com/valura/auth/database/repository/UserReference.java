@@ -0,0 +1,7 @@
+package com.valura.auth.database.repository;
+
+/**
+ * The columns of a user that group membership needs, read without loading {@code UserEntity}.
+ */
+public record UserReference(Long id, String externalId, String userName) {
+}
@@ -3,17 +3,32 @@ import com.valura.auth.database.entity.UserEntity;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface UserRepository extends JpaRepository<UserEntity, Long> {
+public interface UserRepository extends JpaRepository<UserEntity, Long>, JpaSpecificationExecutor<UserEntity> {
     Optional<UserEntity> findByExternalId(String externalId);
 
-    Optional<UserEntity> findByUserName(String userName);
+    /**
+     * The version alone, for conditional requests; an index-only scan on PostgreSQL (see V6 migration).
+     */
+    @Query("SELECT u.version FROM UserEntity u WHERE u.externalId = :externalId")
+    Optional<Long> findVersionByExternalId(@Param("externalId") String externalId);
+
+    List<UserReference> findByExternalIdIn(Collection<String> externalIds);
+
+    /**
+     * The users whose userName equals {@code userName} ignoring case, as the userName filters compare it; an
+     * index scan on PostgreSQL (see V15 migration). Names are only unique as stored, so there may be several.
+     */
+    @Query("SELECT u FROM UserEntity u WHERE LOWER(u.userName) = LOWER(:userName) ORDER BY u.id")
+    List<UserEntity> findByUserNameIgnoreCase(@Param("userName") String userName);
 
     Optional<UserEntity> findByEmail(String email);
 
@@ -41,15 +56,4 @@ public interface UserRepository extends JpaRepository<UserEntity, Long> {
     long countGroupsByUserExternalId(@Param("userExternalId") String userExternalId);
 
     void deleteByExternalId(String externalId);
-
-    Page<UserEntity> findByUserNameContainingIgnoreCase(String userName, Pageable pageable);
-
-    Page<UserEntity> findByDisplayNameContainingIgnoreCase(String displayName, Pageable pageable);
-
-    Page<UserEntity> findByEmailContainingIgnoreCase(String email, Pageable pageable);
-
-
-    Page<UserEntity> findByFirstNameContainingIgnoreCase(String firstName, Pageable pageable);
-
-    Page<UserEntity> findByLastNameContainingIgnoreCase(String lastName, Pageable pageable);
 }
\ No newline at end of file
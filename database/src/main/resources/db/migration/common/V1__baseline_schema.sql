@@ -0,0 +1,38 @@
+-- Schema as previously generated from the JPA entities. Databases that already have these tables are
+-- baselined at version 1 (spring.flyway.baseline-on-migrate) and skip this script.
+
+CREATE TABLE users (
+    id           BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    external_id  VARCHAR(255)                NOT NULL,
+    user_name    VARCHAR(255)                NOT NULL,
+    display_name VARCHAR(255),
+    first_name   VARCHAR(255),
+    last_name    VARCHAR(255),
+    email        VARCHAR(255)                NOT NULL,
+    active       BOOLEAN                     NOT NULL,
+    created_at   TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    updated_at   TIMESTAMP(6) WITH TIME ZONE,
+    PRIMARY KEY (id),
+    UNIQUE (external_id),
+    UNIQUE (user_name),
+    UNIQUE (email)
+);
+
+CREATE TABLE groups (
+    id           BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    external_id  VARCHAR(255)                NOT NULL,
+    display_name VARCHAR(255)                NOT NULL,
+    created_at   TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    updated_at   TIMESTAMP(6) WITH TIME ZONE,
+    PRIMARY KEY (id),
+    UNIQUE (external_id),
+    UNIQUE (display_name)
+);
+
+CREATE TABLE user_groups (
+    group_id BIGINT NOT NULL,
+    user_id  BIGINT NOT NULL,
+    PRIMARY KEY (group_id, user_id),
+    FOREIGN KEY (group_id) REFERENCES groups (id),
+    FOREIGN KEY (user_id) REFERENCES users (id)
+);
@@ -0,0 +1,2 @@
+-- Optimistic locking for users; the version doubles as the SCIM ETag.
+ALTER TABLE users ADD COLUMN version BIGINT DEFAULT 0 NOT NULL;
@@ -0,0 +1,2 @@
+-- Optimistic locking for groups; the version doubles as the SCIM ETag. Membership changes bump it too.
+ALTER TABLE groups ADD COLUMN version BIGINT DEFAULT 0 NOT NULL;
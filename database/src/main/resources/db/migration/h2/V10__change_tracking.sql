@@ -0,0 +1,28 @@
+-- Change tracking as in db/migration/postgresql/V10, without transaction ids: H2 watermarks are plain
+-- change_seq values, which is only safe while writes do not overlap.
+
+CREATE SEQUENCE resource_changes_seq;
+
+ALTER TABLE users ADD COLUMN change_seq BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE users ALTER COLUMN change_seq SET DEFAULT NEXT VALUE FOR resource_changes_seq;
+ALTER TABLE users ALTER COLUMN change_seq SET ON UPDATE NEXT VALUE FOR resource_changes_seq;
+
+ALTER TABLE groups ADD COLUMN change_seq BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE groups ALTER COLUMN change_seq SET DEFAULT NEXT VALUE FOR resource_changes_seq;
+ALTER TABLE groups ALTER COLUMN change_seq SET ON UPDATE NEXT VALUE FOR resource_changes_seq;
+
+ALTER TABLE user_groups ADD COLUMN change_seq BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE user_groups ALTER COLUMN change_seq SET DEFAULT NEXT VALUE FOR resource_changes_seq;
+
+CREATE TABLE tombstones (
+    change_seq        BIGINT                      NOT NULL DEFAULT NEXT VALUE FOR resource_changes_seq,
+    resource_type     VARCHAR(16)                 NOT NULL,
+    external_id       UUID                        NOT NULL,
+    group_external_id UUID,
+    deleted_at        TIMESTAMP(6) WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (change_seq)
+);
+
+CREATE INDEX idx_users_change_seq ON users (change_seq);
+CREATE INDEX idx_groups_change_seq ON groups (change_seq);
+CREATE INDEX idx_user_groups_change_seq ON user_groups (change_seq);
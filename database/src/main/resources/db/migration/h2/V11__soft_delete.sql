@@ -0,0 +1,42 @@
+-- Soft delete as in db/migration/postgresql/V11 and V12. H2 has no partial indexes, so uniqueness among live
+-- rows is enforced on generated columns that are NULL for deleted rows; H2 allows any number of NULLs in a
+-- unique constraint. The table-wide constraints are unnamed in V1, so their names are looked up in the
+-- catalog, as the PostgreSQL migration does.
+
+ALTER TABLE users ADD COLUMN deleted_at TIMESTAMP(6) WITH TIME ZONE;
+ALTER TABLE groups ADD COLUMN deleted_at TIMESTAMP(6) WITH TIME ZONE;
+
+CREATE VIEW single_column_unique_constraints AS
+    SELECT tc.TABLE_NAME, k.COLUMN_NAME, QUOTE_IDENT(tc.CONSTRAINT_NAME) AS CONSTRAINT_NAME
+    FROM INFORMATION_SCHEMA.TABLE_CONSTRAINTS tc
+    JOIN INFORMATION_SCHEMA.KEY_COLUMN_USAGE k
+        ON k.CONSTRAINT_SCHEMA = tc.CONSTRAINT_SCHEMA AND k.CONSTRAINT_NAME = tc.CONSTRAINT_NAME
+    WHERE tc.TABLE_SCHEMA = SCHEMA() AND tc.CONSTRAINT_TYPE = 'UNIQUE'
+      AND (SELECT COUNT(*) FROM INFORMATION_SCHEMA.KEY_COLUMN_USAGE c
+           WHERE c.CONSTRAINT_SCHEMA = tc.CONSTRAINT_SCHEMA AND c.CONSTRAINT_NAME = tc.CONSTRAINT_NAME) = 1;
+
+EXECUTE IMMEDIATE (SELECT 'ALTER TABLE users DROP CONSTRAINT ' || CONSTRAINT_NAME
+    FROM single_column_unique_constraints WHERE TABLE_NAME = 'USERS' AND COLUMN_NAME = 'USER_NAME');
+EXECUTE IMMEDIATE (SELECT 'ALTER TABLE users DROP CONSTRAINT ' || CONSTRAINT_NAME
+    FROM single_column_unique_constraints WHERE TABLE_NAME = 'USERS' AND COLUMN_NAME = 'EMAIL');
+EXECUTE IMMEDIATE (SELECT 'ALTER TABLE groups DROP CONSTRAINT ' || CONSTRAINT_NAME
+    FROM single_column_unique_constraints WHERE TABLE_NAME = 'GROUPS' AND COLUMN_NAME = 'DISPLAY_NAME');
+
+DROP VIEW single_column_unique_constraints;
+
+ALTER TABLE users ADD COLUMN live_user_name VARCHAR(255)
+    GENERATED ALWAYS AS (CASE WHEN deleted_at IS NULL THEN user_name END);
+ALTER TABLE users ADD COLUMN live_email VARCHAR(255)
+    GENERATED ALWAYS AS (CASE WHEN deleted_at IS NULL THEN email END);
+ALTER TABLE groups ADD COLUMN live_display_name VARCHAR(255)
+    GENERATED ALWAYS AS (CASE WHEN deleted_at IS NULL THEN display_name END);
+ALTER TABLE users ADD CONSTRAINT uq_users_user_name_live UNIQUE (live_user_name);
+ALTER TABLE users ADD CONSTRAINT uq_users_email_live UNIQUE (live_email);
+ALTER TABLE groups ADD CONSTRAINT uq_groups_display_name_live UNIQUE (live_display_name);
+
+CREATE INDEX idx_users_user_name ON users (user_name);
+CREATE INDEX idx_users_email ON users (email);
+CREATE INDEX idx_groups_display_name ON groups (display_name);
+CREATE INDEX idx_users_deleted_at ON users (deleted_at);
+CREATE INDEX idx_groups_deleted_at ON groups (deleted_at);
+CREATE INDEX idx_tombstones_deleted_at ON tombstones (deleted_at);
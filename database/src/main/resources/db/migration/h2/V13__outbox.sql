@@ -0,0 +1,11 @@
+-- Transactional outbox as in db/migration/postgresql/V13, without the vacuum settings.
+
+CREATE TABLE outbox_events (
+    id            BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    resource_type VARCHAR(16)                 NOT NULL,
+    operation     VARCHAR(16)                 NOT NULL,
+    resource_id   UUID                        NOT NULL,
+    version       BIGINT,
+    created_at    TIMESTAMP(6) WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (id)
+);
@@ -0,0 +1,8 @@
+-- The purge horizon as in db/migration/postgresql/V14, where watermarks are sequence values.
+
+CREATE TABLE change_feed_horizon (
+    id         BOOLEAN DEFAULT TRUE PRIMARY KEY CHECK (id),
+    purged_seq BIGINT NOT NULL
+);
+
+INSERT INTO change_feed_horizon (purged_seq) VALUES (0);
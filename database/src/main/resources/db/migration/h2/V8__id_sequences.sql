@@ -0,0 +1,11 @@
+-- Sequence-backed ids, as in db/migration/postgresql/V8.
+
+CREATE SEQUENCE users_seq INCREMENT BY 50;
+ALTER SEQUENCE users_seq RESTART WITH (SELECT COALESCE(MAX(id), 0) + 1 FROM users);
+ALTER TABLE users ALTER COLUMN id DROP IDENTITY;
+ALTER TABLE users ALTER COLUMN id SET DEFAULT NEXT VALUE FOR users_seq;
+
+CREATE SEQUENCE groups_seq INCREMENT BY 50;
+ALTER SEQUENCE groups_seq RESTART WITH (SELECT COALESCE(MAX(id), 0) + 1 FROM groups);
+ALTER TABLE groups ALTER COLUMN id DROP IDENTITY;
+ALTER TABLE groups ALTER COLUMN id SET DEFAULT NEXT VALUE FOR groups_seq;
@@ -0,0 +1,8 @@
+-- external_id as native uuid, as in db/migration/postgresql/V9.
+
+ALTER TABLE users ALTER COLUMN external_id SET DATA TYPE UUID;
+ALTER TABLE groups ALTER COLUMN external_id SET DATA TYPE UUID;
+
+ALTER TABLE import_users ALTER COLUMN external_id SET DATA TYPE UUID;
+ALTER TABLE import_groups ALTER COLUMN external_id SET DATA TYPE UUID;
+ALTER TABLE import_group_members ALTER COLUMN member_external_id SET DATA TYPE UUID;
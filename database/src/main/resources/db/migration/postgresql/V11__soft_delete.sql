@@ -0,0 +1,31 @@
+-- Soft delete (scim.soft-delete.enabled): a deleted user or group keeps its row, with deleted_at set, until
+-- the purge job removes it once the retention period has passed. Reads skip these rows, so userName, email
+-- and displayName only have to be unique among live rows: the table-wide unique constraints become partial
+-- unique indexes, which also serve the lookups by these columns, all of which carry deleted_at IS NULL.
+--
+-- The constraints are unnamed in V1, or named by Hibernate on baselined databases, so they are looked up in
+-- the catalog. The indexes are built while the tables are locked; run this in a maintenance window on large
+-- tables.
+
+ALTER TABLE users ADD COLUMN deleted_at TIMESTAMP(6) WITH TIME ZONE;
+ALTER TABLE groups ADD COLUMN deleted_at TIMESTAMP(6) WITH TIME ZONE;
+
+DO $$
+DECLARE
+    c record;
+BEGIN
+    FOR c IN SELECT con.conrelid::regclass AS table_name, con.conname
+             FROM pg_constraint con
+             JOIN pg_attribute a ON a.attrelid = con.conrelid AND a.attnum = con.conkey[1]
+             WHERE con.contype = 'u' AND cardinality(con.conkey) = 1
+               AND ((con.conrelid = 'users'::regclass AND a.attname IN ('user_name', 'email'))
+                 OR (con.conrelid = 'groups'::regclass AND a.attname = 'display_name'))
+    LOOP
+        EXECUTE format('ALTER TABLE %s DROP CONSTRAINT %I', c.table_name, c.conname);
+    END LOOP;
+END
+$$;
+
+CREATE UNIQUE INDEX uq_users_user_name_live ON users (user_name) WHERE deleted_at IS NULL;
+CREATE UNIQUE INDEX uq_users_email_live ON users (email) WHERE deleted_at IS NULL;
+CREATE UNIQUE INDEX uq_groups_display_name_live ON groups (display_name) WHERE deleted_at IS NULL;
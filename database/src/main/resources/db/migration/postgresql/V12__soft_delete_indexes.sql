@@ -0,0 +1,10 @@
+-- Indexes for soft delete (V11), built concurrently like V3; Flyway runs these statements outside a
+-- transaction. List pages seek by id among live rows only. The purge finds expired rows by deleted_at and
+-- removes their memberships by user or group id; user_groups had no index led by user_id.
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_live_id ON users (id) WHERE deleted_at IS NULL;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_groups_live_id ON groups (id) WHERE deleted_at IS NULL;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_deleted_at ON users (deleted_at) WHERE deleted_at IS NOT NULL;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_groups_deleted_at ON groups (deleted_at) WHERE deleted_at IS NOT NULL;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_user_groups_user_id ON user_groups (user_id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_tombstones_deleted_at ON tombstones (deleted_at);
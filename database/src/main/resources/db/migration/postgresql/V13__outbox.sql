@@ -0,0 +1,20 @@
+-- Transactional outbox (OutboxRepository): every create, replace, patch and delete of a user or group adds a
+-- row here in its own transaction, and OutboxPublisher deletes rows once its sinks have taken them. Rows are
+-- claimed oldest first with FOR UPDATE SKIP LOCKED, so any number of publishers drain disjoint batches.
+--
+-- The table is a queue: rows are deleted soon after they are inserted, and the claims scan the primary key
+-- from its low end, where the dead rows are. Vacuum it after every few thousand deletes instead of after
+-- 20% of the table.
+
+CREATE TABLE outbox_events (
+    id            BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    resource_type VARCHAR(16)                 NOT NULL,
+    operation     VARCHAR(16)                 NOT NULL,
+    resource_id   UUID                        NOT NULL,
+    version       BIGINT,
+    created_at    TIMESTAMP(6) WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (id)
+);
+
+ALTER TABLE outbox_events SET (autovacuum_vacuum_scale_factor = 0, autovacuum_vacuum_threshold = 5000,
+    autovacuum_vacuum_insert_scale_factor = 0, autovacuum_vacuum_insert_threshold = 5000);
@@ -0,0 +1,11 @@
+-- The newest change the tombstone purge has removed from the change feed. A watermark whose snapshot did not
+-- see purged_xid may be missing deletions, so ChangeFeedRepository rejects it and the client resyncs. One row;
+-- purged_xid 0 is seen by every snapshot.
+
+CREATE TABLE change_feed_horizon (
+    id         BOOLEAN PRIMARY KEY DEFAULT TRUE CHECK (id),
+    purged_seq BIGINT NOT NULL,
+    purged_xid xid8   NOT NULL
+);
+
+INSERT INTO change_feed_horizon (purged_seq, purged_xid) VALUES (0, '0');
@@ -0,0 +1,9 @@
+-- Indexes for eq/ne filters on userName, emails.value and displayName, which are not caseExact and compile to
+-- lower(column) = lower(value). The indexed expression must stay lower(column) for the planner to match it.
+-- Only live rows are searched. Built concurrently like V3; Flyway runs these statements outside a transaction.
+-- H2 cannot index expressions and scans instead.
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_user_name_lower ON users (lower(user_name)) WHERE deleted_at IS NULL;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_email_lower ON users (lower(email)) WHERE deleted_at IS NULL;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_display_name_lower ON users (lower(display_name)) WHERE deleted_at IS NULL;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_groups_display_name_lower ON groups (lower(display_name)) WHERE deleted_at IS NULL;
@@ -0,0 +1,10 @@
+-- Trigram indexes for the co/sw/ew filter operators, which compile to lower(column) LIKE '%term%'.
+-- The indexed expression must stay lower(column) for the planner to match it. Built concurrently so that
+-- large tables stay writable; Flyway runs these statements outside a transaction.
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_user_name_trgm ON users USING gin (lower(user_name) gin_trgm_ops);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_display_name_trgm ON users USING gin (lower(display_name) gin_trgm_ops);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_email_trgm ON users USING gin (lower(email) gin_trgm_ops);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_first_name_trgm ON users USING gin (lower(first_name) gin_trgm_ops);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_last_name_trgm ON users USING gin (lower(last_name) gin_trgm_ops);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_groups_display_name_trgm ON groups USING gin (lower(display_name) gin_trgm_ops);
@@ -0,0 +1,6 @@
+-- Covering indexes for conditional GETs, which read only the version of one resource by external id.
+-- With version in the index the lookup is an index-only scan for all-visible pages. Built concurrently
+-- like V3; Flyway runs these statements outside a transaction.
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_external_id_version ON users (external_id) INCLUDE (version);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_groups_external_id_version ON groups (external_id) INCLUDE (version);
@@ -0,0 +1,39 @@
+-- Staging tables for bulk imports. Rows are COPYed in, validated set-wise, merged into users, groups and
+-- user_groups, and deleted again in the same transaction, keyed by import_id so imports can run side by side.
+-- Unlogged: staged rows are never needed after a crash, so they skip the WAL.
+
+CREATE UNLOGGED TABLE import_users (
+    import_id    VARCHAR(36)  NOT NULL,
+    line         INTEGER      NOT NULL,
+    external_id  VARCHAR(255) NOT NULL,
+    user_name    VARCHAR(255) NOT NULL,
+    display_name VARCHAR(255),
+    first_name   VARCHAR(255),
+    last_name    VARCHAR(255),
+    email        VARCHAR(255) NOT NULL,
+    active       BOOLEAN      NOT NULL,
+    error        VARCHAR(1000),
+    PRIMARY KEY (import_id, line)
+);
+
+CREATE UNLOGGED TABLE import_groups (
+    import_id    VARCHAR(36)  NOT NULL,
+    line         INTEGER      NOT NULL,
+    external_id  VARCHAR(255) NOT NULL,
+    display_name VARCHAR(255) NOT NULL,
+    error        VARCHAR(1000),
+    PRIMARY KEY (import_id, line)
+);
+
+CREATE UNLOGGED TABLE import_group_members (
+    import_id          VARCHAR(36)  NOT NULL,
+    line               INTEGER      NOT NULL,
+    member_external_id VARCHAR(255) NOT NULL
+);
+
+CREATE INDEX idx_import_users_user_name ON import_users (import_id, user_name);
+CREATE INDEX idx_import_users_email ON import_users (import_id, email);
+CREATE INDEX idx_import_users_external_id ON import_users (import_id, external_id);
+CREATE INDEX idx_import_groups_display_name ON import_groups (import_id, display_name);
+CREATE INDEX idx_import_groups_external_id ON import_groups (import_id, external_id);
+CREATE INDEX idx_import_group_members_line ON import_group_members (import_id, line);
@@ -0,0 +1,16 @@
+-- Sequence-backed ids. Hibernate cannot batch inserts into IDENTITY columns, since it needs every generated
+-- id back before the next insert; with a sequence it reserves 50 ids per nextval (pooled-lo optimizer) and
+-- sends inserts in JDBC batches. The column default draws from the same sequence, so rows inserted by SQL,
+-- such as the import MERGE, never collide with ids Hibernate has reserved.
+
+CREATE SEQUENCE users_seq INCREMENT BY 50;
+SELECT setval('users_seq', COALESCE(MAX(id), 0) + 1, false) FROM users;
+ALTER TABLE users ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE users ALTER COLUMN id SET DEFAULT nextval('users_seq');
+ALTER SEQUENCE users_seq OWNED BY users.id;
+
+CREATE SEQUENCE groups_seq INCREMENT BY 50;
+SELECT setval('groups_seq', COALESCE(MAX(id), 0) + 1, false) FROM groups;
+ALTER TABLE groups ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE groups ALTER COLUMN id SET DEFAULT nextval('groups_seq');
+ALTER SEQUENCE groups_seq OWNED BY groups.id;
@@ -0,0 +1,21 @@
+-- external_id as native uuid: 16-byte keys compared bytewise instead of 36 characters compared by
+-- collation, which halves the unique and covering (V6) indexes on it. New ids are UUIDv7, so they are
+-- also inserted in index order. The type change rewrites both tables and their indexes under an exclusive
+-- lock; run it in a maintenance window on large tables.
+--
+-- Ids created by the service are already UUIDs. Any other id, which only an import can have set, is
+-- replaced by the UUID spelled by its MD5 hash, so it can still be worked out from the old id.
+
+UPDATE users SET external_id = md5(external_id)::uuid::text
+WHERE external_id !~* '^[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}$';
+UPDATE groups SET external_id = md5(external_id)::uuid::text
+WHERE external_id !~* '^[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}$';
+
+ALTER TABLE users ALTER COLUMN external_id TYPE uuid USING external_id::uuid;
+ALTER TABLE groups ALTER COLUMN external_id TYPE uuid USING external_id::uuid;
+
+-- Staging rows only live for the duration of one import.
+TRUNCATE import_users, import_groups, import_group_members;
+ALTER TABLE import_users ALTER COLUMN external_id TYPE uuid USING external_id::uuid;
+ALTER TABLE import_groups ALTER COLUMN external_id TYPE uuid USING external_id::uuid;
+ALTER TABLE import_group_members ALTER COLUMN member_external_id TYPE uuid USING member_external_id::uuid;
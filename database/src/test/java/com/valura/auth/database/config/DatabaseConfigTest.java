@@ -0,0 +1,42 @@
+package com.valura.auth.database.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DatabaseConfigTest {
+
+    private final Binder binder = new Binder(new MapConfigurationPropertySource(Map.of(
+            "spring.datasource.hikari.maximum-pool-size", "7",
+            "spring.datasource.hikari.connection-timeout", "1500",
+            "scim.datasource.replica.hikari.maximum-pool-size", "3")));
+
+    @Test
+    void primaryPoolTakesHikariSettings() {
+        DataSourceProperties properties = new DataSourceProperties();
+        properties.setUrl("jdbc:h2:mem:primary");
+        try (HikariDataSource primary = DatabaseConfig.primaryPool(properties, binder)) {
+            assertEquals("jdbc:h2:mem:primary", primary.getJdbcUrl());
+            assertEquals(7, primary.getMaximumPoolSize());
+            assertEquals(1500, primary.getConnectionTimeout());
+            assertEquals("primary", primary.getPoolName());
+        }
+    }
+
+    @Test
+    void replicaPoolsDefaultToThePrimarySettings() {
+        try (HikariDataSource replica = DatabaseConfig.replicaPool(binder, 1, "jdbc:h2:mem:replica", "sa", "")) {
+            assertEquals("jdbc:h2:mem:replica", replica.getJdbcUrl());
+            assertEquals(3, replica.getMaximumPoolSize());
+            assertEquals(1500, replica.getConnectionTimeout());
+            assertTrue(replica.isReadOnly());
+            assertEquals("replica-1", replica.getPoolName());
+        }
+    }
+}
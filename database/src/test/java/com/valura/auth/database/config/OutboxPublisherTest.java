@@ -0,0 +1,114 @@
+package com.valura.auth.database.config;
+
+import com.valura.auth.database.repository.OutboxEvent;
+import com.valura.auth.database.repository.OutboxRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutboxPublisherTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private DataSourceTransactionManager transactionManager;
+    private OutboxRepository repository;
+    private final List<OutboxEvent> published = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource =
+                new DriverManagerDataSource("jdbc:h2:mem:outbox-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE outbox_events (id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, "
+                + "resource_type VARCHAR(16) NOT NULL, operation VARCHAR(16) NOT NULL, resource_id UUID NOT NULL, "
+                + "version BIGINT, created_at TIMESTAMP(6) WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP)");
+        transactionManager = new DataSourceTransactionManager(dataSource);
+        repository = new OutboxRepository(jdbcTemplate, true);
+    }
+
+    @Test
+    void publishesInBatchesAndDeletesPublishedEvents() {
+        String id = UUID.randomUUID().toString();
+        repository.append("User", "create", id, 0L);
+        repository.append("User", "patch", id, 1L);
+        repository.append("User", "delete", id, null);
+
+        assertEquals(3, publisher(published::addAll, 2).publish());
+
+        assertEquals(List.of("create", "patch", "delete"), published.stream().map(OutboxEvent::operation).toList());
+        assertEquals(id, published.get(0).resourceId());
+        assertEquals(1L, published.get(1).version());
+        assertNull(published.get(2).version());
+        assertEquals(0, count());
+    }
+
+    @Test
+    void keepsTheBatchWhenASinkFails() {
+        repository.append("Group", "create", UUID.randomUUID().toString(), 0L);
+        OutboxPublisher publisher = publisher(events -> {
+            throw new IllegalStateException("broker unavailable");
+        }, 10);
+
+        assertThrows(IllegalStateException.class, publisher::publish);
+        assertEquals(1, count());
+    }
+
+    @Test
+    void concurrentClaimsSkipLockedEvents() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            repository.append("User", "create", UUID.randomUUID().toString(), 0L);
+        }
+        CountDownLatch claimed = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<List<OutboxEvent>> first = CompletableFuture.supplyAsync(() ->
+                new TransactionTemplate(transactionManager).execute(status -> {
+                    List<OutboxEvent> events = repository.claim(2);
+                    claimed.countDown();
+                    await(release);
+                    return events;
+                }));
+        assertTrue(claimed.await(10, TimeUnit.SECONDS));
+
+        List<OutboxEvent> second = new TransactionTemplate(transactionManager)
+                .execute(status -> repository.claim(10));
+        release.countDown();
+
+        assertEquals(List.of(1L, 2L), first.get(10, TimeUnit.SECONDS).stream().map(OutboxEvent::id).toList());
+        assertEquals(List.of(3L, 4L), second.stream().map(OutboxEvent::id).toList());
+    }
+
+    @Test
+    void appendsNothingWhenDisabled() {
+        new OutboxRepository(jdbcTemplate, false).append("User", "create", UUID.randomUUID().toString(), 0L);
+
+        assertEquals(0, count());
+    }
+
+    private OutboxPublisher publisher(OutboxSink sink, int batchSize) {
+        return new OutboxPublisher(repository, List.of(sink), transactionManager, Duration.ofSeconds(1), batchSize, 1);
+    }
+
+    private int count() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM outbox_events", Integer.class);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
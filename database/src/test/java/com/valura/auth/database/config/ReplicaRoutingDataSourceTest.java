@@ -0,0 +1,171 @@
+package com.valura.auth.database.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplicaRoutingDataSourceTest {
+
+    private static final String LAG_QUERY = "SELECT seconds FROM replica_lag";
+
+    private final AtomicLong clock = new AtomicLong();
+    private String client = "alice";
+    private DataSource primary;
+    private DataSource replica0;
+    private DataSource replica1;
+    private ReplicaRoutingDataSource routing;
+
+    @BeforeEach
+    void setUp() {
+        primary = database("primary");
+        replica0 = database("replica0");
+        replica1 = database("replica1");
+        ReadYourWrites readYourWrites = new ReadYourWrites(Duration.ofSeconds(5), () -> client, clock::get);
+        routing = new ReplicaRoutingDataSource(primary, List.of(replica0, replica1), Duration.ofSeconds(5),
+                Duration.ofHours(1), LAG_QUERY, readYourWrites);
+        routing.afterPropertiesSet();
+        routing.checkReplicas();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        routing.close();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+    }
+
+    @Test
+    void writesGoToThePrimary() throws SQLException {
+        assertEquals("primary", database());
+        TransactionSynchronizationManager.initSynchronization();
+        assertEquals("primary", database());
+    }
+
+    @Test
+    void readOnlyTransactionsAlternateBetweenReplicas() throws SQLException {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        Set<String> used = new HashSet<>();
+        for (int i = 0; i < 4; i++) {
+            used.add(database());
+        }
+        assertEquals(Set.of("replica0", "replica1"), used);
+    }
+
+    @Test
+    void laggingReplicasAreSkipped() throws SQLException {
+        lag(replica0, 10);
+        routing.checkReplicas();
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        for (int i = 0; i < 4; i++) {
+            assertEquals("replica1", database());
+        }
+
+        lag(replica1, 6);
+        routing.checkReplicas();
+        assertEquals("primary", database());
+
+        lag(replica0, 5);
+        routing.checkReplicas();
+        assertEquals("replica0", database());
+    }
+
+    @Test
+    void unreachableReplicasAreSkipped() throws SQLException {
+        new JdbcTemplate(replica0).execute("DROP TABLE replica_lag");
+        routing.checkReplicas();
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        assertEquals("replica1", database());
+        assertEquals("replica1", database());
+    }
+
+    @Test
+    void replicasReportingNoLagAreSkipped() throws SQLException {
+        new JdbcTemplate(replica0).update("DELETE FROM replica_lag");
+        new JdbcTemplate(replica1).update("UPDATE replica_lag SET seconds = NULL");
+        routing.checkReplicas();
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        assertEquals("primary", database());
+        assertEquals("primary", database());
+    }
+
+    @Test
+    void clientsReadTheirOwnWritesFromThePrimary() throws SQLException {
+        TransactionSynchronizationManager.initSynchronization();
+        assertEquals("primary", database());
+        client = "bob";
+        TransactionSynchronizationUtils.invokeAfterCommit(TransactionSynchronizationManager.getSynchronizations());
+        TransactionSynchronizationManager.clearSynchronization();
+
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        client = "alice";
+        assertEquals("primary", database());
+        client = "bob";
+        assertTrue(database().startsWith("replica"));
+
+        clock.addAndGet(Duration.ofSeconds(6).toNanos());
+        client = "alice";
+        assertTrue(database().startsWith("replica"));
+    }
+
+    @Test
+    void primaryReadsStayReadOnlyAndEndWithTheTransaction() throws SQLException {
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        ReplicaRoutingDataSource.readFromPrimary();
+        assertEquals("primary", database());
+        assertEquals("primary", database());
+        TransactionSynchronizationUtils.invokeAfterCompletion(TransactionSynchronizationManager.getSynchronizations(),
+                TransactionSynchronization.STATUS_COMMITTED);
+        TransactionSynchronizationManager.clearSynchronization();
+
+        assertTrue(database().startsWith("replica"));
+    }
+
+    @Test
+    void uncommittedWritesDoNotPinTheClient() throws SQLException {
+        TransactionSynchronizationManager.initSynchronization();
+        assertEquals("primary", database());
+        TransactionSynchronizationManager.clearSynchronization();
+
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        assertTrue(database().startsWith("replica"));
+    }
+
+    private String database() throws SQLException {
+        try (Connection connection = routing.getConnection()) {
+            String url = connection.getMetaData().getURL();
+            return url.substring(url.lastIndexOf(':') + 1);
+        }
+    }
+
+    private static DataSource database(String name) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+        jdbcTemplate.execute("CREATE TABLE replica_lag (seconds INT)");
+        jdbcTemplate.update("INSERT INTO replica_lag VALUES (0)");
+        return dataSource;
+    }
+
+    private static void lag(DataSource replica, int seconds) {
+        new JdbcTemplate(replica).update("UPDATE replica_lag SET seconds = ?", seconds);
+    }
+}
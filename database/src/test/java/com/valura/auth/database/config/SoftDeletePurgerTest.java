@@ -0,0 +1,99 @@
+package com.valura.auth.database.config;
+
+import com.valura.auth.database.repository.ChangeFeedRepository;
+import com.valura.auth.database.repository.SoftDeleteRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SoftDeletePurgerTest {
+
+    private static final Instant NOW = Instant.parse("2026-06-01T12:00:00Z");
+
+    private JdbcTemplate jdbcTemplate;
+    private SoftDeletePurger purger;
+    private ChangeFeedRepository changeFeedRepository;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource =
+                new DriverManagerDataSource("jdbc:h2:mem:soft-delete-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE users (id BIGINT PRIMARY KEY, deleted_at TIMESTAMP(6) WITH TIME ZONE, "
+                + "updated_at TIMESTAMP(6) WITH TIME ZONE, version BIGINT NOT NULL DEFAULT 0)");
+        jdbcTemplate.execute("CREATE TABLE groups (id BIGINT PRIMARY KEY, deleted_at TIMESTAMP(6) WITH TIME ZONE, "
+                + "updated_at TIMESTAMP(6) WITH TIME ZONE, version BIGINT NOT NULL DEFAULT 0)");
+        jdbcTemplate.execute("CREATE TABLE user_groups (group_id BIGINT NOT NULL REFERENCES groups (id), "
+                + "user_id BIGINT NOT NULL REFERENCES users (id), PRIMARY KEY (group_id, user_id))");
+        jdbcTemplate.execute("CREATE TABLE tombstones (change_seq BIGINT PRIMARY KEY, "
+                + "deleted_at TIMESTAMP(6) WITH TIME ZONE NOT NULL)");
+        jdbcTemplate.execute("CREATE TABLE change_feed_horizon (purged_seq BIGINT NOT NULL)");
+        jdbcTemplate.update("INSERT INTO change_feed_horizon VALUES (0)");
+        changeFeedRepository = new ChangeFeedRepository(dataSource);
+        purger = new SoftDeletePurger(new SoftDeleteRepository(jdbcTemplate), new DataSourceTransactionManager(dataSource),
+                Duration.ofDays(7), Duration.ofHours(1), 2, Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    @Test
+    void marksEachRowDeletedOnce() {
+        jdbcTemplate.update("INSERT INTO users (id) VALUES (1)");
+        SoftDeleteRepository repository = new SoftDeleteRepository(jdbcTemplate);
+
+        assertTrue(repository.markUserDeleted(1));
+        assertFalse(repository.markUserDeleted(1));
+        assertEquals(1L, jdbcTemplate.queryForObject("SELECT version FROM users WHERE id = 1", Long.class));
+    }
+
+    @Test
+    void purgesExpiredRowsAndTheirMembershipsInBatches() {
+        for (long id = 1; id <= 5; id++) {
+            insert("users", id, id <= 3 ? NOW.minus(Duration.ofDays(8)) : null);
+        }
+        insert("users", 6, NOW.minus(Duration.ofDays(1)));
+        insert("groups", 1, null);
+        insert("groups", 2, NOW.minus(Duration.ofDays(30)));
+        jdbcTemplate.update("INSERT INTO user_groups (group_id, user_id) VALUES (1, 1), (1, 4), (1, 6), (2, 5)");
+        jdbcTemplate.update("INSERT INTO tombstones (change_seq, deleted_at) VALUES (1, ?), (2, ?)",
+                Timestamp.from(NOW.minus(Duration.ofDays(8))), Timestamp.from(NOW));
+
+        assertEquals(3 + 1 + 1, purger.purge());
+
+        assertEquals(List.of(4L, 5L, 6L), jdbcTemplate.queryForList("SELECT id FROM users ORDER BY id", Long.class));
+        assertEquals(List.of(1L), jdbcTemplate.queryForList("SELECT id FROM groups", Long.class));
+        assertEquals(List.of(4L, 6L), jdbcTemplate.queryForList("SELECT user_id FROM user_groups ORDER BY user_id",
+                Long.class));
+        assertEquals(List.of(2L), jdbcTemplate.queryForList("SELECT change_seq FROM tombstones", Long.class));
+        assertEquals(0, purger.purge());
+    }
+
+    @Test
+    void watermarksBeforeThePurgedTombstonesFallBehind() {
+        jdbcTemplate.update("INSERT INTO tombstones (change_seq, deleted_at) VALUES (3, ?), (5, ?), (9, ?)",
+                Timestamp.from(NOW.minus(Duration.ofDays(9))), Timestamp.from(NOW.minus(Duration.ofDays(8))),
+                Timestamp.from(NOW));
+        assertFalse(changeFeedRepository.isBehindPurge("0"));
+
+        purger.purge();
+
+        assertTrue(changeFeedRepository.isBehindPurge("0"));
+        assertTrue(changeFeedRepository.isBehindPurge("4"));
+        assertFalse(changeFeedRepository.isBehindPurge("5"));
+        assertFalse(changeFeedRepository.isBehindPurge("8"));
+    }
+
+    private void insert(String table, long id, Instant deletedAt) {
+        jdbcTemplate.update("INSERT INTO " + table + " (id, deleted_at) VALUES (?, ?)", id,
+                deletedAt != null ? Timestamp.from(deletedAt) : null);
+    }
+}
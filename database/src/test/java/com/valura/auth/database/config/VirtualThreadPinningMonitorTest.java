@@ -0,0 +1,94 @@
+package com.valura.auth.database.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VirtualThreadPinningMonitorTest {
+
+    private VirtualThreadPinningMonitor monitor;
+
+    @BeforeEach
+    void setUp() {
+        monitor = new VirtualThreadPinningMonitor(Duration.ofMillis(10));
+        monitor.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        monitor.stop();
+    }
+
+    @Test
+    void virtualThreadsWaitingOnThePoolAreNotPinned() throws Exception {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl("jdbc:h2:mem:pinning-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1");
+        config.setMaximumPoolSize(2);
+        try (HikariDataSource dataSource = new HikariDataSource(config);
+             ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                // twenty threads on two connections, so most of them park in the pool waiting for one
+                results.add(executor.submit(() -> {
+                    try (Connection connection = dataSource.getConnection();
+                         Statement statement = connection.createStatement();
+                         ResultSet resultSet = statement.executeQuery("SELECT 1")) {
+                        Thread.sleep(20);
+                        return resultSet.next() ? resultSet.getInt(1) : 0;
+                    }
+                }));
+            }
+            for (Future<Integer> result : results) {
+                assertEquals(1, result.get());
+            }
+
+            pin(executor);
+        }
+
+        // the deliberate pin is the only one, and seeing it means the JDBC work before it was recorded
+        awaitPinned(1);
+        Thread.sleep(200);
+        assertEquals(1, monitor.pinnedCount());
+    }
+
+    @Test
+    void countsPinnedThreads() throws Exception {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            pin(executor);
+        }
+
+        awaitPinned(1);
+    }
+
+    private static void pin(ExecutorService executor) throws Exception {
+        Object monitor = new Object();
+        executor.submit(() -> {
+            synchronized (monitor) {
+                Thread.sleep(50);
+            }
+            return null;
+        }).get();
+    }
+
+    private void awaitPinned(long count) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(20).toNanos();
+        while (monitor.pinnedCount() < count && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(count, monitor.pinnedCount());
+    }
+}
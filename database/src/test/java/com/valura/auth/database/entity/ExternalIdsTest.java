@@ -0,0 +1,31 @@
+package com.valura.auth.database.entity;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExternalIdsTest {
+
+    @Test
+    void generatesVersion7UuidsThatSortByCreationTime() {
+        UUID earlier = ExternalIds.next(1_700_000_000_000L);
+        UUID later = ExternalIds.next(1_700_000_000_001L);
+
+        assertEquals(7, earlier.version());
+        assertEquals(2, earlier.variant());
+        assertEquals(1_700_000_000_000L, earlier.getMostSignificantBits() >>> 16);
+        assertTrue(earlier.toString().compareTo(later.toString()) < 0);
+        assertEquals(36, ExternalIds.next().length());
+    }
+
+    @Test
+    void onlyCanonicalUuidsAreIds() {
+        assertEquals(UUID.fromString("0190a5b2-7c3e-7d41-9a2b-3c4d5e6f7a8b"),
+                ExternalIds.toUuid("0190A5B2-7C3E-7D41-9A2B-3C4D5E6F7A8B"));
+        assertNull(ExternalIds.toUuid("1-2-3-4-5"));
+        assertNull(ExternalIds.toUuid("u1"));
+        assertNull(ExternalIds.toUuid(null));
+    }
+}
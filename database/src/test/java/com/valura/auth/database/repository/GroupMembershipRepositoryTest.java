@@ -0,0 +1,49 @@
+package com.valura.auth.database.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GroupMembershipRepositoryTest {
+
+    private static final String GROUP_1 = "00000000-0000-7000-8000-000000000001";
+    private static final String GROUP_2 = "00000000-0000-7000-8000-000000000002";
+    private static final String GROUP_3 = "00000000-0000-7000-8000-000000000003";
+
+    private JdbcTemplate jdbcTemplate;
+    private GroupMembershipRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(
+                new DriverManagerDataSource("jdbc:h2:mem:memberships-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1"));
+        jdbcTemplate.execute("CREATE TABLE users (id BIGINT PRIMARY KEY)");
+        jdbcTemplate.execute("CREATE TABLE groups (id BIGINT PRIMARY KEY, external_id UUID NOT NULL, "
+                + "deleted_at TIMESTAMP(6) WITH TIME ZONE, updated_at TIMESTAMP(6) WITH TIME ZONE, "
+                + "version BIGINT NOT NULL DEFAULT 0)");
+        jdbcTemplate.execute("CREATE TABLE user_groups (group_id BIGINT NOT NULL REFERENCES groups (id), "
+                + "user_id BIGINT NOT NULL REFERENCES users (id), PRIMARY KEY (group_id, user_id))");
+        repository = new GroupMembershipRepository(jdbcTemplate, 50);
+    }
+
+    @Test
+    void touchesTheLiveGroupsOfAUser() {
+        jdbcTemplate.update("INSERT INTO users (id) VALUES (1), (2)");
+        jdbcTemplate.update("INSERT INTO groups (id, external_id, version) VALUES (1, ?, 4), (2, ?, 0), (3, ?, 7)",
+                GROUP_1, GROUP_2, GROUP_3);
+        jdbcTemplate.update("UPDATE groups SET deleted_at = CURRENT_TIMESTAMP WHERE id = 3");
+        jdbcTemplate.update("INSERT INTO user_groups (group_id, user_id) VALUES (1, 1), (2, 2), (3, 1)");
+
+        List<ResourceChange> touched = repository.touchGroupsOf(1);
+
+        assertEquals(List.of(new ResourceChange(ResourceChange.Type.GROUP, GROUP_1, 5L)), touched);
+        assertEquals(List.of(5L, 0L, 7L),
+                jdbcTemplate.queryForList("SELECT version FROM groups ORDER BY id", Long.class));
+        assertTrue(repository.touchGroupsOf(3).isEmpty());
+    }
+}
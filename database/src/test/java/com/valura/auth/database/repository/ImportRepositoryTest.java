@@ -0,0 +1,142 @@
+package com.valura.auth.database.repository;
+
+import com.valura.auth.database.repository.ImportRepository.MergeResult;
+import com.valura.auth.database.repository.ImportRepository.RowError;
+import com.valura.auth.database.repository.ImportRepository.StagedGroup;
+import com.valura.auth.database.repository.ImportRepository.StagedUser;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The merge on H2, on the schema the migrations build; PostgreSQL runs the same checks and membership
+ * statements, with {@code INSERT ... ON CONFLICT} in place of {@code MERGE}.
+ */
+class ImportRepositoryTest {
+
+    private static final String IMPORT = "import-1";
+
+    private JdbcTemplate jdbcTemplate;
+    private ImportRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource =
+                new DriverManagerDataSource("jdbc:h2:mem:import-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1");
+        Flyway.configure()
+                .dataSource(dataSource)
+                .locations("classpath:db/migration/common", "classpath:db/migration/h2")
+                .load()
+                .migrate();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        repository = new ImportRepository(jdbcTemplate, dataSource, 50);
+    }
+
+    @Test
+    void mergesValidUsersAndCountsRestoredOnesAsCreated() {
+        long alice = insertUser(id(1), "alice");
+        long bob = insertUser(id(2), "bob");
+        insertUser(id(6), "dave");
+        long group = insertGroup(id(9), "staff");
+        jdbcTemplate.update("INSERT INTO user_groups (group_id, user_id) VALUES (?, ?)", group, bob);
+        jdbcTemplate.update("UPDATE users SET deleted_at = CURRENT_TIMESTAMP WHERE id = ?", bob);
+
+        repository.stageUsers(IMPORT, List.of(
+                user(1, id(1), "alice.smith"),
+                user(2, id(2), "bob"),
+                user(3, id(3), "carol"),
+                user(4, id(4), "carol"),
+                user(5, id(5), "dave")).iterator());
+        MergeResult result = repository.merge(IMPORT);
+
+        assertEquals(2, result.usersCreated());
+        assertEquals(1, result.usersUpdated());
+        assertEquals(List.of(new RowError(4, "Duplicate userName in file"), new RowError(5, "userName already exists")),
+                result.errors());
+        assertEquals("alice.smith", jdbcTemplate.queryForObject("SELECT user_name FROM users WHERE id = ?",
+                String.class, alice));
+        assertEquals(1L, jdbcTemplate.queryForObject("SELECT version FROM users WHERE id = ?", Long.class, alice));
+        assertNull(jdbcTemplate.queryForObject("SELECT deleted_at FROM users WHERE id = ?", Object.class, bob));
+        assertEquals(0, count("SELECT COUNT(*) FROM user_groups WHERE user_id = " + bob));
+        assertEquals(0, count("SELECT COUNT(*) FROM users WHERE external_id IN ('" + id(4) + "', '" + id(5) + "')"));
+        assertEquals(0, count("SELECT COUNT(*) FROM import_users"));
+    }
+
+    @Test
+    void bumpsTheGroupsOfRenamedMembers() {
+        long alice = insertUser(id(1), "alice");
+        long bob = insertUser(id(2), "bob");
+        long renamed = insertGroup(id(11), "engineering");
+        long unchanged = insertGroup(id(12), "operations");
+        jdbcTemplate.update("INSERT INTO user_groups (group_id, user_id) VALUES (?, ?), (?, ?)",
+                renamed, alice, unchanged, bob);
+
+        repository.stageUsers(IMPORT, List.of(user(1, id(1), "alice.smith"), user(2, id(2), "bob")).iterator());
+        repository.merge(IMPORT);
+
+        assertEquals(List.of(1L, 0L),
+                jdbcTemplate.queryForList("SELECT version FROM groups ORDER BY id", Long.class));
+    }
+
+    @Test
+    void replacesTheMembersOfImportedGroups() {
+        long alice = insertUser(id(1), "alice");
+        long bob = insertUser(id(2), "bob");
+        long carol = insertUser(id(3), "carol");
+        long engineering = insertGroup(id(11), "engineering");
+        jdbcTemplate.update("INSERT INTO user_groups (group_id, user_id) VALUES (?, ?), (?, ?)",
+                engineering, alice, engineering, bob);
+
+        repository.stageGroups(IMPORT, List.of(
+                new StagedGroup(1, id(11), "engineering", List.of(id(2), id(3))),
+                new StagedGroup(2, id(12), "operations", List.of(id(1), id(99))),
+                new StagedGroup(3, id(13), "engineering", List.of()),
+                new StagedGroup(4, id(14), "support", List.of(id(1)))));
+        MergeResult result = repository.merge(IMPORT);
+
+        assertEquals(1, result.groupsCreated());
+        assertEquals(1, result.groupsUpdated());
+        assertEquals(List.of(new RowError(2, "Users not found: " + id(99)),
+                new RowError(3, "Duplicate displayName in file")), result.errors());
+        assertEquals(List.of(bob, carol), jdbcTemplate.queryForList(
+                "SELECT user_id FROM user_groups WHERE group_id = ? ORDER BY user_id", Long.class, engineering));
+        assertEquals(1L, jdbcTemplate.queryForObject("SELECT version FROM groups WHERE id = ?", Long.class, engineering));
+        assertEquals(List.of(id(1)), jdbcTemplate.queryForList("SELECT external_id FROM tombstones "
+                + "WHERE resource_type = 'Member' AND group_external_id = ?", String.class, id(11)));
+        assertEquals(1, count("SELECT COUNT(*) FROM user_groups ug JOIN groups g ON g.id = ug.group_id "
+                + "WHERE g.display_name = 'support'"));
+        assertEquals(0, count("SELECT COUNT(*) FROM groups WHERE display_name = 'operations'"));
+        assertEquals(0, count("SELECT COUNT(*) FROM import_group_members"));
+    }
+
+    private static String id(int n) {
+        return String.format("00000000-0000-7000-8000-%012d", n);
+    }
+
+    private static StagedUser user(int line, String externalId, String userName) {
+        return new StagedUser(line, externalId, userName, null, null, null, userName + "@example.com", true);
+    }
+
+    private long insertUser(String externalId, String userName) {
+        jdbcTemplate.update("INSERT INTO users (external_id, user_name, email, active, created_at, updated_at, version) "
+                + "VALUES (?, ?, ?, TRUE, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP, 0)", externalId, userName,
+                userName + "@example.com");
+        return jdbcTemplate.queryForObject("SELECT id FROM users WHERE external_id = ?", Long.class, externalId);
+    }
+
+    private long insertGroup(String externalId, String displayName) {
+        jdbcTemplate.update("INSERT INTO groups (external_id, display_name, created_at, updated_at, version) "
+                + "VALUES (?, ?, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP, 0)", externalId, displayName);
+        return jdbcTemplate.queryForObject("SELECT id FROM groups WHERE external_id = ?", Long.class, externalId);
+    }
+
+    private int count(String sql) {
+        return jdbcTemplate.queryForObject(sql, Integer.class);
+    }
+}
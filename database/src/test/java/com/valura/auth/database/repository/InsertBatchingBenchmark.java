@@ -0,0 +1,180 @@
+package com.valura.auth.database.repository;
+
+import com.valura.auth.database.config.DatabaseConfig;
+import com.valura.auth.database.entity.GroupEntity;
+import com.valura.auth.database.entity.UserEntity;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Insert throughput with and without JDBC batching. The unbatched runs insert every entity on its own, which
+ * is what {@code GenerationType.IDENTITY} forced on every insert; the batched runs rely on the pooled
+ * sequence ids and flush once per transaction.
+ *
+ * <p>Runs on in-memory H2 unless {@code -Dbenchmark.url} names another database. For PostgreSQL add
+ * {@code reWriteBatchedInserts=true} to the URL so that the driver sends each batch as one statement.
+ */
+@Tag("benchmark")
+@SpringBootTest(classes = InsertBatchingBenchmark.Config.class, properties = {
+        "spring.datasource.url=${benchmark.url:jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1}",
+        "spring.datasource.username=${benchmark.username:sa}",
+        "spring.datasource.password=${benchmark.password:}"})
+class InsertBatchingBenchmark {
+
+    private static final int USERS = Integer.getInteger("benchmark.users", 20_000);
+    private static final int GROUPS = Integer.getInteger("benchmark.groups", 200);
+    private static final int MEMBERS = Integer.getInteger("benchmark.members", 100);
+
+    @SpringBootConfiguration
+    @EnableAutoConfiguration
+    @Import({DatabaseConfig.class, GroupMembershipRepository.class})
+    static class Config {
+    }
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private GroupRepository groupRepository;
+
+    @Autowired
+    private GroupMembershipRepository membershipRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void clear() {
+        jdbcTemplate.update("DELETE FROM user_groups");
+        jdbcTemplate.update("DELETE FROM groups");
+        jdbcTemplate.update("DELETE FROM users");
+    }
+
+    @Test
+    void userCreates() {
+        createUsers(USERS / 10, false);
+        createUsers(USERS / 10, true);
+        clear();
+
+        long unbatched = createUsers(USERS, false);
+        clear();
+        long batched = createUsers(USERS, true);
+
+        report("user creates, one flush per user", USERS, unbatched);
+        report("user creates, batched", USERS, batched);
+        assertEquals(USERS, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users", Integer.class));
+    }
+
+    @Test
+    void groupCreatesWithMembers() {
+        List<Long> members = new TransactionTemplate(transactionManager).execute(status -> {
+            List<Long> ids = new ArrayList<>(MEMBERS);
+            for (int i = 0; i < MEMBERS; i++) {
+                ids.add(userRepository.save(user("member-" + i)).getId());
+            }
+            return ids;
+        });
+        long[] memberIds = members.stream().mapToLong(Long::longValue).toArray();
+
+        createGroups(GROUPS / 10, memberIds, false);
+        createGroups(GROUPS / 10, memberIds, true);
+        clearGroups();
+
+        long unbatched = createGroups(GROUPS, memberIds, false);
+        clearGroups();
+        long batched = createGroups(GROUPS, memberIds, true);
+
+        int rows = GROUPS * (MEMBERS + 1);
+        report("group and membership rows, one at a time", rows, unbatched);
+        report("group and membership rows, batched", rows, batched);
+        assertEquals(GROUPS * MEMBERS, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM user_groups", Integer.class));
+    }
+
+    private long createUsers(int count, boolean batched) {
+        long start = System.nanoTime();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            for (int i = 0; i < count; i++) {
+                UserEntity user = user(UUID.randomUUID().toString());
+                userRepository.save(user);
+                if (!batched) {
+                    // clearing keeps each flush to the one insert, as an IDENTITY insert would be
+                    entityManager.flush();
+                    entityManager.clear();
+                }
+            }
+        });
+        return System.nanoTime() - start;
+    }
+
+    private long createGroups(int count, long[] memberIds, boolean batched) {
+        long start = System.nanoTime();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            List<GroupEntity> groups = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                GroupEntity group = new GroupEntity();
+                group.setExternalId(UUID.randomUUID().toString());
+                group.setDisplayName(group.getExternalId());
+                if (batched) {
+                    groups.add(groupRepository.save(group));
+                } else {
+                    groupRepository.save(group);
+                    entityManager.flush();
+                    entityManager.clear();
+                    for (long memberId : memberIds) {
+                        jdbcTemplate.update("INSERT INTO user_groups (group_id, user_id) VALUES (?, ?)",
+                                group.getId(), memberId);
+                    }
+                }
+            }
+            if (batched) {
+                groupRepository.flush();
+                for (GroupEntity group : groups) {
+                    membershipRepository.addMembers(group.getId(), memberIds);
+                }
+            }
+        });
+        return System.nanoTime() - start;
+    }
+
+    private void clearGroups() {
+        jdbcTemplate.update("DELETE FROM user_groups");
+        jdbcTemplate.update("DELETE FROM groups");
+    }
+
+    private static UserEntity user(String userName) {
+        UserEntity user = new UserEntity();
+        user.setExternalId(UUID.randomUUID().toString());
+        user.setUserName(userName);
+        user.setEmail(userName + "@example.com");
+        user.setActive(true);
+        return user;
+    }
+
+    private static void report(String name, int rows, long nanos) {
+        System.out.printf("%-45s %8d rows %10.1f ms %12.0f rows/s%n",
+                name, rows, nanos / 1e6, rows / (nanos / 1e9));
+    }
+}
@@ -0,0 +1,27 @@
+package com.valura.auth.database.repository;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MembershipDeltaTest {
+
+    @Test
+    void keepsUnchangedMembersOutOfTheDelta() {
+        MembershipDelta delta = MembershipDelta.between(new long[]{1, 3, 5, 7}, new long[]{1, 4, 5, 7, 9});
+
+        assertArrayEquals(new long[]{4, 9}, delta.added());
+        assertArrayEquals(new long[]{3}, delta.removed());
+    }
+
+    @Test
+    void identicalSetsNeedNoWrites() {
+        assertTrue(MembershipDelta.between(new long[]{2, 8}, new long[]{2, 8}).isEmpty());
+    }
+
+    @Test
+    void handlesEmptySides() {
+        assertArrayEquals(new long[]{1, 2}, MembershipDelta.between(new long[0], new long[]{1, 2}).added());
+        assertArrayEquals(new long[]{1, 2}, MembershipDelta.between(new long[]{1, 2}, new long[0]).removed());
+    }
+}
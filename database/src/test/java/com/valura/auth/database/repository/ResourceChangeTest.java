@@ -0,0 +1,29 @@
+package com.valura.auth.database.repository;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResourceChangeTest {
+
+    private static final String ID = "0190a5b2-7c3e-7d41-9a2b-3c4d5e6f7a8b";
+
+    @Test
+    void roundTripsThroughNotifyPayloads() {
+        ResourceChange changed = new ResourceChange(ResourceChange.Type.USER, ID, 7L);
+        ResourceChange deleted = new ResourceChange(ResourceChange.Type.GROUP, ID, null);
+
+        assertEquals("user:" + ID + ":7", changed.encode());
+        assertEquals(changed, ResourceChange.parse(changed.encode()));
+        assertEquals(deleted, ResourceChange.parse(deleted.encode()));
+        assertEquals(ResourceChange.all(), ResourceChange.parse("all::"));
+    }
+
+    @Test
+    void rejectsOtherPayloads() {
+        assertThrows(IllegalArgumentException.class, () -> ResourceChange.parse("user"));
+        assertThrows(IllegalArgumentException.class, () -> ResourceChange.parse("user::1"));
+        assertThrows(IllegalArgumentException.class, () -> ResourceChange.parse("role:" + ID + ":1"));
+        assertThrows(IllegalArgumentException.class, () -> ResourceChange.parse("user:" + ID + ":x"));
+    }
+}
@@ -0,0 +1,41 @@
+// The SCIM endpoints on WebFlux and R2DBC. The scim and database modules supply the models, error mapping,
+// PATCH parsing and schema; their servlet, JPA and JDBC stacks are left out.
+dependencies {
+
+    implementation(project(":scim"))
+    implementation(project(":database"))
+
+    implementation("org.springframework.boot:spring-boot-starter-webflux")
+    implementation("org.springframework.boot:spring-boot-starter-data-r2dbc")
+    implementation("org.postgresql:r2dbc-postgresql")
+    implementation("org.springframework.boot:spring-boot-starter-security")
+    implementation("org.springframework.boot:spring-boot-starter-oauth2-resource-server")
+    implementation("com.unboundid.product.scim2:scim2-sdk-server:2.3.6")
+    // the scim module's paging and filter classes refer to the JPA criteria types; Hibernate stays out
+    runtimeOnly("jakarta.persistence:jakarta.persistence-api")
+
+    testImplementation("org.springframework.boot:spring-boot-starter-test")
+    testImplementation("io.projectreactor:reactor-test")
+    testImplementation(platform("org.junit:junit-bom:5.10.0"))
+    testImplementation("org.junit.jupiter:junit-jupiter")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+    // the tests create the schema with the database module's Flyway scripts (spring.flyway.url)
+    testRuntimeOnly("org.flywaydb:flyway-core")
+    testRuntimeOnly("com.h2database:h2")
+    testRuntimeOnly("io.r2dbc:r2dbc-h2")
+}
+
+tasks.bootJar {
+    mainClass.set("com.valura.auth.scim.reactive.ReactiveScimApplication")
+}
+
+configurations.matching { it.name == "runtimeClasspath" || it.name == "testRuntimeClasspath" }.configureEach {
+    exclude(group = "org.springframework.boot", module = "spring-boot-starter-web")
+    exclude(group = "org.springframework.boot", module = "spring-boot-starter-data-jpa")
+    exclude(group = "com.zaxxer", module = "HikariCP")
+    exclude(group = "org.postgresql", module = "postgresql")
+}
+
+configurations.runtimeClasspath {
+    exclude(group = "org.flywaydb")
+}
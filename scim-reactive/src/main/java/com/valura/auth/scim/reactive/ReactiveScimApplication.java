@@ -0,0 +1,25 @@
+package com.valura.auth.scim.reactive;
+
+import com.valura.auth.scim.exception.ScimExceptionHandler;
+import com.valura.auth.scim.filter.SqlFilterCompiler;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.annotation.Import;
+
+/**
+ * Serves {@code /scim/v2/Users} and {@code /scim/v2/Groups} on WebFlux, with the database reached through
+ * R2DBC ({@code spring.r2dbc.*}). Requests never block a thread: a node holds many concurrent slow clients on
+ * Netty's event loops, and list responses are streamed as the client reads them. The schema is still owned
+ * by the {@code database} module's Flyway scripts, applied by the servlet application.
+ */
+@SpringBootApplication
+@Import({ScimExceptionHandler.class, SqlFilterCompiler.class})
+public class ReactiveScimApplication {
+
+    public static void main(String[] args) {
+        new SpringApplicationBuilder(ReactiveScimApplication.class)
+                .web(WebApplicationType.REACTIVE)
+                .run(args);
+    }
+}
@@ -0,0 +1,107 @@
+package com.valura.auth.scim.reactive.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoders;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
+import org.springframework.security.oauth2.server.resource.authentication.JwtGrantedAuthoritiesConverter;
+import org.springframework.security.oauth2.server.resource.authentication.ReactiveJwtAuthenticationConverterAdapter;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.ServerAuthenticationEntryPoint;
+import org.springframework.security.web.server.authorization.ServerAccessDeniedHandler;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The reactive counterpart of the servlet {@code SecurityConfig}: bearer JWTs from the same issuer, their
+ * {@code scope} claim as authorities, and SCIM error bodies for missing or rejected tokens.
+ */
+@Configuration
+@EnableWebFluxSecurity
+public class ReactiveSecurityConfig {
+
+    private static final MediaType SCIM_JSON = MediaType.parseMediaType("application/scim+json;charset=utf-8");
+
+    @Value("${spring.security.oauth2.resourceserver.jwt.issuer-uri}")
+    private String issuer;
+
+    @Bean
+    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http, ReactiveJwtDecoder jwtDecoder) {
+        http
+                .csrf(ServerHttpSecurity.CsrfSpec::disable)
+                .httpBasic(ServerHttpSecurity.HttpBasicSpec::disable)
+                .formLogin(ServerHttpSecurity.FormLoginSpec::disable)
+                .authorizeExchange(authorize -> authorize
+                        .pathMatchers("/actuator/**").permitAll()
+                        .anyExchange().authenticated()
+                )
+                .oauth2ResourceServer(oauth2 -> oauth2
+                        .jwt(jwt -> jwt
+                                .jwtDecoder(jwtDecoder)
+                                .jwtAuthenticationConverter(jwtAuthenticationConverter())
+                        )
+                        .authenticationEntryPoint(scimAuthenticationEntryPoint())
+                        .accessDeniedHandler(scimAccessDeniedHandler())
+                )
+                .exceptionHandling(exceptions -> exceptions
+                        .authenticationEntryPoint(scimAuthenticationEntryPoint())
+                        .accessDeniedHandler(scimAccessDeniedHandler())
+                );
+        return http.build();
+    }
+
+    @Bean
+    public ReactiveJwtDecoder jwtDecoder() {
+        return ReactiveJwtDecoders.fromIssuerLocation(issuer);
+    }
+
+    @Bean
+    public ReactiveJwtAuthenticationConverterAdapter jwtAuthenticationConverter() {
+        JwtGrantedAuthoritiesConverter grantedAuthoritiesConverter = new JwtGrantedAuthoritiesConverter();
+        grantedAuthoritiesConverter.setAuthoritiesClaimName("scope");
+        grantedAuthoritiesConverter.setAuthorityPrefix("");
+
+        JwtAuthenticationConverter jwtConverter = new JwtAuthenticationConverter();
+        jwtConverter.setJwtGrantedAuthoritiesConverter(grantedAuthoritiesConverter);
+
+        return new ReactiveJwtAuthenticationConverterAdapter(jwtConverter);
+    }
+
+    @Bean
+    public ServerAuthenticationEntryPoint scimAuthenticationEntryPoint() {
+        return (exchange, ex) -> {
+            exchange.getResponse().getHeaders().set(HttpHeaders.WWW_AUTHENTICATE, "Bearer");
+            return writeError(exchange.getResponse(), HttpStatus.UNAUTHORIZED, "invalidToken",
+                    "Authentication required or token invalid/expired.");
+        };
+    }
+
+    @Bean
+    public ServerAccessDeniedHandler scimAccessDeniedHandler() {
+        return (exchange, ex) -> writeError(exchange.getResponse(), HttpStatus.FORBIDDEN, "insufficientPrivileges",
+                "Access denied.");
+    }
+
+    private static Mono<Void> writeError(ServerHttpResponse response, HttpStatus status, String scimType, String detail) {
+        response.setStatusCode(status);
+        response.getHeaders().setContentType(SCIM_JSON);
+        String errorBody = "{"
+                + "\"schemas\": [\"urn:ietf:params:scim:api:messages:2.0:Error\"],"
+                + "\"status\": \"" + status.value() + "\","
+                + "\"scimType\": \"" + scimType + "\","
+                + "\"detail\": \"" + detail + "\""
+                + "}";
+        DataBuffer buffer = response.bufferFactory().wrap(errorBody.getBytes(StandardCharsets.UTF_8));
+        return response.writeWith(Mono.just(buffer));
+    }
+}
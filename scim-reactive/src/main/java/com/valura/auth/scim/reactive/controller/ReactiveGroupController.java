@@ -0,0 +1,100 @@
+package com.valura.auth.scim.reactive.controller;
+
+import com.unboundid.scim2.common.types.GroupResource;
+import com.valura.auth.scim.model.ScimGroup;
+import com.valura.auth.scim.model.ScimPatchRequest;
+import com.valura.auth.scim.reactive.service.ReactiveAuthorizationService;
+import com.valura.auth.scim.reactive.service.ReactiveGroupService;
+import com.valura.auth.scim.service.ScimScopes;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * {@code /scim/v2/Groups} with the status codes and headers of {@code ScimGroupController}.
+ */
+@RestController
+@RequestMapping("/scim/v2/Groups")
+public class ReactiveGroupController {
+    private final ReactiveGroupService groupService;
+    private final ReactiveAuthorizationService authorizationService;
+
+    public ReactiveGroupController(ReactiveGroupService groupService, ReactiveAuthorizationService authorizationService) {
+        this.groupService = groupService;
+        this.authorizationService = authorizationService;
+    }
+
+    @PostMapping
+    public Mono<ResponseEntity<GroupResource>> createGroup(@RequestBody GroupResource group) {
+        return authorizationService.checkPermission(ScimScopes.SCIM_GROUPS_WRITE)
+                .then(Mono.defer(() -> groupService.create(group)))
+                .map(createdGroup -> ResponseEntity.status(HttpStatus.CREATED)
+                        .eTag(createdGroup.getMeta().getVersion())
+                        .body(createdGroup));
+    }
+
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<GroupResource>> getGroup(
+            @PathVariable String id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return authorizationService.checkPermission(ScimScopes.SCIM_GROUPS_READ)
+                .then(Mono.defer(() -> groupService.matchingETag(id, ifNoneMatch)))
+                .map(unchanged -> ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(unchanged).<GroupResource>build())
+                .switchIfEmpty(Mono.defer(() -> groupService.get(id))
+                        .map(group -> ResponseEntity.ok()
+                                .eTag(group.getMeta().getVersion())
+                                .body(group)));
+    }
+
+    @PutMapping("/{id}")
+    public Mono<ResponseEntity<GroupResource>> updateGroup(
+            @PathVariable String id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestBody GroupResource group) {
+        return authorizationService.checkPermission(ScimScopes.SCIM_GROUPS_WRITE)
+                .then(Mono.defer(() -> groupService.replace(id, group, ifMatch)))
+                .map(updatedGroup -> ResponseEntity.ok()
+                        .eTag(updatedGroup.getMeta().getVersion())
+                        .body(updatedGroup));
+    }
+
+    @PatchMapping("/{id}")
+    public Mono<ResponseEntity<GroupResource>> patchGroup(
+            @PathVariable String id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestBody ScimPatchRequest<ScimGroup.PatchOp> request) {
+        return authorizationService.checkPermission(ScimScopes.SCIM_GROUPS_WRITE)
+                .then(Mono.defer(() -> groupService.patch(id, request, ifMatch)))
+                // RFC 7644 section 3.5.2 allows 204; returning the group would mean reading every member
+                .map(eTag -> ResponseEntity.noContent().eTag(eTag).build());
+    }
+
+    @DeleteMapping("/{id}")
+    public Mono<ResponseEntity<Void>> deleteGroup(@PathVariable String id) {
+        return authorizationService.checkPermission(ScimScopes.SCIM_GROUPS_DELETE)
+                .then(Mono.defer(() -> groupService.delete(id)))
+                .then(Mono.fromSupplier(() -> ResponseEntity.noContent().<Void>build()));
+    }
+
+    /**
+     * Every page is streamed, whatever its size, with the client's demand pacing the reads.
+     */
+    @GetMapping
+    public Mono<ResponseEntity<Flux<DataBuffer>>> searchGroups(
+            @RequestParam(required = false) Integer startIndex,
+            @RequestParam(required = false) Integer count,
+            @RequestParam(required = false) String filter,
+            @RequestParam(required = false) String cursor,
+            ServerHttpResponse response) {
+        return authorizationService.checkPermission(ScimScopes.SCIM_GROUPS_READ)
+                .then(Mono.fromCallable(() -> ResponseEntity.ok()
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(groupService.list(startIndex, count, filter, cursor, response.bufferFactory()))));
+    }
+}
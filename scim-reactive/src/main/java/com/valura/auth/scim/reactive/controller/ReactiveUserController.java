@@ -0,0 +1,101 @@
+package com.valura.auth.scim.reactive.controller;
+
+import com.unboundid.scim2.common.types.UserResource;
+import com.valura.auth.scim.model.ScimPatchRequest;
+import com.valura.auth.scim.model.ScimUser;
+import com.valura.auth.scim.reactive.service.ReactiveAuthorizationService;
+import com.valura.auth.scim.reactive.service.ReactiveUserService;
+import com.valura.auth.scim.service.ScimScopes;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * {@code /scim/v2/Users} with the status codes and headers of {@code ScimUserController}.
+ */
+@RestController
+@RequestMapping("/scim/v2/Users")
+public class ReactiveUserController {
+    private final ReactiveUserService userService;
+    private final ReactiveAuthorizationService authorizationService;
+
+    public ReactiveUserController(ReactiveUserService userService, ReactiveAuthorizationService authorizationService) {
+        this.userService = userService;
+        this.authorizationService = authorizationService;
+    }
+
+    @PostMapping
+    public Mono<ResponseEntity<UserResource>> createUser(@RequestBody UserResource user) {
+        return authorizationService.checkPermission(ScimScopes.SCIM_USERS_WRITE)
+                .then(Mono.defer(() -> userService.create(user)))
+                .map(createdUser -> ResponseEntity.status(HttpStatus.CREATED)
+                        .eTag(createdUser.getMeta().getVersion())
+                        .body(createdUser));
+    }
+
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<UserResource>> getUser(
+            @PathVariable String id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return authorizationService.checkPermission(ScimScopes.SCIM_USERS_READ)
+                .then(Mono.defer(() -> userService.matchingETag(id, ifNoneMatch)))
+                .map(unchanged -> ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(unchanged).<UserResource>build())
+                .switchIfEmpty(Mono.defer(() -> userService.get(id))
+                        .map(user -> ResponseEntity.ok()
+                                .eTag(user.getMeta().getVersion())
+                                .body(user)));
+    }
+
+    @PutMapping("/{id}")
+    public Mono<ResponseEntity<UserResource>> updateUser(
+            @PathVariable String id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestBody UserResource user) {
+        return authorizationService.checkPermission(ScimScopes.SCIM_USERS_WRITE)
+                .then(Mono.defer(() -> userService.replace(id, user, ifMatch)))
+                .map(updatedUser -> ResponseEntity.ok()
+                        .eTag(updatedUser.getMeta().getVersion())
+                        .body(updatedUser));
+    }
+
+    @PatchMapping("/{id}")
+    public Mono<ResponseEntity<UserResource>> patchUser(
+            @PathVariable String id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestBody ScimPatchRequest<ScimUser.PatchOp> request) {
+        return authorizationService.checkPermission(ScimScopes.SCIM_USERS_WRITE)
+                .then(Mono.defer(() -> userService.patch(id, request, ifMatch)))
+                .map(patchedUser -> ResponseEntity.ok()
+                        .eTag(patchedUser.getMeta().getVersion())
+                        .body(patchedUser));
+    }
+
+    @DeleteMapping("/{id}")
+    public Mono<ResponseEntity<Void>> deleteUser(@PathVariable String id) {
+        return authorizationService.checkPermission(ScimScopes.SCIM_USERS_DELETE)
+                .then(Mono.defer(() -> userService.delete(id)))
+                .then(Mono.fromSupplier(() -> ResponseEntity.noContent().<Void>build()));
+    }
+
+    /**
+     * Every page is streamed, whatever its size, with the client's demand pacing the reads.
+     */
+    @GetMapping
+    public Mono<ResponseEntity<Flux<DataBuffer>>> searchUsers(
+            @RequestParam(required = false) Integer startIndex,
+            @RequestParam(required = false) Integer count,
+            @RequestParam(required = false) String filter,
+            @RequestParam(required = false) String cursor,
+            ServerHttpResponse response) {
+        return authorizationService.checkPermission(ScimScopes.SCIM_USERS_READ)
+                .then(Mono.fromCallable(() -> ResponseEntity.ok()
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(userService.list(startIndex, count, filter, cursor, response.bufferFactory()))));
+    }
+}
@@ -0,0 +1,158 @@
+package com.valura.auth.scim.reactive.paging;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.unboundid.scim2.common.exceptions.BadRequestException;
+import com.valura.auth.scim.model.ScimListResponse;
+import com.valura.auth.scim.paging.ListCursor;
+import com.valura.auth.scim.paging.ListPager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Streams a SCIM ListResponse as a {@link Flux} of buffers, with the paging of {@code ListPager}: by
+ * {@code startIndex} (offset) or by {@code cursor} (keyset seek on {@code id}), always in {@code id} order.
+ *
+ * <p>The page is read in chunks of {@code scim.list.streaming.fetch-size} rows, each a short query of its own
+ * that seeks past the last id of the one before. A chunk is queried once the one before it has been handed to
+ * the response, so a slow reader holds no connection and at most a chunk more than it has taken, and a node
+ * can serve many of them on a few event loop threads. As in {@code ListResponseWriter}, the paging attributes
+ * follow the {@code Resources} array. Chunks are separate reads, so a page that changes while it is streamed
+ * can miss rows inserted behind the seek position.
+ */
+@Component
+public class ReactiveListWriter {
+
+    private final ObjectMapper objectMapper;
+    private final int chunkSize;
+
+    public ReactiveListWriter(ObjectMapper objectMapper,
+                              @Value("${scim.list.streaming.fetch-size:500}") int chunkSize) {
+        this.objectMapper = objectMapper;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * The rows of one resource type, in {@code id} order.
+     */
+    public interface ListSource<T> {
+
+        /**
+         * Up to {@code limit} rows after {@code after} when given, skipping {@code offset}.
+         */
+        Flux<T> chunk(Long after, long offset, int limit);
+
+        Mono<Long> count();
+    }
+
+    private record Chunk<T>(List<T> rows, int seen, Long lastId) {
+    }
+
+    /**
+     * Returns the streamed page. The cursor is checked now, so that a bad request is rejected before the
+     * response is committed.
+     */
+    public <T> Flux<DataBuffer> body(ListSource<T> source, ToLongFunction<T> idOf,
+                                     Function<List<T>, Mono<List<?>>> toResources, Integer startIndex,
+                                     Integer count, String cursor, DataBufferFactory buffers)
+            throws BadRequestException {
+        int pageSize = count == null || count < 0 ? ListPager.DEFAULT_COUNT : count;
+        Long after = cursor == null ? null : ListCursor.decode(cursor);
+        Integer start = cursor == null ? Integer.valueOf(startIndex != null && startIndex > 1 ? startIndex : 1) : null;
+        long offset = start != null ? start - 1L : 0;
+
+        AtomicReference<Chunk<T>> last = new AtomicReference<>();
+        Flux<DataBuffer> resources = pageSize == 0
+                ? Flux.empty()
+                : chunks(source, idOf, toResources, buffers, last, pageSize, after, offset, 0);
+
+        Mono<DataBuffer> tail = Mono.defer(() -> {
+            Chunk<T> chunk = last.get();
+            int seen = chunk != null ? chunk.seen() : 0;
+            boolean full = pageSize > 0 && seen == pageSize;
+            // a page that ends early was the last one, so its total is known without counting
+            Mono<Long> total = pageSize > 0 && !full && after == null && (seen > 0 || offset == 0)
+                    ? Mono.just(offset + seen)
+                    : source.count();
+            Mono<String> nextCursor = cursor != null && full
+                    ? source.chunk(chunk.lastId(), 0, 1).hasElements()
+                            .flatMap(hasNext -> hasNext ? Mono.just(ListCursor.encode(chunk.lastId())) : Mono.empty())
+                    : Mono.empty();
+            return Mono.zip(total, nextCursor.defaultIfEmpty(""))
+                    .map(paging -> buffers.wrap(tail(paging.getT1(), start, seen,
+                            paging.getT2().isEmpty() ? null : paging.getT2())));
+        });
+
+        return Flux.concat(Mono.fromSupplier(() -> buffers.wrap(head())), resources, tail);
+    }
+
+    /**
+     * The encoded chunks of a page from {@code after}/{@code offset} on, recording the last one read. The
+     * next chunk is only queried once the buffer of the one before it has been taken.
+     */
+    private <T> Flux<DataBuffer> chunks(ListSource<T> source, ToLongFunction<T> idOf,
+                                        Function<List<T>, Mono<List<?>>> toResources, DataBufferFactory buffers,
+                                        AtomicReference<Chunk<T>> last, int pageSize, Long after, long offset,
+                                        int seenBefore) {
+        int limit = Math.min(chunkSize, pageSize - seenBefore);
+        return source.chunk(after, offset, limit).collectList()
+                .flatMapMany(rows -> {
+                    if (rows.isEmpty()) {
+                        return Flux.empty();
+                    }
+                    Chunk<T> chunk = new Chunk<>(rows, seenBefore + rows.size(),
+                            idOf.applyAsLong(rows.get(rows.size() - 1)));
+                    last.set(chunk);
+                    Mono<DataBuffer> encoded = toResources.apply(rows)
+                            .map(list -> buffers.wrap(encode(list, seenBefore == 0)));
+                    if (rows.size() < limit || chunk.seen() >= pageSize) {
+                        return encoded;
+                    }
+                    return encoded.concatWith(Flux.defer(() -> chunks(source, idOf, toResources, buffers, last,
+                            pageSize, chunk.lastId(), 0, chunk.seen())));
+                });
+    }
+
+    private static byte[] head() {
+        return ("{\"schemas\":[\"" + ScimListResponse.SCHEMA + "\"],\"Resources\":[").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] tail(long totalResults, Integer startIndex, int itemsPerPage, String nextCursor) {
+        StringBuilder tail = new StringBuilder("],\"totalResults\":").append((int) totalResults);
+        if (startIndex != null) {
+            tail.append(",\"startIndex\":").append(startIndex);
+        }
+        tail.append(",\"itemsPerPage\":").append(itemsPerPage);
+        if (nextCursor != null) {
+            // cursors are unpadded base64url, which needs no escaping
+            tail.append(",\"nextCursor\":\"").append(nextCursor).append('"');
+        }
+        return tail.append('}').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private byte[] encode(List<?> resources, boolean first) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            for (int i = 0; i < resources.size(); i++) {
+                if (!first || i > 0) {
+                    out.write(',');
+                }
+                out.writeBytes(objectMapper.writeValueAsBytes(resources.get(i)));
+            }
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Resource could not be serialized", e);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,23 @@
+package com.valura.auth.scim.reactive.repository;
+
+import com.valura.auth.scim.mapper.GroupView;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+
+/**
+ * A live row of {@code groups}.
+ */
+public record GroupRow(Long id, String externalId, String displayName, OffsetDateTime createdAt,
+                       OffsetDateTime updatedAt, long version) implements GroupView {
+
+    @Override
+    public Instant created() {
+        return createdAt != null ? createdAt.toInstant() : null;
+    }
+
+    @Override
+    public Instant lastModified() {
+        return updatedAt != null ? updatedAt.toInstant() : null;
+    }
+}
@@ -0,0 +1,39 @@
+package com.valura.auth.scim.reactive.repository;
+
+import com.valura.auth.scim.filter.SqlFilter;
+import org.springframework.r2dbc.core.DatabaseClient.GenericExecuteSpec;
+
+import java.util.Map;
+
+/**
+ * The {@code WHERE} clause and binds shared by the list queries of users and groups: live rows, an optional
+ * {@link SqlFilter} and an optional keyset seek past {@code after} in {@code id} order.
+ */
+final class ListQueries {
+
+    private ListQueries() {
+    }
+
+    static String where(SqlFilter filter, Long after) {
+        StringBuilder where = new StringBuilder(" WHERE deleted_at IS NULL");
+        if (filter != null) {
+            where.append(" AND (").append(filter.condition()).append(')');
+        }
+        if (after != null) {
+            where.append(" AND id > :after");
+        }
+        return where.toString();
+    }
+
+    static GenericExecuteSpec bind(GenericExecuteSpec spec, SqlFilter filter, Long after) {
+        if (filter != null) {
+            for (Map.Entry<String, Object> value : filter.values().entrySet()) {
+                spec = spec.bind(value.getKey(), value.getValue());
+            }
+        }
+        if (after != null) {
+            spec = spec.bind("after", after);
+        }
+        return spec;
+    }
+}
@@ -0,0 +1,9 @@
+package com.valura.auth.scim.reactive.repository;
+
+import com.valura.auth.database.repository.UserReference;
+
+/**
+ * One {@code user_groups} row with the member's columns.
+ */
+public record Membership(long groupId, UserReference user) {
+}
@@ -0,0 +1,71 @@
+package com.valura.auth.scim.reactive.repository;
+
+import com.valura.auth.database.repository.ResourceChange;
+import com.valura.auth.database.repository.ResourceChangeRepository;
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+
+/**
+ * What every user and group write leaves behind for others, in the write's own transaction: the change
+ * feed tombstone of a deleted resource, the transactional outbox event when {@code scim.outbox.enabled}, and
+ * on PostgreSQL the {@code NOTIFY} on {@value ResourceChangeRepository#CHANNEL} that makes the servlet nodes
+ * evict their cached copy.
+ */
+@Repository
+public class ReactiveChangeRepository {
+
+    private final DatabaseClient client;
+    private final boolean outboxEnabled;
+    private final boolean notifySupported;
+
+    public ReactiveChangeRepository(DatabaseClient client, ConnectionFactory connectionFactory,
+                                    @Value("${scim.outbox.enabled:false}") boolean outboxEnabled) {
+        this.client = client;
+        this.outboxEnabled = outboxEnabled;
+        this.notifySupported = connectionFactory.getMetadata().getName().equals("PostgreSQL");
+    }
+
+    public Mono<Void> recordDeletion(String resourceType, String externalId) {
+        return client.sql("INSERT INTO tombstones (resource_type, external_id) VALUES (:type, :externalId)")
+                .bind("type", resourceType)
+                .bind("externalId", UUID.fromString(externalId))
+                .fetch().rowsUpdated()
+                .then();
+    }
+
+    /**
+     * Appends an event to the outbox, as {@code OutboxRepository#append} does; {@code version} is null for a delete.
+     */
+    public Mono<Void> appendOutbox(String resourceType, String operation, String resourceId, Long version) {
+        if (!outboxEnabled) {
+            return Mono.empty();
+        }
+        DatabaseClient.GenericExecuteSpec spec = client.sql("INSERT INTO outbox_events "
+                        + "(resource_type, operation, resource_id, version) VALUES (:type, :operation, :id, :version)")
+                .bind("type", resourceType)
+                .bind("operation", operation)
+                .bind("id", UUID.fromString(resourceId));
+        spec = version == null ? spec.bindNull("version", Long.class) : spec.bind("version", version);
+        return spec.fetch().rowsUpdated().then();
+    }
+
+    /**
+     * Announces a change to the other nodes; it is delivered when the transaction commits.
+     */
+    public Mono<Void> notifyChanged(ResourceChange change) {
+        if (!notifySupported) {
+            return Mono.empty();
+        }
+        return client.sql("SELECT pg_notify(:channel, :payload)")
+                .bind("channel", ResourceChangeRepository.CHANNEL)
+                .bind("payload", change.encode())
+                .map(row -> true)
+                .first()
+                .then();
+    }
+}
@@ -0,0 +1,218 @@
+package com.valura.auth.scim.reactive.repository;
+
+import com.valura.auth.database.entity.ExternalIds;
+import com.valura.auth.database.repository.InLists;
+import com.valura.auth.database.repository.ResourceChange;
+import com.valura.auth.database.repository.UserReference;
+import com.valura.auth.scim.filter.SqlFilter;
+import io.r2dbc.spi.Readable;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.r2dbc.core.DatabaseClient.GenericExecuteSpec;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * Reads and writes {@code groups} and their {@code user_groups} rows through R2DBC, following
+ * {@code GroupMembershipRepository}: members are read without loading users, removed members leave a
+ * change feed tombstone, and soft-deleted users are not members. Membership statements take a whole id list
+ * rather than one row each, since R2DBC has no JDBC-style batch of bound statements.
+ */
+@Repository
+public class ReactiveGroupRepository {
+
+    private static final String COLUMNS = "id, external_id, display_name, created_at, updated_at, version";
+
+    private static final String SELECT_MEMBERS = "SELECT ug.group_id, u.id, u.external_id, u.user_name "
+            + "FROM user_groups ug JOIN users u ON u.id = ug.user_id AND u.deleted_at IS NULL ";
+
+    private static final String GROUPS_OF_USER = "deleted_at IS NULL AND id IN "
+            + "(SELECT group_id FROM user_groups WHERE user_id = :userId)";
+
+    private final DatabaseClient client;
+
+    public ReactiveGroupRepository(DatabaseClient client) {
+        this.client = client;
+    }
+
+    public Mono<GroupRow> findByExternalId(String externalId) {
+        UUID uuid = ExternalIds.toUuid(externalId);
+        if (uuid == null) {
+            return Mono.empty();
+        }
+        return client.sql("SELECT " + COLUMNS + " FROM groups WHERE external_id = :externalId AND deleted_at IS NULL")
+                .bind("externalId", uuid)
+                .map(ReactiveGroupRepository::group)
+                .one();
+    }
+
+    public Mono<Long> findVersionByExternalId(String externalId) {
+        UUID uuid = ExternalIds.toUuid(externalId);
+        if (uuid == null) {
+            return Mono.empty();
+        }
+        return client.sql("SELECT version FROM groups WHERE external_id = :externalId AND deleted_at IS NULL")
+                .bind("externalId", uuid)
+                .map(row -> row.get("version", Long.class))
+                .one();
+    }
+
+    /**
+     * Inserts a group with version 0 and returns it as stored.
+     */
+    public Mono<GroupRow> insert(String externalId, String displayName) {
+        OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+        GenericExecuteSpec spec = client.sql("INSERT INTO groups (external_id, display_name, created_at, updated_at, "
+                        + "version) VALUES (:externalId, :displayName, :now, :now, 0)")
+                .bind("externalId", UUID.fromString(externalId))
+                .bind("now", now);
+        spec = displayName == null ? spec.bindNull("displayName", String.class) : spec.bind("displayName", displayName);
+        return spec.fetch().rowsUpdated().then(Mono.defer(() -> findByExternalId(externalId)));
+    }
+
+    /**
+     * Bumps the version of a live group still at {@code version}, setting its display name unless it is null.
+     * Returns whether a row was updated.
+     */
+    public Mono<Boolean> update(long id, long version, String displayName) {
+        GenericExecuteSpec spec = client.sql("UPDATE groups SET "
+                        + (displayName != null ? "display_name = :displayName, " : "")
+                        + "updated_at = :now, version = version + 1 "
+                        + "WHERE id = :id AND version = :version AND deleted_at IS NULL")
+                .bind("now", OffsetDateTime.now(ZoneOffset.UTC))
+                .bind("id", id)
+                .bind("version", version);
+        if (displayName != null) {
+            spec = spec.bind("displayName", displayName);
+        }
+        return spec.fetch().rowsUpdated().map(updated -> updated == 1);
+    }
+
+    /**
+     * Soft-deletes a group, as {@code SoftDeleteRepository} does; false when it was not live. Its memberships
+     * are purged with it.
+     */
+    public Mono<Boolean> markDeleted(long id) {
+        return client.sql("UPDATE groups SET deleted_at = CURRENT_TIMESTAMP, updated_at = CURRENT_TIMESTAMP, "
+                        + "version = version + 1 WHERE id = :id AND deleted_at IS NULL")
+                .bind("id", id)
+                .fetch().rowsUpdated()
+                .map(updated -> updated == 1);
+    }
+
+    /**
+     * Deletes a row and its memberships, when soft delete is disabled; false when it did not exist.
+     */
+    public Mono<Boolean> delete(long id) {
+        return client.sql("DELETE FROM user_groups WHERE group_id = :id")
+                .bind("id", id)
+                .fetch().rowsUpdated()
+                .then(client.sql("DELETE FROM groups WHERE id = :id")
+                        .bind("id", id)
+                        .fetch().rowsUpdated())
+                .map(deleted -> deleted == 1);
+    }
+
+    /**
+     * Up to {@code limit} live groups in id order, after {@code after} when given, skipping {@code offset}.
+     */
+    public Flux<GroupRow> findChunk(SqlFilter filter, Long after, long offset, int limit) {
+        GenericExecuteSpec spec = client.sql("SELECT " + COLUMNS + " FROM groups" + ListQueries.where(filter, after)
+                        + " ORDER BY id LIMIT :limit OFFSET :offset")
+                .bind("limit", limit)
+                .bind("offset", offset);
+        return ListQueries.bind(spec, filter, after).map(ReactiveGroupRepository::group).all();
+    }
+
+    public Mono<Long> count(SqlFilter filter) {
+        return ListQueries.bind(client.sql("SELECT COUNT(*) AS total FROM groups" + ListQueries.where(filter, null)),
+                        filter, null)
+                .map(row -> row.get("total", Long.class))
+                .one();
+    }
+
+    /**
+     * The members of the given groups, ordered by group and user id.
+     */
+    public Flux<Membership> findMembers(Collection<Long> groupIds) {
+        return Flux.fromIterable(InLists.chunks(groupIds))
+                .concatMap(chunk -> client.sql(SELECT_MEMBERS + "WHERE ug.group_id IN (:groupIds) ORDER BY ug.group_id, u.id")
+                        .bind("groupIds", chunk)
+                        .map(row -> new Membership(row.get("group_id", Long.class), new UserReference(
+                                row.get("id", Long.class), row.get("external_id", UUID.class).toString(),
+                                row.get("user_name", String.class))))
+                        .all());
+    }
+
+    public Flux<Long> findMemberIds(long groupId) {
+        return client.sql("SELECT ug.user_id FROM user_groups ug JOIN users u ON u.id = ug.user_id "
+                        + "WHERE ug.group_id = :groupId AND u.deleted_at IS NULL ORDER BY ug.user_id")
+                .bind("groupId", groupId)
+                .map(row -> row.get("user_id", Long.class))
+                .all();
+    }
+
+    /**
+     * Adds the users that are not members yet; ids of existing members are skipped.
+     */
+    public Mono<Long> addMembers(long groupId, Collection<Long> userIds) {
+        return Flux.fromIterable(InLists.chunks(userIds))
+                .concatMap(chunk -> client.sql("INSERT INTO user_groups (group_id, user_id) SELECT :groupId, u.id "
+                                + "FROM users u WHERE u.id IN (:userIds) AND NOT EXISTS "
+                                + "(SELECT 1 FROM user_groups ug WHERE ug.group_id = :groupId AND ug.user_id = u.id)")
+                        .bind("groupId", groupId)
+                        .bind("userIds", chunk)
+                        .fetch().rowsUpdated())
+                .reduce(0L, Long::sum);
+    }
+
+    /**
+     * Removes the given members, leaving a tombstone for each row removed.
+     */
+    public Mono<Long> removeMembers(long groupId, Collection<Long> userIds) {
+        return Flux.fromIterable(InLists.chunks(userIds))
+                .concatMap(chunk -> client.sql("INSERT INTO tombstones (resource_type, external_id, group_external_id) "
+                                + "SELECT 'Member', u.external_id, g.external_id FROM user_groups ug "
+                                + "JOIN users u ON u.id = ug.user_id JOIN groups g ON g.id = ug.group_id "
+                                + "WHERE ug.group_id = :groupId AND ug.user_id IN (:userIds)")
+                        .bind("groupId", groupId)
+                        .bind("userIds", chunk)
+                        .fetch().rowsUpdated()
+                        .then(client.sql("DELETE FROM user_groups WHERE group_id = :groupId AND user_id IN (:userIds)")
+                                .bind("groupId", groupId)
+                                .bind("userIds", chunk)
+                                .fetch().rowsUpdated()))
+                .reduce(0L, Long::sum);
+    }
+
+    /**
+     * Increments the version of every live group the user belongs to, as
+     * {@code GroupMembershipRepository#touchGroupsOf} does, and emits the groups at their new versions.
+     */
+    public Flux<ResourceChange> touchGroupsOf(long userId) {
+        return client.sql("UPDATE groups SET version = version + 1, updated_at = CURRENT_TIMESTAMP WHERE "
+                        + GROUPS_OF_USER)
+                .bind("userId", userId)
+                .fetch().rowsUpdated()
+                .thenMany(Flux.defer(() -> client.sql("SELECT external_id, version FROM groups WHERE " + GROUPS_OF_USER)
+                        .bind("userId", userId)
+                        .map(row -> new ResourceChange(ResourceChange.Type.GROUP,
+                                row.get("external_id", UUID.class).toString(), row.get("version", Long.class)))
+                        .all()));
+    }
+
+    private static GroupRow group(Readable row) {
+        return new GroupRow(
+                row.get("id", Long.class),
+                row.get("external_id", UUID.class).toString(),
+                row.get("display_name", String.class),
+                row.get("created_at", OffsetDateTime.class),
+                row.get("updated_at", OffsetDateTime.class),
+                row.get("version", Long.class));
+    }
+}
@@ -0,0 +1,197 @@
+package com.valura.auth.scim.reactive.repository;
+
+import com.valura.auth.database.entity.ExternalIds;
+import com.valura.auth.database.repository.InLists;
+import com.valura.auth.database.repository.UserPatchRepository.Column;
+import com.valura.auth.database.repository.UserReference;
+import com.valura.auth.scim.filter.SqlFilter;
+import io.r2dbc.spi.Readable;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.r2dbc.core.DatabaseClient.GenericExecuteSpec;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Reads and writes {@code users} through R2DBC, in the same way as the servlet stack's JPA entity and
+ * {@code UserPatchRepository}: soft-deleted rows are invisible, every write bumps {@code version}, and an
+ * update names the versions it may apply to. Inserts take their id from the {@code users_seq} column default.
+ */
+@Repository
+public class ReactiveUserRepository {
+
+    private static final String COLUMNS = "id, external_id, user_name, display_name, first_name, last_name, "
+            + "email, active, created_at, updated_at, version";
+
+    private final DatabaseClient client;
+
+    public ReactiveUserRepository(DatabaseClient client) {
+        this.client = client;
+    }
+
+    public Mono<UserRow> findByExternalId(String externalId) {
+        UUID uuid = ExternalIds.toUuid(externalId);
+        if (uuid == null) {
+            return Mono.empty();
+        }
+        return client.sql("SELECT " + COLUMNS + " FROM users WHERE external_id = :externalId AND deleted_at IS NULL")
+                .bind("externalId", uuid)
+                .map(ReactiveUserRepository::user)
+                .one();
+    }
+
+    public Mono<Long> findVersionByExternalId(String externalId) {
+        UUID uuid = ExternalIds.toUuid(externalId);
+        if (uuid == null) {
+            return Mono.empty();
+        }
+        return client.sql("SELECT version FROM users WHERE external_id = :externalId AND deleted_at IS NULL")
+                .bind("externalId", uuid)
+                .map(row -> row.get("version", Long.class))
+                .one();
+    }
+
+    public Mono<Boolean> existsByUserName(String userName) {
+        if (userName == null) {
+            return Mono.just(false);
+        }
+        return client.sql("SELECT 1 FROM users WHERE user_name = :userName AND deleted_at IS NULL")
+                .bind("userName", userName)
+                .map(row -> true)
+                .first()
+                .defaultIfEmpty(false);
+    }
+
+    /**
+     * Inserts a user with version 0 and returns it as stored.
+     */
+    public Mono<UserRow> insert(String externalId, Map<Column, Object> values) {
+        OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+        String columns = values.keySet().stream().map(Column::getName).collect(Collectors.joining(", "));
+        String binds = values.keySet().stream().map(column -> ":" + column.getName()).collect(Collectors.joining(", "));
+        GenericExecuteSpec spec = client.sql("INSERT INTO users (external_id, created_at, updated_at, version, "
+                        + columns + ") VALUES (:externalId, :now, :now, 0, " + binds + ")")
+                .bind("externalId", UUID.fromString(externalId))
+                .bind("now", now);
+        return bindColumns(spec, values).fetch().rowsUpdated()
+                .then(Mono.defer(() -> findByExternalId(externalId)));
+    }
+
+    /**
+     * Applies {@code changes} to a live user whose version is one of {@code versions} (any when null), and
+     * returns whether a row was updated.
+     */
+    public Mono<Boolean> update(String externalId, long[] versions, Map<Column, Object> changes) {
+        UUID uuid = ExternalIds.toUuid(externalId);
+        if (uuid == null) {
+            return Mono.just(false);
+        }
+        String assignments = changes.keySet().stream()
+                .map(column -> column.getName() + " = :" + column.getName())
+                .collect(Collectors.joining(", "));
+        GenericExecuteSpec spec = client.sql("UPDATE users SET " + assignments
+                        + ", updated_at = :now, version = version + 1 WHERE external_id = :externalId "
+                        + "AND deleted_at IS NULL" + (versions != null ? " AND version IN (:versions)" : ""))
+                .bind("now", OffsetDateTime.now(ZoneOffset.UTC))
+                .bind("externalId", uuid);
+        if (versions != null) {
+            spec = spec.bind("versions", Arrays.stream(versions).boxed().toList());
+        }
+        return bindColumns(spec, changes).fetch().rowsUpdated().map(updated -> updated == 1);
+    }
+
+    /**
+     * Soft-deletes a user, as {@code SoftDeleteRepository} does; false when it was not live.
+     */
+    public Mono<Boolean> markDeleted(long id) {
+        return client.sql("UPDATE users SET deleted_at = CURRENT_TIMESTAMP, updated_at = CURRENT_TIMESTAMP, "
+                        + "version = version + 1 WHERE id = :id AND deleted_at IS NULL")
+                .bind("id", id)
+                .fetch().rowsUpdated()
+                .map(updated -> updated == 1);
+    }
+
+    /**
+     * Deletes a row and its memberships, when soft delete is disabled; false when it did not exist.
+     */
+    public Mono<Boolean> delete(long id) {
+        return client.sql("DELETE FROM user_groups WHERE user_id = :id")
+                .bind("id", id)
+                .fetch().rowsUpdated()
+                .then(client.sql("DELETE FROM users WHERE id = :id")
+                        .bind("id", id)
+                        .fetch().rowsUpdated())
+                .map(deleted -> deleted == 1);
+    }
+
+    /**
+     * Up to {@code limit} live users in id order, after {@code after} when given, skipping {@code offset}.
+     */
+    public Flux<UserRow> findChunk(SqlFilter filter, Long after, long offset, int limit) {
+        GenericExecuteSpec spec = client.sql("SELECT " + COLUMNS + " FROM users" + ListQueries.where(filter, after)
+                        + " ORDER BY id LIMIT :limit OFFSET :offset")
+                .bind("limit", limit)
+                .bind("offset", offset);
+        return ListQueries.bind(spec, filter, after).map(ReactiveUserRepository::user).all();
+    }
+
+    public Mono<Long> count(SqlFilter filter) {
+        return ListQueries.bind(client.sql("SELECT COUNT(*) AS total FROM users" + ListQueries.where(filter, null)),
+                        filter, null)
+                .map(row -> row.get("total", Long.class))
+                .one();
+    }
+
+    /**
+     * The live users among {@code externalIds}, looked up with chunked {@code IN} queries. Ids that are not
+     * UUIDs match nothing.
+     */
+    public Flux<UserReference> findReferences(Collection<String> externalIds) {
+        List<UUID> uuids = externalIds.stream()
+                .map(ExternalIds::toUuid)
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+        return Flux.fromIterable(InLists.chunks(uuids)).concatMap(chunk -> client.sql("SELECT id, external_id, user_name FROM users "
+                                + "WHERE external_id IN (:externalIds) AND deleted_at IS NULL")
+                        .bind("externalIds", chunk)
+                        .map(row -> new UserReference(row.get("id", Long.class),
+                                row.get("external_id", UUID.class).toString(), row.get("user_name", String.class)))
+                        .all());
+    }
+
+    private static GenericExecuteSpec bindColumns(GenericExecuteSpec spec, Map<Column, Object> values) {
+        for (Map.Entry<Column, Object> value : values.entrySet()) {
+            Class<?> type = value.getKey() == Column.ACTIVE ? Boolean.class : String.class;
+            spec = value.getValue() == null
+                    ? spec.bindNull(value.getKey().getName(), type)
+                    : spec.bind(value.getKey().getName(), value.getValue());
+        }
+        return spec;
+    }
+
+    private static UserRow user(Readable row) {
+        return new UserRow(
+                row.get("id", Long.class),
+                row.get("external_id", UUID.class).toString(),
+                row.get("user_name", String.class),
+                row.get("display_name", String.class),
+                row.get("first_name", String.class),
+                row.get("last_name", String.class),
+                row.get("email", String.class),
+                Boolean.TRUE.equals(row.get("active", Boolean.class)),
+                row.get("created_at", OffsetDateTime.class),
+                row.get("updated_at", OffsetDateTime.class),
+                row.get("version", Long.class));
+    }
+}
@@ -0,0 +1,24 @@
+package com.valura.auth.scim.reactive.repository;
+
+import com.valura.auth.scim.mapper.UserView;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+
+/**
+ * A live row of {@code users}.
+ */
+public record UserRow(Long id, String externalId, String userName, String displayName, String firstName,
+                      String lastName, String email, boolean active, OffsetDateTime createdAt,
+                      OffsetDateTime updatedAt, long version) implements UserView {
+
+    @Override
+    public Instant created() {
+        return createdAt != null ? createdAt.toInstant() : null;
+    }
+
+    @Override
+    public Instant lastModified() {
+        return updatedAt != null ? updatedAt.toInstant() : null;
+    }
+}
@@ -0,0 +1,38 @@
+package com.valura.auth.scim.reactive.service;
+
+import com.valura.auth.scim.exception.ScimAuthorizationException;
+import com.valura.auth.scim.service.ScimScopes;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+/**
+ * Scope checks as in {@code ScimAuthorizationService}, reading the authentication from the reactive
+ * security context, since a request is not bound to one thread.
+ */
+@Service
+public class ReactiveAuthorizationService {
+
+    /**
+     * Completes when the caller holds {@code requiredScope} or {@link ScimScopes#SCIM_ADMIN}, and fails with
+     * a {@link ScimAuthorizationException} otherwise.
+     */
+    public Mono<Void> checkPermission(String requiredScope) {
+        return ReactiveSecurityContextHolder.getContext()
+                .map(SecurityContext::getAuthentication)
+                .filter(Authentication::isAuthenticated)
+                .switchIfEmpty(Mono.error(() -> new ScimAuthorizationException("Authentication required.")))
+                .flatMap(authentication -> {
+                    boolean granted = authentication.getAuthorities().stream()
+                            .map(GrantedAuthority::getAuthority)
+                            .anyMatch(scope -> scope.equals(requiredScope) || scope.equals(ScimScopes.SCIM_ADMIN));
+                    return granted
+                            ? Mono.empty()
+                            : Mono.error(new ScimAuthorizationException(
+                                    "Access denied. Missing required scope: " + requiredScope));
+                });
+    }
+}
@@ -0,0 +1,283 @@
+package com.valura.auth.scim.reactive.service;
+
+import com.unboundid.scim2.common.exceptions.BadRequestException;
+import com.unboundid.scim2.common.exceptions.PreconditionFailedException;
+import com.unboundid.scim2.common.exceptions.ResourceConflictException;
+import com.unboundid.scim2.common.exceptions.ResourceNotFoundException;
+import com.unboundid.scim2.common.exceptions.ScimException;
+import com.unboundid.scim2.common.types.GroupResource;
+import com.unboundid.scim2.common.types.Member;
+import com.valura.auth.database.entity.ExternalIds;
+import com.valura.auth.database.repository.ResourceChange;
+import com.valura.auth.database.repository.UserReference;
+import com.valura.auth.scim.filter.FilterAttributes;
+import com.valura.auth.scim.filter.SqlFilter;
+import com.valura.auth.scim.filter.SqlFilterCompiler;
+import com.valura.auth.scim.mapper.ScimResourceMapper;
+import com.valura.auth.scim.model.ScimGroup;
+import com.valura.auth.scim.model.ScimPatchRequest;
+import com.valura.auth.scim.reactive.paging.ReactiveListWriter;
+import com.valura.auth.scim.reactive.repository.GroupRow;
+import com.valura.auth.scim.reactive.repository.Membership;
+import com.valura.auth.scim.reactive.repository.ReactiveChangeRepository;
+import com.valura.auth.scim.reactive.repository.ReactiveGroupRepository;
+import com.valura.auth.scim.reactive.repository.ReactiveUserRepository;
+import com.valura.auth.scim.service.ETags;
+import com.valura.auth.scim.service.GroupPatch;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * The operations of {@code ScimGroupService} on R2DBC. Membership changes touch only the {@code user_groups}
+ * rows that differ, and every write bumps the group's version first, so a concurrent writer fails before any
+ * membership row is changed.
+ */
+@Service
+public class ReactiveGroupService {
+
+    private static final int MAX_REPORTED_MISSING_MEMBERS = 50;
+
+    private final ReactiveGroupRepository groupRepository;
+    private final ReactiveUserRepository userRepository;
+    private final ReactiveChangeRepository changeRepository;
+    private final ReactiveListWriter listWriter;
+    private final SqlFilterCompiler filterCompiler;
+    private final boolean softDelete;
+
+    public ReactiveGroupService(ReactiveGroupRepository groupRepository, ReactiveUserRepository userRepository,
+                                ReactiveChangeRepository changeRepository, ReactiveListWriter listWriter,
+                                SqlFilterCompiler filterCompiler,
+                                @Value("${scim.soft-delete.enabled:false}") boolean softDelete) {
+        this.groupRepository = groupRepository;
+        this.userRepository = userRepository;
+        this.changeRepository = changeRepository;
+        this.listWriter = listWriter;
+        this.filterCompiler = filterCompiler;
+        this.softDelete = softDelete;
+    }
+
+    @Transactional
+    public Mono<GroupResource> create(GroupResource group) {
+        String id = ExternalIds.next();
+        return resolveMembers(memberValues(group.getMembers()))
+                .flatMap(members -> groupRepository.insert(id, group.getDisplayName())
+                        .onErrorMap(DuplicateKeyException.class, e -> conflict())
+                        .flatMap(row -> groupRepository.addMembers(row.id(), memberIds(members))
+                                .then(changeRepository.appendOutbox("Group", "create", id, row.version()))
+                                .thenReturn(ScimResourceMapper.toScimGroup(row, members))));
+    }
+
+    @Transactional(readOnly = true)
+    public Mono<GroupResource> get(String id) {
+        return groupRepository.findByExternalId(id)
+                .switchIfEmpty(Mono.error(() -> new ResourceNotFoundException("Group not found")))
+                .flatMap(row -> groupRepository.findMembers(List.of(row.id()))
+                        .map(Membership::user)
+                        .collectList()
+                        .map(members -> ScimResourceMapper.toScimGroup(row, members)));
+    }
+
+    /**
+     * Emits the current ETag if {@code ifNoneMatch} names it, reading only the version column.
+     */
+    @Transactional(readOnly = true)
+    public Mono<String> matchingETag(String id, String ifNoneMatch) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return Mono.empty();
+        }
+        return groupRepository.findVersionByExternalId(id)
+                .filter(version -> ETags.matches(ifNoneMatch, version))
+                .map(ETags::of);
+    }
+
+    @Transactional
+    public Mono<GroupResource> replace(String id, GroupResource group, String ifMatch) {
+        return checkedGroup(id, ifMatch)
+                .flatMap(current -> resolveMembers(memberValues(group.getMembers()))
+                        .flatMap(members -> updateGroup(current, group.getDisplayName(), ifMatch)
+                                .then(groupRepository.findMemberIds(current.id()).collectList())
+                                .flatMap(currentIds -> updateMembers(current.id(), currentIds, memberIds(members)))
+                                .then(written(id, "replace"))
+                                .map(row -> ScimResourceMapper.toScimGroup(row, members))));
+    }
+
+    /**
+     * Applies a PATCH request and emits the new ETag, as {@code ScimGroupService#patch} does: only the
+     * members named in the request are read and written, except for a member replacement.
+     */
+    @Transactional
+    public Mono<String> patch(String id, ScimPatchRequest<ScimGroup.PatchOp> request, String ifMatch) {
+        GroupPatch patch;
+        try {
+            patch = GroupPatch.of(request.getOperations());
+        } catch (ScimException e) {
+            return Mono.error(e);
+        }
+        return checkedGroup(id, ifMatch)
+                .flatMap(current -> {
+                    if (!patch.changesMembers()) {
+                        return updateGroup(current, patch.getDisplayName(), ifMatch);
+                    }
+                    long groupId = current.id();
+                    return resolveMembers(patch.getAddedMembers())
+                            .flatMap(added -> updateGroup(current, patch.getDisplayName(), ifMatch)
+                                    .then(patch.isReplaceMembers()
+                                            ? groupRepository.findMemberIds(groupId).collectList()
+                                                    .flatMap(currentIds -> updateMembers(groupId, currentIds, memberIds(added)))
+                                            // removing a user that is not a member, or no longer exists, is not an error
+                                            : userRepository.findReferences(patch.getRemovedMembers())
+                                                    .map(UserReference::id)
+                                                    .collectList()
+                                                    .flatMap(removed -> groupRepository.removeMembers(groupId, removed))
+                                                    .then(groupRepository.addMembers(groupId, memberIds(added)))
+                                                    .then()));
+                })
+                .then(Mono.defer(() -> written(id, "patch")))
+                .map(row -> ETags.of(row.version()));
+    }
+
+    @Transactional
+    public Mono<Void> delete(String id) {
+        return groupRepository.findByExternalId(id)
+                .switchIfEmpty(Mono.error(() -> new ResourceNotFoundException("Group not found")))
+                .flatMap(group -> softDelete ? groupRepository.markDeleted(group.id()) : groupRepository.delete(group.id()))
+                .flatMap(deleted -> deleted
+                        ? Mono.<Void>empty()
+                        : Mono.error(new ResourceNotFoundException("Group not found")))
+                .then(Mono.defer(() -> changeRepository.recordDeletion("Group", id)))
+                .then(Mono.defer(() -> changeRepository.appendOutbox("Group", "delete", id, null)))
+                .then(Mono.defer(() -> changeRepository.notifyChanged(
+                        new ResourceChange(ResourceChange.Type.GROUP, id, null))));
+    }
+
+    /**
+     * Streams one page of groups as a ListResponse; see {@link ReactiveListWriter}. Members are loaded with
+     * one query per chunk of groups.
+     */
+    public Flux<DataBuffer> list(Integer startIndex, Integer count, String filter, String cursor,
+                                 DataBufferFactory buffers) throws BadRequestException {
+        SqlFilter where = filterCompiler.toSql(filter, FilterAttributes.GROUP);
+        return listWriter.body(new ReactiveListWriter.ListSource<>() {
+                    @Override
+                    public Flux<GroupRow> chunk(Long after, long offset, int limit) {
+                        return groupRepository.findChunk(where, after, offset, limit);
+                    }
+
+                    @Override
+                    public Mono<Long> count() {
+                        return groupRepository.count(where);
+                    }
+                }, GroupRow::id, this::toScimGroups,
+                startIndex, count, cursor, buffers);
+    }
+
+    private Mono<List<?>> toScimGroups(List<GroupRow> groups) {
+        return groupRepository.findMembers(groups.stream().map(GroupRow::id).toList())
+                .collectMultimap(Membership::groupId, Membership::user)
+                .map(members -> groups.stream()
+                        .map(row -> ScimResourceMapper.toScimGroup(row, new ArrayList<>(members.getOrDefault(row.id(), List.of()))))
+                        .collect(Collectors.toList()));
+    }
+
+    /**
+     * The live group, after checking {@code ifMatch} against its version.
+     */
+    private Mono<GroupRow> checkedGroup(String id, String ifMatch) {
+        return groupRepository.findByExternalId(id)
+                .switchIfEmpty(Mono.error(() -> new ResourceNotFoundException("Group not found")))
+                .flatMap(current -> {
+                    try {
+                        ETags.check(ifMatch, current.version());
+                    } catch (PreconditionFailedException e) {
+                        return Mono.error(e);
+                    }
+                    return Mono.just(current);
+                });
+    }
+
+    /**
+     * Bumps the version the group was read at; a concurrent write fails it.
+     */
+    private Mono<Void> updateGroup(GroupRow current, String displayName, String ifMatch) {
+        return groupRepository.update(current.id(), current.version(), displayName)
+                .onErrorMap(DuplicateKeyException.class, e -> conflict())
+                .flatMap(updated -> updated
+                        ? Mono.<Void>empty()
+                        : Mono.error(ETags.concurrentChange(ifMatch)));
+    }
+
+    private Mono<Void> updateMembers(long groupId, List<Long> currentIds, Collection<Long> newIds) {
+        Set<Long> removed = new LinkedHashSet<>(currentIds);
+        removed.removeAll(newIds);
+        Set<Long> added = new LinkedHashSet<>(newIds);
+        added.removeAll(new HashSet<>(currentIds));
+        return groupRepository.removeMembers(groupId, removed)
+                .then(groupRepository.addMembers(groupId, added))
+                .then();
+    }
+
+    private Mono<GroupRow> written(String id, String operation) {
+        return groupRepository.findByExternalId(id)
+                .flatMap(row -> changeRepository.appendOutbox("Group", operation, id, row.version())
+                        .then(changeRepository.notifyChanged(
+                                new ResourceChange(ResourceChange.Type.GROUP, id, row.version())))
+                        .thenReturn(row));
+    }
+
+    private static List<String> memberValues(List<Member> members) {
+        if (members == null) {
+            return List.of();
+        }
+        return members.stream().map(Member::getValue).collect(Collectors.toList());
+    }
+
+    /**
+     * Loads the users with the given ids and reports every unknown id in one error rather than failing on the
+     * first. The result is ordered by user id and free of duplicates.
+     */
+    private Mono<List<UserReference>> resolveMembers(Collection<String> externalIds) {
+        return userRepository.findReferences(externalIds)
+                .collectSortedList(Comparator.comparing(UserReference::id))
+                .flatMap(users -> {
+                    Set<String> found = users.stream().map(UserReference::externalId).collect(Collectors.toSet());
+                    List<String> missing = externalIds.stream()
+                            .filter(value -> !found.contains(value))
+                            .distinct()
+                            .collect(Collectors.toList());
+                    return missing.isEmpty()
+                            ? Mono.just(users)
+                            : Mono.error(new ResourceNotFoundException("Users not found: " + describe(missing)));
+                });
+    }
+
+    private static String describe(List<String> missing) {
+        if (missing.size() <= MAX_REPORTED_MISSING_MEMBERS) {
+            return String.join(", ", missing);
+        }
+        return String.join(", ", missing.subList(0, MAX_REPORTED_MISSING_MEMBERS))
+                + " and " + (missing.size() - MAX_REPORTED_MISSING_MEMBERS) + " more";
+    }
+
+    private static List<Long> memberIds(List<UserReference> members) {
+        return members.stream().map(UserReference::id).collect(Collectors.toList());
+    }
+
+    private static ResourceConflictException conflict() {
+        return new ResourceConflictException("Group display name already exists", "uniqueness", null);
+    }
+}
@@ -0,0 +1,241 @@
+package com.valura.auth.scim.reactive.service;
+
+import com.unboundid.scim2.common.exceptions.BadRequestException;
+import com.unboundid.scim2.common.exceptions.PreconditionFailedException;
+import com.unboundid.scim2.common.exceptions.ResourceConflictException;
+import com.unboundid.scim2.common.exceptions.ResourceNotFoundException;
+import com.unboundid.scim2.common.exceptions.ScimException;
+import com.unboundid.scim2.common.types.UserResource;
+import com.valura.auth.database.entity.ExternalIds;
+import com.valura.auth.database.repository.ResourceChange;
+import com.valura.auth.database.repository.UserPatchRepository.Column;
+import com.valura.auth.scim.filter.FilterAttributes;
+import com.valura.auth.scim.filter.SqlFilter;
+import com.valura.auth.scim.filter.SqlFilterCompiler;
+import com.valura.auth.scim.mapper.ScimResourceMapper;
+import com.valura.auth.scim.model.ScimPatchRequest;
+import com.valura.auth.scim.model.ScimUser;
+import com.valura.auth.scim.reactive.paging.ReactiveListWriter;
+import com.valura.auth.scim.reactive.repository.ReactiveChangeRepository;
+import com.valura.auth.scim.reactive.repository.ReactiveGroupRepository;
+import com.valura.auth.scim.reactive.repository.ReactiveUserRepository;
+import com.valura.auth.scim.reactive.repository.UserRow;
+import com.valura.auth.scim.service.ETags;
+import com.valura.auth.scim.service.UserPatch;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The operations of {@code ScimUserService} on R2DBC. Writes run in one reactive transaction each and leave
+ * the same version bumps, tombstones, outbox events and notifications behind as the servlet stack, so both
+ * can serve the same database.
+ */
+@Service
+public class ReactiveUserService {
+
+    private final ReactiveUserRepository userRepository;
+    private final ReactiveGroupRepository groupRepository;
+    private final ReactiveChangeRepository changeRepository;
+    private final ReactiveListWriter listWriter;
+    private final SqlFilterCompiler filterCompiler;
+    private final boolean softDelete;
+
+    public ReactiveUserService(ReactiveUserRepository userRepository, ReactiveGroupRepository groupRepository,
+                               ReactiveChangeRepository changeRepository, ReactiveListWriter listWriter,
+                               SqlFilterCompiler filterCompiler,
+                               @Value("${scim.soft-delete.enabled:false}") boolean softDelete) {
+        this.userRepository = userRepository;
+        this.groupRepository = groupRepository;
+        this.changeRepository = changeRepository;
+        this.listWriter = listWriter;
+        this.filterCompiler = filterCompiler;
+        this.softDelete = softDelete;
+    }
+
+    @Transactional
+    public Mono<UserResource> create(UserResource user) {
+        String id = ExternalIds.next();
+        return userRepository.existsByUserName(user.getUserName())
+                .flatMap(exists -> exists
+                        ? Mono.<UserRow>error(new ResourceConflictException("Username already exists", "uniqueness", null))
+                        : userRepository.insert(id, columns(user)))
+                .onErrorMap(DuplicateKeyException.class, e -> conflict())
+                .flatMap(row -> changeRepository.appendOutbox("User", "create", id, row.version())
+                        .thenReturn(ScimResourceMapper.toScimUser(row)));
+    }
+
+    @Transactional(readOnly = true)
+    public Mono<UserResource> get(String id) {
+        return userRepository.findByExternalId(id)
+                .switchIfEmpty(Mono.error(() -> new ResourceNotFoundException("User not found")))
+                .map(ScimResourceMapper::toScimUser);
+    }
+
+    /**
+     * Emits the current ETag if {@code ifNoneMatch} names it, reading only the version column.
+     */
+    @Transactional(readOnly = true)
+    public Mono<String> matchingETag(String id, String ifNoneMatch) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return Mono.empty();
+        }
+        return userRepository.findVersionByExternalId(id)
+                .filter(version -> ETags.matches(ifNoneMatch, version))
+                .map(ETags::of);
+    }
+
+    @Transactional
+    public Mono<UserResource> replace(String id, UserResource user, String ifMatch) {
+        return userRepository.findByExternalId(id)
+                .switchIfEmpty(Mono.error(() -> new ResourceNotFoundException("User not found")))
+                .flatMap(current -> {
+                    try {
+                        ETags.check(ifMatch, current.version());
+                    } catch (PreconditionFailedException e) {
+                        return Mono.error(e);
+                    }
+                    boolean renamed = !Objects.equals(current.userName(), user.getUserName());
+                    // conditional on the version just checked; a concurrent write fails it
+                    return userRepository.update(id, new long[]{current.version()}, columns(user))
+                            .onErrorMap(DuplicateKeyException.class, e -> conflict())
+                            .flatMap(updated -> updated
+                                    ? written(id, "replace", renamed)
+                                    : Mono.error(ETags.concurrentChange(ifMatch)));
+                });
+    }
+
+    /**
+     * Applies a PATCH request with one conditional {@code UPDATE}, as {@code ScimUserService#patch} does.
+     */
+    @Transactional
+    public Mono<UserResource> patch(String id, ScimPatchRequest<ScimUser.PatchOp> request, String ifMatch) {
+        Map<Column, Object> changes;
+        long[] versions;
+        try {
+            changes = UserPatch.of(request.getOperations()).getChanges();
+            versions = ETags.versions(ifMatch);
+        } catch (ScimException e) {
+            return Mono.error(e);
+        }
+        if (changes.isEmpty()) {
+            return userRepository.findByExternalId(id)
+                    .switchIfEmpty(Mono.error(() -> new ResourceNotFoundException("User not found")))
+                    .flatMap(current -> {
+                        try {
+                            ETags.check(ifMatch, current.version());
+                        } catch (PreconditionFailedException e) {
+                            return Mono.error(e);
+                        }
+                        return Mono.just(ScimResourceMapper.toScimUser(current));
+                    });
+        }
+        return userRepository.update(id, versions, changes)
+                .onErrorMap(DuplicateKeyException.class, e -> conflict())
+                .flatMap(updated -> {
+                    if (updated) {
+                        return written(id, "patch", changes.containsKey(Column.USER_NAME));
+                    }
+                    return userRepository.findVersionByExternalId(id)
+                            .flatMap(version -> Mono.<UserResource>error(versions != null
+                                    ? new PreconditionFailedException("ETag mismatch")
+                                    : new ResourceNotFoundException("User not found")))
+                            .switchIfEmpty(Mono.error(() -> new ResourceNotFoundException("User not found")));
+                });
+    }
+
+    @Transactional
+    public Mono<Void> delete(String id) {
+        return userRepository.findByExternalId(id)
+                .switchIfEmpty(Mono.error(() -> new ResourceNotFoundException("User not found")))
+                .flatMap(user -> groupsChanged(user.id())
+                        .then(softDelete ? userRepository.markDeleted(user.id()) : userRepository.delete(user.id())))
+                .flatMap(deleted -> deleted
+                        ? Mono.<Void>empty()
+                        : Mono.error(new ResourceNotFoundException("User not found")))
+                .then(Mono.defer(() -> changeRepository.recordDeletion("User", id)))
+                .then(Mono.defer(() -> changeRepository.appendOutbox("User", "delete", id, null)))
+                .then(Mono.defer(() -> changeRepository.notifyChanged(
+                        new ResourceChange(ResourceChange.Type.USER, id, null))));
+    }
+
+    /**
+     * Streams one page of users as a ListResponse; see {@link ReactiveListWriter}.
+     */
+    public Flux<DataBuffer> list(Integer startIndex, Integer count, String filter, String cursor,
+                                 DataBufferFactory buffers) throws BadRequestException {
+        SqlFilter where = filterCompiler.toSql(filter, FilterAttributes.USER);
+        return listWriter.body(new ReactiveListWriter.ListSource<>() {
+                    @Override
+                    public Flux<UserRow> chunk(Long after, long offset, int limit) {
+                        return userRepository.findChunk(where, after, offset, limit);
+                    }
+
+                    @Override
+                    public Mono<Long> count() {
+                        return userRepository.count(where);
+                    }
+                }, UserRow::id,
+                users -> Mono.just(users.stream().map(ScimResourceMapper::toScimUser).toList()),
+                startIndex, count, cursor, buffers);
+    }
+
+    /**
+     * Records a write to a user; {@code renamed} when its {@code userName} may have changed, which its
+     * groups show as the display of their members.
+     */
+    private Mono<UserResource> written(String id, String operation, boolean renamed) {
+        return userRepository.findByExternalId(id)
+                .flatMap(row -> (renamed ? groupsChanged(row.id()) : Mono.<Void>empty())
+                        .then(changeRepository.appendOutbox("User", operation, id, row.version()))
+                        .then(changeRepository.notifyChanged(
+                                new ResourceChange(ResourceChange.Type.USER, id, row.version())))
+                        .thenReturn(ScimResourceMapper.toScimUser(row)));
+    }
+
+    /**
+     * Moves the groups of a user to a new version, so that their ETags cover the member it is about to
+     * rename or remove.
+     */
+    private Mono<Void> groupsChanged(long userId) {
+        return groupRepository.touchGroupsOf(userId)
+                .concatMap(changeRepository::notifyChanged)
+                .then();
+    }
+
+    private static ResourceConflictException conflict() {
+        return new ResourceConflictException("Username or email already exists", "uniqueness", null);
+    }
+
+    /**
+     * The columns a create or replace writes, as {@code ScimUserService} copies them to the entity: a missing
+     * email or name part leaves the stored one in place.
+     */
+    private static Map<Column, Object> columns(UserResource user) {
+        Map<Column, Object> columns = new EnumMap<>(Column.class);
+        columns.put(Column.USER_NAME, user.getUserName());
+        columns.put(Column.DISPLAY_NAME, user.getDisplayName());
+        columns.put(Column.ACTIVE, Boolean.TRUE.equals(user.getActive()));
+        if (user.getEmails() != null && !user.getEmails().isEmpty()) {
+            columns.put(Column.EMAIL, user.getEmails().get(0).getValue());
+        }
+        if (user.getName() != null) {
+            if (user.getName().getGivenName() != null) {
+                columns.put(Column.FIRST_NAME, user.getName().getGivenName());
+            }
+            if (user.getName().getFamilyName() != null) {
+                columns.put(Column.LAST_NAME, user.getName().getFamilyName());
+            }
+        }
+        return columns;
+    }
+}
@@ -0,0 +1,258 @@
+package com.valura.auth.scim.reactive.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.valura.auth.scim.reactive.ReactiveScimApplication;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(classes = {ReactiveScimApplication.class, ReactiveScimControllerTest.Tokens.class},
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {
+                "spring.main.web-application-type=reactive",
+                "spring.main.allow-bean-definition-overriding=true",
+                "spring.r2dbc.url=r2dbc:h2:mem:///reactive-scim;DB_CLOSE_DELAY=-1",
+                "spring.flyway.url=jdbc:h2:mem:reactive-scim;DB_CLOSE_DELAY=-1",
+                "spring.security.oauth2.resourceserver.jwt.issuer-uri=https://issuer.invalid/",
+                "scim.list.streaming.fetch-size=2",
+                "scim.outbox.enabled=true"
+        })
+class ReactiveScimControllerTest {
+
+    @TestConfiguration
+    static class Tokens {
+
+        /**
+         * Accepts any bearer token, reading its scopes from the token itself with dots for colons,
+         * e.g. {@code scim.users.read}.
+         */
+        @Bean
+        ReactiveJwtDecoder jwtDecoder() {
+            return token -> Mono.just(Jwt.withTokenValue(token)
+                    .header("alg", "none")
+                    .subject("test")
+                    .claim("scope", token.replace('.', ':'))
+                    .issuedAt(Instant.now())
+                    .expiresAt(Instant.now().plusSeconds(3600))
+                    .build());
+        }
+    }
+
+    @Autowired
+    private WebTestClient client;
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    @Test
+    void createsReadsAndPatchesAUser() {
+        JsonNode created = create("Users", user("bjensen"));
+        String id = created.get("id").asText();
+        assertEquals("W/\"0\"", created.at("/meta/version").asText());
+
+        client.get().uri("/scim/v2/Users/{id}", id)
+                .header(HttpHeaders.AUTHORIZATION, "Bearer scim.users.read")
+                .header(HttpHeaders.IF_NONE_MATCH, "W/\"0\"")
+                .exchange()
+                .expectStatus().isNotModified();
+
+        JsonNode patched = client.patch().uri("/scim/v2/Users/{id}", id)
+                .header(HttpHeaders.AUTHORIZATION, "Bearer scim.admin")
+                .header(HttpHeaders.IF_MATCH, "W/\"0\"")
+                .bodyValue(Map.of("schemas", List.of("urn:ietf:params:scim:api:messages:2.0:PatchOp"),
+                        "Operations", List.of(Map.of("op", "replace", "path", "name.givenName", "value", "Barbara"))))
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "W/\"1\"")
+                .expectBody(JsonNode.class).returnResult().getResponseBody();
+        assertEquals("Barbara", patched.at("/name/givenName").asText());
+
+        client.put().uri("/scim/v2/Users/{id}", id)
+                .header(HttpHeaders.AUTHORIZATION, "Bearer scim.admin")
+                .header(HttpHeaders.IF_MATCH, "W/\"0\"")
+                .bodyValue(user("bjensen"))
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.PRECONDITION_FAILED);
+
+        client.post().uri("/scim/v2/Users")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer scim.admin")
+                .bodyValue(user("bjensen"))
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.CONFLICT)
+                .expectBody().jsonPath("$.scimType").isEqualTo("uniqueness");
+
+        assertEquals(List.of("create", "patch"), databaseClient
+                .sql("SELECT operation FROM outbox_events WHERE resource_id = :id ORDER BY id")
+                .bind("id", UUID.fromString(id))
+                .map(row -> row.get("operation", String.class))
+                .all().collectList().block());
+    }
+
+    @Test
+    void changesGroupMembers() {
+        String alice = create("Users", user("alice")).get("id").asText();
+        String bob = create("Users", user("bob")).get("id").asText();
+        JsonNode group = create("Groups", Map.of("schemas", List.of("urn:ietf:params:scim:schemas:core:2.0:Group"),
+                "displayName", "engineering", "members", List.of(Map.of("value", alice), Map.of("value", bob))));
+        String id = group.get("id").asText();
+        assertEquals(2, group.get("members").size());
+
+        client.patch().uri("/scim/v2/Groups/{id}", id)
+                .header(HttpHeaders.AUTHORIZATION, "Bearer scim.groups.write")
+                .bodyValue(Map.of("schemas", List.of("urn:ietf:params:scim:api:messages:2.0:PatchOp"),
+                        "Operations", List.of(Map.of("op", "remove", "path", "members[value eq \"" + alice + "\"]"))))
+                .exchange()
+                .expectStatus().isNoContent()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "W/\"1\"");
+
+        client.get().uri("/scim/v2/Groups/{id}", id)
+                .header(HttpHeaders.AUTHORIZATION, "Bearer scim.groups.read")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.members.length()").isEqualTo(1)
+                .jsonPath("$.members[0].value").isEqualTo(bob);
+
+        String missing = UUID.randomUUID().toString();
+        client.put().uri("/scim/v2/Groups/{id}", id)
+                .header(HttpHeaders.AUTHORIZATION, "Bearer scim.admin")
+                .bodyValue(Map.of("displayName", "engineering", "members", List.of(Map.of("value", missing))))
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody().jsonPath("$.detail").isEqualTo("Users not found: " + missing);
+    }
+
+    @Test
+    void streamsListPagesByIndexAndCursor() {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            ids.add(create("Users", user("list-" + i)).get("id").asText());
+        }
+
+        JsonNode filtered = list("/scim/v2/Users?filter=userName eq \"list-3\"");
+        assertEquals(1, filtered.get("totalResults").asInt());
+        assertEquals(ids.get(3), filtered.at("/Resources/0/id").asText());
+
+        JsonNode all = list("/scim/v2/Users?filter=userName sw \"list\"&count=1");
+        assertEquals(5, all.get("totalResults").asInt());
+        assertEquals(1, all.get("Resources").size());
+
+        List<String> paged = new ArrayList<>();
+        String cursor = "";
+        do {
+            JsonNode page = list("/scim/v2/Users?count=3&cursor=" + cursor);
+            page.get("Resources").forEach(resource -> paged.add(resource.get("id").asText()));
+            cursor = page.hasNonNull("nextCursor") ? page.get("nextCursor").asText() : null;
+        } while (cursor != null);
+        assertTrue(paged.containsAll(ids));
+        assertEquals(paged.size(), paged.stream().distinct().count());
+    }
+
+    @Test
+    void filtersListsWithTheFullGrammar() {
+        String ann = create("Users", user("grammar-ann")).get("id").asText();
+        String ben = create("Users", user("grammar-ben")).get("id").asText();
+        create("Users", user("grammar-cid"));
+        String group = create("Groups", Map.of("schemas", List.of("urn:ietf:params:scim:schemas:core:2.0:Group"),
+                "displayName", "grammar", "members", List.of(Map.of("value", ann)))).get("id").asText();
+
+        JsonNode users = list("/scim/v2/Users?filter=(userName co \"AMMAR-\" and not (userName ew \"cid\"))"
+                + " or emails.value eq \"nobody@example.com\"");
+        assertEquals(2, users.get("totalResults").asInt());
+        assertEquals(ann, users.at("/Resources/0/id").asText());
+        assertEquals(ben, users.at("/Resources/1/id").asText());
+
+        JsonNode mixedCase = list("/scim/v2/Users?filter=userName eq \"Grammar-ANN\"");
+        assertEquals(1, mixedCase.get("totalResults").asInt());
+        assertEquals(ann, mixedCase.at("/Resources/0/id").asText());
+
+        JsonNode members = list("/scim/v2/Users?filter=groups[display eq \"grammar\"] and meta.created pr");
+        assertEquals(1, members.get("totalResults").asInt());
+        assertEquals(ann, members.at("/Resources/0/id").asText());
+
+        JsonNode groups = list("/scim/v2/Groups?filter=members.value eq \"" + ann + "\"", "scim.groups.read");
+        assertEquals(1, groups.get("totalResults").asInt());
+        assertEquals(group, groups.at("/Resources/0/id").asText());
+
+        JsonNode invalid = list("/scim/v2/Users?filter=active gt true");
+        assertEquals("invalidFilter", invalid.get("scimType").asText());
+    }
+
+    @Test
+    void deletesAUser() {
+        String id = create("Users", user("deleted")).get("id").asText();
+
+        client.delete().uri("/scim/v2/Users/{id}", id)
+                .header(HttpHeaders.AUTHORIZATION, "Bearer scim.users.delete")
+                .exchange()
+                .expectStatus().isNoContent();
+
+        client.get().uri("/scim/v2/Users/{id}", id)
+                .header(HttpHeaders.AUTHORIZATION, "Bearer scim.users.read")
+                .exchange()
+                .expectStatus().isNotFound();
+        assertEquals(1L, databaseClient.sql("SELECT COUNT(*) AS total FROM tombstones WHERE external_id = :id")
+                .bind("id", UUID.fromString(id))
+                .map(row -> row.get("total", Long.class))
+                .one().block());
+    }
+
+    @Test
+    void requiresATokenWithTheScope() {
+        client.get().uri("/scim/v2/Users")
+                .exchange()
+                .expectStatus().isUnauthorized()
+                .expectBody().jsonPath("$.scimType").isEqualTo("invalidToken");
+
+        client.get().uri("/scim/v2/Users")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer scim.groups.read")
+                .exchange()
+                .expectStatus().isForbidden()
+                .expectBody().jsonPath("$.scimType").isEqualTo("insufficientPrivileges");
+    }
+
+    private static Map<String, Object> user(String userName) {
+        return Map.of("schemas", List.of("urn:ietf:params:scim:schemas:core:2.0:User"),
+                "userName", userName,
+                "active", true,
+                "emails", List.of(Map.of("value", userName + "@example.com")));
+    }
+
+    private JsonNode create(String resource, Map<String, Object> body) {
+        return client.post().uri("/scim/v2/" + resource)
+                .header(HttpHeaders.AUTHORIZATION, "Bearer scim.admin")
+                .bodyValue(body)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectHeader().exists(HttpHeaders.ETAG)
+                .expectBody(JsonNode.class).returnResult().getResponseBody();
+    }
+
+    private JsonNode list(String uri) {
+        return list(uri, "scim.users.read");
+    }
+
+    private JsonNode list(String uri, String token) {
+        return client.get().uri(uri)
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                .exchange()
+                .expectBody(JsonNode.class).returnResult().getResponseBody();
+    }
+}
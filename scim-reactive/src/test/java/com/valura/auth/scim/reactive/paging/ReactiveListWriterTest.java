@@ -0,0 +1,123 @@
+package com.valura.auth.scim.reactive.paging;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.unboundid.scim2.common.exceptions.BadRequestException;
+import com.valura.auth.scim.paging.ListCursor;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReactiveListWriterTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ReactiveListWriter writer = new ReactiveListWriter(objectMapper, 3);
+    private final List<String> queries = new ArrayList<>();
+
+    /**
+     * Ids 1 to {@code size}, recording every query when it runs.
+     */
+    private ReactiveListWriter.ListSource<Long> rows(long size) {
+        return new ReactiveListWriter.ListSource<>() {
+            @Override
+            public Flux<Long> chunk(Long after, long offset, int limit) {
+                return Flux.defer(() -> {
+                    queries.add("chunk " + after + " " + offset + " " + limit);
+                    return Flux.fromStream(LongStream.rangeClosed(1, size).boxed())
+                            .filter(id -> after == null || id > after)
+                            .skip(offset)
+                            .take(limit);
+                });
+            }
+
+            @Override
+            public Mono<Long> count() {
+                return Mono.fromSupplier(() -> {
+                    queries.add("count");
+                    return size;
+                });
+            }
+        };
+    }
+
+    private Flux<DataBuffer> body(long size, Integer startIndex, Integer count, String cursor) throws BadRequestException {
+        return writer.body(rows(size), Long::longValue,
+                ids -> Mono.just(ids.stream().map(id -> Map.of("id", id)).toList()),
+                startIndex, count, cursor, DefaultDataBufferFactory.sharedInstance);
+    }
+
+    private JsonNode read(Flux<DataBuffer> body) throws Exception {
+        String json = body.map(buffer -> buffer.toString(StandardCharsets.UTF_8)).collect(StringBuilder::new,
+                StringBuilder::append).block().toString();
+        return objectMapper.readTree(json);
+    }
+
+    @Test
+    void readsAPageInChunksThatSeekPastTheLastId() throws Exception {
+        JsonNode page = read(body(10, 3, 7, null));
+
+        assertEquals(List.of(3L, 4L, 5L, 6L, 7L, 8L, 9L), ids(page));
+        assertEquals(10, page.get("totalResults").asInt());
+        assertEquals(3, page.get("startIndex").asInt());
+        assertEquals(7, page.get("itemsPerPage").asInt());
+        assertEquals(List.of("chunk null 2 3", "chunk 5 0 3", "chunk 8 0 1", "count"), queries);
+    }
+
+    @Test
+    void aShortPageIsNotCounted() throws Exception {
+        JsonNode page = read(body(4, null, null, null));
+
+        assertEquals(List.of(1L, 2L, 3L, 4L), ids(page));
+        assertEquals(4, page.get("totalResults").asInt());
+        assertFalse(queries.contains("count"));
+    }
+
+    @Test
+    void cursorPagesEndWithTheNextCursor() throws Exception {
+        JsonNode first = read(body(5, null, 3, ""));
+        assertEquals(List.of(1L, 2L, 3L), ids(first));
+        assertNull(first.get("startIndex"));
+        assertEquals(ListCursor.encode(3), first.get("nextCursor").asText());
+
+        JsonNode second = read(body(5, null, 3, first.get("nextCursor").asText()));
+        assertEquals(List.of(4L, 5L), ids(second));
+        assertEquals(5, second.get("totalResults").asInt());
+        assertNull(second.get("nextCursor"));
+    }
+
+    @Test
+    void readsChunksAsTheClientAsksForThem() throws Exception {
+        StepVerifier.create(body(100, null, 100, null), 2)
+                .expectNextCount(2)
+                .then(() -> assertTrue(queries.size() <= 2, queries::toString))
+                .thenRequest(1)
+                .expectNextCount(1)
+                .then(() -> assertTrue(queries.size() <= 3, queries::toString))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void rejectsABadCursorBeforeStreaming() {
+        BadRequestException e = assertThrows(BadRequestException.class, () -> body(5, null, 3, "bm90LWEtY3Vyc29y"));
+        assertEquals(ListCursor.INVALID_CURSOR, e.getScimError().getScimType());
+        assertTrue(queries.isEmpty());
+    }
+
+    private static List<Long> ids(JsonNode page) {
+        List<Long> ids = new ArrayList<>();
+        page.get("Resources").forEach(resource -> ids.add(resource.get("id").asLong()));
+        return ids;
+    }
+}
@@ -13,6 +13,10 @@ dependencies {
 
     implementation("org.springframework.boot:spring-boot-starter-validation")
 
+    implementation("org.springframework.boot:spring-boot-starter-actuator")
+
+    implementation("com.github.ben-manes.caffeine:caffeine")
+
     testImplementation("org.springframework.boot:spring-boot-starter-test")
 
     testImplementation(platform("org.junit:junit-bom:5.10.0"))
@@ -27,9 +31,36 @@ dependencies {
     testImplementation(platform("org.junit:junit-bom:5.10.0"))
     testImplementation("org.testng:testng:7.8.0")
 
+    testRuntimeOnly("com.h2database:h2")
+
 }
 
 
+// Benchmarks are tagged and only run on request: ./gradlew :scim:benchmark
+// (-Dbenchmark.url/-Dbenchmark.username/-Dbenchmark.password point them at a PostgreSQL database).
+tasks.test {
+    useJUnitPlatform {
+        excludeTags("benchmark")
+    }
+}
+
+tasks.register<Test>("benchmark") {
+    description = "Runs the HTTP benchmarks."
+    group = "verification"
+    testClassesDirs = sourceSets.test.get().output.classesDirs
+    classpath = sourceSets.test.get().runtimeClasspath
+    useJUnitPlatform {
+        includeTags("benchmark")
+    }
+    // logs each virtual thread that blocks while pinned to its carrier
+    jvmArgs("-Djdk.tracePinnedThreads=short")
+    systemProperties(System.getProperties().filterKeys { it.toString().startsWith("benchmark.") }
+        .mapKeys { it.key.toString() })
+    testLogging {
+        showStandardStreams = true
+    }
+    outputs.upToDateWhen { false }
+}
 
 tasks.bootJar {
 
@@ -0,0 +1,331 @@
+package com.valura.auth.scim.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.valura.auth.database.config.ResourceChangeHandler;
+import com.valura.auth.database.entity.ExternalIds;
+import com.valura.auth.database.entity.GroupEntity;
+import com.valura.auth.database.entity.UserEntity;
+import com.valura.auth.database.repository.GroupRepository;
+import com.valura.auth.database.repository.ResourceChange;
+import com.valura.auth.database.repository.ResourceChangeRepository;
+import com.valura.auth.database.repository.UserReference;
+import com.valura.auth.database.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * In-process cache of users and groups by {@code externalId}, of users by lower-case {@code userName}, and
+ * of the {@link UserReference}s that group membership resolves. Only reads go through it; write paths load their
+ * entities from the repositories and must report what they change with {@link #userChanged} and
+ * {@link #groupChanged}.
+ *
+ * <p>Cached entities are detached and shared between requests, so they are only stored when loaded outside
+ * a read-write transaction, where nothing can modify them before commit.
+ *
+ * <p>Writes are also {@link ResourceChangeRepository published} to the other nodes, whose listeners pass them
+ * back in as {@link #changed changes}. Without notifications, on other databases or while a listener is
+ * reconnecting, the expiry bounds how stale an entry changed on another node can get.
+ *
+ * <p>Reads may come from a replica that has not replayed the latest writes yet, so the newest version each
+ * change reported is remembered for as long as entries live, and older entities are not cached: a lagging
+ * read can neither bring back what a write evicted nor hide a client's own write. After a change to
+ * everything, or missed notifications, nothing is cached for that long. Keys are ids in canonical, lower
+ * case form, however a request spelled them.
+ */
+@Component
+public class ResourceCache implements ResourceChangeHandler {
+
+    private final UserRepository userRepository;
+    private final GroupRepository groupRepository;
+    private final ResourceChangeRepository changeRepository;
+    private final Cache<String, UserEntity> users;
+    private final Cache<String, String> userNames;
+    private final Cache<String, GroupEntity> groups;
+    private final Cache<String, UserReference> references;
+    // the newest version a change reported, Long.MAX_VALUE for a deletion
+    private final Cache<String, Long> userVersions;
+    private final Cache<String, Long> groupVersions;
+    private final Ticker ticker;
+    private final long expireAfterWriteNanos;
+    private volatile Long unknownSince;
+
+    @Autowired
+    public ResourceCache(UserRepository userRepository, GroupRepository groupRepository,
+                         ResourceChangeRepository changeRepository, MeterRegistry meterRegistry,
+                         @Value("${scim.resource-cache.maximum-size:10000}") long maximumSize,
+                         @Value("${scim.resource-cache.expire-after-write:1m}") Duration expireAfterWrite) {
+        this(userRepository, groupRepository, changeRepository, meterRegistry, maximumSize, expireAfterWrite,
+                Ticker.systemTicker());
+    }
+
+    ResourceCache(UserRepository userRepository, GroupRepository groupRepository,
+                  ResourceChangeRepository changeRepository, MeterRegistry meterRegistry, long maximumSize,
+                  Duration expireAfterWrite, Ticker ticker) {
+        this.userRepository = userRepository;
+        this.groupRepository = groupRepository;
+        this.changeRepository = changeRepository;
+        this.ticker = ticker;
+        this.expireAfterWriteNanos = expireAfterWrite.toNanos();
+        this.users = build(maximumSize, expireAfterWrite, ticker);
+        this.userNames = build(maximumSize, expireAfterWrite, ticker);
+        this.groups = build(maximumSize, expireAfterWrite, ticker);
+        this.references = build(maximumSize, expireAfterWrite, ticker);
+        this.userVersions = build(maximumSize, expireAfterWrite, ticker);
+        this.groupVersions = build(maximumSize, expireAfterWrite, ticker);
+        CaffeineCacheMetrics.monitor(meterRegistry, users, "scimUsers");
+        CaffeineCacheMetrics.monitor(meterRegistry, userNames, "scimUserNames");
+        CaffeineCacheMetrics.monitor(meterRegistry, groups, "scimGroups");
+        CaffeineCacheMetrics.monitor(meterRegistry, references, "scimUserReferences");
+    }
+
+    private static <V> Cache<String, V> build(long maximumSize, Duration expireAfterWrite, Ticker ticker) {
+        return Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .ticker(ticker)
+                .recordStats()
+                .build();
+    }
+
+    public Optional<UserEntity> findUser(String externalId) {
+        return find(users, userVersions, externalId, userRepository::findByExternalId, UserEntity::getVersion);
+    }
+
+    /**
+     * Looks users up by {@code userName}, ignoring case as {@code userName eq} filters do, through the
+     * {@code externalId} the name last belonged to. A renamed user no longer matches the name, so stale name
+     * entries fall through to the database. Only a name that belongs to exactly one user is cached, and any
+     * change to a user drops the name entries, since it may have given another user the same name.
+     */
+    public List<UserEntity> findUsersByName(String userName) {
+        String name = userName.toLowerCase(Locale.ROOT);
+        String externalId = userNames.getIfPresent(name);
+        if (externalId != null) {
+            Optional<UserEntity> user = findUser(externalId)
+                    .filter(entity -> userName.equalsIgnoreCase(entity.getUserName()));
+            if (user.isPresent()) {
+                return List.of(user.get());
+            }
+            userNames.invalidate(name);
+        }
+        List<UserEntity> found = userRepository.findByUserNameIgnoreCase(userName);
+        if (found.size() == 1 && cacheable()) {
+            UserEntity user = found.get(0);
+            String key = key(user.getExternalId());
+            if (isNewest(userVersions, key, user.getVersion())) {
+                users.put(key, user);
+                userNames.put(name, key);
+            }
+        }
+        return found;
+    }
+
+    public Optional<GroupEntity> findGroup(String externalId) {
+        return find(groups, groupVersions, externalId, groupRepository::findByExternalId, GroupEntity::getVersion);
+    }
+
+    /**
+     * The cached version of a user, without loading it when it is not cached.
+     */
+    public Optional<Long> cachedUserVersion(String externalId) {
+        return Optional.ofNullable(users.getIfPresent(key(externalId))).map(UserEntity::getVersion);
+    }
+
+    /**
+     * The cached version of a group, without loading it when it is not cached.
+     */
+    public Optional<Long> cachedGroupVersion(String externalId) {
+        return Optional.ofNullable(groups.getIfPresent(key(externalId))).map(GroupEntity::getVersion);
+    }
+
+    /**
+     * The references of the users with the given ids that exist, in no particular order. Ids that are not
+     * cached are passed to {@code loader} in one call. References only change with a rename, so they are
+     * cached from any transaction, except for users with a change still remembered.
+     */
+    public List<UserReference> findUserReferences(Collection<String> externalIds,
+                                                  Function<List<String>, List<UserReference>> loader) {
+        List<UserReference> found = new ArrayList<>(externalIds.size());
+        List<String> missing = new ArrayList<>();
+        for (String externalId : externalIds) {
+            UserReference reference = references.getIfPresent(key(externalId));
+            if (reference != null) {
+                found.add(reference);
+            } else {
+                missing.add(externalId);
+            }
+        }
+        if (!missing.isEmpty()) {
+            Map<String, UserReference> loaded = new HashMap<>();
+            for (UserReference reference : loader.apply(missing)) {
+                String key = key(reference.externalId());
+                if (isKnown() && userVersions.getIfPresent(key) == null) {
+                    loaded.put(key, reference);
+                }
+                found.add(reference);
+            }
+            references.putAll(loaded);
+        }
+        return found;
+    }
+
+    /**
+     * Records a write to a user that left it at {@code version}, or deleted it when null. The entry is dropped
+     * now and again once the transaction completes, so that a concurrent read cannot leave the old state
+     * behind, and the change is published to the other nodes.
+     */
+    public void userChanged(String externalId, Long version) {
+        String key = key(externalId);
+        remember(userVersions, key, version);
+        evict(() -> {
+            users.invalidate(key);
+            userNames.invalidateAll();
+            references.invalidate(key);
+        });
+        changeRepository.publish(new ResourceChange(ResourceChange.Type.USER, externalId, version));
+    }
+
+    /**
+     * Records a write to a group, like {@link #userChanged}.
+     */
+    public void groupChanged(String externalId, Long version) {
+        String key = key(externalId);
+        remember(groupVersions, key, version);
+        evict(() -> groups.invalidate(key));
+        changeRepository.publish(new ResourceChange(ResourceChange.Type.GROUP, externalId, version));
+    }
+
+    /**
+     * Drops everything, for writes that do not go through the services, such as imports.
+     */
+    public void invalidateAll() {
+        evict(this::clear);
+        changeRepository.publish(ResourceChange.all());
+    }
+
+    /**
+     * Applies a change published by any node, this one included. Entries already at the changed version or
+     * later are kept, so a node does not drop what it reloaded after its own write.
+     */
+    @Override
+    public void changed(ResourceChange change) {
+        switch (change.type()) {
+            case USER -> {
+                String key = key(change.externalId());
+                remember(userVersions, key, change.version());
+                users.asMap().computeIfPresent(key,
+                        (externalId, user) -> isCurrent(user.getVersion(), change) ? user : null);
+                userNames.invalidateAll();
+                references.invalidate(key);
+            }
+            case GROUP -> {
+                String key = key(change.externalId());
+                remember(groupVersions, key, change.version());
+                groups.asMap().computeIfPresent(key,
+                        (externalId, group) -> isCurrent(group.getVersion(), change) ? group : null);
+            }
+            case ALL -> clear();
+        }
+    }
+
+    @Override
+    public void missedChanges() {
+        clear();
+    }
+
+    /**
+     * The form ids are cached under; ids that are not UUIDs cannot name a resource and are kept as they are.
+     */
+    private static String key(String externalId) {
+        UUID uuid = ExternalIds.toUuid(externalId);
+        return uuid != null ? uuid.toString() : externalId;
+    }
+
+    private static void remember(Cache<String, Long> versions, String key, Long version) {
+        versions.asMap().merge(key, version != null ? version : Long.MAX_VALUE, Math::max);
+    }
+
+    /**
+     * Whether an entity loaded at {@code version} is at least as new as every change remembered for it.
+     */
+    private boolean isNewest(Cache<String, Long> versions, String key, long version) {
+        Long newest = versions.getIfPresent(key);
+        return isKnown() && (newest == null || version >= newest);
+    }
+
+    /**
+     * Whether every change of the last {@code expire-after-write} is remembered, that is, nothing was cleared
+     * wholesale within it.
+     */
+    private boolean isKnown() {
+        Long since = unknownSince;
+        return since == null || ticker.read() - since >= expireAfterWriteNanos;
+    }
+
+    private static boolean isCurrent(long cachedVersion, ResourceChange change) {
+        return change.version() != null && cachedVersion >= change.version();
+    }
+
+    private void clear() {
+        unknownSince = ticker.read();
+        userVersions.invalidateAll();
+        groupVersions.invalidateAll();
+        users.invalidateAll();
+        userNames.invalidateAll();
+        groups.invalidateAll();
+        references.invalidateAll();
+    }
+
+    private <V> Optional<V> find(Cache<String, V> cache, Cache<String, Long> versions, String externalId,
+                                 Function<String, Optional<V>> loader, Function<V, Long> version) {
+        String key = key(externalId);
+        V cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        Optional<V> loaded = loader.apply(externalId);
+        if (loaded.isPresent() && cacheable() && isNewest(versions, key, version.apply(loaded.get()))) {
+            cache.put(key, loaded.get());
+        }
+        return loaded;
+    }
+
+    /**
+     * Whether entities loaded now can be shared: outside a read-write transaction, which may still change
+     * them or roll back.
+     */
+    private static boolean cacheable() {
+        return !TransactionSynchronizationManager.isActualTransactionActive()
+                || TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    private static void evict(Runnable eviction) {
+        eviction.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    eviction.run();
+                }
+            });
+        }
+    }
+}
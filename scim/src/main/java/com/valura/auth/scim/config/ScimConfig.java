@@ -5,10 +5,28 @@ import com.unboundid.scim2.common.types.UserResource;
 import com.unboundid.scim2.common.utils.SchemaUtils;
 import com.unboundid.scim2.server.utils.ResourceTypeDefinition;
 import com.unboundid.scim2.common.types.ETagConfig;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.valura.auth.database.config.CurrentClient;
+import com.valura.auth.database.config.OutboxPublisher;
+import com.valura.auth.database.config.OutboxSink;
+import com.valura.auth.database.config.ResourceChangeListener;
+import com.valura.auth.database.repository.OutboxRepository;
+import com.valura.auth.scim.cache.ResourceCache;
+import com.valura.auth.scim.outbox.LogOutboxSink;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.beans.IntrospectionException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
 
 @Configuration
 public class ScimConfig {
@@ -39,4 +57,52 @@ public class ScimConfig {
     public ETagConfig etagConfig() {
         return new ETagConfig(true);
     }
-}
\ No newline at end of file
+
+    /**
+     * The authenticated client, so that reads after its own writes are served by the primary database.
+     */
+    @Bean
+    public CurrentClient currentClient() {
+        return () -> {
+            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+            return authentication != null ? authentication.getName() : null;
+        };
+    }
+
+    /**
+     * Applies writes made on other nodes to this node's {@link ResourceCache}, on PostgreSQL.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "scim.resource-cache.notifications.enabled", matchIfMissing = true)
+    public ResourceChangeListener resourceChangeListener(
+            DataSourceProperties properties, ResourceCache resourceCache,
+            @Value("${scim.resource-cache.notifications.poll-interval:1s}") Duration pollInterval,
+            @Value("${scim.resource-cache.notifications.reconnect-delay:5s}") Duration reconnectDelay) {
+        return new ResourceChangeListener(properties.determineUrl(), properties.determineUsername(),
+                properties.determinePassword(), resourceCache, pollInterval, reconnectDelay);
+    }
+
+    /**
+     * Delivers the provisioning events the services append to the outbox to every {@link OutboxSink}.
+     */
+    @Bean
+    @ConditionalOnProperty("scim.outbox.enabled")
+    public OutboxPublisher outboxPublisher(
+            OutboxRepository outboxRepository, List<OutboxSink> sinks, PlatformTransactionManager transactionManager,
+            @Value("${scim.outbox.publisher.interval:1s}") Duration interval,
+            @Value("${scim.outbox.publisher.batch-size:500}") int batchSize,
+            @Value("${scim.outbox.publisher.threads:1}") int threads) {
+        return new OutboxPublisher(outboxRepository, sinks, transactionManager, interval, batchSize, threads);
+    }
+
+    /**
+     * Writes outbox events to {@code scim.outbox.log-sink.file}, or the log, unless another sink is defined.
+     */
+    @Bean
+    @ConditionalOnProperty("scim.outbox.enabled")
+    @ConditionalOnMissingBean(OutboxSink.class)
+    public LogOutboxSink logOutboxSink(ObjectMapper objectMapper,
+                                       @Value("${scim.outbox.log-sink.file:#{null}}") Path file) {
+        return new LogOutboxSink(objectMapper, file);
+    }
+}
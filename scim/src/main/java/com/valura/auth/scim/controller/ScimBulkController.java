@@ -0,0 +1,51 @@
+package com.valura.auth.scim.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.unboundid.scim2.common.exceptions.BadRequestException;
+import com.unboundid.scim2.common.exceptions.ScimException;
+import com.valura.auth.scim.model.ScimBulkRequest;
+import com.valura.auth.scim.model.ScimBulkResponse;
+import com.valura.auth.scim.service.ScimBulkService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * RFC 7644 section 3.7 bulk operations. Each operation is authorized with the scope of its single-resource
+ * endpoint, so the request itself needs no scope of its own.
+ */
+@RestController
+@RequestMapping("/scim/v2/Bulk")
+public class ScimBulkController {
+
+    private final ScimBulkService bulkService;
+    private final ObjectMapper objectMapper;
+
+    public ScimBulkController(ScimBulkService bulkService, ObjectMapper objectMapper) {
+        this.bulkService = bulkService;
+        this.objectMapper = objectMapper;
+    }
+
+    @PostMapping
+    public ResponseEntity<ScimBulkResponse> bulk(InputStream body) throws ScimException, IOException {
+        // Read at most one byte past maxPayloadSize, so an oversized body is rejected without buffering it
+        byte[] payload = body.readNBytes(bulkService.getMaxPayloadSize() + 1);
+        if (payload.length > bulkService.getMaxPayloadSize()) {
+            throw new ScimException(HttpStatus.PAYLOAD_TOO_LARGE.value(), null,
+                    "The request exceeds maxPayloadSize (" + bulkService.getMaxPayloadSize() + " bytes)");
+        }
+        ScimBulkRequest request;
+        try {
+            request = objectMapper.readValue(payload, ScimBulkRequest.class);
+        } catch (JsonProcessingException e) {
+            throw BadRequestException.invalidSyntax("Invalid bulk request: " + e.getOriginalMessage());
+        }
+        return ResponseEntity.ok(bulkService.process(request));
+    }
+}
@@ -0,0 +1,37 @@
+package com.valura.auth.scim.controller;
+
+import com.unboundid.scim2.common.exceptions.BadRequestException;
+import com.valura.auth.scim.model.ScimChanges;
+import com.valura.auth.scim.service.ScimAuthorizationService;
+import com.valura.auth.scim.service.ScimChangeService;
+import com.valura.auth.scim.service.ScimScopes;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Incremental sync for downstream systems: the users, groups and memberships that changed since a
+ * watermark. Not part of SCIM, so restricted to the admin scope like the exports it complements.
+ */
+@RestController
+@RequestMapping("/scim/v2/Changes")
+public class ScimChangeController {
+
+    private final ScimChangeService changeService;
+    private final ScimAuthorizationService scimAuthorizationService;
+
+    public ScimChangeController(ScimChangeService changeService, ScimAuthorizationService scimAuthorizationService) {
+        this.changeService = changeService;
+        this.scimAuthorizationService = scimAuthorizationService;
+    }
+
+    @GetMapping
+    public ResponseEntity<ScimChanges> getChanges(@RequestParam(required = false) String since,
+                                                  @RequestParam(required = false) Integer count)
+            throws BadRequestException {
+        scimAuthorizationService.checkPermission(ScimScopes.SCIM_ADMIN);
+        return ResponseEntity.ok(changeService.changes(since, count));
+    }
+}
@@ -0,0 +1,86 @@
+package com.valura.auth.scim.controller;
+
+import com.valura.auth.scim.service.ScimAuthorizationService;
+import com.valura.auth.scim.service.ScimGroupService;
+import com.valura.auth.scim.service.ScimScopes;
+import com.valura.auth.scim.service.ScimUserService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedOutputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Full dumps of all users or groups as newline-delimited JSON for reconciliation jobs, in place of paging
+ * through the list endpoints. Not part of SCIM, so restricted to the admin scope. Compressed with gzip when
+ * the client accepts it.
+ */
+@RestController
+@RequestMapping("/scim/v2/Export")
+public class ScimExportController {
+
+    static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ScimUserService userService;
+    private final ScimGroupService groupService;
+    private final ScimAuthorizationService scimAuthorizationService;
+
+    public ScimExportController(ScimUserService userService, ScimGroupService groupService,
+                                ScimAuthorizationService scimAuthorizationService) {
+        this.userService = userService;
+        this.groupService = groupService;
+        this.scimAuthorizationService = scimAuthorizationService;
+    }
+
+    @GetMapping("/Users")
+    public ResponseEntity<StreamingResponseBody> exportUsers(
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        scimAuthorizationService.checkPermission(ScimScopes.SCIM_ADMIN);
+        return export(acceptEncoding, userService::export);
+    }
+
+    @GetMapping("/Groups")
+    public ResponseEntity<StreamingResponseBody> exportGroups(
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        scimAuthorizationService.checkPermission(ScimScopes.SCIM_ADMIN);
+        return export(acceptEncoding, groupService::export);
+    }
+
+    private static ResponseEntity<StreamingResponseBody> export(String acceptEncoding, StreamingResponseBody export) {
+        boolean gzip = acceptsGzip(acceptEncoding);
+        StreamingResponseBody body = out -> {
+            OutputStream target = gzip ? new GZIPOutputStream(out, BUFFER_SIZE) : new BufferedOutputStream(out, BUFFER_SIZE);
+            export.writeTo(target);
+            target.close();
+        };
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(NDJSON)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                return parts.length == 1 || !parts[1].trim().replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+}
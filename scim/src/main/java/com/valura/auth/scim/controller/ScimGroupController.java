@@ -3,16 +3,21 @@ package com.valura.auth.scim.controller;
 import com.unboundid.scim2.common.exceptions.ScimException;
 import com.unboundid.scim2.common.types.GroupResource;
 import com.unboundid.scim2.server.annotations.ResourceType;
+import com.valura.auth.scim.model.ScimGroup;
 import com.valura.auth.scim.model.ScimListResponse;
+import com.valura.auth.scim.model.ScimPatchRequest;
 import com.valura.auth.scim.service.ScimAuthorizationService;
 import com.valura.auth.scim.service.ScimGroupService;
 import com.valura.auth.scim.service.ScimScopes;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.util.Optional;
+
 @RestController
 @RequestMapping("/scim/v2/Groups")
 @ResourceType(description = "Group", name = "Group", schema = GroupResource.class)
@@ -37,9 +42,15 @@ public class ScimGroupController {
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<GroupResource> getGroup(@PathVariable String id)
+    public ResponseEntity<GroupResource> getGroup(
+            @PathVariable String id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch)
             throws ScimException {
         scimAuthorizationService.checkPermission(ScimScopes.SCIM_GROUPS_READ);
+        Optional<String> unchanged = groupService.matchingETag(id, ifNoneMatch);
+        if (unchanged.isPresent()) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(unchanged.get()).build();
+        }
         GroupResource group = groupService.get(id);
         return ResponseEntity.ok()
                 .eTag(group.getMeta().getVersion())
@@ -62,12 +73,11 @@ public class ScimGroupController {
     public ResponseEntity<GroupResource> patchGroup(
             @PathVariable String id,
             @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
-            @RequestBody GroupResource group) throws ScimException {
+            @RequestBody ScimPatchRequest<ScimGroup.PatchOp> request) throws ScimException {
         scimAuthorizationService.checkPermission(ScimScopes.SCIM_GROUPS_WRITE);
-        GroupResource patchedGroup = groupService.patch(id, group, ifMatch); // Assuming a patch method in service
-        return ResponseEntity.ok()
-                .eTag(patchedGroup.getMeta().getVersion())
-                .body(patchedGroup);
+        String eTag = groupService.patch(id, request, ifMatch);
+        // RFC 7644 section 3.5.2 allows 204; returning the group would mean reading every member
+        return ResponseEntity.noContent().eTag(eTag).build();
     }
 
     @DeleteMapping("/{id}")
@@ -79,12 +89,19 @@ public class ScimGroupController {
     }
 
     @GetMapping
-    public ResponseEntity<ScimListResponse<GroupResource>> searchGroups(
+    public ResponseEntity<?> searchGroups(
             @RequestParam(required = false) Integer startIndex,
             @RequestParam(required = false) Integer count,
-            @RequestParam(required = false) String filter) throws ScimException {
+            @RequestParam(required = false) String filter,
+            @RequestParam(required = false) String cursor) throws ScimException {
         scimAuthorizationService.checkPermission(ScimScopes.SCIM_GROUPS_READ);
-        ScimListResponse<GroupResource> response = groupService.search(startIndex, count, filter);
+        if (groupService.isStreamed(count)) {
+            // Large pages are written while the rows are read instead of being built in memory first
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(groupService.streamSearch(startIndex, count, filter, cursor));
+        }
+        ScimListResponse<GroupResource> response = groupService.search(startIndex, count, filter, cursor);
         return ResponseEntity.ok(response);
     }
 }
\ No newline at end of file
@@ -0,0 +1,42 @@
+package com.valura.auth.scim.controller;
+
+import com.valura.auth.scim.model.ImportReport;
+import com.valura.auth.scim.service.ScimAuthorizationService;
+import com.valura.auth.scim.service.ScimImportService;
+import com.valura.auth.scim.service.ScimScopes;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Bulk import of newline-delimited SCIM users and groups, the counterpart of {@link ScimExportController}.
+ * Restricted to the admin scope; the body may be gzip-compressed.
+ */
+@RestController
+@RequestMapping("/scim/v2/Import")
+public class ScimImportController {
+
+    private final ScimImportService importService;
+    private final ScimAuthorizationService scimAuthorizationService;
+
+    public ScimImportController(ScimImportService importService, ScimAuthorizationService scimAuthorizationService) {
+        this.importService = importService;
+        this.scimAuthorizationService = scimAuthorizationService;
+    }
+
+    @PostMapping
+    public ResponseEntity<ImportReport> importResources(
+            @RequestHeader(value = HttpHeaders.CONTENT_ENCODING, required = false) String contentEncoding,
+            InputStream body) throws IOException {
+        scimAuthorizationService.checkPermission(ScimScopes.SCIM_ADMIN);
+        InputStream in = "gzip".equalsIgnoreCase(contentEncoding) ? new GZIPInputStream(body, 64 * 1024) : body;
+        return ResponseEntity.ok(importService.importResources(in));
+    }
+}
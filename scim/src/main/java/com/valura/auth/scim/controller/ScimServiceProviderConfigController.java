@@ -0,0 +1,44 @@
+package com.valura.auth.scim.controller;
+
+import com.unboundid.scim2.common.types.AuthenticationScheme;
+import com.unboundid.scim2.common.types.BulkConfig;
+import com.unboundid.scim2.common.types.ChangePasswordConfig;
+import com.unboundid.scim2.common.types.ETagConfig;
+import com.unboundid.scim2.common.types.FilterConfig;
+import com.unboundid.scim2.common.types.PatchConfig;
+import com.unboundid.scim2.common.types.ServiceProviderConfigResource;
+import com.unboundid.scim2.common.types.SortConfig;
+import com.valura.auth.scim.service.ScimBulkService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * Advertises the optional SCIM features this server supports, including the bulk limits clients must respect.
+ */
+@RestController
+@RequestMapping("/scim/v2/ServiceProviderConfig")
+public class ScimServiceProviderConfigController {
+
+    private final ServiceProviderConfigResource config;
+
+    public ScimServiceProviderConfigController(ScimBulkService bulkService, ETagConfig etagConfig) {
+        this.config = new ServiceProviderConfigResource(
+                null,
+                new PatchConfig(true),
+                new BulkConfig(true, bulkService.getMaxOperations(), bulkService.getMaxPayloadSize()),
+                new FilterConfig(true, Integer.MAX_VALUE),
+                new ChangePasswordConfig(false),
+                new SortConfig(false),
+                etagConfig,
+                List.of(AuthenticationScheme.createOAuth2BearerToken(true)));
+    }
+
+    @GetMapping
+    public ResponseEntity<ServiceProviderConfigResource> get() {
+        return ResponseEntity.ok(config);
+    }
+}
@@ -5,15 +5,20 @@ import com.unboundid.scim2.common.exceptions.ResourceConflictException;
 import com.unboundid.scim2.common.types.UserResource;
 import com.unboundid.scim2.server.annotations.ResourceType;
 import com.valura.auth.scim.model.ScimListResponse;
+import com.valura.auth.scim.model.ScimPatchRequest;
+import com.valura.auth.scim.model.ScimUser;
 import com.valura.auth.scim.service.ScimAuthorizationService;
 import com.valura.auth.scim.service.ScimScopes;
 import com.valura.auth.scim.service.ScimUserService;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.util.Optional;
+
 @RestController
 @RequestMapping("/scim/v2/Users")
 @ResourceType(description = "User Account", name = "User", schema = UserResource.class)
@@ -38,9 +43,15 @@ public class ScimUserController {
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<UserResource> getUser(@PathVariable String id)
+    public ResponseEntity<UserResource> getUser(
+            @PathVariable String id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch)
             throws ScimException {
         scimAuthorizationService.checkPermission(ScimScopes.SCIM_USERS_READ);
+        Optional<String> unchanged = userService.matchingETag(id, ifNoneMatch);
+        if (unchanged.isPresent()) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(unchanged.get()).build();
+        }
         UserResource user = userService.get(id);
         return ResponseEntity.ok()
                 .eTag(user.getMeta().getVersion())
@@ -63,9 +74,9 @@ public class ScimUserController {
     public ResponseEntity<UserResource> patchUser(
             @PathVariable String id,
             @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
-            @RequestBody UserResource user) throws ScimException {
+            @RequestBody ScimPatchRequest<ScimUser.PatchOp> request) throws ScimException {
         scimAuthorizationService.checkPermission(ScimScopes.SCIM_USERS_WRITE);
-        UserResource patchedUser = userService.patch(id, user, ifMatch);
+        UserResource patchedUser = userService.patch(id, request, ifMatch);
         return ResponseEntity.ok()
                 .eTag(patchedUser.getMeta().getVersion())
                 .body(patchedUser);
@@ -80,12 +91,19 @@ public class ScimUserController {
     }
 
     @GetMapping
-    public ResponseEntity<ScimListResponse<UserResource>> searchUsers(
+    public ResponseEntity<?> searchUsers(
             @RequestParam(required = false) Integer startIndex,
             @RequestParam(required = false) Integer count,
-            @RequestParam(required = false) String filter) throws ScimException {
+            @RequestParam(required = false) String filter,
+            @RequestParam(required = false) String cursor) throws ScimException {
         scimAuthorizationService.checkPermission(ScimScopes.SCIM_USERS_READ);
-        ScimListResponse<UserResource> response = userService.search(startIndex, count, filter);
+        if (userService.isStreamed(count)) {
+            // Large pages are written while the rows are read instead of being built in memory first
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(userService.streamSearch(startIndex, count, filter, cursor));
+        }
+        ScimListResponse<UserResource> response = userService.search(startIndex, count, filter, cursor);
         return ResponseEntity.ok(response);
     }
 
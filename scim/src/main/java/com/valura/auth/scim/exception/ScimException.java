@@ -21,10 +21,16 @@ public class ScimException extends RuntimeException {
             this.scimType = "invalidResource";
         } else if (ex instanceof BadRequestException) {
             this.status = HttpStatus.BAD_REQUEST;
-            this.scimType = "invalidSyntax";
+            this.scimType = ex.getScimError().getScimType() != null
+                    ? ex.getScimError().getScimType()
+                    : "invalidSyntax";
         } else {
-            this.status = HttpStatus.INTERNAL_SERVER_ERROR;
-            this.scimType = "serverError";
+            // conflicts, failed preconditions and the like keep their own status
+            HttpStatus resolved = HttpStatus.resolve(ex.getScimError().getStatus());
+            this.status = resolved != null ? resolved : HttpStatus.INTERNAL_SERVER_ERROR;
+            this.scimType = resolved != null && resolved != HttpStatus.INTERNAL_SERVER_ERROR
+                    ? ex.getScimError().getScimType()
+                    : "serverError";
         }
     }
 
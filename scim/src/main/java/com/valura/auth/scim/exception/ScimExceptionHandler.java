@@ -1,12 +1,16 @@
 package com.valura.auth.scim.exception;
 
 import com.unboundid.scim2.common.exceptions.ScimException;
+import com.valura.auth.scim.service.ETags;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.context.request.WebRequest;
 
 @ControllerAdvice
 public class ScimExceptionHandler {
@@ -31,6 +35,16 @@ public class ScimExceptionHandler {
         return new ResponseEntity<>(error, ex.getStatus());
     }
 
+    /**
+     * A versioned UPDATE matched no row: another request changed the resource after it was read. That is a
+     * failed precondition only when the request had one.
+     */
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<ScimError> handleOptimisticLockingFailure(OptimisticLockingFailureException ex,
+                                                                    WebRequest request) {
+        return handleScimException(ETags.concurrentChange(request.getHeader(HttpHeaders.IF_MATCH)));
+    }
+
     @ExceptionHandler(ScimAuthenticationException.class)
     public ResponseEntity<ScimError> handleScimAuthenticationException(ScimAuthenticationException ex) {
         ScimError error = new ScimError("Authentication failure", "invalidToken", String.valueOf(HttpStatus.UNAUTHORIZED.value()));
@@ -0,0 +1,43 @@
+package com.valura.auth.scim.filter;
+
+import java.util.Map;
+
+/**
+ * Describes how a SCIM attribute referenced from a filter maps onto the JPA entity model.
+ */
+public sealed interface FilterAttribute {
+
+    enum Type {
+        /**
+         * A string that is not caseExact (RFC 7643), as all mapped string attributes are: compared
+         * case-insensitively.
+         */
+        STRING,
+        BOOLEAN,
+        DATE_TIME,
+        /**
+         * A resource id, stored as a UUID: only equality comparisons apply.
+         */
+        ID
+    }
+
+    /**
+     * A single-valued attribute stored in an entity field.
+     */
+    record Column(String field, Type type) implements FilterAttribute {
+    }
+
+    /**
+     * An attribute that is not stored but always has the same value for every resource
+     * (e.g. {@code emails.type} is always {@code "work"}). Comparisons are folded at compile time.
+     */
+    record Constant(Object value) implements FilterAttribute {
+    }
+
+    /**
+     * A multi-valued complex attribute. When {@code joinField} is null the sub-attributes live on the
+     * resource entity itself, otherwise they live on the entity reached through that association.
+     */
+    record MultiValued(String joinField, Map<String, FilterAttribute> subAttributes) implements FilterAttribute {
+    }
+}
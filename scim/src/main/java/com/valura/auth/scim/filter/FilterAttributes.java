@@ -0,0 +1,83 @@
+package com.valura.auth.scim.filter;
+
+import com.valura.auth.scim.filter.FilterAttribute.Column;
+import com.valura.auth.scim.filter.FilterAttribute.Constant;
+import com.valura.auth.scim.filter.FilterAttribute.MultiValued;
+import com.valura.auth.scim.filter.FilterAttribute.Type;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The filterable attributes of a SCIM resource type. Keys are lower-case attribute paths
+ * ({@code name.givenname}); SCIM attribute names are case-insensitive.
+ */
+public final class FilterAttributes {
+
+    private static final Map<String, FilterAttribute> EMAIL_ATTRIBUTES = Map.of(
+            "value", new Column("email", Type.STRING),
+            "type", new Constant("work"),
+            "primary", new Constant(Boolean.TRUE)
+    );
+
+    private static final Map<String, FilterAttribute> MEMBER_ATTRIBUTES = Map.of(
+            "value", new Column("externalId", Type.ID),
+            "display", new Column("userName", Type.STRING),
+            "type", new Constant("User")
+    );
+
+    private static final Map<String, FilterAttribute> USER_GROUP_ATTRIBUTES = Map.of(
+            "value", new Column("externalId", Type.ID),
+            "display", new Column("displayName", Type.STRING)
+    );
+
+    public static final FilterAttributes USER = new FilterAttributes("User", "users", Map.ofEntries(
+            Map.entry("id", new Column("externalId", Type.ID)),
+            Map.entry("username", new Column("userName", Type.STRING)),
+            Map.entry("displayname", new Column("displayName", Type.STRING)),
+            Map.entry("name.givenname", new Column("firstName", Type.STRING)),
+            Map.entry("name.familyname", new Column("lastName", Type.STRING)),
+            Map.entry("active", new Column("active", Type.BOOLEAN)),
+            Map.entry("emails", new MultiValued(null, EMAIL_ATTRIBUTES)),
+            Map.entry("groups", new MultiValued("groups", USER_GROUP_ATTRIBUTES)),
+            Map.entry("meta.created", new Column("createdAt", Type.DATE_TIME)),
+            Map.entry("meta.lastmodified", new Column("updatedAt", Type.DATE_TIME))
+    ));
+
+    public static final FilterAttributes GROUP = new FilterAttributes("Group", "groups", Map.of(
+            "id", new Column("externalId", Type.ID),
+            "displayname", new Column("displayName", Type.STRING),
+            "members", new MultiValued("members", MEMBER_ATTRIBUTES),
+            "meta.created", new Column("createdAt", Type.DATE_TIME),
+            "meta.lastmodified", new Column("updatedAt", Type.DATE_TIME)
+    ));
+
+    private final String resourceType;
+    private final String table;
+    private final Map<String, FilterAttribute> attributes;
+
+    private FilterAttributes(String resourceType, String table, Map<String, FilterAttribute> attributes) {
+        this.resourceType = resourceType;
+        this.table = table;
+        this.attributes = attributes;
+    }
+
+    public String getResourceType() {
+        return resourceType;
+    }
+
+    /**
+     * The table the resources are stored in, which {@link SqlFilter} conditions refer to.
+     */
+    public String getTable() {
+        return table;
+    }
+
+    Map<String, FilterAttribute> getAttributes() {
+        return attributes;
+    }
+
+    static FilterAttribute lookup(Map<String, FilterAttribute> attributes, String path) {
+        return attributes.get(path.toLowerCase(Locale.ROOT));
+    }
+}
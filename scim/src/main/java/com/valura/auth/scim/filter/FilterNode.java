@@ -0,0 +1,250 @@
+package com.valura.auth.scim.filter;
+
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.From;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A SCIM filter compiled against a {@link FilterAttributes} mapping. Attribute names have been resolved
+ * to entity fields; literal values are not part of the tree but referenced by slot, so one tree serves
+ * every filter of the same shape. Values are validated and converted by {@link FilterPlan#bind} before a
+ * node is turned into a JPA {@link Predicate} or written as SQL, so that step cannot fail.
+ */
+sealed interface FilterNode {
+
+    Predicate toPredicate(From<?, ?> from, CriteriaQuery<?> query, CriteriaBuilder cb, Object[] values);
+
+    /**
+     * Writes the same condition as {@link #toPredicate}, with {@code values} from {@link FilterPlan#toSqlValues}.
+     */
+    void toSql(SqlWriter sql, Object[] values);
+
+    enum Operator {
+        EQ, NE, CO, SW, EW, GT, GE, LT, LE
+    }
+
+    record And(List<FilterNode> nodes) implements FilterNode {
+        @Override
+        public Predicate toPredicate(From<?, ?> from, CriteriaQuery<?> query, CriteriaBuilder cb, Object[] values) {
+            return cb.and(nodes.stream().map(node -> node.toPredicate(from, query, cb, values)).toArray(Predicate[]::new));
+        }
+
+        @Override
+        public void toSql(SqlWriter sql, Object[] values) {
+            joinSql(sql, nodes, " AND ", values);
+        }
+    }
+
+    record Or(List<FilterNode> nodes) implements FilterNode {
+        @Override
+        public Predicate toPredicate(From<?, ?> from, CriteriaQuery<?> query, CriteriaBuilder cb, Object[] values) {
+            return cb.or(nodes.stream().map(node -> node.toPredicate(from, query, cb, values)).toArray(Predicate[]::new));
+        }
+
+        @Override
+        public void toSql(SqlWriter sql, Object[] values) {
+            joinSql(sql, nodes, " OR ", values);
+        }
+    }
+
+    record Not(FilterNode node) implements FilterNode {
+        @Override
+        public Predicate toPredicate(From<?, ?> from, CriteriaQuery<?> query, CriteriaBuilder cb, Object[] values) {
+            return cb.not(node.toPredicate(from, query, cb, values));
+        }
+
+        @Override
+        public void toSql(SqlWriter sql, Object[] values) {
+            sql.append("NOT (");
+            node.toSql(sql, values);
+            sql.append(")");
+        }
+    }
+
+    /**
+     * A condition that is known to be always true or always false (e.g. {@code emails.type pr}).
+     */
+    record Literal(boolean value) implements FilterNode {
+        @Override
+        public Predicate toPredicate(From<?, ?> from, CriteriaQuery<?> query, CriteriaBuilder cb, Object[] values) {
+            return value ? cb.conjunction() : cb.disjunction();
+        }
+
+        @Override
+        public void toSql(SqlWriter sql, Object[] values) {
+            sql.append(value ? "1 = 1" : "1 = 0");
+        }
+    }
+
+    record Present(String field, FilterAttribute.Type type) implements FilterNode {
+        @Override
+        public Predicate toPredicate(From<?, ?> from, CriteriaQuery<?> query, CriteriaBuilder cb, Object[] values) {
+            if (type == FilterAttribute.Type.STRING) {
+                Expression<String> path = from.get(field);
+                return cb.and(cb.isNotNull(path), cb.notEqual(path, ""));
+            }
+            return cb.isNotNull(from.get(field));
+        }
+
+        @Override
+        public void toSql(SqlWriter sql, Object[] values) {
+            String column = sql.column(field);
+            sql.append(type == FilterAttribute.Type.STRING
+                    ? "(" + column + " IS NOT NULL AND " + column + " <> '')"
+                    : column + " IS NOT NULL");
+        }
+    }
+
+    /**
+     * Compares a field with a literal. With {@code ignoreCase}, for attributes that are not caseExact, both
+     * sides are compared in lower case, as {@code lower(column)}, which is what the lookup indexes cover.
+     */
+    record Compare(String field, Operator operator, int slot, boolean ignoreCase) implements FilterNode {
+        @Override
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        public Predicate toPredicate(From<?, ?> from, CriteriaQuery<?> query, CriteriaBuilder cb, Object[] values) {
+            Expression path = from.get(field);
+            Comparable value = (Comparable) values[slot];
+            if (ignoreCase) {
+                Expression lower = cb.lower(path);
+                Expression operand = cb.lower(cb.literal((String) value));
+                return switch (operator) {
+                    case EQ -> cb.equal(lower, operand);
+                    case NE -> cb.notEqual(lower, operand);
+                    case CO, SW, EW -> like(cb, path, value);
+                    case GT -> cb.greaterThan(lower, operand);
+                    case GE -> cb.greaterThanOrEqualTo(lower, operand);
+                    case LT -> cb.lessThan(lower, operand);
+                    case LE -> cb.lessThanOrEqualTo(lower, operand);
+                };
+            }
+            return switch (operator) {
+                case EQ -> cb.equal(path, value);
+                case NE -> cb.notEqual(path, value);
+                case CO, SW, EW -> like(cb, path, value);
+                case GT -> cb.greaterThan(path, value);
+                case GE -> cb.greaterThanOrEqualTo(path, value);
+                case LT -> cb.lessThan(path, value);
+                case LE -> cb.lessThanOrEqualTo(path, value);
+            };
+        }
+
+        @Override
+        public void toSql(SqlWriter sql, Object[] values) {
+            String column = sql.column(field);
+            Object value = values[slot];
+            switch (operator) {
+                case EQ -> compare(sql, column, " = ", value);
+                case NE -> compare(sql, column, " <> ", value);
+                case CO -> like(sql, column, "%" + escapeLike(value) + "%");
+                case SW -> like(sql, column, escapeLike(value) + "%");
+                case EW -> like(sql, column, "%" + escapeLike(value));
+                case GT -> compare(sql, column, " > ", value);
+                case GE -> compare(sql, column, " >= ", value);
+                case LT -> compare(sql, column, " < ", value);
+                case LE -> compare(sql, column, " <= ", value);
+            }
+        }
+
+        private Predicate like(CriteriaBuilder cb, Expression<String> path, Object value) {
+            String pattern = switch (operator) {
+                case CO -> "%" + escapeLike(value) + "%";
+                case SW -> escapeLike(value) + "%";
+                default -> "%" + escapeLike(value);
+            };
+            return cb.like(cb.lower(path), pattern, '\\');
+        }
+
+        private void compare(SqlWriter sql, String column, String comparison, Object value) {
+            String operand = sql.bind(value);
+            sql.append(ignoreCase
+                    ? "LOWER(" + column + ")" + comparison + "LOWER(" + operand + ")"
+                    : column + comparison + operand);
+        }
+
+        private static void like(SqlWriter sql, String column, String pattern) {
+            sql.append("LOWER(" + column + ") LIKE " + sql.bind(pattern) + " ESCAPE '\\'");
+        }
+
+        private static String escapeLike(Object value) {
+            return value.toString().toLowerCase(Locale.ROOT)
+                    .replace("\\", "\\\\")
+                    .replace("%", "\\%")
+                    .replace("_", "\\_");
+        }
+    }
+
+    /**
+     * A comparison against an attribute with a fixed value; decided without touching the database.
+     */
+    record ConstantCompare(Object constant, Operator operator, int slot) implements FilterNode {
+        @Override
+        public Predicate toPredicate(From<?, ?> from, CriteriaQuery<?> query, CriteriaBuilder cb, Object[] values) {
+            return matches(values[slot]) ? cb.conjunction() : cb.disjunction();
+        }
+
+        @Override
+        public void toSql(SqlWriter sql, Object[] values) {
+            sql.append(matches(values[slot]) ? "1 = 1" : "1 = 0");
+        }
+
+        boolean matches(Object value) {
+            if (constant instanceof Boolean) {
+                return (operator == Operator.EQ) == constant.equals(value);
+            }
+
+            String expected = constant.toString().toLowerCase(Locale.ROOT);
+            String actual = value.toString().toLowerCase(Locale.ROOT);
+            return switch (operator) {
+                case EQ -> expected.equals(actual);
+                case NE -> !expected.equals(actual);
+                case CO -> expected.contains(actual);
+                case SW -> expected.startsWith(actual);
+                case EW -> expected.endsWith(actual);
+                case GT -> expected.compareTo(actual) > 0;
+                case GE -> expected.compareTo(actual) >= 0;
+                case LT -> expected.compareTo(actual) < 0;
+                case LE -> expected.compareTo(actual) <= 0;
+            };
+        }
+    }
+
+    /**
+     * Matches when at least one value of a joined multi-valued attribute satisfies {@code node}. Rendered
+     * as a correlated {@code EXISTS} so the outer query never produces duplicate rows.
+     */
+    record Exists(String joinField, FilterNode node) implements FilterNode {
+        @Override
+        public Predicate toPredicate(From<?, ?> from, CriteriaQuery<?> query, CriteriaBuilder cb, Object[] values) {
+            Subquery<Integer> subquery = query.subquery(Integer.class);
+            From<?, ?> correlated = from instanceof Root<?> root ? subquery.correlate(root) : subquery.correlate((Join<?, ?>) from);
+            Join<?, ?> join = correlated.join(joinField);
+            subquery.select(cb.literal(1)).where(node.toPredicate(join, query, cb, values));
+            return cb.exists(subquery);
+        }
+
+        @Override
+        public void toSql(SqlWriter sql, Object[] values) {
+            sql.exists(joinField, node, values);
+        }
+    }
+
+    private static void joinSql(SqlWriter sql, List<FilterNode> nodes, String operator, Object[] values) {
+        sql.append("(");
+        for (int i = 0; i < nodes.size(); i++) {
+            if (i > 0) {
+                sql.append(operator);
+            }
+            nodes.get(i).toSql(sql, values);
+        }
+        sql.append(")");
+    }
+}
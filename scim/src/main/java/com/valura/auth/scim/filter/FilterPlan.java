@@ -0,0 +1,115 @@
+package com.valura.auth.scim.filter;
+
+import com.fasterxml.jackson.databind.node.ValueNode;
+import com.unboundid.scim2.common.exceptions.BadRequestException;
+import com.valura.auth.database.entity.ExternalIds;
+import com.valura.auth.scim.filter.FilterNode.Operator;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A compiled filter whose literal values have been lifted out into slots. Plans are immutable and
+ * shared between requests; {@link #bind} validates one request's literals against the slots.
+ */
+final class FilterPlan {
+
+    record Slot(String path, FilterAttribute.Type type, Operator operator) {
+    }
+
+    private final FilterNode root;
+    private final List<Slot> slots;
+
+    FilterPlan(FilterNode root, List<Slot> slots) {
+        this.root = root;
+        this.slots = List.copyOf(slots);
+    }
+
+    FilterNode getRoot() {
+        return root;
+    }
+
+    int getSlotCount() {
+        return slots.size();
+    }
+
+    Object[] bind(List<ValueNode> literals) throws BadRequestException {
+        Object[] values = new Object[slots.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = convert(slots.get(i), literals.get(i));
+        }
+        return values;
+    }
+
+    /**
+     * The bound {@code values} as the database driver takes them: ids as {@link UUID}s, instants as UTC
+     * {@link OffsetDateTime}s.
+     */
+    Object[] toSqlValues(Object[] values) {
+        Object[] sqlValues = new Object[values.length];
+        for (int i = 0; i < values.length; i++) {
+            Object value = values[i];
+            if (slots.get(i).type() == FilterAttribute.Type.ID) {
+                sqlValues[i] = ExternalIds.toUuid((String) value);
+            } else if (value instanceof Instant instant) {
+                sqlValues[i] = instant.atOffset(ZoneOffset.UTC);
+            } else {
+                sqlValues[i] = value;
+            }
+        }
+        return sqlValues;
+    }
+
+    /**
+     * Rejects operators that make no sense for an attribute type, before a plan is built and cached.
+     */
+    static void checkOperator(String path, FilterAttribute.Type type, Operator operator) throws BadRequestException {
+        boolean substring = operator == Operator.CO || operator == Operator.SW || operator == Operator.EW;
+        boolean equality = operator == Operator.EQ || operator == Operator.NE;
+        if ((type == FilterAttribute.Type.BOOLEAN || type == FilterAttribute.Type.ID) && !equality) {
+            throw BadRequestException.invalidFilter("Only 'eq' and 'ne' are supported for '" + path + "'");
+        }
+        if (type == FilterAttribute.Type.DATE_TIME && substring) {
+            throw BadRequestException.invalidFilter("Substring operators are not supported for '" + path + "'");
+        }
+    }
+
+    private static Object convert(Slot slot, ValueNode value) throws BadRequestException {
+        String path = slot.path();
+        if (value == null || value.isNull()) {
+            throw BadRequestException.invalidFilter("A comparison value is required for '" + path + "'");
+        }
+        switch (slot.type()) {
+            case STRING:
+                if (!value.isTextual()) {
+                    throw BadRequestException.invalidFilter("Expected a string value for '" + path + "'");
+                }
+                return value.textValue();
+            case ID:
+                if (!value.isTextual() || ExternalIds.toUuid(value.textValue()) == null) {
+                    throw BadRequestException.invalidFilter("Expected a UUID value for '" + path + "'");
+                }
+                return value.textValue();
+            case BOOLEAN:
+                if (!value.isBoolean()) {
+                    throw BadRequestException.invalidFilter("Expected a boolean value for '" + path + "'");
+                }
+                return value.booleanValue();
+            case DATE_TIME:
+                if (!value.isTextual()) {
+                    throw BadRequestException.invalidFilter("Expected a dateTime value for '" + path + "'");
+                }
+                try {
+                    return OffsetDateTime.parse(value.textValue()).toInstant();
+                } catch (DateTimeParseException e) {
+                    throw BadRequestException.invalidFilter("Invalid dateTime value for '" + path + "': " + value.textValue());
+                }
+            default:
+                throw BadRequestException.invalidFilter("Unsupported filter attribute '" + path + "'");
+        }
+    }
+}
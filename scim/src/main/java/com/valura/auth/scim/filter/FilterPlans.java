@@ -0,0 +1,283 @@
+package com.valura.auth.scim.filter;
+
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ValueNode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.unboundid.scim2.common.Path;
+import com.unboundid.scim2.common.exceptions.BadRequestException;
+import com.unboundid.scim2.common.exceptions.ScimException;
+import com.unboundid.scim2.common.filters.AndFilter;
+import com.unboundid.scim2.common.filters.ComplexValueFilter;
+import com.unboundid.scim2.common.filters.ContainsFilter;
+import com.unboundid.scim2.common.filters.EndsWithFilter;
+import com.unboundid.scim2.common.filters.EqualFilter;
+import com.unboundid.scim2.common.filters.Filter;
+import com.unboundid.scim2.common.filters.FilterVisitor;
+import com.unboundid.scim2.common.filters.GreaterThanFilter;
+import com.unboundid.scim2.common.filters.GreaterThanOrEqualFilter;
+import com.unboundid.scim2.common.filters.LessThanFilter;
+import com.unboundid.scim2.common.filters.LessThanOrEqualFilter;
+import com.unboundid.scim2.common.filters.NotEqualFilter;
+import com.unboundid.scim2.common.filters.NotFilter;
+import com.unboundid.scim2.common.filters.OrFilter;
+import com.unboundid.scim2.common.filters.PresentFilter;
+import com.unboundid.scim2.common.filters.StartsWithFilter;
+import com.valura.auth.scim.filter.FilterAttribute.Column;
+import com.valura.auth.scim.filter.FilterAttribute.Constant;
+import com.valura.auth.scim.filter.FilterAttribute.MultiValued;
+import com.valura.auth.scim.filter.FilterNode.Operator;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parses filters into {@link FilterPlan}s and binds each request's literals to them, caching plans by
+ * {@link FilterShape}. Shared by {@link ScimFilterCompiler} and {@link SqlFilterCompiler}, and free of JPA
+ * types so that the latter can be used without Spring Data JPA.
+ */
+final class FilterPlans {
+
+    private static final String CORE_SCHEMA_PREFIX = "urn:ietf:params:scim:schemas:core:2.0:";
+
+    private final Cache<PlanKey, FilterPlan> plans;
+
+    FilterPlans(MeterRegistry meterRegistry, long maximumSize, String cacheName) {
+        this.plans = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, plans, cacheName);
+    }
+
+    /**
+     * The plan of {@code filter} with its literals bound.
+     */
+    Bound bind(String filter, FilterAttributes attributes) throws BadRequestException {
+        FilterShape shape = FilterShape.of(filter);
+        if (!shape.isParameterized()) {
+            Compilation compilation = compile(filter, attributes);
+            return new Bound(compilation.plan(), compilation.plan().bind(compilation.literals()));
+        }
+
+        PlanKey key = new PlanKey(attributes.getResourceType(), shape.key());
+        FilterPlan plan = plans.getIfPresent(key);
+        if (plan == null) {
+            Compilation compilation = compile(filter, attributes);
+            plan = compilation.plan();
+            if (!sameLiterals(compilation.literals(), shape.literals())) {
+                // The shape scan and the parser disagree about where the literals are; never share this plan.
+                return new Bound(plan, plan.bind(compilation.literals()));
+            }
+            plans.put(key, plan);
+        }
+        return new Bound(plan, plan.bind(shape.literals()));
+    }
+
+    static Compilation compile(String filter, FilterAttributes attributes) throws BadRequestException {
+        Filter parsed = Filter.fromString(filter);
+        Compiler compiler = new Compiler(attributes);
+        try {
+            FilterNode root = parsed.visit(compiler, attributes.getAttributes());
+            return new Compilation(new FilterPlan(root, compiler.slots), compiler.literals);
+        } catch (BadRequestException e) {
+            throw e;
+        } catch (ScimException e) {
+            throw BadRequestException.invalidFilter(e.getMessage());
+        }
+    }
+
+    private static boolean sameLiterals(List<ValueNode> parsed, List<ValueNode> scanned) {
+        if (parsed.size() != scanned.size()) {
+            return false;
+        }
+        for (int i = 0; i < parsed.size(); i++) {
+            ValueNode a = parsed.get(i);
+            ValueNode b = scanned.get(i);
+            if (a.getNodeType() != b.getNodeType() || (a.isTextual() && !a.textValue().equals(b.textValue()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private record PlanKey(String resourceType, String shape) {
+    }
+
+    record Compilation(FilterPlan plan, List<ValueNode> literals) {
+    }
+
+    record Bound(FilterPlan plan, Object[] values) {
+    }
+
+    private record Target(FilterAttribute attribute, String joinField) {
+    }
+
+    private static final class Compiler implements FilterVisitor<FilterNode, Map<String, FilterAttribute>> {
+        private final FilterAttributes attributes;
+        private final List<FilterPlan.Slot> slots = new ArrayList<>();
+        private final List<ValueNode> literals = new ArrayList<>();
+
+        private Compiler(FilterAttributes attributes) {
+            this.attributes = attributes;
+        }
+
+        @Override
+        public FilterNode visit(EqualFilter filter, Map<String, FilterAttribute> scope) throws ScimException {
+            return compare(filter, Operator.EQ, scope);
+        }
+
+        @Override
+        public FilterNode visit(NotEqualFilter filter, Map<String, FilterAttribute> scope) throws ScimException {
+            return compare(filter, Operator.NE, scope);
+        }
+
+        @Override
+        public FilterNode visit(ContainsFilter filter, Map<String, FilterAttribute> scope) throws ScimException {
+            return compare(filter, Operator.CO, scope);
+        }
+
+        @Override
+        public FilterNode visit(StartsWithFilter filter, Map<String, FilterAttribute> scope) throws ScimException {
+            return compare(filter, Operator.SW, scope);
+        }
+
+        @Override
+        public FilterNode visit(EndsWithFilter filter, Map<String, FilterAttribute> scope) throws ScimException {
+            return compare(filter, Operator.EW, scope);
+        }
+
+        @Override
+        public FilterNode visit(GreaterThanFilter filter, Map<String, FilterAttribute> scope) throws ScimException {
+            return compare(filter, Operator.GT, scope);
+        }
+
+        @Override
+        public FilterNode visit(GreaterThanOrEqualFilter filter, Map<String, FilterAttribute> scope) throws ScimException {
+            return compare(filter, Operator.GE, scope);
+        }
+
+        @Override
+        public FilterNode visit(LessThanFilter filter, Map<String, FilterAttribute> scope) throws ScimException {
+            return compare(filter, Operator.LT, scope);
+        }
+
+        @Override
+        public FilterNode visit(LessThanOrEqualFilter filter, Map<String, FilterAttribute> scope) throws ScimException {
+            return compare(filter, Operator.LE, scope);
+        }
+
+        @Override
+        public FilterNode visit(PresentFilter filter, Map<String, FilterAttribute> scope) throws ScimException {
+            Target target = resolve(filter.getAttributePath(), scope);
+            FilterNode node = target.attribute() instanceof Column column
+                    ? new FilterNode.Present(column.field(), column.type())
+                    : new FilterNode.Literal(true);
+            return join(target, node);
+        }
+
+        @Override
+        public FilterNode visit(AndFilter filter, Map<String, FilterAttribute> scope) throws ScimException {
+            return new FilterNode.And(compileAll(filter.getCombinedFilters(), scope));
+        }
+
+        @Override
+        public FilterNode visit(OrFilter filter, Map<String, FilterAttribute> scope) throws ScimException {
+            return new FilterNode.Or(compileAll(filter.getCombinedFilters(), scope));
+        }
+
+        @Override
+        public FilterNode visit(NotFilter filter, Map<String, FilterAttribute> scope) throws ScimException {
+            return new FilterNode.Not(filter.getInvertedFilter().visit(this, scope));
+        }
+
+        @Override
+        public FilterNode visit(ComplexValueFilter filter, Map<String, FilterAttribute> scope) throws ScimException {
+            Path path = filter.getAttributePath();
+            if (!(FilterAttributes.lookup(scope, attributeName(path)) instanceof MultiValued multiValued)) {
+                throw BadRequestException.invalidFilter(
+                        "Attribute '" + path + "' of " + attributes.getResourceType() + " is not a multi-valued attribute");
+            }
+            FilterNode node = filter.getValueFilter().visit(this, multiValued.subAttributes());
+            return join(new Target(multiValued, multiValued.joinField()), node);
+        }
+
+        private List<FilterNode> compileAll(List<Filter> filters, Map<String, FilterAttribute> scope) throws ScimException {
+            List<FilterNode> nodes = new ArrayList<>(filters.size());
+            for (Filter filter : filters) {
+                nodes.add(filter.visit(this, scope));
+            }
+            return nodes;
+        }
+
+        private FilterNode compare(Filter filter, Operator operator, Map<String, FilterAttribute> scope)
+                throws BadRequestException {
+            Path path = filter.getAttributePath();
+            Target target = resolve(path, scope);
+            int slot = slots.size();
+
+            FilterNode node;
+            FilterAttribute.Type type;
+            if (target.attribute() instanceof Constant constant) {
+                type = constant.value() instanceof Boolean ? FilterAttribute.Type.BOOLEAN : FilterAttribute.Type.STRING;
+                node = new FilterNode.ConstantCompare(constant.value(), operator, slot);
+            } else {
+                Column column = (Column) target.attribute();
+                type = column.type();
+                node = new FilterNode.Compare(column.field(), operator, slot, type == FilterAttribute.Type.STRING);
+            }
+
+            FilterPlan.checkOperator(path.toString(), type, operator);
+            slots.add(new FilterPlan.Slot(path.toString(), type, operator));
+            literals.add(filter.getComparisonValue() != null ? filter.getComparisonValue() : NullNode.getInstance());
+            return join(target, node);
+        }
+
+        private Target resolve(Path path, Map<String, FilterAttribute> scope) throws BadRequestException {
+            String name = attributeName(path);
+            FilterAttribute attribute = FilterAttributes.lookup(scope, name);
+            if (attribute instanceof MultiValued multiValued) {
+                FilterAttribute value = FilterAttributes.lookup(multiValued.subAttributes(), "value");
+                if (value != null) {
+                    return new Target(value, multiValued.joinField());
+                }
+            } else if (attribute != null) {
+                return new Target(attribute, null);
+            }
+
+            if (path.size() == 2
+                    && FilterAttributes.lookup(scope, path.getElement(0).getAttribute()) instanceof MultiValued multiValued) {
+                FilterAttribute subAttribute = FilterAttributes.lookup(multiValued.subAttributes(), path.getElement(1).getAttribute());
+                if (subAttribute != null) {
+                    return new Target(subAttribute, multiValued.joinField());
+                }
+            }
+            throw BadRequestException.invalidFilter(
+                    "Unsupported filter attribute '" + path + "' for " + attributes.getResourceType());
+        }
+
+        private String attributeName(Path path) throws BadRequestException {
+            if (path.getSchemaUrn() != null && !path.getSchemaUrn().startsWith(CORE_SCHEMA_PREFIX)) {
+                throw BadRequestException.invalidFilter("Unsupported schema in filter attribute '" + path + "'");
+            }
+            StringBuilder name = new StringBuilder();
+            for (Path.Element element : path) {
+                if (element.getValueFilter() != null) {
+                    throw BadRequestException.invalidFilter("Value filters are not allowed in '" + path + "'");
+                }
+                if (!name.isEmpty()) {
+                    name.append('.');
+                }
+                name.append(element.getAttribute());
+            }
+            return name.toString();
+        }
+
+        private static FilterNode join(Target target, FilterNode node) {
+            return target.joinField() != null ? new FilterNode.Exists(target.joinField(), node) : node;
+        }
+    }
+}
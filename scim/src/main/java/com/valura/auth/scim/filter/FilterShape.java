@@ -0,0 +1,160 @@
+package com.valura.auth.scim.filter;
+
+import com.fasterxml.jackson.databind.node.BooleanNode;
+import com.fasterxml.jackson.databind.node.DecimalNode;
+import com.fasterxml.jackson.databind.node.LongNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import com.fasterxml.jackson.databind.node.ValueNode;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A filter string split into its shape and its literal values. The shape keeps attribute paths and
+ * operators (lower-cased, whitespace collapsed) and replaces each literal with a typed placeholder, so
+ * {@code userName eq "a"} and {@code USERNAME Eq "b"} share the key {@code username eq ?s}. Literals are
+ * returned in textual order, which is the order the filter compiler assigns slots in.
+ *
+ * <p>This is a single linear scan with no regular expressions; it only has to find literals, so anything
+ * it cannot make sense of is left for the real parser to reject.
+ */
+record FilterShape(String key, List<ValueNode> literals) {
+
+    static FilterShape of(String filter) {
+        StringBuilder key = new StringBuilder(filter.length());
+        List<ValueNode> literals = new ArrayList<>();
+        int length = filter.length();
+        int i = 0;
+        while (i < length) {
+            char c = filter.charAt(i);
+            if (Character.isWhitespace(c)) {
+                while (i < length && Character.isWhitespace(filter.charAt(i))) {
+                    i++;
+                }
+                if (!key.isEmpty() && i < length) {
+                    key.append(' ');
+                }
+            } else if (c == '"') {
+                int end = scanString(filter, i);
+                if (end < 0) {
+                    return unparameterized(filter);
+                }
+                try {
+                    literals.add(TextNode.valueOf(unescape(filter, i + 1, end)));
+                } catch (NumberFormatException e) {
+                    return unparameterized(filter);
+                }
+                key.append("?s");
+                i = end + 1;
+            } else if (c == '-' || (c >= '0' && c <= '9')) {
+                int end = i + 1;
+                while (end < length && isNumberPart(filter.charAt(end))) {
+                    end++;
+                }
+                try {
+                    literals.add(number(filter.substring(i, end)));
+                } catch (NumberFormatException e) {
+                    return unparameterized(filter);
+                }
+                key.append("?n");
+                i = end;
+            } else if (isWordPart(c)) {
+                int end = i + 1;
+                while (end < length && isWordPart(filter.charAt(end))) {
+                    end++;
+                }
+                String word = filter.substring(i, end).toLowerCase(Locale.ROOT);
+                switch (word) {
+                    case "true" -> {
+                        literals.add(BooleanNode.TRUE);
+                        key.append("?b");
+                    }
+                    case "false" -> {
+                        literals.add(BooleanNode.FALSE);
+                        key.append("?b");
+                    }
+                    case "null" -> {
+                        literals.add(NullNode.getInstance());
+                        key.append("?z");
+                    }
+                    default -> key.append(word);
+                }
+                i = end;
+            } else {
+                key.append(c);
+                i++;
+            }
+        }
+        return new FilterShape(key.toString(), literals);
+    }
+
+    /**
+     * A shape that only matches the exact filter text, used when the scan cannot separate literals safely.
+     */
+    private static FilterShape unparameterized(String filter) {
+        return new FilterShape(filter, null);
+    }
+
+    boolean isParameterized() {
+        return literals != null;
+    }
+
+    private static int scanString(String filter, int start) {
+        for (int i = start + 1; i < filter.length(); i++) {
+            char c = filter.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '"') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String unescape(String filter, int start, int end) {
+        StringBuilder value = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            char c = filter.charAt(i);
+            if (c != '\\' || i + 1 >= end) {
+                value.append(c);
+                continue;
+            }
+            char escaped = filter.charAt(++i);
+            switch (escaped) {
+                case 'b' -> value.append('\b');
+                case 'f' -> value.append('\f');
+                case 'n' -> value.append('\n');
+                case 'r' -> value.append('\r');
+                case 't' -> value.append('\t');
+                case 'u' -> {
+                    if (i + 4 < end) {
+                        value.append((char) Integer.parseInt(filter.substring(i + 1, i + 5), 16));
+                        i += 4;
+                    } else {
+                        value.append(escaped);
+                    }
+                }
+                default -> value.append(escaped);
+            }
+        }
+        return value.toString();
+    }
+
+    private static ValueNode number(String token) {
+        if (token.indexOf('.') < 0 && token.indexOf('e') < 0 && token.indexOf('E') < 0) {
+            return LongNode.valueOf(Long.parseLong(token));
+        }
+        return DecimalNode.valueOf(new BigDecimal(token));
+    }
+
+    private static boolean isNumberPart(char c) {
+        return (c >= '0' && c <= '9') || c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-';
+    }
+
+    private static boolean isWordPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '.' || c == ':' || c == '_' || c == '$' || c == '-';
+    }
+}
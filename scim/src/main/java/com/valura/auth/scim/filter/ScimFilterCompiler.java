@@ -0,0 +1,56 @@
+package com.valura.auth.scim.filter;
+
+import com.unboundid.scim2.common.exceptions.BadRequestException;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+
+/**
+ * Compiles RFC 7644 filter expressions into JPA {@link Specification}s so that filtering happens in the
+ * database. Parsing is delegated to the SCIM SDK; this class resolves attribute paths against a
+ * {@link FilterAttributes} mapping and rejects anything it cannot translate with {@code invalidFilter}
+ * instead of silently widening the result set.
+ *
+ * <p>Compiled plans are cached by {@link FilterShape}: provisioning clients send the same few filter
+ * shapes with different values, so after warm-up a search only scans the filter for its literals and
+ * binds them to a cached plan.
+ */
+@Component
+public class ScimFilterCompiler {
+
+    private final FilterPlans plans;
+
+    public ScimFilterCompiler(MeterRegistry meterRegistry,
+                              @Value("${scim.filter.plan-cache.maximum-size:1000}") long maximumSize) {
+        this.plans = new FilterPlans(meterRegistry, maximumSize, "scimFilterPlans");
+    }
+
+    public <T> Specification<T> toSpecification(String filter, FilterAttributes attributes) throws BadRequestException {
+        FilterPlans.Bound bound = plans.bind(filter, attributes);
+        FilterNode root = bound.plan().getRoot();
+        Object[] values = bound.values();
+        return (from, query, cb) -> root.toPredicate(from, query, cb, values);
+    }
+
+    /**
+     * The string a filter of the form {@code <path> eq "value"} compares {@code path} with, or null for any
+     * other filter. Lets callers answer single-key lookups such as {@code userName eq "bjensen"} directly.
+     */
+    public static String equalityValue(String filter, String path) {
+        if (filter == null) {
+            return null;
+        }
+        FilterShape shape = FilterShape.of(filter);
+        if (!shape.isParameterized() || !shape.key().equals(path.toLowerCase(Locale.ROOT) + " eq ?s")) {
+            return null;
+        }
+        return shape.literals().get(0).textValue();
+    }
+
+    FilterPlans.Compilation compile(String filter, FilterAttributes attributes) throws BadRequestException {
+        return FilterPlans.compile(filter, attributes);
+    }
+}
@@ -0,0 +1,10 @@
+package com.valura.auth.scim.filter;
+
+import java.util.Map;
+
+/**
+ * A filter rendered as a SQL condition on the resource table, which the query names by its table name. Every
+ * literal is a named bind parameter ({@code :filter0}, ...) whose value is in {@code values}.
+ */
+public record SqlFilter(String condition, Map<String, Object> values) {
+}
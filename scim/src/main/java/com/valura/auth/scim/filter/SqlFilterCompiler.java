@@ -0,0 +1,35 @@
+package com.valura.auth.scim.filter;
+
+import com.unboundid.scim2.common.exceptions.BadRequestException;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Compiles RFC 7644 filter expressions into SQL conditions with bind parameters, for callers that query the
+ * tables directly instead of through JPA. Accepts exactly the filters {@link ScimFilterCompiler} accepts and
+ * matches the same rows; plans are cached by {@link FilterShape} in the same way.
+ */
+@Component
+public class SqlFilterCompiler {
+
+    private final FilterPlans plans;
+
+    public SqlFilterCompiler(MeterRegistry meterRegistry,
+                             @Value("${scim.filter.plan-cache.maximum-size:1000}") long maximumSize) {
+        this.plans = new FilterPlans(meterRegistry, maximumSize, "scimSqlFilterPlans");
+    }
+
+    /**
+     * {@code filter} as a condition on {@link FilterAttributes#getTable()}, or null for no filter.
+     */
+    public SqlFilter toSql(String filter, FilterAttributes attributes) throws BadRequestException {
+        if (filter == null || filter.isBlank()) {
+            return null;
+        }
+        FilterPlans.Bound bound = plans.bind(filter, attributes);
+        SqlWriter sql = new SqlWriter(attributes.getTable());
+        bound.plan().getRoot().toSql(sql, bound.plan().toSqlValues(bound.values()));
+        return sql.toFilter();
+    }
+}
@@ -0,0 +1,84 @@
+package com.valura.auth.scim.filter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Collects the SQL text and bind values of a {@link FilterNode} tree. Columns are qualified with the alias
+ * of the table the node applies to: the resource table itself, or the joined table inside an {@code EXISTS}.
+ */
+final class SqlWriter {
+
+    /**
+     * How a multi-valued attribute's {@code joinField} reaches its table through {@code user_groups}.
+     */
+    private record Join(String table, String ownColumn, String otherColumn) {
+    }
+
+    private static final Map<String, Join> JOINS = Map.of(
+            "groups", new Join("groups", "user_id", "group_id"),
+            "members", new Join("users", "group_id", "user_id")
+    );
+
+    private final StringBuilder sql = new StringBuilder();
+    private final Map<String, Object> values = new LinkedHashMap<>();
+    private String alias;
+    private int joins;
+
+    SqlWriter(String table) {
+        this.alias = table;
+    }
+
+    SqlWriter append(String text) {
+        sql.append(text);
+        return this;
+    }
+
+    /**
+     * The column of an entity field, e.g. {@code users.user_name} for {@code userName}.
+     */
+    String column(String field) {
+        StringBuilder column = new StringBuilder(alias).append('.');
+        for (char c : field.toCharArray()) {
+            if (Character.isUpperCase(c)) {
+                column.append('_').append(Character.toLowerCase(c));
+            } else {
+                column.append(c);
+            }
+        }
+        return column.toString();
+    }
+
+    /**
+     * A new bind parameter holding {@code value}.
+     */
+    String bind(Object value) {
+        String name = "filter" + values.size();
+        values.put(name, value);
+        return ":" + name;
+    }
+
+    /**
+     * Writes a correlated {@code EXISTS} over the live rows reached through {@code joinField}, with the
+     * condition {@code node} writes on the joined table.
+     */
+    void exists(String joinField, FilterNode node, Object[] nodeValues) {
+        Join join = JOINS.get(joinField);
+        String outer = alias;
+        String membership = "m" + joins;
+        String joined = "j" + joins++;
+        sql.append("EXISTS (SELECT 1 FROM user_groups ").append(membership)
+                .append(" JOIN ").append(join.table()).append(' ').append(joined)
+                .append(" ON ").append(joined).append(".id = ").append(membership).append('.').append(join.otherColumn())
+                .append(" WHERE ").append(membership).append('.').append(join.ownColumn()).append(" = ").append(outer).append(".id")
+                .append(" AND ").append(joined).append(".deleted_at IS NULL AND (");
+        alias = joined;
+        node.toSql(this, nodeValues);
+        alias = outer;
+        sql.append("))");
+    }
+
+    SqlFilter toFilter() {
+        return new SqlFilter(sql.toString(), Map.copyOf(values));
+    }
+}
@@ -0,0 +1,51 @@
+package com.valura.auth.scim.mapper;
+
+import com.valura.auth.database.entity.GroupEntity;
+
+import java.time.Instant;
+
+/**
+ * The stored state of a group, without its members, that {@link ScimResourceMapper} turns into a SCIM
+ * resource, whether it was read through JPA or as a row.
+ */
+public interface GroupView {
+
+    String externalId();
+
+    String displayName();
+
+    Instant created();
+
+    Instant lastModified();
+
+    long version();
+
+    static GroupView of(GroupEntity entity) {
+        return new GroupView() {
+            @Override
+            public String externalId() {
+                return entity.getExternalId();
+            }
+
+            @Override
+            public String displayName() {
+                return entity.getDisplayName();
+            }
+
+            @Override
+            public Instant created() {
+                return entity.getCreatedAt();
+            }
+
+            @Override
+            public Instant lastModified() {
+                return entity.getUpdatedAt();
+            }
+
+            @Override
+            public long version() {
+                return entity.getVersion();
+            }
+        };
+    }
+}
@@ -0,0 +1,106 @@
+package com.valura.auth.scim.mapper;
+
+import com.unboundid.scim2.common.types.Email;
+import com.unboundid.scim2.common.types.GroupResource;
+import com.unboundid.scim2.common.types.Member;
+import com.unboundid.scim2.common.types.Meta;
+import com.unboundid.scim2.common.types.Name;
+import com.unboundid.scim2.common.types.UserResource;
+import com.valura.auth.database.repository.UserReference;
+import com.valura.auth.scim.service.ETags;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * Builds the SCIM representation of stored users and groups, shared by the servlet and the reactive
+ * services so that both serve identical resources.
+ */
+public final class ScimResourceMapper {
+
+    private ScimResourceMapper() {
+    }
+
+    public static UserResource toScimUser(UserView user) {
+        UserResource scimUser = new UserResource();
+        scimUser.setId(user.externalId());
+        scimUser.setUserName(user.userName());
+        scimUser.setDisplayName(user.displayName());
+        scimUser.setActive(user.active());
+
+        if (user.firstName() != null || user.lastName() != null) {
+            Name name = new Name();
+            name.setGivenName(user.firstName());
+            name.setFamilyName(user.lastName());
+            if (user.firstName() != null && user.lastName() != null) {
+                name.setFormatted(user.firstName() + " " + user.lastName());
+            } else {
+                name.setFormatted(user.firstName() != null ? user.firstName() : user.lastName());
+            }
+            scimUser.setName(name);
+        }
+
+        if (user.email() != null) {
+            Email email = new Email();
+            email.setValue(user.email());
+            email.setPrimary(true);
+            email.setType("work");
+            List<Email> emails = new ArrayList<>();
+            emails.add(email);
+            scimUser.setEmails(emails);
+        }
+
+        scimUser.setMeta(meta("User", "/scim/v2/Users/", user.externalId(), user.created(), user.lastModified(),
+                user.version()));
+        return scimUser;
+    }
+
+    /**
+     * @param users the members of the group, in the order they are listed
+     */
+    public static GroupResource toScimGroup(GroupView group, List<UserReference> users) {
+        GroupResource scimGroup = new GroupResource();
+        scimGroup.setId(group.externalId());
+        scimGroup.setDisplayName(group.displayName());
+
+        if (!users.isEmpty()) {
+            List<Member> members = new ArrayList<>(users.size());
+            for (UserReference user : users) {
+                Member member = new Member();
+                member.setValue(user.externalId());
+                member.setRef(URI.create("/scim/v2/Users/" + user.externalId()));
+                member.setDisplay(user.userName());
+                members.add(member);
+            }
+            scimGroup.setMembers(members);
+        }
+
+        scimGroup.setMeta(meta("Group", "/scim/v2/Groups/", group.externalId(), group.created(), group.lastModified(),
+                group.version()));
+        return scimGroup;
+    }
+
+    private static Meta meta(String resourceType, String path, String externalId, Instant created,
+                             Instant lastModified, long version) {
+        Meta meta = new Meta();
+        meta.setResourceType(resourceType);
+        meta.setCreated(calendar(created));
+        meta.setLastModified(calendar(lastModified));
+        meta.setLocation(URI.create(path + externalId));
+        meta.setVersion(ETags.of(version));
+        return meta;
+    }
+
+    private static Calendar calendar(Instant instant) {
+        if (instant == null) {
+            return null;
+        }
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        calendar.setTimeInMillis(instant.toEpochMilli());
+        return calendar;
+    }
+}
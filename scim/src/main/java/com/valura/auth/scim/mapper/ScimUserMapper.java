@@ -5,10 +5,7 @@ import com.valura.auth.database.entity.UserEntity;
 import org.springframework.stereotype.Component;
 
 import java.net.URI;
-import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.List;
-import java.util.TimeZone;
 import java.util.stream.Collectors;
 
 @Component
@@ -33,35 +30,7 @@ public class ScimUserMapper {
     }
 
     public UserResource toScim(UserEntity entity) {
-        UserResource scimUser = new UserResource();
-        scimUser.setId(entity.getExternalId());
-        scimUser.setUserName(entity.getUserName());
-        scimUser.setDisplayName(entity.getDisplayName());
-        scimUser.setActive(entity.isActive());
-
-        if (entity.getFirstName() != null || entity.getLastName() != null) {
-            Name name = new Name();
-            name.setGivenName(entity.getFirstName());
-            name.setFamilyName(entity.getLastName());
-            if (entity.getFirstName() != null && entity.getLastName() != null) {
-                name.setFormatted(entity.getFirstName() + " " + entity.getLastName());
-            } else if (entity.getFirstName() != null) {
-                name.setFormatted(entity.getFirstName());
-            } else if (entity.getLastName() != null) {
-                name.setFormatted(entity.getLastName());
-            }
-            scimUser.setName(name);
-        }
-
-        if (entity.getEmail() != null) {
-            Email email = new Email();
-            email.setValue(entity.getEmail());
-            email.setPrimary(true);
-            email.setType("work");
-            List<Email> emails = new ArrayList<>();
-            emails.add(email);
-            scimUser.setEmails(emails);
-        }
+        UserResource scimUser = ScimResourceMapper.toScimUser(UserView.of(entity));
 
         if (entity.getGroups() != null && !entity.getGroups().isEmpty()) {
             List<Group> groups = entity.getGroups().stream()
@@ -69,48 +38,13 @@ public class ScimUserMapper {
                         Group group = new Group();
                         group.setValue(groupEntity.getExternalId());
                         group.setDisplay(groupEntity.getDisplayName());
-                        try {
-                            group.setRef(URI.create("/scim/v2/Groups/" + groupEntity.getExternalId()));
-                        } catch (IllegalArgumentException e) {
-                            throw new RuntimeException("Invalid URI format", e);
-                        }
+                        group.setRef(URI.create("/scim/v2/Groups/" + groupEntity.getExternalId()));
                         return group;
                     })
                     .collect(Collectors.toList());
             scimUser.setGroups(groups);
         }
 
-        Meta meta = new Meta();
-        meta.setResourceType("User");
-
-        if (entity.getCreatedAt() != null) {
-            Calendar created = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-            created.setTimeInMillis(entity.getCreatedAt().toEpochMilli());
-            meta.setCreated(created);
-        }
-
-        if (entity.getUpdatedAt() != null) {
-            Calendar modified = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-            modified.setTimeInMillis(entity.getUpdatedAt().toEpochMilli());
-            meta.setLastModified(modified);
-        }
-
-        try {
-            meta.setLocation(URI.create("/scim/v2/Users/" + entity.getExternalId()));
-        } catch (IllegalArgumentException e) {
-            throw new RuntimeException("Invalid URI format", e);
-        }
-
-        scimUser.setMeta(meta);
         return scimUser;
     }
-
-    private Calendar instantToCalendar(java.time.Instant instant) {
-        if (instant == null) {
-            return null;
-        }
-        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-        calendar.setTimeInMillis(instant.toEpochMilli());
-        return calendar;
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,86 @@
+package com.valura.auth.scim.mapper;
+
+import com.valura.auth.database.entity.UserEntity;
+
+import java.time.Instant;
+
+/**
+ * The stored state of a user that {@link ScimResourceMapper} turns into a SCIM resource, whether it was
+ * read through JPA or as a row.
+ */
+public interface UserView {
+
+    String externalId();
+
+    String userName();
+
+    String displayName();
+
+    String firstName();
+
+    String lastName();
+
+    String email();
+
+    boolean active();
+
+    Instant created();
+
+    Instant lastModified();
+
+    long version();
+
+    static UserView of(UserEntity entity) {
+        return new UserView() {
+            @Override
+            public String externalId() {
+                return entity.getExternalId();
+            }
+
+            @Override
+            public String userName() {
+                return entity.getUserName();
+            }
+
+            @Override
+            public String displayName() {
+                return entity.getDisplayName();
+            }
+
+            @Override
+            public String firstName() {
+                return entity.getFirstName();
+            }
+
+            @Override
+            public String lastName() {
+                return entity.getLastName();
+            }
+
+            @Override
+            public String email() {
+                return entity.getEmail();
+            }
+
+            @Override
+            public boolean active() {
+                return entity.isActive();
+            }
+
+            @Override
+            public Instant created() {
+                return entity.getCreatedAt();
+            }
+
+            @Override
+            public Instant lastModified() {
+                return entity.getUpdatedAt();
+            }
+
+            @Override
+            public long version() {
+                return entity.getVersion();
+            }
+        };
+    }
+}
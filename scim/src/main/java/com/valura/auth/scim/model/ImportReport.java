@@ -0,0 +1,63 @@
+package com.valura.auth.scim.model;
+
+import java.util.List;
+
+/**
+ * Outcome of a bulk import. {@code errors} lists rejected lines in file order and may be truncated;
+ * {@code failed} always counts all of them.
+ */
+public class ImportReport {
+
+    /**
+     * One rejected line of the import file.
+     */
+    public record RowError(int line, String message) {
+    }
+
+    private final int received;
+    private final int usersCreated;
+    private final int usersUpdated;
+    private final int groupsCreated;
+    private final int groupsUpdated;
+    private final int failed;
+    private final List<RowError> errors;
+
+    public ImportReport(int received, int usersCreated, int usersUpdated, int groupsCreated, int groupsUpdated,
+                        int failed, List<RowError> errors) {
+        this.received = received;
+        this.usersCreated = usersCreated;
+        this.usersUpdated = usersUpdated;
+        this.groupsCreated = groupsCreated;
+        this.groupsUpdated = groupsUpdated;
+        this.failed = failed;
+        this.errors = errors;
+    }
+
+    public int getReceived() {
+        return received;
+    }
+
+    public int getUsersCreated() {
+        return usersCreated;
+    }
+
+    public int getUsersUpdated() {
+        return usersUpdated;
+    }
+
+    public int getGroupsCreated() {
+        return groupsCreated;
+    }
+
+    public int getGroupsUpdated() {
+        return groupsUpdated;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public List<RowError> getErrors() {
+        return errors;
+    }
+}
@@ -0,0 +1,96 @@
+package com.valura.auth.scim.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.List;
+
+/**
+ * An RFC 7644 section 3.7 BulkRequest.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ScimBulkRequest {
+
+    public static final String SCHEMA = "urn:ietf:params:scim:api:messages:2.0:BulkRequest";
+
+    private String[] schemas = {SCHEMA};
+
+    private Integer failOnErrors;
+
+    @JsonProperty("Operations")
+    private List<Operation> operations;
+
+    public String[] getSchemas() {
+        return schemas;
+    }
+
+    public void setSchemas(String[] schemas) {
+        this.schemas = schemas;
+    }
+
+    public Integer getFailOnErrors() {
+        return failOnErrors;
+    }
+
+    public void setFailOnErrors(Integer failOnErrors) {
+        this.failOnErrors = failOnErrors;
+    }
+
+    public List<Operation> getOperations() {
+        return operations;
+    }
+
+    public void setOperations(List<Operation> operations) {
+        this.operations = operations;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Operation {
+        private String method;
+        private String bulkId;
+        private String version;
+        private String path;
+        private JsonNode data;
+
+        public String getMethod() {
+            return method;
+        }
+
+        public void setMethod(String method) {
+            this.method = method;
+        }
+
+        public String getBulkId() {
+            return bulkId;
+        }
+
+        public void setBulkId(String bulkId) {
+            this.bulkId = bulkId;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        public void setVersion(String version) {
+            this.version = version;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public void setPath(String path) {
+            this.path = path;
+        }
+
+        public JsonNode getData() {
+            return data;
+        }
+
+        public void setData(JsonNode data) {
+            this.data = data;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.valura.auth.scim.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.valura.auth.scim.exception.ScimError;
+
+import java.util.List;
+
+/**
+ * An RFC 7644 section 3.7 BulkResponse.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ScimBulkResponse {
+
+    public static final String SCHEMA = "urn:ietf:params:scim:api:messages:2.0:BulkResponse";
+
+    private final String[] schemas = {SCHEMA};
+
+    @JsonProperty("Operations")
+    private final List<Result> operations;
+
+    public ScimBulkResponse(List<Result> operations) {
+        this.operations = operations;
+    }
+
+    public String[] getSchemas() {
+        return schemas;
+    }
+
+    public List<Result> getOperations() {
+        return operations;
+    }
+
+    /**
+     * The outcome of one operation; {@code response} is only set for failed operations.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Result {
+        private final String method;
+        private final String bulkId;
+        private final String location;
+        private final String version;
+        private final String status;
+        private final ScimError response;
+
+        public Result(String method, String bulkId, String location, String version, int status, ScimError response) {
+            this.method = method;
+            this.bulkId = bulkId;
+            this.location = location;
+            this.version = version;
+            this.status = String.valueOf(status);
+            this.response = response;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public String getBulkId() {
+            return bulkId;
+        }
+
+        public String getLocation() {
+            return location;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public ScimError getResponse() {
+            return response;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.valura.auth.scim.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.unboundid.scim2.common.ScimResource;
+
+import java.util.List;
+
+/**
+ * One page of the change feed. {@code watermark} is passed back as {@code since} to read on from here; while
+ * {@code hasMore} is set it continues the same window and should be requested right away.
+ */
+public class ScimChanges {
+
+    /**
+     * One change. Users and groups are {@code upsert}ed with their full {@code resource} (groups without
+     * members) or {@code delete}d; memberships are {@code add}ed or {@code remove}d, with {@code id} the group
+     * and {@code value} the user. A deleted user or group takes all its memberships with it.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record Change(String type, String operation, String id, String value, ScimResource resource) {
+    }
+
+    private final String watermark;
+    private final boolean hasMore;
+    private final List<Change> changes;
+
+    public ScimChanges(String watermark, boolean hasMore, List<Change> changes) {
+        this.watermark = watermark;
+        this.hasMore = hasMore;
+        this.changes = changes;
+    }
+
+    public String getWatermark() {
+        return watermark;
+    }
+
+    public boolean isHasMore() {
+        return hasMore;
+    }
+
+    public List<Change> getChanges() {
+        return changes;
+    }
+}
@@ -1,32 +1,23 @@
 package com.valura.auth.scim.model;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.unboundid.scim2.common.types.GroupResource;
-import com.unboundid.scim2.common.messages.PatchRequest;
-import com.unboundid.scim2.common.types.Member;
-
-import java.util.List;
 
 @JsonInclude(JsonInclude.Include.NON_NULL)
 public class ScimGroup extends GroupResource {
     public static class PatchOp {
         private String op;
         private String path;
-        private PatchValue value;
-
-        public static class PatchValue {
-            private List<Member> members;
-
-            public List<Member> getMembers() { return members; }
-            public void setMembers(List<Member> members) { this.members = members; }
-        }
+        // A string, an object or an array of members depending on op and path (RFC 7644 section 3.5.2)
+        private JsonNode value;
 
         // Getters and setters
         public String getOp() { return op; }
         public void setOp(String op) { this.op = op; }
         public String getPath() { return path; }
         public void setPath(String path) { this.path = path; }
-        public PatchValue getValue() { return value; }
-        public void setValue(PatchValue value) { this.value = value; }
+        public JsonNode getValue() { return value; }
+        public void setValue(JsonNode value) { this.value = value; }
     }
-}
\ No newline at end of file
+}
@@ -8,12 +8,15 @@ import java.util.List;
 @JsonInclude(JsonInclude.Include.NON_NULL)
 public class ScimListResponse<T> {
 
+    public static final String SCHEMA = "urn:ietf:params:scim:api:messages:2.0:ListResponse";
+
     @JsonProperty("Resources")
     private List<T> resources;
     private int totalResults;
     private Integer startIndex;
     private Integer itemsPerPage;
-    private final String[] schemas = {"urn:ietf:params:scim:api:messages:2.0:ListResponse"};
+    private String nextCursor;
+    private final String[] schemas = {SCHEMA};
 
     public ScimListResponse() {
     }
@@ -57,6 +60,14 @@ public class ScimListResponse<T> {
         this.itemsPerPage = itemsPerPage;
     }
 
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
     public String[] getSchemas() {
         return schemas;
     }
@@ -67,6 +78,7 @@ public class ScimListResponse<T> {
         private int totalResults;
         private Integer startIndex;
         private Integer itemsPerPage;
+        private String nextCursor;
 
         public Builder<T> resources(List<T> resources) {
             this.resources = resources;
@@ -88,8 +100,15 @@ public class ScimListResponse<T> {
             return this;
         }
 
+        public Builder<T> nextCursor(String nextCursor) {
+            this.nextCursor = nextCursor;
+            return this;
+        }
+
         public ScimListResponse<T> build() {
-            return new ScimListResponse<>(resources, totalResults, startIndex, itemsPerPage);
+            ScimListResponse<T> response = new ScimListResponse<>(resources, totalResults, startIndex, itemsPerPage);
+            response.setNextCursor(nextCursor);
+            return response;
         }
     }
 
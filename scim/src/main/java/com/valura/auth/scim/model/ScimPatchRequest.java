@@ -0,0 +1,38 @@
+package com.valura.auth.scim.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ScimPatchRequest<T> {
+
+    private String[] schemas = {"urn:ietf:params:scim:api:messages:2.0:PatchOp"};
+
+    @JsonProperty("Operations")
+    private List<T> operations;
+
+    public ScimPatchRequest() {
+    }
+
+    public ScimPatchRequest(List<T> operations) {
+        this.operations = operations;
+    }
+
+    public String[] getSchemas() {
+        return schemas;
+    }
+
+    public void setSchemas(String[] schemas) {
+        this.schemas = schemas;
+    }
+
+    public List<T> getOperations() {
+        return operations;
+    }
+
+    public void setOperations(List<T> operations) {
+        this.operations = operations;
+    }
+}
@@ -0,0 +1,59 @@
+package com.valura.auth.scim.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.valura.auth.database.config.OutboxSink;
+import com.valura.auth.database.repository.OutboxEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Writes outbox events as JSON lines, appended to {@code file} or, without one, logged at INFO. Meant for
+ * local testing and as the fallback when no other {@link OutboxSink} is configured.
+ */
+public class LogOutboxSink implements OutboxSink {
+
+    private static final Logger log = LoggerFactory.getLogger(LogOutboxSink.class);
+
+    private final ObjectMapper objectMapper;
+    private final Path file;
+
+    public LogOutboxSink(ObjectMapper objectMapper, Path file) {
+        this.objectMapper = objectMapper;
+        this.file = file;
+    }
+
+    @Override
+    public void publish(List<OutboxEvent> events) {
+        try {
+            if (file == null) {
+                for (OutboxEvent event : events) {
+                    log.info("{}", objectMapper.writeValueAsString(event));
+                }
+                return;
+            }
+            synchronized (this) {
+                try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                    for (OutboxEvent event : events) {
+                        writer.write(objectMapper.writeValueAsString(event));
+                        writer.write('\n');
+                    }
+                }
+            }
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Outbox event could not be serialized", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Outbox events could not be written to " + file, e);
+        }
+    }
+}
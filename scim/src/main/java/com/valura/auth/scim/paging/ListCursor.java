@@ -0,0 +1,55 @@
+package com.valura.auth.scim.paging;
+
+import com.unboundid.scim2.common.exceptions.BadRequestException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque cursors for RFC 9865 cursor-based pagination. A cursor records the primary key of the last
+ * resource on a page; the next page is a keyset seek ({@code id > :last ORDER BY id}), so every page
+ * costs the same index range scan no matter how deep the client has paged.
+ */
+public final class ListCursor {
+
+    public static final String INVALID_CURSOR = "invalidCursor";
+
+    public static final Sort ORDER = Sort.by(Sort.Direction.ASC, "id");
+
+    private static final String PREFIX = "id:";
+
+    private ListCursor() {
+    }
+
+    public static String encode(long lastId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((PREFIX + lastId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the id to seek past, or {@code null} when the client asked for the first page with an empty cursor.
+     */
+    public static Long decode(String cursor) throws BadRequestException {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8);
+            if (decoded.startsWith(PREFIX)) {
+                return Long.parseLong(decoded.substring(PREFIX.length()));
+            }
+        } catch (IllegalArgumentException e) {
+            // fall through to the SCIM error below
+        }
+        throw new BadRequestException("The cursor '" + cursor + "' is not valid", INVALID_CURSOR);
+    }
+
+    /**
+     * Restricts a query to the rows after {@code lastId} in {@link #ORDER}.
+     */
+    public static <T> Specification<T> after(Long lastId) {
+        return (root, query, cb) -> lastId == null ? null : cb.greaterThan(root.get("id"), lastId);
+    }
+}
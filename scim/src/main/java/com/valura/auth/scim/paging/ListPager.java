@@ -0,0 +1,253 @@
+package com.valura.auth.scim.paging;
+
+import com.unboundid.scim2.common.exceptions.BadRequestException;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+
+/**
+ * Runs a SCIM list query either by {@code startIndex} (offset, for legacy clients) or by {@code cursor}
+ * (keyset seek on {@code id}). Both modes order by {@code id} so that pages are stable between requests.
+ *
+ * <p>Outside {@link TotalResultsMode#EXACT} pages are fetched as {@link Slice}s: one extra row tells whether
+ * the page is the last one, in which case the total is known without a {@code COUNT(*)}. Only when more rows
+ * follow is the {@link TotalResultsCounter} asked for an estimated or cached total.
+ *
+ * <p>Pages larger than {@code scim.list.streaming.min-count} can instead be {@link #stream streamed}: rows are
+ * read through a forward-only cursor and handed out in chunks of {@code scim.list.streaming.fetch-size}, so
+ * memory use does not grow with the page size.
+ */
+@Component
+public class ListPager {
+
+    public static final int DEFAULT_COUNT = 100;
+
+    private final TotalResultsCounter counter;
+    private final TransactionTemplate readOnlyTransaction;
+    private final int streamingMinCount;
+    private final int fetchSize;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public ListPager(TotalResultsCounter counter, PlatformTransactionManager transactionManager,
+                     @Value("${scim.list.streaming.min-count:1000}") int streamingMinCount,
+                     @Value("${scim.list.streaming.fetch-size:500}") int fetchSize) {
+        this.counter = counter;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.streamingMinCount = streamingMinCount;
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * The repository, entity type and table behind one SCIM resource type.
+     */
+    public record ListSource<T>(JpaSpecificationExecutor<T> repository, Class<T> type, String table,
+                                ToLongFunction<T> idOf) {
+    }
+
+    /**
+     * One page of entities plus the paging attributes the list response needs.
+     * {@code startIndex} is null in cursor mode and {@code nextCursor} is null in index mode or on the last page.
+     */
+    public record ListPage<T>(List<T> content, long totalResults, Integer startIndex, String nextCursor) {
+    }
+
+    /**
+     * The paging attributes of a streamed page, known once its last row has been read.
+     */
+    public record ListSummary(long totalResults, Integer startIndex, int itemsPerPage, String nextCursor) {
+    }
+
+    /**
+     * Receives a streamed page chunk by chunk. The chunk's entities are detached once it returns.
+     */
+    @FunctionalInterface
+    public interface ChunkConsumer<T> {
+        void accept(List<T> chunk) throws IOException;
+    }
+
+    /**
+     * Whether a page of {@code count} resources should be {@link #stream streamed} rather than fetched.
+     */
+    public boolean isStreamed(Integer count) {
+        return count != null && count > streamingMinCount;
+    }
+
+    public <T> ListPage<T> fetch(ListSource<T> source, Specification<T> specification, String filter,
+                                 Integer startIndex, Integer count, String cursor) throws BadRequestException {
+        Specification<T> where = specification != null ? specification : ListPager.all();
+        String filterKey = specification != null ? filter.trim() : null;
+        int pageSize = count == null || count < 0 ? DEFAULT_COUNT : Math.min(count, Integer.MAX_VALUE - 1);
+        JpaSpecificationExecutor<T> repository = source.repository();
+
+        if (cursor == null) {
+            int start = startIndex != null && startIndex > 1 ? startIndex : 1;
+            if (pageSize == 0) {
+                return new ListPage<>(List.of(), total(source, where, filterKey), start, null);
+            }
+            OffsetPageRequest pageable = OffsetPageRequest.ofStartIndex(start, pageSize, ListCursor.ORDER);
+            if (counter.getMode() == TotalResultsMode.EXACT) {
+                Page<T> page = repository.findAll(where, pageable);
+                return new ListPage<>(page.getContent(), page.getTotalElements(), start, null);
+            }
+            Slice<T> slice = repository.findBy(where, query -> query.sortBy(ListCursor.ORDER).slice(pageable));
+            long seen = pageable.getOffset() + slice.getNumberOfElements();
+            long total = slice.hasContent() || pageable.getOffset() == 0
+                    ? total(source, where, filterKey, seen, slice.hasNext())
+                    : total(source, where, filterKey);
+            return new ListPage<>(slice.getContent(), total, start, null);
+        }
+
+        Long after = ListCursor.decode(cursor);
+        if (pageSize == 0) {
+            return new ListPage<>(List.of(), total(source, where, filterKey), null, null);
+        }
+        // Fetch one extra row to learn whether another page exists without a second query.
+        List<T> rows = repository.findBy(where.and(ListCursor.after(after)),
+                query -> query.sortBy(ListCursor.ORDER).limit(pageSize + 1).all());
+        boolean hasNext = rows.size() > pageSize;
+        List<T> content = hasNext ? rows.subList(0, pageSize) : rows;
+        long total = after == null
+                ? total(source, where, filterKey, content.size(), hasNext)
+                : total(source, where, filterKey);
+        String nextCursor = hasNext ? ListCursor.encode(source.idOf().applyAsLong(content.get(pageSize - 1))) : null;
+        return new ListPage<>(content, total, null, nextCursor);
+    }
+
+    /**
+     * Reads the same page as {@link #fetch} in its own read-only transaction, passing the rows to
+     * {@code consumer} in chunks of the fetch size instead of collecting them.
+     */
+    public <T> ListSummary stream(ListSource<T> source, Specification<T> specification, String filter,
+                                  Integer startIndex, Integer count, String cursor, ChunkConsumer<T> consumer)
+            throws BadRequestException, IOException {
+        Specification<T> where = specification != null ? specification : ListPager.all();
+        String filterKey = specification != null ? filter.trim() : null;
+        int pageSize = count == null || count < 0 ? DEFAULT_COUNT : Math.min(count, Integer.MAX_VALUE - 1);
+        Integer start = cursor == null ? Integer.valueOf(startIndex != null && startIndex > 1 ? startIndex : 1) : null;
+        Long after = cursor == null ? null : ListCursor.decode(cursor);
+        long offset = start != null ? start - 1L : 0;
+
+        try {
+            return readOnlyTransaction.execute(status -> {
+                if (pageSize == 0) {
+                    return new ListSummary(total(source, where, filterKey), start, 0, null);
+                }
+                Specification<T> seek = after != null ? where.and(ListCursor.after(after)) : where;
+                List<T> chunk = new ArrayList<>(Math.min(pageSize, fetchSize));
+                int seen = 0;
+                long lastId = 0;
+                boolean hasNext = false;
+                try (Stream<T> rows = cursorQuery(source.type(), seek, offset, pageSize + 1).getResultStream()) {
+                    for (Iterator<T> iterator = rows.iterator(); iterator.hasNext(); ) {
+                        T row = iterator.next();
+                        if (seen == pageSize) {
+                            hasNext = true;
+                            break;
+                        }
+                        seen++;
+                        lastId = source.idOf().applyAsLong(row);
+                        chunk.add(row);
+                        if (chunk.size() == fetchSize) {
+                            consume(consumer, chunk);
+                        }
+                    }
+                    consume(consumer, chunk);
+                }
+
+                long total = (seen > 0 || offset == 0) && after == null
+                        ? total(source, where, filterKey, offset + seen, hasNext)
+                        : total(source, where, filterKey);
+                String nextCursor = start == null && hasNext ? ListCursor.encode(lastId) : null;
+                return new ListSummary(total, start, seen, nextCursor);
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * A forward-only query with a JDBC fetch size. PostgreSQL only honours the fetch size inside a
+     * transaction, which is why {@link #stream} runs in one.
+     */
+    private <T> TypedQuery<T> cursorQuery(Class<T> type, Specification<T> where, long offset, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<T> query = cb.createQuery(type);
+        Root<T> root = query.from(type);
+        Predicate predicate = where.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.orderBy(QueryUtils.toOrders(ListCursor.ORDER, root, cb));
+        return entityManager.createQuery(query)
+                .setFirstResult(Math.toIntExact(offset))
+                .setMaxResults(limit)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(HibernateHints.HINT_READ_ONLY, true);
+    }
+
+    private <T> void consume(ChunkConsumer<T> consumer, List<T> chunk) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        try {
+            consumer.accept(chunk);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        chunk.clear();
+        entityManager.clear();
+    }
+
+    /**
+     * Drops cached totals; call on every write to a resource that list filters can see.
+     */
+    public void resourcesChanged() {
+        counter.invalidate();
+    }
+
+    private <T> long total(ListSource<T> source, Specification<T> where, String filterKey) {
+        return counter.count(source.table(), filterKey, () -> source.repository().count(where));
+    }
+
+    /**
+     * Total for a page that ends {@code seen} rows into the list. Without a next page that is the exact total;
+     * otherwise the counter's answer is raised to at least {@code seen + 1}, since statistics and cached counts
+     * can lag behind the table.
+     */
+    private <T> long total(ListSource<T> source, Specification<T> where, String filterKey, long seen, boolean hasNext) {
+        if (!hasNext) {
+            counter.remember(source.table(), filterKey, seen);
+            return seen;
+        }
+        return Math.max(total(source, where, filterKey), seen + 1);
+    }
+
+    private static <T> Specification<T> all() {
+        return (root, query, cb) -> null;
+    }
+}
@@ -0,0 +1,86 @@
+package com.valura.auth.scim.paging;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.unboundid.scim2.common.exceptions.BadRequestException;
+import com.valura.auth.scim.model.ScimListResponse;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Writes a SCIM ListResponse while its page is still being read. Resources are serialised one at a time
+ * as {@link ListPager#stream} hands out rows; the paging attributes, only known at the end, follow the
+ * {@code Resources} array, which JSON object member order allows.
+ */
+@Component
+public class ListResponseWriter {
+
+    private final ListPager listPager;
+    private final ObjectMapper objectMapper;
+
+    public ListResponseWriter(ListPager listPager, ObjectMapper objectMapper) {
+        this.listPager = listPager;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Returns a response body that streams the page. The cursor is checked now, so that a bad request
+     * is rejected before the response is committed.
+     */
+    public <T> StreamingResponseBody body(ListPager.ListSource<T> source, Specification<T> specification,
+                                          String filter, Integer startIndex, Integer count, String cursor,
+                                          Function<List<T>, List<?>> toResources) throws BadRequestException {
+        ListCursor.decode(cursor);
+        return out -> {
+            try (JsonGenerator generator = objectMapper.createGenerator(out)) {
+                generator.writeStartObject();
+                generator.writeArrayFieldStart("schemas");
+                generator.writeString(ScimListResponse.SCHEMA);
+                generator.writeEndArray();
+                generator.writeArrayFieldStart("Resources");
+                ListPager.ListSummary summary = listPager.stream(source, specification, filter, startIndex, count, cursor,
+                        chunk -> {
+                            for (Object resource : toResources.apply(chunk)) {
+                                generator.writeObject(resource);
+                            }
+                            generator.flush();
+                        });
+                generator.writeEndArray();
+                generator.writeNumberField("totalResults", (int) summary.totalResults());
+                if (summary.startIndex() != null) {
+                    generator.writeNumberField("startIndex", summary.startIndex());
+                }
+                generator.writeNumberField("itemsPerPage", summary.itemsPerPage());
+                if (summary.nextCursor() != null) {
+                    generator.writeStringField("nextCursor", summary.nextCursor());
+                }
+                generator.writeEndObject();
+            } catch (BadRequestException e) {
+                throw new IllegalStateException("Cursor was validated before streaming", e);
+            }
+        };
+    }
+
+    /**
+     * Writes every row of {@code source} as newline-delimited JSON, one resource per line.
+     */
+    public <T> void writeAll(OutputStream out, ListPager.ListSource<T> source,
+                             Function<List<T>, List<?>> toResources) throws IOException {
+        try {
+            listPager.stream(source, null, null, null, Integer.MAX_VALUE, null, chunk -> {
+                for (Object resource : toResources.apply(chunk)) {
+                    out.write(objectMapper.writeValueAsBytes(resource));
+                    out.write('\n');
+                }
+            });
+        } catch (BadRequestException e) {
+            throw new IllegalStateException("An unfiltered list without cursor cannot be a bad request", e);
+        }
+    }
+}
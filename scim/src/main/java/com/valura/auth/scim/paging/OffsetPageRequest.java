@@ -0,0 +1,101 @@
+package com.valura.auth.scim.paging;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.util.Objects;
+
+/**
+ * A {@link Pageable} addressed by row offset rather than page number. SCIM's {@code startIndex} is the
+ * 1-based index of the first result, so {@code startIndex=101&count=100} must skip exactly 100 rows,
+ * which {@code PageRequest.of(startIndex - 1, count)} does not.
+ */
+public final class OffsetPageRequest implements Pageable {
+
+    private final long offset;
+    private final int limit;
+    private final Sort sort;
+
+    private OffsetPageRequest(long offset, int limit, Sort sort) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("Offset must not be negative");
+        }
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be at least one");
+        }
+        this.offset = offset;
+        this.limit = limit;
+        this.sort = sort;
+    }
+
+    /**
+     * Creates a request from SCIM's 1-based {@code startIndex}; values below 1 are treated as 1 (RFC 7644 §3.4.2.4).
+     */
+    public static OffsetPageRequest ofStartIndex(Integer startIndex, int count, Sort sort) {
+        long offset = (startIndex != null && startIndex > 1) ? startIndex - 1L : 0L;
+        return new OffsetPageRequest(offset, count, sort);
+    }
+
+    @Override
+    public int getPageNumber() {
+        return (int) (offset / limit);
+    }
+
+    @Override
+    public int getPageSize() {
+        return limit;
+    }
+
+    @Override
+    public long getOffset() {
+        return offset;
+    }
+
+    @Override
+    public Sort getSort() {
+        return sort;
+    }
+
+    @Override
+    public Pageable next() {
+        return new OffsetPageRequest(offset + limit, limit, sort);
+    }
+
+    @Override
+    public Pageable previousOrFirst() {
+        return hasPrevious() ? new OffsetPageRequest(Math.max(0, offset - limit), limit, sort) : first();
+    }
+
+    @Override
+    public Pageable first() {
+        return new OffsetPageRequest(0, limit, sort);
+    }
+
+    @Override
+    public Pageable withPage(int pageNumber) {
+        return new OffsetPageRequest((long) pageNumber * limit, limit, sort);
+    }
+
+    @Override
+    public boolean hasPrevious() {
+        return offset > 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        OffsetPageRequest that = (OffsetPageRequest) o;
+        return offset == that.offset && limit == that.limit && Objects.equals(sort, that.sort);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(offset, limit, sort);
+    }
+
+    @Override
+    public String toString() {
+        return "OffsetPageRequest{offset=" + offset + ", limit=" + limit + ", sort=" + sort + '}';
+    }
+}
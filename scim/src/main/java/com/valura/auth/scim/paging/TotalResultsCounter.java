@@ -0,0 +1,115 @@
+package com.valura.auth.scim.paging;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Produces {@code totalResults} for list responses according to the configured {@link TotalResultsMode}.
+ * Callers only ask for a total when the page itself does not reveal it, see {@link ListPager}.
+ */
+@Component
+public class TotalResultsCounter {
+
+    private final TotalResultsMode mode;
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean postgres;
+    private final Cache<CountKey, Long> counts;
+
+    public TotalResultsCounter(DataSource dataSource, MeterRegistry meterRegistry,
+                               @Value("${scim.list.total-results:exact}") TotalResultsMode mode,
+                               @Value("${scim.list.count-cache.maximum-size:10000}") long maximumSize,
+                               @Value("${scim.list.count-cache.expire-after-write:5m}") Duration expireAfterWrite) {
+        this.mode = mode;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.postgres = mode == TotalResultsMode.ESTIMATED && isPostgres(dataSource);
+        // Invalidation only sees this node's writes; the expiry bounds how stale a count from another node can get.
+        this.counts = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, counts, "scimListCounts");
+    }
+
+    public TotalResultsMode getMode() {
+        return mode;
+    }
+
+    /**
+     * Returns the total for a list of {@code table} rows matching {@code filter} (null for unfiltered),
+     * calling {@code exactCount} only when the mode needs an exact figure.
+     */
+    public long count(String table, String filter, LongSupplier exactCount) {
+        switch (mode) {
+            case ESTIMATED:
+                if (filter == null && postgres) {
+                    Long estimate = jdbcTemplate.queryForObject(
+                            "SELECT reltuples::bigint FROM pg_class WHERE oid = to_regclass(?)", Long.class, table);
+                    // reltuples is -1 until the table has been vacuumed or analyzed once
+                    if (estimate != null && estimate >= 0) {
+                        return estimate;
+                    }
+                }
+                return exactCount.getAsLong();
+            case CACHED:
+                return counts.get(new CountKey(table, filter), key -> exactCount.getAsLong());
+            default:
+                return exactCount.getAsLong();
+        }
+    }
+
+    /**
+     * Records a total that a short final page proved exactly, so cached mode does not count it again.
+     */
+    public void remember(String table, String filter, long total) {
+        if (mode == TotalResultsMode.CACHED) {
+            counts.put(new CountKey(table, filter), total);
+        }
+    }
+
+    /**
+     * Drops cached counts after a write. Filters can reach across resource types (for example
+     * {@code groups.display} on Users), so every cached count is dropped, after commit when inside a transaction.
+     */
+    public void invalidate() {
+        if (mode != TotalResultsMode.CACHED) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    counts.invalidateAll();
+                }
+            });
+        } else {
+            counts.invalidateAll();
+        }
+    }
+
+    private static boolean isPostgres(DataSource dataSource) {
+        try {
+            String product = JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+            return "PostgreSQL".equals(product);
+        } catch (MetaDataAccessException e) {
+            return false;
+        }
+    }
+
+    private record CountKey(String table, String filter) {
+    }
+}
@@ -0,0 +1,13 @@
+package com.valura.auth.scim.paging;
+
+/**
+ * How list responses compute {@code totalResults}, configured with {@code scim.list.total-results}.
+ */
+public enum TotalResultsMode {
+    /** A {@code COUNT(*)} with the list predicate on every request. */
+    EXACT,
+    /** Planner statistics ({@code pg_class.reltuples}) for unfiltered lists on PostgreSQL, exact otherwise. */
+    ESTIMATED,
+    /** Exact counts cached per filter and dropped whenever a resource is written. */
+    CACHED
+}
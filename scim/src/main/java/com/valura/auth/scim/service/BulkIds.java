@@ -0,0 +1,157 @@
+package com.valura.auth.scim.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import com.unboundid.scim2.common.exceptions.ResourceConflictException;
+import com.valura.auth.scim.model.ScimBulkRequest.Operation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The {@code bulkId}s of a bulk request: which operation defines each, the resource ids they have resolved to
+ * so far, and the substitution of {@code "bulkId:<id>"} references in paths and data.
+ */
+final class BulkIds {
+
+    static final String PREFIX = "bulkId:";
+
+    private final Map<String, String> resolved = new HashMap<>();
+
+    /**
+     * Orders operations so that each comes after the operations defining the bulkIds it references, otherwise
+     * keeping request order. Operations in a reference cycle keep their place and fail to resolve when run.
+     */
+    static List<Operation> ordered(List<Operation> operations) {
+        Map<String, Integer> definedBy = new HashMap<>();
+        for (int i = 0; i < operations.size(); i++) {
+            String bulkId = operations.get(i).getBulkId();
+            if (bulkId != null) {
+                definedBy.putIfAbsent(bulkId, i);
+            }
+        }
+        List<Set<Integer>> dependencies = new ArrayList<>(operations.size());
+        boolean forwardReference = false;
+        for (int i = 0; i < operations.size(); i++) {
+            Set<Integer> dependsOn = new LinkedHashSet<>();
+            for (String bulkId : referencedBy(operations.get(i))) {
+                Integer definition = definedBy.get(bulkId);
+                if (definition != null && definition != i) {
+                    dependsOn.add(definition);
+                    forwardReference |= definition > i;
+                }
+            }
+            dependencies.add(dependsOn);
+        }
+        if (!forwardReference) {
+            return operations;
+        }
+
+        List<Operation> ordered = new ArrayList<>(operations.size());
+        boolean[] done = new boolean[operations.size()];
+        while (ordered.size() < operations.size()) {
+            int next = -1;
+            for (int i = 0; i < operations.size() && next < 0; i++) {
+                if (!done[i] && dependencies.get(i).stream().allMatch(dependency -> done[dependency])) {
+                    next = i;
+                }
+            }
+            if (next < 0) {
+                // a reference cycle: take the earliest remaining operation
+                next = 0;
+                while (done[next]) {
+                    next++;
+                }
+            }
+            done[next] = true;
+            ordered.add(operations.get(next));
+        }
+        return ordered;
+    }
+
+    static Set<String> referencedBy(Operation operation) {
+        Set<String> references = new LinkedHashSet<>();
+        if (operation.getPath() != null) {
+            int start = operation.getPath().indexOf(PREFIX);
+            if (start >= 0) {
+                references.add(operation.getPath().substring(start + PREFIX.length()));
+            }
+        }
+        collect(operation.getData(), references);
+        return references;
+    }
+
+    void put(String bulkId, String id) {
+        if (bulkId != null) {
+            resolved.put(bulkId, id);
+        }
+    }
+
+    Map<String, String> snapshot() {
+        return new HashMap<>(resolved);
+    }
+
+    void restore(Map<String, String> snapshot) {
+        resolved.clear();
+        resolved.putAll(snapshot);
+    }
+
+    /**
+     * Replaces a {@code bulkId:} reference with the id it resolved to.
+     */
+    String resolve(String value) throws ResourceConflictException {
+        if (value == null || !value.startsWith(PREFIX)) {
+            return value;
+        }
+        String id = resolved.get(value.substring(PREFIX.length()));
+        if (id == null) {
+            throw new ResourceConflictException("Unresolved reference '" + value + "'");
+        }
+        return id;
+    }
+
+    /**
+     * A copy of {@code data} with every {@code bulkId:} string value resolved.
+     */
+    JsonNode resolve(JsonNode data) throws ResourceConflictException {
+        if (data == null) {
+            return null;
+        }
+        if (data.isTextual()) {
+            return data.textValue().startsWith(PREFIX) ? TextNode.valueOf(resolve(data.textValue())) : data;
+        }
+        if (data.isObject()) {
+            ObjectNode copy = ((ObjectNode) data).objectNode();
+            for (Map.Entry<String, JsonNode> field : data.properties()) {
+                copy.set(field.getKey(), resolve(field.getValue()));
+            }
+            return copy;
+        }
+        if (data.isArray()) {
+            ArrayNode copy = ((ArrayNode) data).arrayNode(data.size());
+            for (JsonNode element : data) {
+                copy.add(resolve(element));
+            }
+            return copy;
+        }
+        return data;
+    }
+
+    private static void collect(JsonNode data, Set<String> references) {
+        if (data == null) {
+            return;
+        }
+        if (data.isTextual() && data.textValue().startsWith(PREFIX)) {
+            references.add(data.textValue().substring(PREFIX.length()));
+        }
+        for (JsonNode child : data) {
+            collect(child, references);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.valura.auth.scim.service;
+
+import com.unboundid.scim2.common.exceptions.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.function.Predicate;
+
+/**
+ * The opaque {@code since} token of the change feed. {@code low} is the database watermark the client has
+ * caught up to. While a window is being paged, {@code high} is the watermark it ends at and {@code after}
+ * the {@code change_seq} of the last change returned; otherwise {@code high} is null and the next request
+ * reads up to the database's current watermark.
+ */
+record ChangeWatermark(String low, String high, long after) {
+
+    /**
+     * The {@code scimType} of a watermark from before the tombstone purge, as RFC 9865 names a cursor that can
+     * no longer be served: the client has to resync from a full export.
+     */
+    static final String EXPIRED = "expiredCursor";
+
+    private static final String SEPARATOR = "/";
+
+    static ChangeWatermark caughtUp(String watermark) {
+        return new ChangeWatermark(watermark, null, 0);
+    }
+
+    String encode() {
+        String token = low + SEPARATOR + (high != null ? high : "") + SEPARATOR + after;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static BadRequestException expired(String token) {
+        return new BadRequestException("The watermark '" + token + "' is older than the change feed retention; "
+                + "resync from a full export", EXPIRED);
+    }
+
+    /**
+     * Parses a token, accepting only database watermarks that {@code isWatermark} recognizes, so that nothing
+     * else reaches a query.
+     */
+    static ChangeWatermark decode(String token, Predicate<String> isWatermark) throws BadRequestException {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token.trim()), StandardCharsets.UTF_8)
+                    .split(SEPARATOR, -1);
+            if (parts.length == 3 && isWatermark.test(parts[0])
+                    && (parts[1].isEmpty() || isWatermark.test(parts[1]))) {
+                long after = Long.parseLong(parts[2]);
+                if (after >= 0) {
+                    return new ChangeWatermark(parts[0], parts[1].isEmpty() ? null : parts[1], after);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            // fall through to the SCIM error below
+        }
+        throw new BadRequestException("The watermark '" + token + "' is not valid", BadRequestException.INVALID_VALUE);
+    }
+}
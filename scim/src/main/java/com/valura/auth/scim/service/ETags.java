@@ -0,0 +1,92 @@
+package com.valura.auth.scim.service;
+
+import com.unboundid.scim2.common.exceptions.PreconditionFailedException;
+import com.unboundid.scim2.common.exceptions.ResourceConflictException;
+import com.unboundid.scim2.common.exceptions.ScimException;
+
+import java.util.Arrays;
+
+/**
+ * Weak entity tags derived from a resource's version column, {@code W/"<version>"}.
+ */
+public final class ETags {
+
+    private ETags() {
+    }
+
+    public static String of(long version) {
+        return "W/\"" + version + "\"";
+    }
+
+    /**
+     * Returns the versions an {@code If-Match} header accepts, or {@code null} when it accepts any
+     * (absent or {@code *}). A header that names no version of ours can never match and is rejected.
+     */
+    public static long[] versions(String ifMatch) throws PreconditionFailedException {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        long[] versions = parse(ifMatch);
+        if (versions.length == 0) {
+            throw new PreconditionFailedException("ETag mismatch");
+        }
+        return versions;
+    }
+
+    public static void check(String ifMatch, long version) throws PreconditionFailedException {
+        long[] versions = versions(ifMatch);
+        if (versions != null && Arrays.stream(versions).noneMatch(candidate -> candidate == version)) {
+            throw new PreconditionFailedException("ETag mismatch");
+        }
+    }
+
+    /**
+     * The error for a write that lost the race to another write after the resource was read: 412 when
+     * {@code If-Match} named versions, and 409 when the request set no precondition that could fail.
+     */
+    public static ScimException concurrentChange(String ifMatch) {
+        boolean conditional;
+        try {
+            conditional = versions(ifMatch) != null;
+        } catch (PreconditionFailedException e) {
+            conditional = true;
+        }
+        return conditional
+                ? new PreconditionFailedException("Resource was modified concurrently")
+                : new ResourceConflictException("Resource was modified concurrently", null, null);
+    }
+
+    /**
+     * Whether an {@code If-None-Match} header names the given version, using the weak comparison that
+     * RFC 9110 prescribes for it. {@code *} matches any existing resource.
+     */
+    public static boolean matches(String ifNoneMatch, long version) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        return ifNoneMatch.trim().equals("*") || Arrays.stream(parse(ifNoneMatch)).anyMatch(candidate -> candidate == version);
+    }
+
+    private static long[] parse(String header) {
+        return Arrays.stream(header.split(","))
+                .map(ETags::version)
+                .filter(version -> version != null)
+                .mapToLong(Long::longValue)
+                .toArray();
+    }
+
+    private static Long version(String tag) {
+        String value = tag.trim();
+        if (value.startsWith("W/")) {
+            value = value.substring(2);
+        }
+        if (value.length() < 2 || value.charAt(0) != '"' || value.charAt(value.length() - 1) != '"') {
+            return null;
+        }
+        try {
+            return Long.parseLong(value.substring(1, value.length() - 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
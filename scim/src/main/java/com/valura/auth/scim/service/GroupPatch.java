@@ -0,0 +1,224 @@
+package com.valura.auth.scim.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.unboundid.scim2.common.Path;
+import com.unboundid.scim2.common.exceptions.BadRequestException;
+import com.unboundid.scim2.common.filters.EqualFilter;
+import com.unboundid.scim2.common.filters.Filter;
+import com.unboundid.scim2.common.filters.OrFilter;
+import com.valura.auth.scim.model.ScimGroup;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The net effect of a Group PATCH request. Operations are folded in order into a display name change and
+ * a set of member ids to add and remove, so that adding or removing one member touches one
+ * {@code user_groups} row however large the group is. Only a full member replacement needs the current
+ * member list.
+ */
+public final class GroupPatch {
+
+    private static final String GROUP_SCHEMA = "urn:ietf:params:scim:schemas:core:2.0:Group";
+    private static final Set<String> IGNORED_ATTRIBUTES = Set.of("id", "schemas", "meta", "externalid");
+
+    private String displayName;
+    private boolean replaceMembers;
+    private final Set<String> addedMembers = new LinkedHashSet<>();
+    private final Set<String> removedMembers = new LinkedHashSet<>();
+
+    private GroupPatch() {
+    }
+
+    public static GroupPatch of(List<ScimGroup.PatchOp> operations) throws BadRequestException {
+        if (operations == null || operations.isEmpty()) {
+            throw BadRequestException.invalidSyntax("A PATCH request must contain at least one operation");
+        }
+        GroupPatch patch = new GroupPatch();
+        for (ScimGroup.PatchOp operation : operations) {
+            patch.apply(operation);
+        }
+        return patch;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    /**
+     * Whether the existing members are dropped before {@link #getAddedMembers()} are added.
+     */
+    public boolean isReplaceMembers() {
+        return replaceMembers;
+    }
+
+    public Set<String> getAddedMembers() {
+        return addedMembers;
+    }
+
+    public Set<String> getRemovedMembers() {
+        return removedMembers;
+    }
+
+    public boolean changesMembers() {
+        return replaceMembers || !addedMembers.isEmpty() || !removedMembers.isEmpty();
+    }
+
+    private void apply(ScimGroup.PatchOp operation) throws BadRequestException {
+        String op = operation.getOp() == null ? "" : operation.getOp().toLowerCase(Locale.ROOT);
+        if (!op.equals("add") && !op.equals("remove") && !op.equals("replace")) {
+            throw BadRequestException.invalidSyntax("Unsupported PATCH operation '" + operation.getOp() + "'");
+        }
+        JsonNode value = operation.getValue();
+        if (operation.getPath() == null || operation.getPath().isBlank()) {
+            if (op.equals("remove")) {
+                throw BadRequestException.noTarget("A remove operation requires a path");
+            }
+            applyToResource(op, value);
+            return;
+        }
+
+        Path path = parsePath(operation.getPath());
+        Path.Element element = path.getElement(0);
+        String attribute = element.getAttribute().toLowerCase(Locale.ROOT);
+        if (attribute.equals("displayname") && element.getValueFilter() == null) {
+            if (op.equals("remove")) {
+                throw BadRequestException.invalidValue("displayName is required and cannot be removed");
+            }
+            displayName = text(value, "displayName");
+        } else if (attribute.equals("members")) {
+            if (element.getValueFilter() == null) {
+                applyToMembers(op, value);
+            } else if (op.equals("remove")) {
+                remove(filteredMembers(element.getValueFilter()));
+            } else {
+                throw BadRequestException.invalidPath("Only remove is supported for '" + operation.getPath() + "'");
+            }
+        } else if (!IGNORED_ATTRIBUTES.contains(attribute)) {
+            throw BadRequestException.invalidPath("Unsupported path '" + operation.getPath() + "'");
+        }
+    }
+
+    private void applyToResource(String op, JsonNode value) throws BadRequestException {
+        if (value == null || !value.isObject()) {
+            throw BadRequestException.invalidValue("An operation without a path requires an object value");
+        }
+        for (Map.Entry<String, JsonNode> field : value.properties()) {
+            String attribute = field.getKey().toLowerCase(Locale.ROOT);
+            if (attribute.equals("displayname")) {
+                displayName = text(field.getValue(), "displayName");
+            } else if (attribute.equals("members")) {
+                applyToMembers(op, field.getValue());
+            } else if (!IGNORED_ATTRIBUTES.contains(attribute)) {
+                throw BadRequestException.invalidPath("Unsupported attribute '" + field.getKey() + "'");
+            }
+        }
+    }
+
+    private void applyToMembers(String op, JsonNode value) throws BadRequestException {
+        switch (op) {
+            case "add" -> add(memberValues(value));
+            case "replace" -> {
+                replaceMembers = true;
+                addedMembers.clear();
+                removedMembers.clear();
+                add(memberValues(value));
+            }
+            default -> {
+                // Okta and Azure AD remove individual members with path "members" and the members as the value
+                if (value == null || value.isNull()) {
+                    replaceMembers = true;
+                    addedMembers.clear();
+                    removedMembers.clear();
+                } else {
+                    remove(memberValues(value));
+                }
+            }
+        }
+    }
+
+    private void add(Collection<String> members) {
+        removedMembers.removeAll(members);
+        addedMembers.addAll(members);
+    }
+
+    private void remove(Collection<String> members) {
+        addedMembers.removeAll(members);
+        if (!replaceMembers) {
+            removedMembers.addAll(members);
+        }
+    }
+
+    private static Path parsePath(String path) throws BadRequestException {
+        Path parsed;
+        try {
+            parsed = Path.fromString(path);
+        } catch (BadRequestException e) {
+            throw BadRequestException.invalidPath(e.getMessage());
+        }
+        if (parsed.size() != 1 || (parsed.getSchemaUrn() != null && !parsed.getSchemaUrn().equalsIgnoreCase(GROUP_SCHEMA))) {
+            throw BadRequestException.invalidPath("Unsupported path '" + path + "'");
+        }
+        return parsed;
+    }
+
+    /**
+     * Member ids selected by a value filter; only {@code value eq "..."} terms joined with {@code or} are supported.
+     */
+    private static Set<String> filteredMembers(Filter filter) throws BadRequestException {
+        Set<String> members = new LinkedHashSet<>();
+        collectFilteredMembers(filter, members);
+        return members;
+    }
+
+    private static void collectFilteredMembers(Filter filter, Set<String> members) throws BadRequestException {
+        if (filter instanceof OrFilter or) {
+            for (Filter combined : or.getCombinedFilters()) {
+                collectFilteredMembers(combined, members);
+            }
+        } else if (filter instanceof EqualFilter equal
+                && equal.getAttributePath().size() == 1
+                && equal.getAttributePath().getElement(0).getAttribute().equalsIgnoreCase("value")
+                && equal.getComparisonValue() != null && equal.getComparisonValue().isTextual()) {
+            members.add(equal.getComparisonValue().textValue());
+        } else {
+            throw BadRequestException.invalidFilter("Unsupported member filter '" + filter + "'");
+        }
+    }
+
+    private static Set<String> memberValues(JsonNode value) throws BadRequestException {
+        Set<String> members = new LinkedHashSet<>();
+        if (value == null || value.isNull()) {
+            return members;
+        }
+        if (value.isObject()) {
+            members.add(memberValue(value));
+        } else if (value.isArray()) {
+            for (JsonNode member : value) {
+                members.add(memberValue(member));
+            }
+        } else {
+            throw BadRequestException.invalidValue("Members must be an object or an array of objects");
+        }
+        return members;
+    }
+
+    private static String memberValue(JsonNode member) throws BadRequestException {
+        JsonNode value = member.get("value");
+        if (value == null || !value.isTextual()) {
+            throw BadRequestException.invalidValue("Every member requires a string 'value'");
+        }
+        return value.textValue();
+    }
+
+    private static String text(JsonNode value, String attribute) throws BadRequestException {
+        if (value == null || !value.isTextual()) {
+            throw BadRequestException.invalidValue(attribute + " must be a string");
+        }
+        return value.textValue();
+    }
+}
@@ -0,0 +1,214 @@
+package com.valura.auth.scim.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.valura.auth.database.entity.ExternalIds;
+import com.valura.auth.database.repository.ImportRepository.RowError;
+import com.valura.auth.database.repository.ImportRepository.StagedGroup;
+import com.valura.auth.database.repository.ImportRepository.StagedUser;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Reads an import file of newline-delimited SCIM resources, the format the export endpoints produce. Users
+ * are handed out lazily by {@link #users()} so they can be staged while the file is still being read;
+ * groups and lines that cannot be imported are collected on the way. Line numbers start at 1.
+ */
+final class ImportLines {
+
+    private static final String USER_SCHEMA = "urn:ietf:params:scim:schemas:core:2.0:User";
+    private static final String GROUP_SCHEMA = "urn:ietf:params:scim:schemas:core:2.0:Group";
+
+    private final BufferedReader reader;
+    private final ObjectMapper objectMapper;
+    private final List<StagedGroup> groups = new ArrayList<>();
+    private final List<RowError> errors = new ArrayList<>();
+    private int lineNumber;
+    private int received;
+
+    ImportLines(BufferedReader reader, ObjectMapper objectMapper) {
+        this.reader = reader;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * The users of the file, read on demand; the other getters are complete once this is exhausted.
+     */
+    Iterator<StagedUser> users() {
+        return new Iterator<>() {
+            private StagedUser next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null) {
+                    next = readUser();
+                }
+                return next != null;
+            }
+
+            @Override
+            public StagedUser next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                StagedUser user = next;
+                next = null;
+                return user;
+            }
+        };
+    }
+
+    List<StagedGroup> getGroups() {
+        return groups;
+    }
+
+    List<RowError> getErrors() {
+        return errors;
+    }
+
+    /**
+     * Number of non-blank lines read.
+     */
+    int getReceived() {
+        return received;
+    }
+
+    private StagedUser readUser() {
+        String line;
+        while ((line = readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            received++;
+            try {
+                JsonNode resource = objectMapper.readTree(line);
+                if (!resource.isObject()) {
+                    errors.add(new RowError(lineNumber, "Line is not a JSON object"));
+                } else if (hasSchema(resource, GROUP_SCHEMA)) {
+                    groups.add(toGroup(resource));
+                } else if (hasSchema(resource, USER_SCHEMA) || resource.has("userName")) {
+                    return toUser(resource);
+                } else {
+                    errors.add(new RowError(lineNumber, "Neither a User nor a Group"));
+                }
+            } catch (JsonProcessingException e) {
+                errors.add(new RowError(lineNumber, "Invalid JSON: " + e.getOriginalMessage()));
+            } catch (IllegalArgumentException e) {
+                errors.add(new RowError(lineNumber, e.getMessage()));
+            }
+        }
+        return null;
+    }
+
+    private StagedUser toUser(JsonNode user) {
+        JsonNode name = user.path("name");
+        JsonNode active = user.path("active");
+        if (!active.isMissingNode() && !active.isNull() && !active.isBoolean()) {
+            throw new IllegalArgumentException("active must be a boolean");
+        }
+        return new StagedUser(lineNumber, id(user), required(user, "userName"), optional(user.path("displayName")),
+                optional(name.path("givenName")), optional(name.path("familyName")), email(user),
+                active.asBoolean(true));
+    }
+
+    private StagedGroup toGroup(JsonNode group) {
+        Set<String> members = new LinkedHashSet<>();
+        List<String> unknown = new ArrayList<>();
+        for (JsonNode member : group.path("members")) {
+            JsonNode value = member.path("value");
+            if (!value.isTextual()) {
+                throw new IllegalArgumentException("Every member requires a string 'value'");
+            }
+            UUID id = ExternalIds.toUuid(value.textValue());
+            if (id == null) {
+                unknown.add(value.textValue());
+            } else {
+                members.add(id.toString());
+            }
+        }
+        if (!unknown.isEmpty()) {
+            // no user can have an id that is not a UUID; reported like members the merge cannot find
+            throw new IllegalArgumentException("Users not found: " + String.join(", ", unknown));
+        }
+        return new StagedGroup(lineNumber, id(group), required(group, "displayName"), new ArrayList<>(members));
+    }
+
+    /**
+     * The resource's id, kept so that exports can be re-imported and groups can name users of the same file;
+     * a new one is assigned when absent. Ids are stored as UUIDs, so any other id is rejected.
+     */
+    private static String id(JsonNode resource) {
+        String id = optional(resource.path("id"));
+        if (id == null) {
+            return ExternalIds.next();
+        }
+        UUID uuid = ExternalIds.toUuid(id);
+        if (uuid == null) {
+            throw new IllegalArgumentException("id must be a UUID");
+        }
+        return uuid.toString();
+    }
+
+    /**
+     * The primary email, else the first; a user without one cannot be stored.
+     */
+    private static String email(JsonNode user) {
+        JsonNode email = null;
+        for (JsonNode candidate : user.path("emails")) {
+            if (email == null || candidate.path("primary").asBoolean(false)) {
+                email = candidate;
+            }
+        }
+        String value = email != null ? optional(email.path("value")) : null;
+        if (value == null) {
+            throw new IllegalArgumentException("emails is required");
+        }
+        return value;
+    }
+
+    private static String required(JsonNode resource, String attribute) {
+        String value = optional(resource.path(attribute));
+        if (value == null) {
+            throw new IllegalArgumentException(attribute + " is required");
+        }
+        return value;
+    }
+
+    private static String optional(JsonNode value) {
+        if (value.isMissingNode() || value.isNull()) {
+            return null;
+        }
+        if (!value.isTextual()) {
+            throw new IllegalArgumentException("Expected a string, found " + value.getNodeType().name().toLowerCase());
+        }
+        return value.textValue().isEmpty() ? null : value.textValue();
+    }
+
+    private static boolean hasSchema(JsonNode resource, String schema) {
+        for (JsonNode value : resource.path("schemas")) {
+            if (schema.equalsIgnoreCase(value.asText())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String readLine() {
+        try {
+            return reader.readLine();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package com.valura.auth.scim.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.unboundid.scim2.common.exceptions.BadRequestException;
+import com.unboundid.scim2.common.exceptions.ScimException;
+import com.unboundid.scim2.common.types.GroupResource;
+import com.unboundid.scim2.common.types.UserResource;
+import com.valura.auth.scim.exception.ScimAuthorizationException;
+import com.valura.auth.scim.exception.ScimError;
+import com.valura.auth.scim.model.ScimBulkRequest;
+import com.valura.auth.scim.model.ScimBulkResponse;
+import com.valura.auth.scim.model.ScimGroup;
+import com.valura.auth.scim.model.ScimPatchRequest;
+import com.valura.auth.scim.model.ScimUser;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.FlushModeType;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Executes RFC 7644 section 3.7 bulk requests through {@link ScimUserService} and {@link ScimGroupService},
+ * so every operation gets the same validation as its single-resource endpoint.
+ *
+ * <p>Operations run in request order, except that an operation referencing a {@code bulkId} runs after the
+ * operation defining it. Consecutive operations with the same method and resource type, up to the JDBC batch
+ * size, share one transaction so their writes are flushed together. If any operation of such a chunk fails,
+ * the chunk is rolled back and its operations are rerun one transaction each, so that every operation's
+ * outcome is reported individually and a failure never leaves half of a chunk applied.
+ */
+@Service
+public class ScimBulkService {
+
+    private static final String USERS = "Users";
+    private static final String GROUPS = "Groups";
+
+    private final ScimUserService userService;
+    private final ScimGroupService groupService;
+    private final ScimAuthorizationService scimAuthorizationService;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transaction;
+    private final int maxOperations;
+    private final int maxPayloadSize;
+    private final int chunkSize;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public ScimBulkService(ScimUserService userService, ScimGroupService groupService,
+                           ScimAuthorizationService scimAuthorizationService, ObjectMapper objectMapper,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${scim.bulk.max-operations:1000}") int maxOperations,
+                           @Value("${scim.bulk.max-payload-size:1048576}") int maxPayloadSize,
+                           @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}") int chunkSize) {
+        this.userService = userService;
+        this.groupService = groupService;
+        this.scimAuthorizationService = scimAuthorizationService;
+        this.objectMapper = objectMapper;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.maxOperations = maxOperations;
+        this.maxPayloadSize = maxPayloadSize;
+        this.chunkSize = chunkSize;
+    }
+
+    public int getMaxOperations() {
+        return maxOperations;
+    }
+
+    public int getMaxPayloadSize() {
+        return maxPayloadSize;
+    }
+
+    public ScimBulkResponse process(ScimBulkRequest request) throws ScimException {
+        List<ScimBulkRequest.Operation> operations = request.getOperations();
+        if (operations == null || operations.isEmpty()) {
+            throw BadRequestException.invalidSyntax("A bulk request must contain at least one operation");
+        }
+        if (operations.size() > maxOperations) {
+            throw new ScimException(HttpStatus.PAYLOAD_TOO_LARGE.value(), null,
+                    "The number of operations exceeds maxOperations (" + maxOperations + ")");
+        }
+        int failOnErrors = request.getFailOnErrors() != null && request.getFailOnErrors() > 0
+                ? request.getFailOnErrors() : Integer.MAX_VALUE;
+
+        BulkIds bulkIds = new BulkIds();
+        List<ScimBulkResponse.Result> results = new ArrayList<>(operations.size());
+        int errors = 0;
+        List<ScimBulkRequest.Operation> ordered = BulkIds.ordered(operations);
+        for (int from = 0; from < ordered.size() && errors < failOnErrors; ) {
+            int to = chunkEnd(ordered, from);
+            List<ScimBulkRequest.Operation> chunk = ordered.subList(from, to);
+            List<ScimBulkResponse.Result> chunkResults = chunk.size() > 1 ? runTogether(chunk, bulkIds) : null;
+            if (chunkResults == null) {
+                chunkResults = new ArrayList<>(chunk.size());
+                for (ScimBulkRequest.Operation operation : chunk) {
+                    ScimBulkResponse.Result result = runAlone(operation, bulkIds);
+                    chunkResults.add(result);
+                    if (isError(result) && ++errors >= failOnErrors) {
+                        break;
+                    }
+                }
+            }
+            results.addAll(chunkResults);
+            from = to;
+        }
+        return new ScimBulkResponse(results);
+    }
+
+    /**
+     * The end of the chunk starting at {@code from}: the following operations with the same method and type.
+     */
+    private int chunkEnd(List<ScimBulkRequest.Operation> operations, int from) {
+        String key = chunkKey(operations.get(from));
+        int to = from + 1;
+        while (to < operations.size() && to - from < chunkSize && key.equals(chunkKey(operations.get(to)))) {
+            to++;
+        }
+        return to;
+    }
+
+    private static String chunkKey(ScimBulkRequest.Operation operation) {
+        String path = operation.getPath() != null ? operation.getPath() : "";
+        String type = path.startsWith("/" + USERS) ? USERS : path.startsWith("/" + GROUPS) ? GROUPS : path;
+        return String.valueOf(operation.getMethod()).toUpperCase(Locale.ROOT) + " " + type;
+    }
+
+    /**
+     * Runs a chunk in one transaction; returns null, with nothing applied, if any operation failed.
+     */
+    private List<ScimBulkResponse.Result> runTogether(List<ScimBulkRequest.Operation> chunk, BulkIds bulkIds) {
+        Map<String, String> resolved = bulkIds.snapshot();
+        try {
+            List<ScimBulkResponse.Result> results = transaction.execute(status -> {
+                // Without this, the uniqueness queries of each create would flush the previous insert on its
+                // own. A conflict inside the chunk then fails the commit instead, and the rerun reports it.
+                entityManager.setFlushMode(FlushModeType.COMMIT);
+                List<ScimBulkResponse.Result> chunkResults = new ArrayList<>(chunk.size());
+                for (ScimBulkRequest.Operation operation : chunk) {
+                    ScimBulkResponse.Result result = run(operation, bulkIds);
+                    if (isError(result)) {
+                        status.setRollbackOnly();
+                        return null;
+                    }
+                    chunkResults.add(result);
+                }
+                return chunkResults;
+            });
+            if (results == null) {
+                bulkIds.restore(resolved);
+            }
+            return results;
+        } catch (RuntimeException e) {
+            bulkIds.restore(resolved);
+            return null;
+        }
+    }
+
+    private ScimBulkResponse.Result runAlone(ScimBulkRequest.Operation operation, BulkIds bulkIds) {
+        Map<String, String> resolved = bulkIds.snapshot();
+        try {
+            return transaction.execute(status -> {
+                ScimBulkResponse.Result result = run(operation, bulkIds);
+                if (isError(result)) {
+                    status.setRollbackOnly();
+                }
+                return result;
+            });
+        } catch (OptimisticLockingFailureException e) {
+            bulkIds.restore(resolved);
+            ScimException concurrentChange = ETags.concurrentChange(operation.getVersion());
+            return error(operation, HttpStatus.valueOf(concurrentChange.getScimError().getStatus()),
+                    concurrentChange.getMessage(), null);
+        } catch (DataIntegrityViolationException e) {
+            bulkIds.restore(resolved);
+            return error(operation, HttpStatus.CONFLICT, "The operation conflicts with an existing resource", "uniqueness");
+        } catch (RuntimeException e) {
+            bulkIds.restore(resolved);
+            return error(operation, HttpStatus.INTERNAL_SERVER_ERROR, "An unexpected error occurred", "serverError");
+        }
+    }
+
+    /**
+     * Runs one operation; SCIM errors become error results, anything else propagates.
+     */
+    private ScimBulkResponse.Result run(ScimBulkRequest.Operation operation, BulkIds bulkIds) {
+        try {
+            return execute(operation, bulkIds);
+        } catch (ScimException e) {
+            return error(operation, HttpStatus.valueOf(e.getScimError().getStatus()), e.getMessage(),
+                    e.getScimError().getScimType());
+        } catch (ScimAuthorizationException e) {
+            return error(operation, HttpStatus.FORBIDDEN, e.getMessage(), "insufficientPrivileges");
+        }
+    }
+
+    private ScimBulkResponse.Result execute(ScimBulkRequest.Operation operation, BulkIds bulkIds)
+            throws ScimException {
+        String method = operation.getMethod() == null ? "" : operation.getMethod().toUpperCase(Locale.ROOT);
+        String path = operation.getPath() == null ? "" : operation.getPath();
+        String[] segments = path.startsWith("/") ? path.substring(1).split("/", -1) : new String[0];
+        if (segments.length == 0 || segments.length > 2 || !(segments[0].equals(USERS) || segments[0].equals(GROUPS))) {
+            throw BadRequestException.invalidPath("Unsupported bulk operation path '" + path + "'");
+        }
+        boolean users = segments[0].equals(USERS);
+        String id = segments.length == 2 ? bulkIds.resolve(segments[1]) : null;
+        if (method.equals("POST") == (id != null) || (id != null && id.isEmpty())) {
+            throw BadRequestException.invalidPath(method + " is not supported on '" + path + "'");
+        }
+        if (method.equals("POST") && operation.getBulkId() == null) {
+            throw BadRequestException.invalidSyntax("bulkId is required for POST operations");
+        }
+        JsonNode data = bulkIds.resolve(operation.getData());
+        String version = operation.getVersion();
+
+        switch (method) {
+            case "POST" -> {
+                scimAuthorizationService.checkPermission(users ? ScimScopes.SCIM_USERS_WRITE : ScimScopes.SCIM_GROUPS_WRITE);
+                String createdId;
+                String createdVersion;
+                if (users) {
+                    UserResource created = userService.create(read(data, UserResource.class));
+                    createdId = created.getId();
+                    createdVersion = created.getMeta().getVersion();
+                } else {
+                    GroupResource created = groupService.create(read(data, GroupResource.class));
+                    createdId = created.getId();
+                    createdVersion = created.getMeta().getVersion();
+                }
+                bulkIds.put(operation.getBulkId(), createdId);
+                return success(operation, segments[0], createdId, createdVersion, HttpStatus.CREATED);
+            }
+            case "PUT" -> {
+                scimAuthorizationService.checkPermission(users ? ScimScopes.SCIM_USERS_WRITE : ScimScopes.SCIM_GROUPS_WRITE);
+                String newVersion = users
+                        ? userService.replace(id, read(data, UserResource.class), version).getMeta().getVersion()
+                        : groupService.replace(id, read(data, GroupResource.class), version).getMeta().getVersion();
+                return success(operation, segments[0], id, newVersion, HttpStatus.OK);
+            }
+            case "PATCH" -> {
+                scimAuthorizationService.checkPermission(users ? ScimScopes.SCIM_USERS_WRITE : ScimScopes.SCIM_GROUPS_WRITE);
+                if (users) {
+                    ScimPatchRequest<ScimUser.PatchOp> patch = read(data, patchType(ScimUser.PatchOp.class));
+                    String newVersion = userService.patch(id, patch, version).getMeta().getVersion();
+                    return success(operation, segments[0], id, newVersion, HttpStatus.OK);
+                }
+                ScimPatchRequest<ScimGroup.PatchOp> patch = read(data, patchType(ScimGroup.PatchOp.class));
+                return success(operation, segments[0], id, groupService.patch(id, patch, version), HttpStatus.NO_CONTENT);
+            }
+            case "DELETE" -> {
+                scimAuthorizationService.checkPermission(users ? ScimScopes.SCIM_USERS_DELETE : ScimScopes.SCIM_GROUPS_DELETE);
+                if (users) {
+                    userService.delete(id);
+                } else {
+                    groupService.delete(id);
+                }
+                return success(operation, segments[0], id, null, HttpStatus.NO_CONTENT);
+            }
+            default -> throw BadRequestException.invalidSyntax("Unsupported bulk method '" + operation.getMethod() + "'");
+        }
+    }
+
+    private JavaType patchType(Class<?> operationType) {
+        return objectMapper.getTypeFactory().constructParametricType(ScimPatchRequest.class, operationType);
+    }
+
+    private <T> T read(JsonNode data, Class<T> type) throws BadRequestException {
+        return read(data, objectMapper.getTypeFactory().constructType(type));
+    }
+
+    private <T> T read(JsonNode data, JavaType type) throws BadRequestException {
+        if (data == null || !data.isObject()) {
+            throw BadRequestException.invalidSyntax("The operation requires a data object");
+        }
+        try {
+            return objectMapper.treeToValue(data, type);
+        } catch (JsonProcessingException e) {
+            throw BadRequestException.invalidSyntax("Invalid data: " + e.getOriginalMessage());
+        }
+    }
+
+    private static ScimBulkResponse.Result success(ScimBulkRequest.Operation operation, String type, String id,
+                                                   String version, HttpStatus status) {
+        return new ScimBulkResponse.Result(operation.getMethod(), operation.getBulkId(),
+                "/scim/v2/" + type + "/" + id, version, status.value(), null);
+    }
+
+    private static ScimBulkResponse.Result error(ScimBulkRequest.Operation operation, HttpStatus status,
+                                                 String detail, String scimType) {
+        return new ScimBulkResponse.Result(operation.getMethod(), operation.getBulkId(), null, null, status.value(),
+                new ScimError(detail, scimType, String.valueOf(status.value())));
+    }
+
+    private static boolean isError(ScimBulkResponse.Result result) {
+        return result.getResponse() != null;
+    }
+}
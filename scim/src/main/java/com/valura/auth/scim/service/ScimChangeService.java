@@ -0,0 +1,127 @@
+package com.valura.auth.scim.service;
+
+import com.unboundid.scim2.common.exceptions.BadRequestException;
+import com.valura.auth.database.config.ReplicaRoutingDataSource;
+import com.valura.auth.database.entity.GroupEntity;
+import com.valura.auth.database.entity.UserEntity;
+import com.valura.auth.database.repository.ChangeFeedRepository;
+import com.valura.auth.database.repository.GroupRepository;
+import com.valura.auth.database.repository.UserRepository;
+import com.valura.auth.scim.model.ScimChanges;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * The change feed behind {@code /scim/v2/Changes}: what was created, updated or deleted since a watermark,
+ * so that downstream systems can sync incrementally instead of paging through every resource.
+ *
+ * <p>A client starts without {@code since} to get the current watermark, takes a full export, and from then
+ * on passes back the watermark of each response. Changes come at least once: a resource changed again while
+ * a window is paged may be delivered in that window and again in the next, always in its latest state.
+ * Deletions are only kept for the soft delete retention; a watermark older than that is rejected with
+ * {@code expiredCursor}, and the client starts over.
+ */
+@Service
+public class ScimChangeService {
+
+    private final ChangeFeedRepository changeFeedRepository;
+    private final UserRepository userRepository;
+    private final GroupRepository groupRepository;
+    private final ScimUserService userService;
+    private final ScimGroupService groupService;
+    private final int maxCount;
+
+    public ScimChangeService(ChangeFeedRepository changeFeedRepository, UserRepository userRepository,
+                             GroupRepository groupRepository, ScimUserService userService,
+                             ScimGroupService groupService, @Value("${scim.changes.max-count:1000}") int maxCount) {
+        this.changeFeedRepository = changeFeedRepository;
+        this.userRepository = userRepository;
+        this.groupRepository = groupRepository;
+        this.userService = userService;
+        this.groupService = groupService;
+        this.maxCount = maxCount;
+    }
+
+    /**
+     * Returns up to {@code count} changes after {@code since}. Reads from the primary, whose watermarks cover
+     * every committed change.
+     */
+    @Transactional(readOnly = true)
+    public ScimChanges changes(String since, Integer count) throws BadRequestException {
+        ReplicaRoutingDataSource.readFromPrimary();
+        if (since == null || since.isBlank()) {
+            return new ScimChanges(ChangeWatermark.caughtUp(changeFeedRepository.currentWatermark()).encode(),
+                    false, List.of());
+        }
+        ChangeWatermark watermark = ChangeWatermark.decode(since, changeFeedRepository::isWatermark);
+        int limit = count == null || count > maxCount ? maxCount : Math.max(count, 1);
+        String high = watermark.high() != null ? watermark.high() : changeFeedRepository.currentWatermark();
+
+        List<ChangeFeedRepository.Change> rows =
+                changeFeedRepository.findChanges(watermark.low(), high, watermark.after(), limit + 1);
+        if (changeFeedRepository.isBehindPurge(watermark.low())) {
+            throw ChangeWatermark.expired(since);
+        }
+        boolean hasMore = rows.size() > limit;
+        if (hasMore) {
+            rows = rows.subList(0, limit);
+        }
+        ChangeWatermark next = hasMore
+                ? new ChangeWatermark(watermark.low(), high, rows.get(rows.size() - 1).sequence())
+                : ChangeWatermark.caughtUp(high);
+        return new ScimChanges(next.encode(), hasMore, toChanges(rows));
+    }
+
+    private List<ScimChanges.Change> toChanges(List<ChangeFeedRepository.Change> rows) {
+        Map<Long, UserEntity> users = load(rows, ChangeFeedRepository.ChangeKind.USER, userRepository::findAllById,
+                UserEntity::getId);
+        Map<Long, GroupEntity> groups = load(rows, ChangeFeedRepository.ChangeKind.GROUP, groupRepository::findAllById,
+                GroupEntity::getId);
+        List<ScimChanges.Change> changes = new ArrayList<>(rows.size());
+        for (ChangeFeedRepository.Change row : rows) {
+            switch (row.kind()) {
+                case USER -> {
+                    // a user deleted since the query has its tombstone in a later window
+                    UserEntity user = users.get(row.id());
+                    if (user != null) {
+                        changes.add(new ScimChanges.Change("User", "upsert", user.getExternalId(), null,
+                                userService.mapToScimUser(user)));
+                    }
+                }
+                case GROUP -> {
+                    GroupEntity group = groups.get(row.id());
+                    if (group != null) {
+                        changes.add(new ScimChanges.Change("Group", "upsert", group.getExternalId(), null,
+                                groupService.mapToScimGroup(group, List.of())));
+                    }
+                }
+                case USER_DELETED -> changes.add(new ScimChanges.Change("User", "delete", row.externalId(), null, null));
+                case GROUP_DELETED -> changes.add(new ScimChanges.Change("Group", "delete", row.externalId(), null, null));
+                case MEMBER_ADDED -> changes.add(
+                        new ScimChanges.Change("Member", "add", row.groupExternalId(), row.externalId(), null));
+                case MEMBER_REMOVED -> changes.add(
+                        new ScimChanges.Change("Member", "remove", row.groupExternalId(), row.externalId(), null));
+            }
+        }
+        return changes;
+    }
+
+    private static <E> Map<Long, E> load(List<ChangeFeedRepository.Change> rows, ChangeFeedRepository.ChangeKind kind,
+                                         Function<List<Long>, List<E>> finder, Function<E, Long> id) {
+        List<Long> ids = rows.stream()
+                .filter(row -> row.kind() == kind)
+                .map(ChangeFeedRepository.Change::id)
+                .toList();
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+        return finder.apply(ids).stream().collect(Collectors.toMap(id, Function.identity()));
+    }
+}
@@ -1,65 +1,123 @@
 package com.valura.auth.scim.service;
 
+import com.unboundid.scim2.common.exceptions.BadRequestException;
 import com.unboundid.scim2.common.exceptions.ResourceNotFoundException;
-import com.unboundid.scim2.common.exceptions.PreconditionFailedException;
 import com.unboundid.scim2.common.exceptions.ScimException;
 import com.unboundid.scim2.common.types.GroupResource;
-import com.unboundid.scim2.common.types.Meta;
 import com.unboundid.scim2.common.types.Member;
 import com.unboundid.scim2.server.annotations.ResourceType;
+import com.valura.auth.database.entity.ExternalIds;
 import com.valura.auth.database.entity.GroupEntity;
-import com.valura.auth.database.entity.UserEntity;
+import com.valura.auth.database.repository.ChangeFeedRepository;
+import com.valura.auth.database.repository.GroupMembershipRepository;
 import com.valura.auth.database.repository.GroupRepository;
+import com.valura.auth.database.repository.InLists;
+import com.valura.auth.database.repository.OutboxRepository;
+import com.valura.auth.database.repository.ResourceExportRepository;
+import com.valura.auth.database.repository.SoftDeleteRepository;
+import com.valura.auth.database.repository.UserReference;
 import com.valura.auth.database.repository.UserRepository;
+import com.valura.auth.scim.cache.ResourceCache;
+import com.valura.auth.scim.filter.FilterAttributes;
+import com.valura.auth.scim.filter.ScimFilterCompiler;
+import com.valura.auth.scim.mapper.GroupView;
+import com.valura.auth.scim.mapper.ScimResourceMapper;
+import com.valura.auth.scim.model.ScimGroup;
 import com.valura.auth.scim.model.ScimListResponse;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
+import com.valura.auth.scim.model.ScimPatchRequest;
+import com.valura.auth.scim.paging.ListPager;
+import com.valura.auth.scim.paging.ListResponseWriter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import java.net.URI;
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.*;
 import java.util.stream.Collectors;
-import javax.xml.bind.DatatypeConverter;
 
 @Service
 @ResourceType(description = "Group", name = "Group", schema = GroupResource.class)
 public class ScimGroupService {
+    private static final int MAX_REPORTED_MISSING_MEMBERS = 50;
+
     private final GroupRepository groupRepository;
     private final UserRepository userRepository;
-
-    public ScimGroupService(GroupRepository groupRepository, UserRepository userRepository) {
+    private final GroupMembershipRepository membershipRepository;
+    private final ScimFilterCompiler filterCompiler;
+    private final ListPager listPager;
+    private final ListResponseWriter listResponseWriter;
+    private final ResourceExportRepository exportRepository;
+    private final ResourceCache resourceCache;
+    private final ChangeFeedRepository changeFeedRepository;
+    private final SoftDeleteRepository softDeleteRepository;
+    private final OutboxRepository outboxRepository;
+    private final boolean softDelete;
+    private final ListPager.ListSource<GroupEntity> listSource;
+
+    public ScimGroupService(GroupRepository groupRepository, UserRepository userRepository,
+                            GroupMembershipRepository membershipRepository,
+                            ScimFilterCompiler filterCompiler, ListPager listPager,
+                            ListResponseWriter listResponseWriter, ResourceExportRepository exportRepository,
+                            ResourceCache resourceCache, ChangeFeedRepository changeFeedRepository,
+                            SoftDeleteRepository softDeleteRepository, OutboxRepository outboxRepository,
+                            @Value("${scim.soft-delete.enabled:false}") boolean softDelete) {
         this.groupRepository = groupRepository;
         this.userRepository = userRepository;
+        this.membershipRepository = membershipRepository;
+        this.filterCompiler = filterCompiler;
+        this.listPager = listPager;
+        this.listResponseWriter = listResponseWriter;
+        this.exportRepository = exportRepository;
+        this.resourceCache = resourceCache;
+        this.changeFeedRepository = changeFeedRepository;
+        this.softDeleteRepository = softDeleteRepository;
+        this.outboxRepository = outboxRepository;
+        this.softDelete = softDelete;
+        this.listSource = new ListPager.ListSource<>(groupRepository, GroupEntity.class, "groups", GroupEntity::getId);
     }
 
     @Transactional
     public GroupResource create(GroupResource group) throws ResourceNotFoundException {
         GroupEntity entity = new GroupEntity();
-        entity.setExternalId(UUID.randomUUID().toString());
+        entity.setExternalId(ExternalIds.next());
         entity.setDisplayName(group.getDisplayName());
 
-        entity = groupRepository.save(entity);
-
-        if (group.getMembers() != null && !group.getMembers().isEmpty()) {
-            for (Member member : group.getMembers()) {
-                UserEntity user = userRepository.findByExternalId(member.getValue())
-                        .orElseThrow(() -> new ResourceNotFoundException("User not found: " + member.getValue()));
-                entity.addMember(user);
-            }
-            entity.getMembers().forEach(userRepository::save);
+        List<UserReference> members = resolveMembers(memberValues(group.getMembers()));
+        if (members.isEmpty()) {
+            // the id is allocated up front, so the insert can wait for a batched flush
+            entity = groupRepository.save(entity);
+        } else {
+            entity = groupRepository.saveAndFlush(entity);
+            membershipRepository.addMembers(entity.getId(), memberIds(members));
         }
+        outboxRepository.append("Group", "create", entity.getExternalId(), entity.getVersion());
+        listPager.resourcesChanged();
 
-        return mapToScimGroup(entity);
+        return mapToScimGroup(entity, members);
     }
 
+    @Transactional(readOnly = true)
     public GroupResource get(String id) throws ResourceNotFoundException {
-        GroupEntity entity = groupRepository.findByExternalId(id)
+        GroupEntity entity = resourceCache.findGroup(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Group not found"));
-        return mapToScimGroup(entity);
+        return mapToScimGroup(entity, membershipRepository.findMembers(entity.getId()));
+    }
+
+    /**
+     * Returns the current ETag if {@code ifNoneMatch} names it, reading only the version column, so that a
+     * client holding the current representation can be answered with 304 without loading the group.
+     */
+    @Transactional(readOnly = true)
+    public Optional<String> matchingETag(String id, String ifNoneMatch) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return Optional.empty();
+        }
+        return resourceCache.cachedGroupVersion(id)
+                .or(() -> groupRepository.findVersionByExternalId(id))
+                .filter(version -> ETags.matches(ifNoneMatch, version))
+                .map(ETags::of);
     }
 
     @Transactional
@@ -67,159 +125,200 @@ public class ScimGroupService {
         GroupEntity entity = groupRepository.findByExternalId(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Group not found"));
 
-        GroupResource existingGroup = mapToScimGroup(entity);
-        validateETag(existingGroup.getMeta().getVersion(), ifMatch);
+        ETags.check(ifMatch, entity.getVersion());
+        List<UserReference> currentMembers = membershipRepository.findMembers(entity.getId());
 
+        List<UserReference> members = resolveMembers(memberValues(group.getMembers()));
         entity.setDisplayName(group.getDisplayName());
-
-        Set<UserEntity> existingMembers = new HashSet<>(entity.getMembers());
-        for (UserEntity user : existingMembers) {
-            entity.removeMember(user);
-        }
-        existingMembers.forEach(userRepository::save);
-
-        if (group.getMembers() != null && !group.getMembers().isEmpty()) {
-            for (Member member : group.getMembers()) {
-                UserEntity user = userRepository.findByExternalId(member.getValue())
-                        .orElseThrow(() -> new ResourceNotFoundException("User not found: " + member.getValue()));
-                entity.addMember(user);
-            }
-            entity.getMembers().forEach(userRepository::save);
-        }
-
-        entity = groupRepository.save(entity);
-        return mapToScimGroup(entity);
+        entity.touch();
+
+        entity = groupRepository.saveAndFlush(entity);
+        membershipRepository.updateMembers(entity.getId(), memberIds(currentMembers), memberIds(members));
+        outboxRepository.append("Group", "replace", id, entity.getVersion());
+        resourceCache.groupChanged(id, entity.getVersion());
+        listPager.resourcesChanged();
+        return mapToScimGroup(entity, members);
     }
 
+    /**
+     * Applies a PATCH request and returns the new ETag. Member additions and removals only read and write
+     * the {@code user_groups} rows of the members named in the request; the full member list is read only
+     * for a member replacement. The group row is updated first, conditional on the version {@code If-Match}
+     * was checked against, so a concurrent writer fails before any membership row is touched.
+     */
     @Transactional
-    public GroupResource patch(String id, GroupResource group, String ifMatch) throws ScimException {
+    public String patch(String id, ScimPatchRequest<ScimGroup.PatchOp> request, String ifMatch) throws ScimException {
+        GroupPatch patch = GroupPatch.of(request.getOperations());
         GroupEntity entity = groupRepository.findByExternalId(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Group not found"));
+        ETags.check(ifMatch, entity.getVersion());
 
-        GroupResource existingGroup = mapToScimGroup(entity);
-        validateETag(existingGroup.getMeta().getVersion(), ifMatch);
-
-        if (group.getDisplayName() != null) {
-            entity.setDisplayName(group.getDisplayName());
+        if (patch.getDisplayName() != null) {
+            entity.setDisplayName(patch.getDisplayName());
         }
 
-        // Simplified member handling for PATCH. A full PATCH implementation would involve
-        // parsing the "add", "remove", "replace" operations for members.
-        // For now, if members are provided, it replaces the entire set.
-        if (group.getMembers() != null) {
-            Set<UserEntity> existingMembers = new HashSet<>(entity.getMembers());
-            for (UserEntity user : existingMembers) {
-                entity.removeMember(user);
-            }
-            existingMembers.forEach(userRepository::save);
-
-            for (Member member : group.getMembers()) {
-                UserEntity user = userRepository.findByExternalId(member.getValue())
-                        .orElseThrow(() -> new ResourceNotFoundException("User not found: " + member.getValue()));
-                entity.addMember(user);
-            }
-            entity.getMembers().forEach(userRepository::save);
+        if (!patch.changesMembers()) {
+            entity = groupRepository.saveAndFlush(entity);
+            outboxRepository.append("Group", "patch", id, entity.getVersion());
+            resourceCache.groupChanged(id, entity.getVersion());
+            listPager.resourcesChanged();
+            return ETags.of(entity.getVersion());
         }
 
-        entity = groupRepository.save(entity);
-        return mapToScimGroup(entity);
+        long[] added = memberIds(resolveMembers(patch.getAddedMembers()));
+        entity.touch();
+        entity = groupRepository.saveAndFlush(entity);
+        long groupId = entity.getId();
+        if (patch.isReplaceMembers()) {
+            membershipRepository.updateMembers(groupId, membershipRepository.findMemberIds(groupId), added);
+        } else {
+            // Removing a user that is not a member, or no longer exists, is not an error
+            membershipRepository.removeMembers(groupId, memberIds(findMembers(patch.getRemovedMembers())));
+            membershipRepository.addMembers(groupId, membershipRepository.findNonMembers(groupId, added));
+        }
+        outboxRepository.append("Group", "patch", id, entity.getVersion());
+        resourceCache.groupChanged(id, entity.getVersion());
+        listPager.resourcesChanged();
+        return ETags.of(entity.getVersion());
     }
 
     @Transactional
     public void delete(String id) throws ResourceNotFoundException {
         GroupEntity entity = groupRepository.findByExternalId(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Group not found"));
-        groupRepository.delete(entity);
+        if (!softDelete) {
+            membershipRepository.removeAllMembers(entity.getId());
+            groupRepository.delete(entity);
+        } else if (!softDeleteRepository.markGroupDeleted(entity.getId())) {
+            throw new ResourceNotFoundException("Group not found");
+        }
+        changeFeedRepository.recordDeletion("Group", id);
+        outboxRepository.append("Group", "delete", id, null);
+        resourceCache.groupChanged(id, null);
+        listPager.resourcesChanged();
     }
 
-    public ScimListResponse<GroupResource> search(Integer startIndex, Integer count, String filter) {
-        Pageable pageable = PageRequest.of(
-                startIndex != null ? startIndex - 1 : 0,
-                count != null ? count : 100
-        );
+    @Transactional(readOnly = true)
+    public ScimListResponse<GroupResource> search(Integer startIndex, Integer count, String filter) throws BadRequestException {
+        return search(startIndex, count, filter, null);
+    }
 
-        Page<GroupEntity> page = groupRepository.findAll(pageable);
-        List<GroupResource> resources = page.getContent().stream()
-                .map(this::mapToScimGroup)
-                .collect(Collectors.toList());
+    @Transactional(readOnly = true)
+    public ScimListResponse<GroupResource> search(Integer startIndex, Integer count, String filter, String cursor)
+            throws BadRequestException {
+        ListPager.ListPage<GroupEntity> page = listPager.fetch(listSource, specification(filter), filter, startIndex, count, cursor);
+        List<GroupResource> resources = mapToScimGroups(page.content());
 
         return ScimListResponse.<GroupResource>builder()
                 .resources(resources)
-                .totalResults((int) page.getTotalElements())
-                .startIndex(startIndex != null ? startIndex : 1)
-                .itemsPerPage(count != null ? count : 100)
+                .totalResults((int) page.totalResults())
+                .startIndex(page.startIndex())
+                .itemsPerPage(resources.size())
+                .nextCursor(page.nextCursor())
                 .build();
     }
 
-    private GroupResource mapToScimGroup(GroupEntity entity) {
-        GroupResource scimGroup = new GroupResource();
-        scimGroup.setId(entity.getExternalId());
-        scimGroup.setDisplayName(entity.getDisplayName());
-
-        if (entity.getMembers() != null && !entity.getMembers().isEmpty()) {
-            List<Member> members = entity.getMembers().stream()
-                    .map(userEntity -> {
-                        Member member = new Member();
-                        member.setValue(userEntity.getExternalId());
-                        member.setRef(URI.create("/scim/v2/Users/" + userEntity.getExternalId()));
-                        member.setDisplay(userEntity.getUserName());
-                        return member;
-                    })
-                    .collect(Collectors.toList());
-            scimGroup.setMembers(members);
-        }
-
-        Meta meta = new Meta();
-        meta.setResourceType("Group");
+    /**
+     * Whether {@link #streamSearch} should serve a page of {@code count} groups.
+     */
+    public boolean isStreamed(Integer count) {
+        return listPager.isStreamed(count);
+    }
 
-        if (entity.getCreatedAt() != null) {
-            Calendar created = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-            created.setTimeInMillis(entity.getCreatedAt().toEpochMilli());
-            meta.setCreated(created);
-        }
+    /**
+     * The same list as {@link #search}, written to the response while the rows are read. Members are
+     * loaded per chunk of groups.
+     */
+    public StreamingResponseBody streamSearch(Integer startIndex, Integer count, String filter, String cursor)
+            throws BadRequestException {
+        return listResponseWriter.body(listSource, specification(filter), filter, startIndex, count, cursor,
+                this::mapToScimGroups);
+    }
 
-        if (entity.getUpdatedAt() != null) {
-            Calendar modified = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-            modified.setTimeInMillis(entity.getUpdatedAt().toEpochMilli());
-            meta.setLastModified(modified);
+    /**
+     * Writes every group as one line of JSON, with {@code COPY} on PostgreSQL and a streamed query elsewhere.
+     */
+    public void export(OutputStream out) throws IOException {
+        if (exportRepository.isCopySupported()) {
+            exportRepository.copyGroups(out);
+        } else {
+            listResponseWriter.writeAll(out, listSource, this::mapToScimGroups);
         }
+    }
 
-        try {
-            meta.setLocation(URI.create("/scim/v2/Groups/" + entity.getExternalId()));
-            meta.setVersion(generateETag(scimGroup));
-        } catch (IllegalArgumentException e) {
-            throw new RuntimeException("Invalid URI format", e);
+    private Specification<GroupEntity> specification(String filter) throws BadRequestException {
+        if (filter == null || filter.trim().isEmpty()) {
+            return null;
         }
+        return filterCompiler.toSpecification(filter, FilterAttributes.GROUP);
+    }
 
-        scimGroup.setMeta(meta);
+    private List<GroupResource> mapToScimGroups(List<GroupEntity> groups) {
+        Map<Long, List<UserReference>> members = membershipRepository.findMembers(
+                groups.stream().map(GroupEntity::getId).collect(Collectors.toList()));
+        return groups.stream()
+                .map(entity -> mapToScimGroup(entity, members.getOrDefault(entity.getId(), List.of())))
+                .collect(Collectors.toList());
+    }
 
-        return scimGroup;
+    private static List<String> memberValues(List<Member> members) {
+        if (members == null) {
+            return List.of();
+        }
+        return members.stream().map(Member::getValue).collect(Collectors.toList());
     }
 
-    private String generateETag(GroupResource groupResource) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("SHA-1");
-            String data = groupResource.getId() + groupResource.getDisplayName() +
-                    (groupResource.getMeta() != null && groupResource.getMeta().getLastModified() != null ?
-                            groupResource.getMeta().getLastModified().getTimeInMillis() : "");
-            // Include members in ETag calculation if they significantly affect the group state
-            if (groupResource.getMembers() != null) {
-                for (Member member : groupResource.getMembers()) {
-                    data += member.getValue();
-                }
+    /**
+     * Loads the users with the given ids and reports every unknown id in one error rather than failing
+     * on the first. The result is ordered by user id and free of duplicates.
+     */
+    private List<UserReference> resolveMembers(Collection<String> externalIds) throws ResourceNotFoundException {
+        List<UserReference> users = findMembers(externalIds);
+        if (users.size() < externalIds.size()) {
+            Set<String> found = users.stream().map(UserReference::externalId).collect(Collectors.toSet());
+            List<String> missing = externalIds.stream()
+                    .filter(value -> !found.contains(value))
+                    .distinct()
+                    .collect(Collectors.toList());
+            if (!missing.isEmpty()) {
+                throw new ResourceNotFoundException("Users not found: " + describe(missing));
             }
-            byte[] hash = md.digest(data.getBytes(StandardCharsets.UTF_8));
-            return "W/\"" + DatatypeConverter.printHexBinary(hash).toLowerCase() + "\"";
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("SHA-1 algorithm not found for ETag generation", e);
         }
+        return users;
     }
 
-    private void validateETag(String currentETag, String ifMatchHeader) throws PreconditionFailedException {
-        if (ifMatchHeader != null && !ifMatchHeader.isEmpty()) {
-            if (!currentETag.equals(ifMatchHeader)) {
-                throw new PreconditionFailedException("ETag mismatch");
+    /**
+     * Finds the users with the given ids that exist, ordered by user id. Users that are not cached are loaded
+     * with chunked {@code IN} queries.
+     */
+    private List<UserReference> findMembers(Collection<String> externalIds) {
+        Set<String> distinct = new LinkedHashSet<>(externalIds);
+        distinct.remove(null);
+
+        List<UserReference> users = new ArrayList<>(resourceCache.findUserReferences(distinct, ids -> {
+            List<UserReference> loaded = new ArrayList<>(ids.size());
+            for (List<String> chunk : InLists.chunks(ids)) {
+                loaded.addAll(userRepository.findByExternalIdIn(chunk));
             }
+            return loaded;
+        }));
+        users.sort(Comparator.comparing(UserReference::id));
+        return users;
+    }
+
+    private static String describe(List<String> missing) {
+        if (missing.size() <= MAX_REPORTED_MISSING_MEMBERS) {
+            return String.join(", ", missing);
         }
+        return String.join(", ", missing.subList(0, MAX_REPORTED_MISSING_MEMBERS))
+                + " and " + (missing.size() - MAX_REPORTED_MISSING_MEMBERS) + " more";
+    }
+
+    private static long[] memberIds(List<UserReference> members) {
+        return members.stream().mapToLong(UserReference::id).toArray();
+    }
+
+    GroupResource mapToScimGroup(GroupEntity entity, List<UserReference> users) {
+        return ScimResourceMapper.toScimGroup(GroupView.of(entity), users);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,72 @@
+package com.valura.auth.scim.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.valura.auth.database.repository.ImportRepository;
+import com.valura.auth.scim.cache.ResourceCache;
+import com.valura.auth.scim.model.ImportReport;
+import com.valura.auth.scim.paging.ListPager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Imports users and groups in bulk from newline-delimited SCIM JSON, replacing one {@code POST} per resource
+ * for tenant onboarding. The whole file is one transaction: lines that fail validation are reported and
+ * skipped, everything else is merged.
+ */
+@Service
+public class ScimImportService {
+
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    private final ImportRepository importRepository;
+    private final ObjectMapper objectMapper;
+    private final ListPager listPager;
+    private final ResourceCache resourceCache;
+
+    public ScimImportService(ImportRepository importRepository, ObjectMapper objectMapper, ListPager listPager,
+                             ResourceCache resourceCache) {
+        this.importRepository = importRepository;
+        this.objectMapper = objectMapper;
+        this.listPager = listPager;
+        this.resourceCache = resourceCache;
+    }
+
+    @Transactional(rollbackFor = IOException.class)
+    public ImportReport importResources(InputStream in) throws IOException {
+        String importId = UUID.randomUUID().toString();
+        ImportLines lines = new ImportLines(
+                new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)), objectMapper);
+        try {
+            importRepository.stageUsers(importId, lines.users());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        importRepository.stageGroups(importId, lines.getGroups());
+        ImportRepository.MergeResult result = importRepository.merge(importId);
+        resourceCache.invalidateAll();
+        listPager.resourcesChanged();
+
+        List<ImportReport.RowError> errors = Stream.concat(
+                        lines.getErrors().stream(), result.errors().stream())
+                .sorted(Comparator.comparingInt(ImportRepository.RowError::line))
+                .map(error -> new ImportReport.RowError(error.line(), error.message()))
+                .collect(Collectors.toCollection(ArrayList::new));
+        int failed = errors.size();
+        return new ImportReport(lines.getReceived(), result.usersCreated(), result.usersUpdated(),
+                result.groupsCreated(), result.groupsUpdated(), failed,
+                failed > MAX_REPORTED_ERRORS ? errors.subList(0, MAX_REPORTED_ERRORS) : errors);
+    }
+}
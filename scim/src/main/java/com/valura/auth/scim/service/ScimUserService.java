@@ -5,42 +5,80 @@ import com.unboundid.scim2.common.exceptions.BadRequestException;
 import com.unboundid.scim2.common.exceptions.ResourceConflictException;
 import com.unboundid.scim2.common.exceptions.PreconditionFailedException;
 import com.unboundid.scim2.common.exceptions.ScimException;
-import com.unboundid.scim2.common.types.Email;
-import com.unboundid.scim2.common.types.Meta;
-import com.unboundid.scim2.common.types.Name;
 import com.unboundid.scim2.common.types.UserResource;
 import com.unboundid.scim2.server.annotations.ResourceType;
+import com.valura.auth.database.entity.ExternalIds;
 import com.valura.auth.database.entity.UserEntity;
+import com.valura.auth.database.repository.ChangeFeedRepository;
+import com.valura.auth.database.repository.GroupMembershipRepository;
+import com.valura.auth.database.repository.OutboxRepository;
+import com.valura.auth.database.repository.ResourceChange;
+import com.valura.auth.database.repository.ResourceExportRepository;
+import com.valura.auth.database.repository.SoftDeleteRepository;
+import com.valura.auth.database.repository.UserPatchRepository;
 import com.valura.auth.database.repository.UserRepository;
+import com.valura.auth.scim.cache.ResourceCache;
+import com.valura.auth.scim.filter.FilterAttributes;
+import com.valura.auth.scim.filter.ScimFilterCompiler;
+import com.valura.auth.scim.mapper.ScimResourceMapper;
+import com.valura.auth.scim.mapper.UserView;
 import com.valura.auth.scim.model.ScimListResponse;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
+import com.valura.auth.scim.model.ScimPatchRequest;
+import com.valura.auth.scim.model.ScimUser;
+import com.valura.auth.scim.paging.ListPager;
+import com.valura.auth.scim.paging.ListResponseWriter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.net.URI;
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.util.ArrayList;
-import java.util.Calendar;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.TimeZone;
-import java.util.UUID;
 import java.util.stream.Collectors;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import javax.xml.bind.DatatypeConverter;
 
 @Service
 @ResourceType(description = "User Account", name = "User", schema = UserResource.class)
 public class ScimUserService {
     private final UserRepository userRepository;
-
-    public ScimUserService(UserRepository userRepository) {
+    private final GroupMembershipRepository membershipRepository;
+    private final ScimFilterCompiler filterCompiler;
+    private final UserPatchRepository userPatchRepository;
+    private final ListPager listPager;
+    private final ListResponseWriter listResponseWriter;
+    private final ResourceExportRepository exportRepository;
+    private final ResourceCache resourceCache;
+    private final ChangeFeedRepository changeFeedRepository;
+    private final SoftDeleteRepository softDeleteRepository;
+    private final OutboxRepository outboxRepository;
+    private final boolean softDelete;
+    private final ListPager.ListSource<UserEntity> listSource;
+
+    public ScimUserService(UserRepository userRepository, GroupMembershipRepository membershipRepository,
+                           UserPatchRepository userPatchRepository,
+                           ScimFilterCompiler filterCompiler, ListPager listPager,
+                           ListResponseWriter listResponseWriter, ResourceExportRepository exportRepository,
+                           ResourceCache resourceCache, ChangeFeedRepository changeFeedRepository,
+                           SoftDeleteRepository softDeleteRepository, OutboxRepository outboxRepository,
+                           @Value("${scim.soft-delete.enabled:false}") boolean softDelete) {
         this.userRepository = userRepository;
+        this.membershipRepository = membershipRepository;
+        this.userPatchRepository = userPatchRepository;
+        this.filterCompiler = filterCompiler;
+        this.listPager = listPager;
+        this.listResponseWriter = listResponseWriter;
+        this.exportRepository = exportRepository;
+        this.resourceCache = resourceCache;
+        this.changeFeedRepository = changeFeedRepository;
+        this.softDeleteRepository = softDeleteRepository;
+        this.outboxRepository = outboxRepository;
+        this.softDelete = softDelete;
+        this.listSource = new ListPager.ListSource<>(userRepository, UserEntity.class, "users", UserEntity::getId);
     }
 
     @Transactional
@@ -49,168 +87,189 @@ public class ScimUserService {
             throw new ResourceConflictException("Username already exists"); // Changed from BadRequestException
 
         UserEntity entity = new UserEntity();
-        entity.setExternalId(UUID.randomUUID().toString());
+        entity.setExternalId(ExternalIds.next());
         updateEntityFromScim(entity, user);
         entity = userRepository.save(entity);
+        outboxRepository.append("User", "create", entity.getExternalId(), entity.getVersion());
+        listPager.resourcesChanged();
         return mapToScimUser(entity);
     }
 
+    @Transactional(readOnly = true)
     public UserResource get(String id) throws ResourceNotFoundException {
-        UserEntity entity = userRepository.findByExternalId(id)
+        UserEntity entity = resourceCache.findUser(id)
                 .orElseThrow(() -> new ResourceNotFoundException("User not found"));
         return mapToScimUser(entity);
     }
 
+    /**
+     * Returns the current ETag if {@code ifNoneMatch} names it, reading only the version column, so that a
+     * client holding the current representation can be answered with 304 without loading the user.
+     */
+    @Transactional(readOnly = true)
+    public Optional<String> matchingETag(String id, String ifNoneMatch) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return Optional.empty();
+        }
+        return resourceCache.cachedUserVersion(id)
+                .or(() -> userRepository.findVersionByExternalId(id))
+                .filter(version -> ETags.matches(ifNoneMatch, version))
+                .map(ETags::of);
+    }
+
     @Transactional
     public UserResource replace(String id, UserResource user, String ifMatch) throws ScimException {
         UserEntity entity = userRepository.findByExternalId(id)
                 .orElseThrow(() -> new ResourceNotFoundException("User not found"));
 
-        UserResource existingUser = mapToScimUser(entity);
-        validateETag(existingUser.getMeta().getVersion(), ifMatch);
+        ETags.check(ifMatch, entity.getVersion());
+        boolean renamed = !Objects.equals(entity.getUserName(), user.getUserName());
 
+        // The UPDATE is conditional on the version just checked; a concurrent write fails it
         updateEntityFromScim(entity, user);
-        entity = userRepository.save(entity);
+        entity = userRepository.saveAndFlush(entity);
+        if (renamed) {
+            groupsChanged(entity.getId());
+        }
+        outboxRepository.append("User", "replace", id, entity.getVersion());
+        resourceCache.userChanged(id, entity.getVersion());
+        listPager.resourcesChanged();
         return mapToScimUser(entity);
     }
 
+    /**
+     * Applies a PATCH request with one {@code UPDATE ... RETURNING} statement. {@code If-Match} is part of
+     * the statement's {@code WHERE} clause, so a concurrent write between check and update is impossible.
+     */
     @Transactional
-    public UserResource patch(String id, UserResource user, String ifMatch) throws ScimException {
-        UserEntity entity = userRepository.findByExternalId(id)
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
-
-        UserResource existingUser = mapToScimUser(entity);
-        validateETag(existingUser.getMeta().getVersion(), ifMatch);
-
-        if (user.getUserName() != null) {
-            entity.setUserName(user.getUserName());
-        }
-        if (user.getDisplayName() != null) {
-            entity.setDisplayName(user.getDisplayName());
-        }
-        if (user.getActive() != null) {
-            entity.setActive(user.getActive());
-        }
-        if (user.getEmails() != null && !user.getEmails().isEmpty()) {
-            entity.setEmail(user.getEmails().get(0).getValue());
+    public UserResource patch(String id, ScimPatchRequest<ScimUser.PatchOp> request, String ifMatch) throws ScimException {
+        Map<UserPatchRepository.Column, Object> changes = UserPatch.of(request.getOperations()).getChanges();
+        long[] versions = ETags.versions(ifMatch);
+        if (changes.isEmpty()) {
+            UserEntity entity = userRepository.findByExternalId(id)
+                    .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+            ETags.check(ifMatch, entity.getVersion());
+            return mapToScimUser(entity);
         }
 
-        if (user.getName() != null) {
-            if (user.getName().getGivenName() != null) {
-                entity.setFirstName(user.getName().getGivenName());
-            }
-            if (user.getName().getFamilyName() != null) {
-                entity.setLastName(user.getName().getFamilyName());
+        Optional<UserEntity> updated;
+        try {
+            updated = userPatchRepository.update(id, versions, changes);
+        } catch (DuplicateKeyException e) {
+            throw new ResourceConflictException("Username or email already exists");
+        }
+        if (updated.isEmpty()) {
+            if (versions != null && userRepository.existsByExternalId(id)) {
+                throw new PreconditionFailedException("ETag mismatch");
             }
+            throw new ResourceNotFoundException("User not found");
         }
-
-        entity = userRepository.save(entity);
-        return mapToScimUser(entity);
+        if (changes.containsKey(UserPatchRepository.Column.USER_NAME)) {
+            groupsChanged(updated.get().getId());
+        }
+        outboxRepository.append("User", "patch", id, updated.get().getVersion());
+        resourceCache.userChanged(id, updated.get().getVersion());
+        listPager.resourcesChanged();
+        return mapToScimUser(updated.get());
     }
 
     @Transactional
     public void delete(String id) throws ResourceNotFoundException {
         UserEntity entity = userRepository.findByExternalId(id)
                 .orElseThrow(() -> new ResourceNotFoundException("User not found"));
-        userRepository.delete(entity);
+        groupsChanged(entity.getId());
+        if (!softDelete) {
+            userRepository.delete(entity);
+        } else if (!softDeleteRepository.markUserDeleted(entity.getId())) {
+            throw new ResourceNotFoundException("User not found");
+        }
+        changeFeedRepository.recordDeletion("User", id);
+        outboxRepository.append("User", "delete", id, null);
+        resourceCache.userChanged(id, null);
+        listPager.resourcesChanged();
     }
 
-    public ScimListResponse<UserResource> search(Integer startIndex, Integer count, String filter) {
-        try {
-            int pageNumber = (startIndex != null && startIndex > 0) ? startIndex - 1 : 0;
-            int pageSize = (count != null && count > 0) ? count : 100;
-
-            Pageable pageable = PageRequest.of(pageNumber, pageSize);
-            Page<UserEntity> page;
-
-            if (filter != null && !filter.trim().isEmpty()) {
-                System.out.println("Processing filter: " + filter);
-
-                FilterResult filterResult = parseFilter(filter);
-
-                if (filterResult != null) {
-                    switch (filterResult.getAttribute().toLowerCase()) {
-                        case "username":
-                            page = userRepository.findByUserNameContainingIgnoreCase(
-                                    filterResult.getValue(), pageable);
-                            break;
-                        case "displayname":
-                            page = userRepository.findByDisplayNameContainingIgnoreCase(
-                                    filterResult.getValue(), pageable);
-                            break;
-                        case "emails":
-                        case "emails.value":
-                            page = userRepository.findByEmailContainingIgnoreCase(
-                                    filterResult.getValue(), pageable);
-                            break;
-                        case "active":
-                            boolean activeValue = Boolean.parseBoolean(filterResult.getValue());
-                            page = userRepository.findByActive(activeValue, pageable);
-                            break;
-                        case "name.givenname":
-                            page = userRepository.findByFirstNameContainingIgnoreCase(
-                                    filterResult.getValue(), pageable);
-                            break;
-                        case "name.familyname":
-                            page = userRepository.findByLastNameContainingIgnoreCase(
-                                    filterResult.getValue(), pageable);
-                            break;
-                        default:
-                            System.out.println("Unsupported filter attribute: " + filterResult.getAttribute() + ", returning all users");
-                            page = userRepository.findAll(pageable);
-                    }
-                } else {
-                    System.out.println("Could not parse filter, returning all users");
-                    page = userRepository.findAll(pageable);
-                }
-            } else {
-                page = userRepository.findAll(pageable);
-            }
+    @Transactional(readOnly = true)
+    public ScimListResponse<UserResource> search(Integer startIndex, Integer count, String filter) throws BadRequestException {
+        return search(startIndex, count, filter, null);
+    }
 
-            List<UserResource> resources = page.getContent().stream()
+    @Transactional(readOnly = true)
+    public ScimListResponse<UserResource> search(Integer startIndex, Integer count, String filter, String cursor)
+            throws BadRequestException {
+        String userName = cursor == null ? ScimFilterCompiler.equalityValue(filter, "userName") : null;
+        if (userName != null && (startIndex == null || startIndex <= 1) && (count == null || count > 0)) {
+            // the common "userName eq" lookup of identity providers; names differing only in case are rare, so
+            // this is almost always at most one user, matched as the filter compiler would
+            List<UserEntity> users = resourceCache.findUsersByName(userName);
+            List<UserResource> resources = users.stream()
+                    .limit(count != null ? count : users.size())
                     .map(this::mapToScimUser)
                     .collect(Collectors.toList());
-
             return ScimListResponse.<UserResource>builder()
                     .resources(resources)
-                    .totalResults((int) page.getTotalElements())
-                    .startIndex(startIndex != null ? startIndex : 1)
+                    .totalResults(users.size())
+                    .startIndex(1)
                     .itemsPerPage(resources.size())
                     .build();
-
-        } catch (Exception e) {
-            System.err.println("Error in search method: " + e.getMessage());
-            e.printStackTrace();
-
-            return ScimListResponse.<UserResource>builder()
-                    .resources(new ArrayList<>())
-                    .totalResults(0)
-                    .startIndex(startIndex != null ? startIndex : 1)
-                    .itemsPerPage(count != null ? count : 100)
-                    .build();
         }
+        ListPager.ListPage<UserEntity> page = listPager.fetch(listSource, specification(filter), filter, startIndex, count, cursor);
+
+        List<UserResource> resources = page.content().stream()
+                .map(this::mapToScimUser)
+                .collect(Collectors.toList());
+
+        return ScimListResponse.<UserResource>builder()
+                .resources(resources)
+                .totalResults((int) page.totalResults())
+                .startIndex(page.startIndex())
+                .itemsPerPage(resources.size())
+                .nextCursor(page.nextCursor())
+                .build();
     }
 
-    private FilterResult parseFilter(String filter) {
-        try {
-            filter = filter.trim();
-            Pattern pattern = Pattern.compile("(\\w+(?:\\.\\w+)?)\\s+(eq|ne|co|sw|ew|gt|lt|ge|le)\\s+[\"']?([^\"']+)[\"']?", Pattern.CASE_INSENSITIVE);
-            Matcher matcher = pattern.matcher(filter);
+    /**
+     * Whether {@link #streamSearch} should serve a page of {@code count} users.
+     */
+    public boolean isStreamed(Integer count) {
+        return listPager.isStreamed(count);
+    }
 
-            if (matcher.find()) {
-                String attribute = matcher.group(1);
-                String operator = matcher.group(2);
-                String value = matcher.group(3);
+    /**
+     * The same list as {@link #search}, written to the response while the rows are read.
+     */
+    public StreamingResponseBody streamSearch(Integer startIndex, Integer count, String filter, String cursor)
+            throws BadRequestException {
+        return listResponseWriter.body(listSource, specification(filter), filter, startIndex, count, cursor,
+                users -> users.stream().map(this::mapToScimUser).collect(Collectors.toList()));
+    }
 
-                System.out.println("Parsed filter - Attribute: " + attribute + ", Operator: " + operator + ", Value: " + value);
+    /**
+     * Writes every user as one line of JSON, with {@code COPY} on PostgreSQL and a streamed query elsewhere.
+     */
+    public void export(OutputStream out) throws IOException {
+        if (exportRepository.isCopySupported()) {
+            exportRepository.copyUsers(out);
+        } else {
+            listResponseWriter.writeAll(out, listSource, users -> users.stream().map(this::mapToScimUser).collect(Collectors.toList()));
+        }
+    }
 
-                return new FilterResult(attribute, operator, value);
-            }
-        } catch (Exception e) {
-            System.err.println("Error parsing filter: " + e.getMessage());
+    /**
+     * Moves the groups of a user to a new version, so that their ETags cover the member that is being renamed
+     * or removed.
+     */
+    private void groupsChanged(long userId) {
+        for (ResourceChange group : membershipRepository.touchGroupsOf(userId)) {
+            resourceCache.groupChanged(group.externalId(), group.version());
         }
+    }
 
-        return null;
+    private Specification<UserEntity> specification(String filter) throws BadRequestException {
+        if (filter == null || filter.trim().isEmpty()) {
+            return null;
+        }
+        return filterCompiler.toSpecification(filter, FilterAttributes.USER);
     }
 
     private void updateEntityFromScim(UserEntity entity, UserResource user) {
@@ -232,107 +291,7 @@ public class ScimUserService {
         }
     }
 
-    private UserResource mapToScimUser(UserEntity entity) {
-        UserResource scimUser = new UserResource();
-        scimUser.setId(entity.getExternalId());
-        scimUser.setUserName(entity.getUserName());
-        scimUser.setDisplayName(entity.getDisplayName());
-        scimUser.setActive(entity.isActive());
-
-        if (entity.getFirstName() != null || entity.getLastName() != null) {
-            Name name = new Name();
-            name.setGivenName(entity.getFirstName());
-            name.setFamilyName(entity.getLastName());
-            if (entity.getFirstName() != null && entity.getLastName() != null) {
-                name.setFormatted(entity.getFirstName() + " " + entity.getLastName());
-            } else if (entity.getFirstName() != null) {
-                name.setFormatted(entity.getFirstName());
-            } else if (entity.getLastName() != null) {
-                name.setFormatted(entity.getLastName());
-            }
-            scimUser.setName(name);
-        }
-
-        if (entity.getEmail() != null) {
-            Email email = new Email();
-            email.setValue(entity.getEmail());
-            email.setPrimary(true);
-            email.setType("work");
-            List<Email> emails = new ArrayList<>();
-            emails.add(email);
-            scimUser.setEmails(emails);
-        }
-
-        Meta meta = new Meta();
-        meta.setResourceType("User");
-
-        if (entity.getCreatedAt() != null) {
-            Calendar created = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-            created.setTimeInMillis(entity.getCreatedAt().toEpochMilli());
-            meta.setCreated(created);
-        }
-
-        if (entity.getUpdatedAt() != null) {
-            Calendar modified = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-            modified.setTimeInMillis(entity.getUpdatedAt().toEpochMilli());
-            meta.setLastModified(modified);
-        }
-
-        try {
-            meta.setLocation(URI.create("/scim/v2/Users/" + entity.getExternalId()));
-            meta.setVersion(generateETag(scimUser));
-        } catch (IllegalArgumentException e) {
-            throw new RuntimeException("Invalid URI format", e);
-        }
-
-        scimUser.setMeta(meta);
-
-        return scimUser;
-    }
-
-    private String generateETag(UserResource userResource) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("SHA-1");
-            String data = userResource.getId() + userResource.getUserName() + userResource.getDisplayName() +
-                    userResource.getActive() +
-                    (userResource.getMeta() != null && userResource.getMeta().getLastModified() != null ?
-                            userResource.getMeta().getLastModified().getTimeInMillis() : "");
-            byte[] hash = md.digest(data.getBytes(StandardCharsets.UTF_8));
-            return "W/\"" + DatatypeConverter.printHexBinary(hash).toLowerCase() + "\"";
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("SHA-1 algorithm not found for ETag generation", e);
-        }
-    }
-
-    private void validateETag(String currentETag, String ifMatchHeader) throws PreconditionFailedException {
-        if (ifMatchHeader != null && !ifMatchHeader.isEmpty()) {
-            if (!currentETag.equals(ifMatchHeader)) {
-                throw new PreconditionFailedException("ETag mismatch");
-            }
-        }
-    }
-
-    private static class FilterResult {
-        private final String attribute;
-        private final String operator;
-        private final String value;
-
-        public FilterResult(String attribute, String operator, String value) {
-            this.attribute = attribute;
-            this.operator = operator;
-            this.value = value;
-        }
-
-        public String getAttribute() {
-            return attribute;
-        }
-
-        public String getOperator() {
-            return operator;
-        }
-
-        public String getValue() {
-            return value;
-        }
+    UserResource mapToScimUser(UserEntity entity) {
+        return ScimResourceMapper.toScimUser(UserView.of(entity));
     }
-}
\ No newline at end of file
+}
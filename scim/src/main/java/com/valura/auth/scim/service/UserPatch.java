@@ -0,0 +1,177 @@
+package com.valura.auth.scim.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.unboundid.scim2.common.Path;
+import com.unboundid.scim2.common.exceptions.BadRequestException;
+import com.valura.auth.database.repository.UserPatchRepository.Column;
+import com.valura.auth.scim.model.ScimUser;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The column changes of a User PATCH request. Operations are applied in order, so a later operation on
+ * the same attribute wins. Only attributes stored as columns of {@code users} can be patched.
+ */
+public final class UserPatch {
+
+    private static final String USER_SCHEMA = "urn:ietf:params:scim:schemas:core:2.0:User";
+    private static final Set<String> IGNORED_ATTRIBUTES = Set.of("id", "schemas", "meta", "externalid", "name.formatted");
+
+    private final Map<Column, Object> changes = new EnumMap<>(Column.class);
+
+    private UserPatch() {
+    }
+
+    public static UserPatch of(List<ScimUser.PatchOp> operations) throws BadRequestException {
+        if (operations == null || operations.isEmpty()) {
+            throw BadRequestException.invalidSyntax("A PATCH request must contain at least one operation");
+        }
+        UserPatch patch = new UserPatch();
+        for (ScimUser.PatchOp operation : operations) {
+            String op = operation.getOp() == null ? "" : operation.getOp().toLowerCase(Locale.ROOT);
+            if (!op.equals("add") && !op.equals("remove") && !op.equals("replace")) {
+                throw BadRequestException.invalidSyntax("Unsupported PATCH operation '" + operation.getOp() + "'");
+            }
+            if (operation.getPath() == null || operation.getPath().isBlank()) {
+                if (op.equals("remove")) {
+                    throw BadRequestException.noTarget("A remove operation requires a path");
+                }
+                patch.applyToResource(op, operation.getValue());
+            } else {
+                patch.apply(op, attributeName(operation.getPath()), operation.getValue());
+            }
+        }
+        return patch;
+    }
+
+    public Map<Column, Object> getChanges() {
+        return Collections.unmodifiableMap(changes);
+    }
+
+    private void applyToResource(String op, JsonNode value) throws BadRequestException {
+        if (value == null || !value.isObject()) {
+            throw BadRequestException.invalidValue("An operation without a path requires an object value");
+        }
+        for (Map.Entry<String, JsonNode> field : value.properties()) {
+            // Azure AD sends sub-attributes as dotted keys, e.g. {"name.givenName": "Barbara"}
+            apply(op, attributeName(field.getKey()), field.getValue());
+        }
+    }
+
+    private void apply(String op, String attribute, JsonNode value) throws BadRequestException {
+        boolean remove = op.equals("remove");
+        switch (attribute) {
+            case "username" -> set(Column.USER_NAME, remove ? null : text(value, "userName"), "userName");
+            case "displayname" -> changes.put(Column.DISPLAY_NAME, remove ? null : text(value, "displayName"));
+            case "name.givenname" -> changes.put(Column.FIRST_NAME, remove ? null : text(value, "name.givenName"));
+            case "name.familyname" -> changes.put(Column.LAST_NAME, remove ? null : text(value, "name.familyName"));
+            case "name" -> {
+                if (remove) {
+                    changes.put(Column.FIRST_NAME, null);
+                    changes.put(Column.LAST_NAME, null);
+                } else {
+                    if (value == null || !value.isObject()) {
+                        throw BadRequestException.invalidValue("name must be an object");
+                    }
+                    for (Map.Entry<String, JsonNode> field : value.properties()) {
+                        apply(op, "name." + field.getKey().toLowerCase(Locale.ROOT), field.getValue());
+                    }
+                }
+            }
+            case "active" -> set(Column.ACTIVE, remove ? null : bool(value), "active");
+            case "emails", "emails.value" -> set(Column.EMAIL, remove ? null : email(value), "emails");
+            default -> {
+                if (!IGNORED_ATTRIBUTES.contains(attribute)) {
+                    throw BadRequestException.invalidPath("Unsupported attribute '" + attribute + "'");
+                }
+            }
+        }
+    }
+
+    private void set(Column column, Object value, String attribute) throws BadRequestException {
+        if (value == null) {
+            throw BadRequestException.invalidValue(attribute + " is required and cannot be removed");
+        }
+        changes.put(column, value);
+    }
+
+    /**
+     * Lower-cased dotted attribute name of a path. The single stored email is the target of any
+     * {@code emails[...]} value filter, since there is nothing else it could select.
+     */
+    private static String attributeName(String path) throws BadRequestException {
+        Path parsed;
+        try {
+            parsed = Path.fromString(path);
+        } catch (BadRequestException e) {
+            throw BadRequestException.invalidPath(e.getMessage());
+        }
+        if (parsed.getSchemaUrn() != null && !parsed.getSchemaUrn().equalsIgnoreCase(USER_SCHEMA)) {
+            throw BadRequestException.invalidPath("Unsupported path '" + path + "'");
+        }
+        StringBuilder name = new StringBuilder();
+        for (Path.Element element : parsed) {
+            String attribute = element.getAttribute().toLowerCase(Locale.ROOT);
+            if (element.getValueFilter() != null && !attribute.equals("emails")) {
+                throw BadRequestException.invalidPath("Value filters are not supported in '" + path + "'");
+            }
+            if (!name.isEmpty()) {
+                name.append('.');
+            }
+            name.append(attribute);
+        }
+        return name.toString();
+    }
+
+    private static String text(JsonNode value, String attribute) throws BadRequestException {
+        if (value == null || !value.isTextual()) {
+            throw BadRequestException.invalidValue(attribute + " must be a string");
+        }
+        return value.textValue();
+    }
+
+    /**
+     * Azure AD sends booleans as the strings "True" and "False".
+     */
+    private static Boolean bool(JsonNode value) throws BadRequestException {
+        if (value != null && value.isBoolean()) {
+            return value.booleanValue();
+        }
+        if (value != null && value.isTextual()) {
+            if (value.textValue().equalsIgnoreCase("true")) {
+                return true;
+            }
+            if (value.textValue().equalsIgnoreCase("false")) {
+                return false;
+            }
+        }
+        throw BadRequestException.invalidValue("active must be a boolean");
+    }
+
+    /**
+     * Accepts an address, an email object, or a list of email objects (the primary one, else the first).
+     */
+    private static String email(JsonNode value) throws BadRequestException {
+        if (value != null && value.isTextual()) {
+            return value.textValue();
+        }
+        JsonNode email = value;
+        if (value != null && value.isArray()) {
+            email = value.isEmpty() ? null : value.get(0);
+            for (JsonNode candidate : value) {
+                if (candidate.path("primary").asBoolean(false)) {
+                    email = candidate;
+                }
+            }
+        }
+        if (email != null && email.isObject() && email.path("value").isTextual()) {
+            return email.path("value").textValue();
+        }
+        throw BadRequestException.invalidValue("emails must contain an email value");
+    }
+}
@@ -0,0 +1,203 @@
+package com.valura.auth.scim.cache;
+
+import com.valura.auth.database.entity.UserEntity;
+import com.valura.auth.database.repository.GroupRepository;
+import com.valura.auth.database.repository.ResourceChange;
+import com.valura.auth.database.repository.ResourceChangeRepository;
+import com.valura.auth.database.repository.UserReference;
+import com.valura.auth.database.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ResourceCacheTest {
+
+    private static final String ID = "0190a5b2-7c3e-7d41-9a2b-3c4d5e6f7a8b";
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final ResourceChangeRepository changeRepository = mock(ResourceChangeRepository.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ResourceCache cache = new ResourceCache(userRepository, mock(GroupRepository.class), changeRepository,
+            meterRegistry, 100, Duration.ofMinutes(1));
+
+    @AfterEach
+    void clearTransaction() {
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+    }
+
+    @Test
+    void loadsEachUserOnceUntilChanged() {
+        UserEntity user = user("bjensen", 0);
+        when(userRepository.findByExternalId(ID)).thenReturn(Optional.of(user));
+
+        assertSame(user, cache.findUser(ID).orElseThrow());
+        assertSame(user, cache.findUser(ID).orElseThrow());
+        assertEquals(Optional.of(0L), cache.cachedUserVersion(ID));
+        verify(userRepository, times(1)).findByExternalId(ID);
+
+        cache.userChanged(ID, 1L);
+        assertEquals(Optional.empty(), cache.cachedUserVersion(ID));
+        verify(changeRepository).publish(new ResourceChange(ResourceChange.Type.USER, ID, 1L));
+        cache.findUser(ID);
+        verify(userRepository, times(2)).findByExternalId(ID);
+        // the second lookup and the version check
+        assertEquals(2.0, meterRegistry.get("cache.gets").tag("cache", "scimUsers").tag("result", "hit")
+                .functionCounter().count());
+    }
+
+    @Test
+    void doesNotShareUsersLoadedInReadWriteTransactions() {
+        when(userRepository.findByExternalId(ID)).thenReturn(Optional.of(user("bjensen", 0)));
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+
+        cache.findUser(ID);
+        assertEquals(Optional.empty(), cache.cachedUserVersion(ID));
+
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        cache.findUser(ID);
+        assertEquals(Optional.of(0L), cache.cachedUserVersion(ID));
+    }
+
+    @Test
+    void userNameLookupsFollowRenames() {
+        UserEntity user = user("bjensen", 0);
+        when(userRepository.findByUserNameIgnoreCase("bjensen")).thenReturn(List.of(user));
+        assertEquals(List.of(user), cache.findUsersByName("bjensen"));
+        assertEquals(List.of(user), cache.findUsersByName("bjensen"));
+        verify(userRepository, times(1)).findByUserNameIgnoreCase("bjensen");
+
+        UserEntity renamed = user("babs", 1);
+        cache.userChanged(ID, 1L);
+        when(userRepository.findByExternalId(ID)).thenReturn(Optional.of(renamed));
+        when(userRepository.findByUserNameIgnoreCase("bjensen")).thenReturn(List.of());
+
+        assertEquals(List.of(), cache.findUsersByName("bjensen"));
+        verify(userRepository, times(2)).findByUserNameIgnoreCase("bjensen");
+    }
+
+    @Test
+    void userNameLookupsIgnoreCase() {
+        UserEntity user = user("bjensen", 0);
+        when(userRepository.findByUserNameIgnoreCase("BJensen")).thenReturn(List.of(user));
+
+        assertEquals(List.of(user), cache.findUsersByName("BJensen"));
+        assertEquals(List.of(user), cache.findUsersByName("bjensen"));
+        assertEquals(List.of(user), cache.findUsersByName("BJENSEN"));
+        verify(userRepository, times(1)).findByUserNameIgnoreCase(anyString());
+
+        // another node gives a second user the name in other case
+        cache.changed(new ResourceChange(ResourceChange.Type.USER, ID, 1L));
+        UserEntity other = user("BJENSEN", 0);
+        when(userRepository.findByUserNameIgnoreCase("bjensen")).thenReturn(List.of(user, other));
+        assertEquals(List.of(user, other), cache.findUsersByName("bjensen"));
+    }
+
+    @Test
+    void changesFromOtherNodesDropOlderVersions() {
+        when(userRepository.findByExternalId(ID)).thenReturn(Optional.of(user("bjensen", 3)));
+        cache.findUser(ID);
+
+        cache.changed(new ResourceChange(ResourceChange.Type.USER, ID, 3L));
+        assertEquals(Optional.of(3L), cache.cachedUserVersion(ID));
+        cache.changed(new ResourceChange(ResourceChange.Type.USER, ID, 4L));
+        assertEquals(Optional.empty(), cache.cachedUserVersion(ID));
+
+        cache.findUser(ID);
+        cache.changed(new ResourceChange(ResourceChange.Type.USER, ID, null));
+        assertEquals(Optional.empty(), cache.cachedUserVersion(ID));
+
+        cache.findUser(ID);
+        cache.missedChanges();
+        assertEquals(Optional.empty(), cache.cachedUserVersion(ID));
+        verifyNoInteractions(changeRepository);
+    }
+
+    @Test
+    void keysIdsInCanonicalForm() {
+        when(userRepository.findByExternalId(ID.toUpperCase())).thenReturn(Optional.of(user("bjensen", 0)));
+
+        cache.findUser(ID.toUpperCase());
+        assertEquals(Optional.of(0L), cache.cachedUserVersion(ID));
+
+        cache.userChanged(ID.toUpperCase(), 1L);
+        assertEquals(Optional.empty(), cache.cachedUserVersion(ID));
+    }
+
+    @Test
+    void doesNotCacheVersionsOlderThanTheLatestChange() {
+        cache.userChanged(ID, 2L);
+        // a replica that has not replayed the change yet
+        when(userRepository.findByExternalId(ID)).thenReturn(Optional.of(user("bjensen", 1)));
+        cache.findUser(ID);
+        assertEquals(Optional.empty(), cache.cachedUserVersion(ID));
+
+        when(userRepository.findByExternalId(ID)).thenReturn(Optional.of(user("babs", 2)));
+        cache.findUser(ID);
+        assertEquals(Optional.of(2L), cache.cachedUserVersion(ID));
+
+        cache.changed(new ResourceChange(ResourceChange.Type.USER, ID, null));
+        cache.findUser(ID);
+        assertEquals(Optional.empty(), cache.cachedUserVersion(ID));
+        cache.findUserReferences(List.of(ID), ids -> List.of(new UserReference(1L, ID, "babs")));
+        List<List<String>> loads = new ArrayList<>();
+        cache.findUserReferences(List.of(ID), ids -> {
+            loads.add(ids);
+            return List.of();
+        });
+        assertEquals(List.of(List.of(ID)), loads);
+    }
+
+    @Test
+    void cachesNothingForOneExpiryAfterChangesWereMissed() {
+        AtomicLong nanos = new AtomicLong();
+        ResourceCache cache = new ResourceCache(userRepository, mock(GroupRepository.class), changeRepository,
+                meterRegistry, 100, Duration.ofMinutes(1), nanos::get);
+        when(userRepository.findByExternalId(ID)).thenReturn(Optional.of(user("bjensen", 0)));
+
+        cache.missedChanges();
+        cache.findUser(ID);
+        assertEquals(Optional.empty(), cache.cachedUserVersion(ID));
+
+        nanos.addAndGet(Duration.ofMinutes(1).toNanos());
+        cache.findUser(ID);
+        assertEquals(Optional.of(0L), cache.cachedUserVersion(ID));
+    }
+
+    @Test
+    void loadsOnlyUncachedReferences() {
+        UserReference a = new UserReference(1L, "a", "alice");
+        UserReference b = new UserReference(2L, "b", "bob");
+        List<List<String>> loads = new ArrayList<>();
+
+        cache.findUserReferences(List.of("a"), ids -> {
+            loads.add(ids);
+            return List.of(a);
+        });
+        List<UserReference> found = cache.findUserReferences(List.of("a", "b", "missing"), ids -> {
+            loads.add(ids);
+            return List.of(b);
+        });
+
+        assertEquals(List.of(a, b), found);
+        assertEquals(List.of(List.of("a"), List.of("b", "missing")), loads);
+    }
+
+    private static UserEntity user(String userName, long version) {
+        UserEntity user = new UserEntity();
+        user.setExternalId(ID);
+        user.setUserName(userName);
+        user.setVersion(version);
+        return user;
+    }
+}
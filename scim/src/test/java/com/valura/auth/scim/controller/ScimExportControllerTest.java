@@ -0,0 +1,182 @@
+package com.valura.auth.scim.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.unboundid.scim2.common.types.Email;
+import com.unboundid.scim2.common.types.GroupResource;
+import com.unboundid.scim2.common.types.Member;
+import com.unboundid.scim2.common.types.Name;
+import com.unboundid.scim2.common.types.UserResource;
+import com.valura.auth.scim.service.ScimGroupService;
+import com.valura.auth.scim.service.ScimScopes;
+import com.valura.auth.scim.service.ScimUserService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+/**
+ * The exports on H2, where they take the streamed-query path instead of {@code COPY}.
+ */
+@SpringBootTest(classes = ScimExportControllerTest.Config.class, properties = {
+        "spring.main.allow-bean-definition-overriding=true",
+        "spring.datasource.url=jdbc:h2:mem:scim-export;DB_CLOSE_DELAY=-1",
+        "spring.security.oauth2.resourceserver.jwt.issuer-uri=https://issuer.invalid/",
+        "auth0.audience=test",
+        "scim.resource-cache.notifications.enabled=false"
+})
+@AutoConfigureMockMvc
+class ScimExportControllerTest {
+
+    @SpringBootConfiguration
+    @EnableAutoConfiguration
+    @ComponentScan(basePackages = {"com.valura.auth.scim", "com.valura.auth.database"})
+    static class Config {
+
+        /**
+         * Accepts any bearer token as an admin, in place of the issuer's decoder.
+         */
+        @Bean
+        JwtDecoder jwtDecoder() {
+            return token -> Jwt.withTokenValue(token)
+                    .header("alg", "none")
+                    .subject("test")
+                    .claim("scope", ScimScopes.SCIM_ADMIN)
+                    .issuedAt(Instant.now())
+                    .expiresAt(Instant.now().plusSeconds(3600))
+                    .build();
+        }
+    }
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ScimUserService userService;
+
+    @Autowired
+    private ScimGroupService groupService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void clear() {
+        jdbcTemplate.update("DELETE FROM user_groups");
+        jdbcTemplate.update("DELETE FROM groups");
+        jdbcTemplate.update("DELETE FROM users");
+    }
+
+    @Test
+    void exportsEveryLiveUserAndGroupAsOneLineEach() throws Exception {
+        UserResource alice = userService.create(user("export-alice", "Alice", "Smith"));
+        UserResource bob = userService.create(user("export-bob", null, null));
+        UserResource carol = userService.create(user("export-carol", null, null));
+        userService.delete(carol.getId());
+        GroupResource group = new GroupResource();
+        group.setDisplayName("export-group");
+        group.setMembers(List.of(new Member().setValue(bob.getId()), new Member().setValue(alice.getId())));
+        GroupResource created = groupService.create(group);
+
+        List<JsonNode> users = lines(export("/scim/v2/Export/Users", null), false);
+        assertEquals(List.of(alice.getId(), bob.getId()), users.stream().map(line -> line.get("id").asText()).toList());
+        JsonNode first = users.get(0);
+        assertEquals("export-alice", first.get("userName").asText());
+        assertEquals("Alice Smith", first.at("/name/formatted").asText());
+        assertEquals("export-alice@example.com", first.at("/emails/0/value").asText());
+        assertEquals("W/\"0\"", first.at("/meta/version").asText());
+        assertEquals("/scim/v2/Users/" + alice.getId(), first.at("/meta/location").asText());
+
+        List<JsonNode> groups = lines(export("/scim/v2/Export/Groups", null), false);
+        assertEquals(1, groups.size());
+        assertEquals(created.getId(), groups.get(0).get("id").asText());
+        List<String> members = new ArrayList<>();
+        groups.get(0).get("members").forEach(member -> members.add(member.get("value").asText()));
+        assertEquals(List.of(alice.getId(), bob.getId()), members);
+    }
+
+    @Test
+    void compressesOnlyWhenGzipIsAccepted() throws Exception {
+        userService.create(user("export-gzip", null, null));
+
+        MvcResult plain = export("/scim/v2/Export/Users", null);
+        assertNull(plain.getResponse().getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertEquals("application/x-ndjson", plain.getResponse().getContentType());
+
+        MvcResult gzip = export("/scim/v2/Export/Users", "br, gzip");
+        assertEquals("gzip", gzip.getResponse().getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(HttpHeaders.ACCEPT_ENCODING, gzip.getResponse().getHeader(HttpHeaders.VARY));
+        assertEquals(lines(plain, false), lines(gzip, true));
+    }
+
+    @Test
+    void gzipOnlyWhenAccepted() {
+        assertTrue(ScimExportController.acceptsGzip("gzip"));
+        assertTrue(ScimExportController.acceptsGzip("br, GZIP;q=0.8"));
+        assertFalse(ScimExportController.acceptsGzip(null));
+        assertFalse(ScimExportController.acceptsGzip("br, deflate"));
+        assertFalse(ScimExportController.acceptsGzip("gzip;q=0"));
+        assertFalse(ScimExportController.acceptsGzip("gzip; q=0.0"));
+    }
+
+    private MvcResult export(String uri, String acceptEncoding) throws Exception {
+        MockHttpServletRequestBuilder builder = get(uri).header(HttpHeaders.AUTHORIZATION, "Bearer admin");
+        if (acceptEncoding != null) {
+            builder.header(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+        }
+        MvcResult started = mockMvc.perform(builder).andExpect(request().asyncStarted()).andReturn();
+        return mockMvc.perform(asyncDispatch(started)).andReturn();
+    }
+
+    private static List<JsonNode> lines(MvcResult result, boolean gzip) throws IOException {
+        byte[] body = result.getResponse().getContentAsByteArray();
+        try (InputStream in = gzip ? new GZIPInputStream(new ByteArrayInputStream(body)) : new ByteArrayInputStream(body)) {
+            String text = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            assertTrue(text.endsWith("\n"));
+            List<JsonNode> lines = new ArrayList<>();
+            for (String line : text.split("\n")) {
+                lines.add(JSON.readTree(line));
+            }
+            return lines;
+        }
+    }
+
+    private static UserResource user(String userName, String givenName, String familyName) {
+        UserResource user = new UserResource();
+        user.setUserName(userName);
+        user.setActive(true);
+        user.setEmails(List.of(new Email().setValue(userName + "@example.com")));
+        if (givenName != null) {
+            user.setName(new Name().setGivenName(givenName).setFamilyName(familyName));
+        }
+        return user;
+    }
+}
@@ -0,0 +1,234 @@
+package com.valura.auth.scim.controller;
+
+import com.unboundid.scim2.common.types.Email;
+import com.unboundid.scim2.common.types.GroupResource;
+import com.unboundid.scim2.common.types.Member;
+import com.unboundid.scim2.common.types.UserResource;
+import com.valura.auth.database.config.VirtualThreadPinningMonitor;
+import com.valura.auth.scim.service.ScimGroupService;
+import com.valura.auth.scim.service.ScimScopes;
+import com.valura.auth.scim.service.ScimUserService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Throughput and latency of {@code /scim/v2/Users} and {@code /scim/v2/Groups} with Tomcat on its platform
+ * thread pool and on virtual threads ({@code spring.threads.virtual.enabled}). The application is started
+ * once per mode on the same data; {@code benchmark.clients} concurrent clients then alternate between
+ * fetching a random resource and a random page of 20 for {@code benchmark.seconds}, after a warm-up.
+ *
+ * <p>Runs on in-memory H2 unless {@code -Dbenchmark.url} names another database. The difference between the
+ * modes shows when requests wait on the database, so compare them on PostgreSQL, with more clients than
+ * Tomcat's 200 platform threads. In virtual mode pins reported by {@link VirtualThreadPinningMonitor} are
+ * counted; on H2 they come from the embedded engine.
+ */
+@Tag("benchmark")
+class ThreadModeBenchmark {
+
+    private static final int USERS = Integer.getInteger("benchmark.users", 2_000);
+    private static final int GROUPS = Integer.getInteger("benchmark.groups", 200);
+    private static final int MEMBERS = Integer.getInteger("benchmark.members", 20);
+    private static final int CLIENTS = Integer.getInteger("benchmark.clients", 400);
+    private static final Duration WARM_UP = Duration.ofSeconds(Long.getLong("benchmark.warm-up-seconds", 5));
+    private static final Duration MEASURED = Duration.ofSeconds(Long.getLong("benchmark.seconds", 20));
+    private static final int PAGE_SIZE = 20;
+
+    @SpringBootConfiguration
+    @EnableAutoConfiguration
+    @ComponentScan(basePackages = {"com.valura.auth.scim", "com.valura.auth.database"})
+    static class Config {
+
+        /**
+         * Accepts any bearer token as an admin, in place of the issuer's decoder.
+         */
+        @Bean
+        JwtDecoder jwtDecoder() {
+            return token -> Jwt.withTokenValue(token)
+                    .header("alg", "none")
+                    .subject("benchmark")
+                    .claim("scope", ScimScopes.SCIM_ADMIN)
+                    .issuedAt(Instant.now())
+                    .expiresAt(Instant.now().plusSeconds(3600))
+                    .build();
+        }
+    }
+
+    private record Result(long requests, long errors, long[] latencies) {
+    }
+
+    @Test
+    void platformAndVirtualThreads() throws Exception {
+        List<String> report = new ArrayList<>();
+        for (boolean virtual : new boolean[]{false, true}) {
+            String mode = virtual ? "virtual" : "platform";
+            try (ConfigurableApplicationContext context = start(virtual)) {
+                int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+                JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+                seed(context, jdbcTemplate);
+                List<String> users = jdbcTemplate.queryForList(
+                        "SELECT external_id FROM users WHERE deleted_at IS NULL", String.class);
+                List<String> groups = jdbcTemplate.queryForList(
+                        "SELECT external_id FROM groups WHERE deleted_at IS NULL", String.class);
+
+                report.add(report(mode, "Users", load(port, "Users", users)));
+                report.add(report(mode, "Groups", load(port, "Groups", groups)));
+                if (virtual) {
+                    report.add(String.format("%-8s pinned virtual threads: %d", mode,
+                            context.getBean(VirtualThreadPinningMonitor.class).pinnedCount()));
+                }
+            }
+        }
+        System.out.printf("%d clients, %d users, %d groups of %d members, %d s per run%n",
+                CLIENTS, USERS, GROUPS, MEMBERS, MEASURED.toSeconds());
+        report.forEach(System.out::println);
+    }
+
+    private static ConfigurableApplicationContext start(boolean virtual) {
+        String url = System.getProperty("benchmark.url",
+                "jdbc:h2:mem:thread-mode-" + (virtual ? "virtual" : "platform") + ";DB_CLOSE_DELAY=-1");
+        return new SpringApplicationBuilder(Config.class).properties(
+                "server.port=0",
+                "spring.threads.virtual.enabled=" + virtual,
+                "spring.main.allow-bean-definition-overriding=true",
+                "spring.datasource.url=" + url,
+                "spring.datasource.username=" + System.getProperty("benchmark.username", "sa"),
+                "spring.datasource.password=" + System.getProperty("benchmark.password", ""),
+                "spring.security.oauth2.resourceserver.jwt.issuer-uri=https://issuer.invalid/",
+                "auth0.audience=benchmark",
+                "scim.resource-cache.notifications.enabled=false",
+                "logging.level.root=WARN").run();
+    }
+
+    /**
+     * Creates the users and groups unless an earlier run left them in the database.
+     */
+    private static void seed(ConfigurableApplicationContext context, JdbcTemplate jdbcTemplate) throws Exception {
+        if (jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users", Integer.class) > 0) {
+            return;
+        }
+        ScimUserService userService = context.getBean(ScimUserService.class);
+        ScimGroupService groupService = context.getBean(ScimGroupService.class);
+        List<String> userIds = new ArrayList<>(USERS);
+        for (int i = 0; i < USERS; i++) {
+            UserResource user = new UserResource();
+            user.setUserName("benchmark-" + i);
+            user.setActive(true);
+            user.setEmails(List.of(new Email().setValue("benchmark-" + i + "@example.com")));
+            userIds.add(userService.create(user).getId());
+        }
+        for (int i = 0; i < GROUPS; i++) {
+            GroupResource group = new GroupResource();
+            group.setDisplayName("benchmark-" + i);
+            List<Member> members = new ArrayList<>(MEMBERS);
+            for (int j = 0; j < MEMBERS; j++) {
+                members.add(new Member().setValue(userIds.get((i * MEMBERS + j) % USERS)));
+            }
+            group.setMembers(members);
+            groupService.create(group);
+        }
+    }
+
+    private static Result load(int port, String resource, List<String> ids) throws Exception {
+        assertFalse(ids.isEmpty());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .executor(executor)
+                    .build();
+            run(executor, client, port, resource, ids, WARM_UP);
+            return run(executor, client, port, resource, ids, MEASURED);
+        }
+    }
+
+    private static Result run(ExecutorService executor, HttpClient client, int port, String resource,
+                              List<String> ids, Duration duration) throws Exception {
+        long deadline = System.nanoTime() + duration.toNanos();
+        List<Future<Result>> clients = new ArrayList<>(CLIENTS);
+        for (int c = 0; c < CLIENTS; c++) {
+            clients.add(executor.submit(() -> {
+                long[] latencies = new long[1024];
+                long requests = 0;
+                long errors = 0;
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() < deadline) {
+                    String path = requests % 2 == 0
+                            ? "/" + ids.get(random.nextInt(ids.size()))
+                            : "?startIndex=" + (1 + random.nextInt(ids.size())) + "&count=" + PAGE_SIZE;
+                    HttpRequest request = HttpRequest.newBuilder(
+                                    URI.create("http://localhost:" + port + "/scim/v2/" + resource + path))
+                            .header("Authorization", "Bearer benchmark")
+                            .header("Accept", "application/scim+json")
+                            .build();
+                    long start = System.nanoTime();
+                    try {
+                        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                        if (response.statusCode() != 200) {
+                            errors++;
+                        }
+                    } catch (IOException e) {
+                        errors++;
+                    }
+                    if (requests == latencies.length) {
+                        latencies = Arrays.copyOf(latencies, latencies.length * 2);
+                    }
+                    latencies[(int) requests++] = System.nanoTime() - start;
+                }
+                return new Result(requests, errors, Arrays.copyOf(latencies, (int) requests));
+            }));
+        }
+        long requests = 0;
+        long errors = 0;
+        List<long[]> latencies = new ArrayList<>(CLIENTS);
+        for (Future<Result> result : clients) {
+            requests += result.get().requests();
+            errors += result.get().errors();
+            latencies.add(result.get().latencies());
+        }
+        long[] all = new long[(int) requests];
+        int offset = 0;
+        for (long[] part : latencies) {
+            System.arraycopy(part, 0, all, offset, part.length);
+            offset += part.length;
+        }
+        Arrays.sort(all);
+        return new Result(requests, errors, all);
+    }
+
+    private static String report(String mode, String resource, Result result) {
+        long[] latencies = result.latencies();
+        return String.format("%-8s %-6s %9d requests %9.0f req/s  p50 %8.1f ms  p99 %8.1f ms %7d errors",
+                mode, resource, result.requests(), result.requests() / (double) MEASURED.toSeconds(),
+                percentile(latencies, 0.50) / 1e6, percentile(latencies, 0.99) / 1e6, result.errors());
+    }
+
+    private static long percentile(long[] sorted, double fraction) {
+        return sorted.length == 0 ? 0 : sorted[Math.min(sorted.length - 1, (int) (sorted.length * fraction))];
+    }
+}
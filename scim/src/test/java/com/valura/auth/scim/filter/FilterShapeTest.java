@@ -0,0 +1,46 @@
+package com.valura.auth.scim.filter;
+
+import com.fasterxml.jackson.databind.node.BooleanNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FilterShapeTest {
+
+    @Test
+    void replacesLiteralsWithTypedPlaceholders() {
+        FilterShape shape = FilterShape.of("userName eq \"bjensen\" and active eq true");
+
+        assertEquals("username eq ?s and active eq ?b", shape.key());
+        assertEquals(List.of(TextNode.valueOf("bjensen"), BooleanNode.TRUE), shape.literals());
+    }
+
+    @Test
+    void normalizesCaseAndWhitespace() {
+        assertEquals(FilterShape.of("userName eq \"a\"").key(), FilterShape.of("  USERNAME   Eq \"b\" ").key());
+    }
+
+    @Test
+    void keepsSchemaUrnsAndValuePathsIntact() {
+        FilterShape shape = FilterShape.of(
+                "urn:ietf:params:scim:schemas:core:2.0:User:emails[type eq \"work\" and value co \"@x\"]");
+
+        assertEquals("urn:ietf:params:scim:schemas:core:2.0:user:emails[type eq ?s and value co ?s]", shape.key());
+        assertEquals(2, shape.literals().size());
+    }
+
+    @Test
+    void unescapesStringLiterals() {
+        FilterShape shape = FilterShape.of("displayName eq \"say \\\"hi\\\" \\u0041\"");
+
+        assertEquals(List.of(TextNode.valueOf("say \"hi\" A")), shape.literals());
+    }
+
+    @Test
+    void leavesUnterminatedStringsUnparameterized() {
+        assertFalse(FilterShape.of("userName eq \"bjensen").isParameterized());
+    }
+}
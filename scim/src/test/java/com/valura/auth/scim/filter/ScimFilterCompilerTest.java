@@ -0,0 +1,158 @@
+package com.valura.auth.scim.filter;
+
+import com.unboundid.scim2.common.exceptions.BadRequestException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ScimFilterCompilerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ScimFilterCompiler compiler = new ScimFilterCompiler(meterRegistry, 100);
+
+    @Test
+    void equalityKeepsOperatorAndValue() throws Exception {
+        FilterPlans.Compilation compilation = compiler.compile("userName eq \"bjensen\"", FilterAttributes.USER);
+
+        assertEquals(new FilterNode.Compare("userName", FilterNode.Operator.EQ, 0, true), compilation.plan().getRoot());
+        assertArrayEquals(new Object[]{"bjensen"}, compilation.plan().bind(compilation.literals()));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void equalityOnStringsIgnoresCase() throws Exception {
+        FilterPlans.Compilation compilation = compiler.compile("userName eq \"Alice@Contoso.com\"", FilterAttributes.USER);
+        assertEquals(new FilterNode.Compare("userName", FilterNode.Operator.EQ, 0, true), compilation.plan().getRoot());
+
+        Root<Object> root = mock(Root.class);
+        Path<String> userName = mock(Path.class);
+        Expression<String> value = mock(Expression.class);
+        Expression<String> lowerUserName = mock(Expression.class);
+        Expression<String> lowerValue = mock(Expression.class);
+        Predicate equal = mock(Predicate.class);
+        CriteriaBuilder cb = mock(CriteriaBuilder.class);
+        when(root.<String>get("userName")).thenReturn(userName);
+        when(cb.literal("Alice@Contoso.com")).thenReturn(value);
+        when(cb.lower(userName)).thenReturn(lowerUserName);
+        when(cb.lower(value)).thenReturn(lowerValue);
+        when(cb.equal(lowerUserName, lowerValue)).thenReturn(equal);
+
+        assertSame(equal, compiler.toSpecification("userName eq \"Alice@Contoso.com\"", FilterAttributes.USER)
+                .toPredicate(root, null, cb));
+    }
+
+    @Test
+    void compilesLogicalOperatorsAndGrouping() throws Exception {
+        FilterPlans.Compilation compilation = compiler.compile(
+                "name.familyName sw \"J\" and (active eq true or not (displayName pr))", FilterAttributes.USER);
+
+        assertEquals(new FilterNode.And(List.of(
+                new FilterNode.Compare("lastName", FilterNode.Operator.SW, 0, true),
+                new FilterNode.Or(List.of(
+                        new FilterNode.Compare("active", FilterNode.Operator.EQ, 1, false),
+                        new FilterNode.Not(new FilterNode.Present("displayName", FilterAttribute.Type.STRING))))
+        )), compilation.plan().getRoot());
+        assertArrayEquals(new Object[]{"J", true}, compilation.plan().bind(compilation.literals()));
+    }
+
+    @Test
+    void constantSubAttributesInValuePathsAreDecidedInMemory() throws Exception {
+        FilterNode node = compiler.compile("emails[type eq \"work\" and value co \"@example.com\"]", FilterAttributes.USER)
+                .plan().getRoot();
+
+        FilterNode.ConstantCompare type = new FilterNode.ConstantCompare("work", FilterNode.Operator.EQ, 0);
+        assertEquals(new FilterNode.And(List.of(
+                type,
+                new FilterNode.Compare("email", FilterNode.Operator.CO, 1, true))), node);
+        assertTrue(type.matches("Work"));
+        assertFalse(type.matches("home"));
+    }
+
+    @Test
+    void memberFiltersBecomeCorrelatedExists() throws Exception {
+        FilterNode node = compiler.compile("members.value eq \"2819c223\"", FilterAttributes.GROUP).plan().getRoot();
+
+        assertEquals(new FilterNode.Exists("members",
+                new FilterNode.Compare("externalId", FilterNode.Operator.EQ, 0, false)), node);
+    }
+
+    @Test
+    void bindsDateTimeComparisons() throws Exception {
+        FilterPlans.Compilation compilation = compiler.compile(
+                "meta.lastModified gt \"2011-05-13T04:42:34Z\"", FilterAttributes.USER);
+
+        assertArrayEquals(new Object[]{Instant.parse("2011-05-13T04:42:34Z")},
+                compilation.plan().bind(compilation.literals()));
+    }
+
+    @Test
+    void reusesPlansForFiltersOfTheSameShape() throws Exception {
+        compiler.toSpecification("userName eq \"alice\"", FilterAttributes.USER);
+        compiler.toSpecification("USERNAME  Eq \"bob\"", FilterAttributes.USER);
+        compiler.toSpecification("userName eq \"carol\"", FilterAttributes.USER);
+
+        assertEquals(2.0, meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("result", "miss").functionCounter().count());
+    }
+
+    @Test
+    void cachedPlansStillValidateLiterals() throws Exception {
+        compiler.toSpecification("meta.created gt \"2011-05-13T04:42:34Z\"", FilterAttributes.USER);
+
+        assertThrows(BadRequestException.class,
+                () -> compiler.toSpecification("meta.created gt \"yesterday\"", FilterAttributes.USER));
+    }
+
+    @Test
+    void rejectsUnknownAttributes() {
+        BadRequestException e = assertThrows(BadRequestException.class,
+                () -> compiler.compile("nickName eq \"babs\"", FilterAttributes.USER));
+
+        assertEquals(BadRequestException.INVALID_FILTER, e.getScimError().getScimType());
+    }
+
+    @Test
+    void rejectsSubstringOperatorsOnBooleans() {
+        assertThrows(BadRequestException.class,
+                () -> compiler.compile("active co \"tr\"", FilterAttributes.USER));
+    }
+
+    @Test
+    void idsOnlySupportEqualityWithUuids() throws Exception {
+        assertThrows(BadRequestException.class,
+                () -> compiler.compile("id sw \"2819c223\"", FilterAttributes.USER));
+        assertThrows(BadRequestException.class,
+                () -> compiler.toSpecification("id eq \"2819c223\"", FilterAttributes.USER));
+
+        FilterPlans.Compilation compilation = compiler.compile(
+                "id ne \"0190a5b2-7c3e-7d41-9a2b-3c4d5e6f7a8b\"", FilterAttributes.GROUP);
+        assertArrayEquals(new Object[]{"0190a5b2-7c3e-7d41-9a2b-3c4d5e6f7a8b"},
+                compilation.plan().bind(compilation.literals()));
+    }
+
+    @Test
+    void rejectsMalformedFilters() {
+        assertThrows(BadRequestException.class,
+                () -> compiler.toSpecification("userName eq", FilterAttributes.USER));
+    }
+
+    @Test
+    void extractsTheValueOfSingleEqualityFilters() {
+        assertEquals("bjensen", ScimFilterCompiler.equalityValue("UserName EQ \"bjensen\"", "userName"));
+        assertNull(ScimFilterCompiler.equalityValue("userName sw \"bjensen\"", "userName"));
+        assertNull(ScimFilterCompiler.equalityValue("userName eq \"bjensen\" or userName eq \"x\"", "userName"));
+        assertNull(ScimFilterCompiler.equalityValue("displayName eq \"bjensen\"", "userName"));
+        assertNull(ScimFilterCompiler.equalityValue(null, "userName"));
+    }
+}
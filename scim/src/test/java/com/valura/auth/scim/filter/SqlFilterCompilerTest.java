@@ -0,0 +1,76 @@
+package com.valura.auth.scim.filter;
+
+import com.unboundid.scim2.common.exceptions.BadRequestException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SqlFilterCompilerTest {
+
+    private static final String ID = "2819c223-7f76-453a-919d-413861904646";
+
+    private final SqlFilterCompiler compiler = new SqlFilterCompiler(new SimpleMeterRegistry(), 100);
+
+    @Test
+    void bindsEveryLiteral() throws Exception {
+        SqlFilter filter = compiler.toSql(
+                "name.familyName sw \"J_\" and (active eq true or not (displayName pr))", FilterAttributes.USER);
+
+        assertEquals("(LOWER(users.last_name) LIKE :filter0 ESCAPE '\\' AND (users.active = :filter1 OR "
+                + "NOT ((users.display_name IS NOT NULL AND users.display_name <> ''))))", filter.condition());
+        assertEquals(Map.of("filter0", "j\\_%", "filter1", true), filter.values());
+    }
+
+    @Test
+    void comparesStringsCaseInsensitively() throws Exception {
+        SqlFilter filter = compiler.toSql("userName eq \"Alice@Contoso.com\"", FilterAttributes.USER);
+
+        assertEquals("LOWER(users.user_name) = LOWER(:filter0)", filter.condition());
+        assertEquals(Map.of("filter0", "Alice@Contoso.com"), filter.values());
+    }
+
+    @Test
+    void convertsIdsAndDatesForTheDriver() throws Exception {
+        SqlFilter filter = compiler.toSql(
+                "id eq \"" + ID + "\" or meta.lastModified ge \"2024-01-01T01:00:00+01:00\"", FilterAttributes.USER);
+
+        assertEquals("(users.external_id = :filter0 OR users.updated_at >= :filter1)", filter.condition());
+        assertEquals(Map.of("filter0", UUID.fromString(ID),
+                "filter1", OffsetDateTime.of(2024, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC)), filter.values());
+    }
+
+    @Test
+    void joinsMultiValuedAttributesThroughExists() throws Exception {
+        SqlFilter filter = compiler.toSql("members[value eq \"" + ID + "\" or display co \"x\"]", FilterAttributes.GROUP);
+
+        assertEquals("EXISTS (SELECT 1 FROM user_groups m0 JOIN users j0 ON j0.id = m0.user_id "
+                + "WHERE m0.group_id = groups.id AND j0.deleted_at IS NULL AND "
+                + "((j0.external_id = :filter0 OR LOWER(j0.user_name) LIKE :filter1 ESCAPE '\\')))", filter.condition());
+        assertEquals(Map.of("filter0", UUID.fromString(ID), "filter1", "%x%"), filter.values());
+    }
+
+    @Test
+    void foldsConstantAttributes() throws Exception {
+        assertEquals("(1 = 1 AND 1 = 0)",
+                compiler.toSql("emails.type eq \"Work\" and emails.primary eq false", FilterAttributes.USER).condition());
+    }
+
+    @Test
+    void noFilterIsNoCondition() throws Exception {
+        assertNull(compiler.toSql(null, FilterAttributes.USER));
+        assertNull(compiler.toSql(" ", FilterAttributes.GROUP));
+    }
+
+    @Test
+    void rejectsWhatTheJpaCompilerRejects() {
+        BadRequestException e = assertThrows(BadRequestException.class,
+                () -> compiler.toSql("active gt true", FilterAttributes.USER));
+        assertEquals("invalidFilter", e.getScimError().getScimType());
+    }
+}
@@ -0,0 +1,56 @@
+package com.valura.auth.scim.mapper;
+
+import com.unboundid.scim2.common.types.GroupResource;
+import com.unboundid.scim2.common.types.Member;
+import com.unboundid.scim2.common.types.UserResource;
+import com.valura.auth.database.repository.UserReference;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScimResourceMapperTest {
+
+    private static final String ID = "2819c223-7f76-453a-919d-413861904646";
+    private static final Instant CREATED = Instant.parse("2024-01-01T00:00:00Z");
+    private static final Instant MODIFIED = Instant.parse("2024-02-01T00:00:00Z");
+
+    private record User(String externalId, String userName, String displayName, String firstName, String lastName,
+                        String email, boolean active, Instant created, Instant lastModified, long version)
+            implements UserView {
+    }
+
+    private record Group(String externalId, String displayName, Instant created, Instant lastModified, long version)
+            implements GroupView {
+    }
+
+    @Test
+    void mapsAUser() {
+        UserResource user = ScimResourceMapper.toScimUser(
+                new User(ID, "bjensen", null, null, "Jensen", "bjensen@example.com", true, CREATED, MODIFIED, 3));
+
+        assertEquals(ID, user.getId());
+        assertEquals("Jensen", user.getName().getFormatted());
+        assertEquals("work", user.getEmails().get(0).getType());
+        assertTrue(user.getEmails().get(0).getPrimary());
+        assertEquals("User", user.getMeta().getResourceType());
+        assertEquals(CREATED, user.getMeta().getCreated().toInstant());
+        assertEquals(MODIFIED, user.getMeta().getLastModified().toInstant());
+        assertEquals(URI.create("/scim/v2/Users/" + ID), user.getMeta().getLocation());
+        assertEquals("W/\"3\"", user.getMeta().getVersion());
+    }
+
+    @Test
+    void mapsAGroupWithItsMembers() {
+        GroupResource group = ScimResourceMapper.toScimGroup(new Group(ID, "staff", CREATED, null, 0),
+                List.of(new UserReference(1L, "u-1", "alice"), new UserReference(2L, "u-2", "bob")));
+
+        assertEquals(List.of("alice", "bob"), group.getMembers().stream().map(Member::getDisplay).toList());
+        assertEquals(URI.create("/scim/v2/Users/u-2"), group.getMembers().get(1).getRef());
+        assertNull(group.getMeta().getLastModified());
+        assertEquals(URI.create("/scim/v2/Groups/" + ID), group.getMeta().getLocation());
+    }
+}
@@ -0,0 +1,30 @@
+package com.valura.auth.scim.paging;
+
+import com.unboundid.scim2.common.exceptions.BadRequestException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ListCursorTest {
+
+    @Test
+    void roundTripsTheLastId() throws Exception {
+        String cursor = ListCursor.encode(4_000_123L);
+
+        assertEquals(4_000_123L, ListCursor.decode(cursor));
+    }
+
+    @Test
+    void emptyCursorStartsAtTheFirstPage() throws Exception {
+        assertNull(ListCursor.decode(""));
+        assertNull(ListCursor.decode(null));
+    }
+
+    @Test
+    void rejectsCursorsItDidNotIssue() {
+        BadRequestException e = assertThrows(BadRequestException.class, () -> ListCursor.decode("not a cursor"));
+
+        assertEquals(ListCursor.INVALID_CURSOR, e.getScimError().getScimType());
+        assertThrows(BadRequestException.class, () -> ListCursor.decode("aWQ6YWJj"));
+    }
+}
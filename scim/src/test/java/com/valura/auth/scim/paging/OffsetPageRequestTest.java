@@ -0,0 +1,23 @@
+package com.valura.auth.scim.paging;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffsetPageRequestTest {
+
+    @Test
+    void startIndexIsAOneBasedRowOffset() {
+        OffsetPageRequest request = OffsetPageRequest.ofStartIndex(101, 100, ListCursor.ORDER);
+
+        assertEquals(100, request.getOffset());
+        assertEquals(100, request.getPageSize());
+        assertEquals(200, request.next().getOffset());
+    }
+
+    @Test
+    void startIndexBelowOneIsTreatedAsOne() {
+        assertEquals(0, OffsetPageRequest.ofStartIndex(0, 10, ListCursor.ORDER).getOffset());
+        assertEquals(0, OffsetPageRequest.ofStartIndex(null, 10, ListCursor.ORDER).getOffset());
+    }
+}
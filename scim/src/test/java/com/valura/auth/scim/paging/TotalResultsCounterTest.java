@@ -0,0 +1,67 @@
+package com.valura.auth.scim.paging;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class TotalResultsCounterTest {
+
+    private final AtomicInteger counts = new AtomicInteger();
+
+    private TotalResultsCounter counter(TotalResultsMode mode) {
+        return new TotalResultsCounter(mock(DataSource.class), new SimpleMeterRegistry(), mode, 100, Duration.ofMinutes(5));
+    }
+
+    private long count() {
+        counts.incrementAndGet();
+        return 42;
+    }
+
+    @Test
+    void exactModeCountsEveryTime() {
+        TotalResultsCounter counter = counter(TotalResultsMode.EXACT);
+
+        counter.count("users", "userName sw \"a\"", this::count);
+        counter.count("users", "userName sw \"a\"", this::count);
+
+        assertEquals(2, counts.get());
+    }
+
+    @Test
+    void cachedModeCountsEachFilterOnceUntilAWrite() {
+        TotalResultsCounter counter = counter(TotalResultsMode.CACHED);
+
+        assertEquals(42, counter.count("users", "userName sw \"a\"", this::count));
+        assertEquals(42, counter.count("users", "userName sw \"a\"", this::count));
+        counter.count("users", null, this::count);
+        assertEquals(2, counts.get());
+
+        counter.invalidate();
+        counter.count("users", "userName sw \"a\"", this::count);
+        assertEquals(3, counts.get());
+    }
+
+    @Test
+    void cachedModeRemembersTotalsProvedByALastPage() {
+        TotalResultsCounter counter = counter(TotalResultsMode.CACHED);
+
+        counter.remember("groups", null, 7);
+
+        assertEquals(7, counter.count("groups", null, this::count));
+        assertEquals(0, counts.get());
+    }
+
+    @Test
+    void estimatedModeFallsBackToExactCountsOffPostgres() {
+        TotalResultsCounter counter = counter(TotalResultsMode.ESTIMATED);
+
+        assertEquals(42, counter.count("users", null, this::count));
+        assertEquals(1, counts.get());
+    }
+}
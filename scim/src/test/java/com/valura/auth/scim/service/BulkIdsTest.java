@@ -0,0 +1,68 @@
+package com.valura.auth.scim.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.unboundid.scim2.common.exceptions.ResourceConflictException;
+import com.valura.auth.scim.model.ScimBulkRequest.Operation;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BulkIdsTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private Operation operation(String method, String bulkId, String path, String data) throws Exception {
+        Operation operation = new Operation();
+        operation.setMethod(method);
+        operation.setBulkId(bulkId);
+        operation.setPath(path);
+        operation.setData(data == null ? null : objectMapper.readTree(data));
+        return operation;
+    }
+
+    @Test
+    void runsReferencedOperationsFirstAndKeepsRequestOrderOtherwise() throws Exception {
+        Operation group = operation("POST", "g", "/Groups",
+                "{\"displayName\":\"Admins\",\"members\":[{\"value\":\"bulkId:u\"}]}");
+        Operation other = operation("POST", "o", "/Users", "{\"userName\":\"other\"}");
+        Operation user = operation("POST", "u", "/Users", "{\"userName\":\"alice\"}");
+        Operation patch = operation("PATCH", null, "/Groups/bulkId:g", "{\"Operations\":[]}");
+
+        assertEquals(List.of(other, user, group, patch), BulkIds.ordered(List.of(group, other, user, patch)));
+    }
+
+    @Test
+    void keepsCyclesInRequestOrder() throws Exception {
+        Operation a = operation("POST", "a", "/Groups", "{\"members\":[{\"value\":\"bulkId:b\"}]}");
+        Operation b = operation("POST", "b", "/Groups", "{\"members\":[{\"value\":\"bulkId:a\"}]}");
+
+        assertEquals(List.of(a, b), BulkIds.ordered(List.of(a, b)));
+    }
+
+    @Test
+    void resolvesReferencesInPathsAndData() throws Exception {
+        BulkIds bulkIds = new BulkIds();
+        bulkIds.put("u", "42");
+        JsonNode data = objectMapper.readTree("{\"members\":[{\"value\":\"bulkId:u\"},{\"value\":\"7\"}]}");
+
+        assertEquals("42", bulkIds.resolve("bulkId:u"));
+        assertEquals("7", bulkIds.resolve("7"));
+        assertEquals("{\"members\":[{\"value\":\"42\"},{\"value\":\"7\"}]}", bulkIds.resolve(data).toString());
+        assertEquals("bulkId:u", data.at("/members/0/value").textValue(), "the request data is not modified");
+    }
+
+    @Test
+    void rejectsUnresolvedReferencesAndForgetsRolledBackIds() {
+        BulkIds bulkIds = new BulkIds();
+        Map<String, String> before = bulkIds.snapshot();
+        bulkIds.put("u", "42");
+        bulkIds.restore(before);
+
+        ResourceConflictException e = assertThrows(ResourceConflictException.class, () -> bulkIds.resolve("bulkId:u"));
+        assertTrue(e.getMessage().contains("bulkId:u"));
+    }
+}
@@ -0,0 +1,57 @@
+package com.valura.auth.scim.service;
+
+import com.unboundid.scim2.common.exceptions.BadRequestException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChangeWatermarkTest {
+
+    private static final Predicate<String> SNAPSHOT = watermark -> watermark.matches("\\d+:\\d+:(\\d+(,\\d+)*)?");
+
+    @Test
+    void roundTripsAWindowBeingPaged() throws Exception {
+        ChangeWatermark watermark = new ChangeWatermark("100:105:101,103", "110:110:", 42);
+
+        assertEquals(watermark, ChangeWatermark.decode(watermark.encode(), SNAPSHOT));
+    }
+
+    @Test
+    void roundTripsACaughtUpWatermark() throws Exception {
+        ChangeWatermark watermark = ChangeWatermark.caughtUp("110:110:");
+
+        ChangeWatermark decoded = ChangeWatermark.decode(watermark.encode(), SNAPSHOT);
+
+        assertEquals("110:110:", decoded.low());
+        assertNull(decoded.high());
+        assertEquals(0, decoded.after());
+    }
+
+    @Test
+    void rejectsTokensItDidNotIssue() {
+        BadRequestException e = assertThrows(BadRequestException.class,
+                () -> ChangeWatermark.decode("not a watermark", SNAPSHOT));
+
+        assertEquals(BadRequestException.INVALID_VALUE, e.getScimError().getScimType());
+        assertThrows(BadRequestException.class, () -> ChangeWatermark.decode(encode("1:2:/x/0"), SNAPSHOT));
+        assertThrows(BadRequestException.class, () -> ChangeWatermark.decode(encode("1:2:'; --//0"), SNAPSHOT));
+        assertThrows(BadRequestException.class, () -> ChangeWatermark.decode(encode("1:2://-1"), SNAPSHOT));
+        assertThrows(BadRequestException.class, () -> ChangeWatermark.decode(encode("1:2:/"), SNAPSHOT));
+    }
+
+    @Test
+    void expiredWatermarksHaveTheirOwnScimType() {
+        BadRequestException e = ChangeWatermark.expired(ChangeWatermark.caughtUp("1").encode());
+
+        assertEquals("expiredCursor", e.getScimError().getScimType());
+        assertEquals(400, e.getScimError().getStatus());
+    }
+
+    private static String encode(String token) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,46 @@
+package com.valura.auth.scim.service;
+
+import com.unboundid.scim2.common.exceptions.PreconditionFailedException;
+import com.unboundid.scim2.common.exceptions.ResourceConflictException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ETagsTest {
+
+    @Test
+    void roundTripsVersions() throws Exception {
+        assertArrayEquals(new long[]{7}, ETags.versions(ETags.of(7)));
+        assertArrayEquals(new long[]{3, 4}, ETags.versions("\"3\", W/\"4\""));
+    }
+
+    @Test
+    void wildcardAndMissingHeaderMatchAnyVersion() throws Exception {
+        assertNull(ETags.versions(null));
+        assertNull(ETags.versions("*"));
+        ETags.check("*", 12);
+    }
+
+    @Test
+    void rejectsOtherVersionsAndForeignTags() {
+        assertThrows(PreconditionFailedException.class, () -> ETags.check("W/\"1\"", 2));
+        assertThrows(PreconditionFailedException.class, () -> ETags.versions("W/\"5d41402abc4b2a76b9719d911017c592\""));
+    }
+
+    @Test
+    void ifNoneMatchUsesWeakComparison() {
+        assertTrue(ETags.matches("\"4\"", 4));
+        assertTrue(ETags.matches("W/\"3\", W/\"4\"", 4));
+        assertTrue(ETags.matches("*", 4));
+        assertFalse(ETags.matches("W/\"3\"", 4));
+        assertFalse(ETags.matches("W/\"5d41402abc4b2a76b9719d911017c592\"", 4));
+        assertFalse(ETags.matches(null, 4));
+    }
+
+    @Test
+    void aLostRaceFailsAPreconditionOnlyWhenOneWasSent() {
+        assertInstanceOf(PreconditionFailedException.class, ETags.concurrentChange("W/\"3\""));
+        assertInstanceOf(ResourceConflictException.class, ETags.concurrentChange(null));
+        assertInstanceOf(ResourceConflictException.class, ETags.concurrentChange("*"));
+    }
+}
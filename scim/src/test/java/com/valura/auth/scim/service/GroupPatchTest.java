@@ -0,0 +1,81 @@
+package com.valura.auth.scim.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.unboundid.scim2.common.exceptions.BadRequestException;
+import com.valura.auth.scim.model.ScimGroup;
+import com.valura.auth.scim.model.ScimPatchRequest;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GroupPatchTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private GroupPatch patch(String operations) throws Exception {
+        ScimPatchRequest<ScimGroup.PatchOp> request = objectMapper.readValue(
+                "{\"schemas\":[\"urn:ietf:params:scim:api:messages:2.0:PatchOp\"],\"Operations\":" + operations + "}",
+                objectMapper.getTypeFactory().constructParametricType(ScimPatchRequest.class, ScimGroup.PatchOp.class));
+        return GroupPatch.of(request.getOperations());
+    }
+
+    @Test
+    void removesMembersSelectedByValueFilter() throws Exception {
+        GroupPatch patch = patch("[{\"op\":\"remove\",\"path\":\"members[value eq \\\"u1\\\" or value eq \\\"u2\\\"]\"}]");
+
+        assertEquals(Set.of("u1", "u2"), patch.getRemovedMembers());
+        assertTrue(patch.getAddedMembers().isEmpty());
+        assertFalse(patch.isReplaceMembers());
+    }
+
+    @Test
+    void acceptsAzureStyleCapitalizedOperations() throws Exception {
+        GroupPatch patch = patch("[{\"op\":\"Add\",\"path\":\"members\",\"value\":[{\"value\":\"u1\"}]},"
+                + "{\"op\":\"Remove\",\"path\":\"members\",\"value\":[{\"value\":\"u2\"}]},"
+                + "{\"op\":\"Replace\",\"path\":\"displayName\",\"value\":\"Admins\"}]");
+
+        assertEquals(Set.of("u1"), patch.getAddedMembers());
+        assertEquals(Set.of("u2"), patch.getRemovedMembers());
+        assertEquals("Admins", patch.getDisplayName());
+    }
+
+    @Test
+    void laterOperationsWinOverEarlierOnes() throws Exception {
+        GroupPatch patch = patch("[{\"op\":\"add\",\"path\":\"members\",\"value\":[{\"value\":\"u1\"}]},"
+                + "{\"op\":\"remove\",\"path\":\"members[value eq \\\"u1\\\"]\"}]");
+
+        assertFalse(patch.getAddedMembers().contains("u1"));
+        assertEquals(Set.of("u1"), patch.getRemovedMembers());
+    }
+
+    @Test
+    void replaceWithoutPathReplacesAllMembers() throws Exception {
+        GroupPatch patch = patch("[{\"op\":\"replace\",\"value\":{\"id\":\"g1\",\"displayName\":\"Ops\","
+                + "\"members\":[{\"value\":\"u3\"}]}}]");
+
+        assertTrue(patch.isReplaceMembers());
+        assertEquals(Set.of("u3"), patch.getAddedMembers());
+        assertEquals("Ops", patch.getDisplayName());
+    }
+
+    @Test
+    void removingAllMembersIsAnEmptyReplacement() throws Exception {
+        GroupPatch patch = patch("[{\"op\":\"remove\",\"path\":\"members\"}]");
+
+        assertTrue(patch.isReplaceMembers());
+        assertTrue(patch.getAddedMembers().isEmpty());
+    }
+
+    @Test
+    void rejectsUnsupportedRequests() {
+        assertThrows(BadRequestException.class, () -> patch("[{\"op\":\"remove\"}]"));
+        assertThrows(BadRequestException.class, () -> patch("[{\"op\":\"move\",\"path\":\"members\"}]"));
+        assertThrows(BadRequestException.class, () -> patch("[{\"op\":\"add\",\"path\":\"owner\",\"value\":\"x\"}]"));
+        assertThrows(BadRequestException.class,
+                () -> patch("[{\"op\":\"remove\",\"path\":\"members[display eq \\\"x\\\"]\"}]"));
+        assertThrows(BadRequestException.class, () -> GroupPatch.of(List.of()));
+    }
+}
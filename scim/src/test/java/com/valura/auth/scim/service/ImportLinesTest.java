@@ -0,0 +1,73 @@
+package com.valura.auth.scim.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.valura.auth.database.repository.ImportRepository.RowError;
+import com.valura.auth.database.repository.ImportRepository.StagedGroup;
+import com.valura.auth.database.repository.ImportRepository.StagedUser;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImportLinesTest {
+
+    private static final String USER_ID = "0190a5b2-7c3e-7d41-9a2b-3c4d5e6f7a8b";
+    private static final String GROUP_ID = "0190a5b2-7c3e-7d41-9a2b-3c4d5e6f7a8c";
+
+    private static ImportLines read(String... lines) {
+        return new ImportLines(new BufferedReader(new StringReader(String.join("\n", lines))), new ObjectMapper());
+    }
+
+    private static List<StagedUser> users(ImportLines lines) {
+        List<StagedUser> users = new ArrayList<>();
+        lines.users().forEachRemaining(users::add);
+        return users;
+    }
+
+    @Test
+    void readsUsersLazilyAndCollectsGroups() {
+        ImportLines lines = read(
+                "{\"id\":\"" + USER_ID.toUpperCase() + "\",\"userName\":\"bjensen\",\"name\":{\"givenName\":\"Barbara\"},"
+                        + "\"emails\":[{\"value\":\"old@example.com\"},{\"value\":\"bjensen@example.com\",\"primary\":true}]}",
+                "",
+                "{\"schemas\":[\"urn:ietf:params:scim:schemas:core:2.0:Group\"],\"id\":\"" + GROUP_ID + "\","
+                        + "\"displayName\":\"Staff\",\"members\":[{\"value\":\"" + USER_ID + "\"},{\"value\":\"" + USER_ID + "\"}]}");
+
+        assertEquals(List.of(new StagedUser(1, USER_ID, "bjensen", null, "Barbara", null, "bjensen@example.com", true)),
+                users(lines));
+        assertEquals(List.of(new StagedGroup(3, GROUP_ID, "Staff", List.of(USER_ID))), lines.getGroups());
+        assertEquals(2, lines.getReceived());
+        assertTrue(lines.getErrors().isEmpty());
+    }
+
+    @Test
+    void assignsIdsToResourcesWithout() {
+        List<StagedUser> users = users(read("{\"userName\":\"bjensen\",\"emails\":[{\"value\":\"b@example.com\"}]}"));
+
+        assertEquals(7, UUID.fromString(users.get(0).externalId()).version());
+    }
+
+    @Test
+    void reportsLinesThatCannotBeStaged() {
+        ImportLines lines = read(
+                "[1]",
+                "{\"userName\":\"nomail\"}",
+                "{\"userName\":\"x\",\"active\":\"yes\",\"emails\":[{\"value\":\"x@example.com\"}]}",
+                "{\"displayName\":\"neither\"}",
+                "{\"schemas\":[\"urn:ietf:params:scim:schemas:core:2.0:Group\"],\"displayName\":\"G\",\"members\":[{}]}",
+                "{oops",
+                "{\"id\":\"u1\",\"userName\":\"y\",\"emails\":[{\"value\":\"y@example.com\"}]}",
+                "{\"schemas\":[\"urn:ietf:params:scim:schemas:core:2.0:Group\"],\"displayName\":\"H\",\"members\":[{\"value\":\"u1\"}]}");
+
+        assertTrue(users(lines).isEmpty());
+        assertEquals(List.of(1, 2, 3, 4, 5, 6, 7, 8), lines.getErrors().stream().map(RowError::line).toList());
+        assertEquals("emails is required", lines.getErrors().get(1).message());
+        assertEquals("id must be a UUID", lines.getErrors().get(6).message());
+        assertEquals("Users not found: u1", lines.getErrors().get(7).message());
+    }
+}
@@ -0,0 +1,70 @@
+package com.valura.auth.scim.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.unboundid.scim2.common.exceptions.BadRequestException;
+import com.valura.auth.database.repository.UserPatchRepository.Column;
+import com.valura.auth.scim.model.ScimPatchRequest;
+import com.valura.auth.scim.model.ScimUser;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserPatchTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private Map<Column, Object> changes(String operations) throws Exception {
+        ScimPatchRequest<ScimUser.PatchOp> request = objectMapper.readValue(
+                "{\"Operations\":" + operations + "}",
+                objectMapper.getTypeFactory().constructParametricType(ScimPatchRequest.class, ScimUser.PatchOp.class));
+        return UserPatch.of(request.getOperations()).getChanges();
+    }
+
+    @Test
+    void mapsAttributePathsToColumns() throws Exception {
+        Map<Column, Object> changes = changes("[{\"op\":\"Replace\",\"path\":\"active\",\"value\":\"False\"},"
+                + "{\"op\":\"replace\",\"path\":\"emails[type eq \\\"work\\\"].value\",\"value\":\"b@example.com\"},"
+                + "{\"op\":\"add\",\"path\":\"name.givenName\",\"value\":\"Barbara\"}]");
+
+        assertEquals(Map.of(Column.ACTIVE, false, Column.EMAIL, "b@example.com", Column.FIRST_NAME, "Barbara"), changes);
+    }
+
+    @Test
+    void acceptsObjectValuesWithoutPath() throws Exception {
+        Map<Column, Object> changes = changes("[{\"op\":\"replace\",\"value\":{\"displayName\":\"Babs\","
+                + "\"name.familyName\":\"Jensen\",\"name\":{\"givenName\":\"Barbara\"},"
+                + "\"emails\":[{\"value\":\"a@example.com\"},{\"value\":\"b@example.com\",\"primary\":true}]}}]");
+
+        assertEquals(Map.of(Column.DISPLAY_NAME, "Babs", Column.LAST_NAME, "Jensen", Column.FIRST_NAME, "Barbara",
+                Column.EMAIL, "b@example.com"), changes);
+    }
+
+    @Test
+    void removingOptionalAttributesClearsTheirColumns() throws Exception {
+        Map<Column, Object> expected = new HashMap<>();
+        expected.put(Column.DISPLAY_NAME, null);
+        expected.put(Column.FIRST_NAME, null);
+        expected.put(Column.LAST_NAME, null);
+
+        assertEquals(expected, changes("[{\"op\":\"remove\",\"path\":\"displayName\"},{\"op\":\"remove\",\"path\":\"name\"}]"));
+    }
+
+    @Test
+    void rejectsRemovingRequiredAttributes() {
+        assertThrows(BadRequestException.class, () -> changes("[{\"op\":\"remove\",\"path\":\"userName\"}]"));
+        assertThrows(BadRequestException.class, () -> changes("[{\"op\":\"remove\",\"path\":\"emails\"}]"));
+    }
+
+    @Test
+    void rejectsUnsupportedAttributesAndValues() {
+        assertThrows(BadRequestException.class,
+                () -> changes("[{\"op\":\"add\",\"path\":\"nickName\",\"value\":\"Babs\"}]"));
+        assertThrows(BadRequestException.class,
+                () -> changes("[{\"op\":\"replace\",\"path\":\"active\",\"value\":\"maybe\"}]"));
+        assertThrows(BadRequestException.class,
+                () -> changes("[{\"op\":\"replace\",\"path\":\"urn:ietf:params:scim:schemas:extension:enterprise:2.0:User:department\",\"value\":\"x\"}]"));
+    }
+}
@@ -1,4 +1,5 @@
 rootProject.name = "auth"
 
 include("database")
-include("scim")
\ No newline at end of file
+include("scim")
+include("scim-reactive")